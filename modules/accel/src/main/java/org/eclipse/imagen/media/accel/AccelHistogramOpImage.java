@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.accel;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import org.eclipse.imagen.Histogram;
+import org.eclipse.imagen.ParallelStatistics;
+import org.eclipse.imagen.PixelAccessor;
+import org.eclipse.imagen.ROI;
+import org.eclipse.imagen.StatisticsOpImage;
+import org.eclipse.imagen.UnpackedImageData;
+
+/**
+ * An <code>OpImage</code> implementing the "Histogram" operation as
+ * described in <code>org.eclipse.imagen.operator.HistogramDescriptor</code>.
+ *
+ * <p> For byte, unsigned short and short images the bin of every possible
+ * sample value is computed once, by the same arithmetic as
+ * <code>Histogram.countPixels()</code>, so that counting a sample only
+ * takes a table lookup.  Samples outside of the histogram range are
+ * counted in an extra, discarded bin.  Other data types, and images with
+ * a region of interest, are counted by <code>Histogram</code> itself.
+ *
+ * @see org.eclipse.imagen.Histogram
+ * @see org.eclipse.imagen.operator.HistogramDescriptor
+ * @see AccelHistogramRIF
+ */
+final class AccelHistogramOpImage extends StatisticsOpImage
+    implements ParallelStatistics {
+
+    /** Number of bins per band. */
+    private int[] numBins;
+
+    /** The low value checked inclusive for each band. */
+    private double[] lowValue;
+
+    /** The high value checked exclusive for each band. */
+    private double[] highValue;
+
+    /** The number of bands of the source image. */
+    private int numBands;
+
+    /** The data type of the source image. */
+    private int dataType;
+
+    /**
+     * The bin of each sample value for each band, or <code>null</code> if
+     * the pixels are counted by <code>Histogram</code>.  Short samples
+     * are offset by 32768.
+     */
+    private int[][] binTables;
+
+    /** Whether all the pixels are counted, no ROI having been supplied. */
+    private boolean countAll;
+
+    /**
+     * Constructs an <code>AccelHistogramOpImage</code>.
+     *
+     * @param source  The source image.
+     */
+    public AccelHistogramOpImage(RenderedImage source,
+                                 ROI roi,
+                                 int xStart,
+                                 int yStart,
+                                 int xPeriod,
+                                 int yPeriod,
+                                 int[] numBins,
+                                 double[] lowValue,
+                                 double[] highValue) {
+        super(source, roi, xStart, yStart, xPeriod, yPeriod);
+
+        countAll = roi == null;
+
+        numBands = source.getSampleModel().getNumBands();
+
+        this.numBins = new int[numBands];
+        this.lowValue = new double[numBands];
+        this.highValue = new double[numBands];
+
+        for (int b = 0; b < numBands; b++) {
+            this.numBins[b] = numBins.length == 1 ?
+                              numBins[0] : numBins[b];
+            this.lowValue[b] = lowValue.length == 1 ?
+                               lowValue[0] : lowValue[b];
+            this.highValue[b] = highValue.length == 1 ?
+                                highValue[0] : highValue[b];
+        }
+
+        SampleModel sm = source.getSampleModel();
+        dataType = sm.getDataType();
+
+        if (!(sm instanceof MultiPixelPackedSampleModel)) {
+            switch (dataType) {
+            case DataBuffer.TYPE_BYTE:
+                createBinTables(0, 255);
+                break;
+            case DataBuffer.TYPE_USHORT:
+                createBinTables(0, 65535);
+                break;
+            case DataBuffer.TYPE_SHORT:
+                createBinTables(Short.MIN_VALUE, Short.MAX_VALUE);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Computes the bin of the sample values <code>[minValue,
+     * maxValue]</code> for each band.
+     */
+    private void createBinTables(int minValue, int maxValue) {
+        binTables = new int[numBands][maxValue - minValue + 1];
+
+        for (int b = 0; b < numBands; b++) {
+            int[] table = binTables[b];
+            double low = lowValue[b];
+            double high = highValue[b];
+            double bwidth = (high - low) / numBins[b];
+
+            for (int d = minValue; d <= maxValue; d++) {
+                if (d >= low && d < high) {
+                    table[d - minValue] = (int)((d - low) / bwidth);
+                } else {
+                    table[d - minValue] = numBins[b];
+                }
+            }
+        }
+    }
+
+    protected String[] getStatisticsNames() {
+        String[] names = new String[1];
+        names[0] = "histogram";
+        return names;
+    }
+
+    protected Object createStatistics(String name) {
+        if (name.equalsIgnoreCase("histogram")) {
+            return new Histogram(numBins, lowValue, highValue);
+        } else {
+            return java.awt.Image.UndefinedProperty;
+        }
+    }
+
+    protected void accumulateStatistics(String name,
+                                        Raster source,
+                                        Object stats) {
+        Histogram histogram = (Histogram)stats;
+
+        if (binTables == null || !countAll) {
+            histogram.countPixels(source, roi,
+                                  xStart, yStart, xPeriod, yPeriod);
+            return;
+        }
+
+        // Find the actual area based on start and period.
+        Rectangle bounds = source.getBounds();
+        Rectangle rect = new Rectangle();
+        rect.x = startPosition(bounds.x, xStart, xPeriod);
+        rect.y = startPosition(bounds.y, yStart, yPeriod);
+        rect.width = bounds.x + bounds.width - rect.x;
+        rect.height = bounds.y + bounds.height - rect.y;
+
+        if (rect.width <= 0 || rect.height <= 0) {
+            return;	// no pixel to count in this raster
+        }
+
+        PixelAccessor accessor =
+            new PixelAccessor(source.getSampleModel(), null);
+        UnpackedImageData uid =
+            accessor.getPixels(source, rect, dataType, false);
+
+        for (int b = 0; b < numBands; b++) {
+            int[] counts = new int[numBins[b] + 1];
+
+            switch (dataType) {
+            case DataBuffer.TYPE_BYTE:
+                countPixelsByte(uid, b, rect, binTables[b], counts);
+                break;
+            case DataBuffer.TYPE_USHORT:
+                countPixelsUShort(uid, b, rect, binTables[b], counts);
+                break;
+            case DataBuffer.TYPE_SHORT:
+                countPixelsShort(uid, b, rect, binTables[b], counts);
+                break;
+            }
+
+            int[] bins = histogram.getBins(b);
+            for (int i = 0; i < bins.length; i++) {
+                bins[i] += counts[i];
+            }
+        }
+    }
+
+    private void countPixelsByte(UnpackedImageData uid, int band,
+                                 Rectangle rect,
+                                 int[] table, int[] counts) {
+        byte[] data = uid.getByteData(band);
+        int pixelStride = uid.pixelStride * xPeriod;
+        int lineStride = uid.lineStride * yPeriod;
+        int lineOffset = uid.bandOffsets[band];
+
+        for (int h = 0; h < rect.height; h += yPeriod) {
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            for (int w = 0; w < rect.width; w += xPeriod) {
+                counts[table[data[pixelOffset] & 0xff]]++;
+                pixelOffset += pixelStride;
+            }
+        }
+    }
+
+    private void countPixelsUShort(UnpackedImageData uid, int band,
+                                   Rectangle rect,
+                                   int[] table, int[] counts) {
+        short[] data = uid.getShortData(band);
+        int pixelStride = uid.pixelStride * xPeriod;
+        int lineStride = uid.lineStride * yPeriod;
+        int lineOffset = uid.bandOffsets[band];
+
+        for (int h = 0; h < rect.height; h += yPeriod) {
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            for (int w = 0; w < rect.width; w += xPeriod) {
+                counts[table[data[pixelOffset] & 0xffff]]++;
+                pixelOffset += pixelStride;
+            }
+        }
+    }
+
+    private void countPixelsShort(UnpackedImageData uid, int band,
+                                  Rectangle rect,
+                                  int[] table, int[] counts) {
+        short[] data = uid.getShortData(band);
+        int pixelStride = uid.pixelStride * xPeriod;
+        int lineStride = uid.lineStride * yPeriod;
+        int lineOffset = uid.bandOffsets[band];
+
+        for (int h = 0; h < rect.height; h += yPeriod) {
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            for (int w = 0; w < rect.width; w += xPeriod) {
+                counts[table[data[pixelOffset] - Short.MIN_VALUE]]++;
+                pixelOffset += pixelStride;
+            }
+        }
+    }
+
+    public Object createPartialStatistics(String name) {
+        return createStatistics(name);
+    }
+
+    public void accumulatePartialStatistics(String name,
+                                            Raster source,
+                                            Object partial) {
+        accumulateStatistics(name, source, partial);
+    }
+
+    public void mergeStatistics(String name,
+                                Object stats,
+                                Object partial) {
+        Histogram histogram = (Histogram)stats;
+        Histogram counts = (Histogram)partial;
+
+        for (int b = 0; b < numBands; b++) {
+            int[] bins = histogram.getBins(b);
+            int[] partialBins = counts.getBins(b);
+
+            for (int i = 0; i < bins.length; i++) {
+                bins[i] += partialBins[i];
+            }
+        }
+    }
+
+    /** Finds the first pixel at or after pos to be counted. */
+    private static int startPosition(int pos, int start, int period) {
+        int t = (pos - start) % period;
+        return t == 0 ? pos : pos + (period - t);
+    }
+}
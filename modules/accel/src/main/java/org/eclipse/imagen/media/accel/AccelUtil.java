@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.accel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import org.eclipse.imagen.ImageLayout;
+
+/**
+ * Utility methods deciding whether the accelerated implementations of
+ * this package may be used.
+ *
+ * <p> The implementations may be switched off, so that the pure Java
+ * implementations of the core are used instead, by setting the system
+ * property <code>org.eclipse.imagen.media.disableAccel</code> to
+ * <code>true</code>.
+ */
+final class AccelUtil {
+
+    /** Whether the accelerated implementations are used. */
+    private static boolean useAccel;
+
+    static {
+        try {
+            useAccel =
+                !Boolean.getBoolean("org.eclipse.imagen.media.disableAccel");
+        } catch (SecurityException e) {
+            useAccel = true;
+        }
+    }
+
+    private AccelUtil() {}
+
+    /**
+     * Returns <code>true</code> if the accelerated implementations are
+     * used.
+     */
+    static boolean isAccelAvailable() {
+        return useAccel;
+    }
+
+    /**
+     * Returns <code>true</code> if the image produced from the given source
+     * and layout may be computed by an accelerated implementation: these
+     * must be used, the source must not be bilevel and the destination,
+     * if specified by the layout, must have the same data type and number
+     * of bands as the source.
+     */
+    static boolean isAccelCompatible(RenderedImage source,
+                                     ImageLayout layout) {
+        if (!useAccel) {
+            return false;
+        }
+
+        SampleModel sm = source.getSampleModel();
+
+        if (sm instanceof MultiPixelPackedSampleModel) {
+            return false;
+        }
+
+        if (layout != null &&
+            layout.isValid(ImageLayout.SAMPLE_MODEL_MASK)) {
+            SampleModel dstSM = layout.getSampleModel(null);
+            if (dstSM.getDataType() != sm.getDataType() ||
+                dstSM.getNumBands() != sm.getNumBands() ||
+                dstSM instanceof MultiPixelPackedSampleModel) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
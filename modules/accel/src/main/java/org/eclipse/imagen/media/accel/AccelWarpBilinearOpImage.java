@@ -0,0 +1,575 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.accel;
+import java.awt.image.DataBuffer;
+import java.awt.image.RenderedImage;
+import java.util.Map;
+import org.eclipse.imagen.BorderExtender;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.Interpolation;
+import org.eclipse.imagen.RasterAccessor;
+import org.eclipse.imagen.Warp;
+
+/**
+ * An <code>OpImage</code> implementing the general "Warp" operation with
+ * bilinear interpolation, reproducing the results of the pure Java
+ * <code>WarpBilinearOpImage</code> while reading the four neighbors of
+ * each mapped position directly from the source data arrays.
+ *
+ * <p> Sources having an <code>IndexColorModel</code> are not supported.
+ *
+ * @see org.eclipse.imagen.Warp
+ * @see org.eclipse.imagen.WarpOpImage
+ * @see org.eclipse.imagen.operator.WarpDescriptor
+ * @see AccelWarpRIF
+ */
+final class AccelWarpBilinearOpImage extends AccelWarpOpImage {
+
+    /**
+     * Constructs an AccelWarpBilinearOpImage.
+     *
+     * @param source  The source image.
+     * @param extender A BorderExtender, or null.
+     * @param layout  The destination image layout.
+     * @param warp    An object defining the warp algorithm.
+     * @param interp  An object describing the interpolation method.
+     */
+    public AccelWarpBilinearOpImage(RenderedImage source,
+                                    BorderExtender extender,
+                                    Map config,
+                                    ImageLayout layout,
+                                    Warp warp,
+                                    Interpolation interp,
+                                    double[] backgroundValues) {
+        super(source,
+              extender,
+              config,
+              layout,
+              warp,
+              interp,
+              backgroundValues,
+              1);
+    }
+
+    protected int position(float f) {
+        return floor(f);
+    }
+
+    protected void warpRows(RasterAccessor src, int xmin, int ymin,
+                            RasterAccessor dst, float[][] warpData,
+                            int y0, int y1) {
+        switch (dst.getDataType()) {
+        case DataBuffer.TYPE_BYTE:
+            warpRowsByte(src, xmin, ymin, dst, warpData, y0, y1);
+            break;
+        case DataBuffer.TYPE_USHORT:
+            warpRowsUShort(src, xmin, ymin, dst, warpData, y0, y1);
+            break;
+        case DataBuffer.TYPE_SHORT:
+            warpRowsShort(src, xmin, ymin, dst, warpData, y0, y1);
+            break;
+        case DataBuffer.TYPE_INT:
+            warpRowsInt(src, xmin, ymin, dst, warpData, y0, y1);
+            break;
+        case DataBuffer.TYPE_FLOAT:
+            warpRowsFloat(src, xmin, ymin, dst, warpData, y0, y1);
+            break;
+        case DataBuffer.TYPE_DOUBLE:
+            warpRowsDouble(src, xmin, ymin, dst, warpData, y0, y1);
+            break;
+        }
+    }
+
+    private void warpRowsByte(RasterAccessor src, int xmin, int ymin,
+                              RasterAccessor dst, float[][] warpData,
+                              int y0, int y1) {
+        byte[][] srcData = null;
+        int[] srcBandOffsets = null;
+        int srcPixelStride = 0;
+        int srcScanlineStride = 0;
+        if (src != null) {
+            srcData = src.getByteDataArrays();
+            srcBandOffsets = src.getBandOffsets();
+            srcPixelStride = src.getPixelStride();
+            srcScanlineStride = src.getScanlineStride();
+        }
+        int srcDiagonalStride = srcPixelStride + srcScanlineStride;
+
+        int dstWidth = dst.getWidth();
+        int dstBands = dst.getNumBands();
+
+        int lineStride = dst.getScanlineStride();
+        int pixelStride = dst.getPixelStride();
+        int[] bandOffsets = dst.getBandOffsets();
+        byte[][] data = dst.getByteDataArrays();
+
+        byte[] backgroundByte = new byte[dstBands];
+        for (int i = 0; i < dstBands; i++) {
+            backgroundByte[i] = (byte)backgroundValues[i];
+        }
+
+        int lineOffset = y0 * lineStride;
+
+        for (int h = y0; h < y1; h++) {
+            float[] rowData = warpData[h];
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            int count = 0;
+            for (int w = 0; w < dstWidth; w++) {
+                float sx = rowData[count++];
+                float sy = rowData[count++];
+
+                int xint = floor(sx);
+                int yint = floor(sy);
+                float xfrac = sx - xint;
+                float yfrac = sy - yint;
+
+                if (xint < minX || xint >= maxX ||
+                    yint < minY || yint >= maxY) {
+                    /* Fill with a background color. */
+                    if (setBackground) {
+                        for (int b = 0; b < dstBands; b++) {
+                            data[b][pixelOffset+bandOffsets[b]] =
+                                backgroundByte[b];
+                        }
+                    }
+                } else {
+                    int srcOffset = (xint - xmin) * srcPixelStride +
+                        (yint - ymin) * srcScanlineStride;
+                    for (int b = 0; b < dstBands; b++) {
+                        byte[] d = srcData[b];
+                        int o = srcOffset + srcBandOffsets[b];
+
+                        int s00 = d[o] & 0xFF;
+                        int s01 = d[o+srcPixelStride] & 0xFF;
+                        int s10 = d[o+srcScanlineStride] & 0xFF;
+                        int s11 = d[o+srcDiagonalStride] & 0xFF;
+
+                        float s0 = (s01 - s00) * xfrac + s00;
+                        float s1 = (s11 - s10) * xfrac + s10;
+                        float v = (s1 - s0) * yfrac + s0;
+
+                        data[b][pixelOffset+bandOffsets[b]] = (byte)v;
+                    }
+                }
+
+                pixelOffset += pixelStride;
+            }
+        }
+    }
+
+    private void warpRowsUShort(RasterAccessor src, int xmin, int ymin,
+                              RasterAccessor dst, float[][] warpData,
+                              int y0, int y1) {
+        short[][] srcData = null;
+        int[] srcBandOffsets = null;
+        int srcPixelStride = 0;
+        int srcScanlineStride = 0;
+        if (src != null) {
+            srcData = src.getShortDataArrays();
+            srcBandOffsets = src.getBandOffsets();
+            srcPixelStride = src.getPixelStride();
+            srcScanlineStride = src.getScanlineStride();
+        }
+        int srcDiagonalStride = srcPixelStride + srcScanlineStride;
+
+        int dstWidth = dst.getWidth();
+        int dstBands = dst.getNumBands();
+
+        int lineStride = dst.getScanlineStride();
+        int pixelStride = dst.getPixelStride();
+        int[] bandOffsets = dst.getBandOffsets();
+        short[][] data = dst.getShortDataArrays();
+
+        short[] backgroundUShort = new short[dstBands];
+        for (int i = 0; i < dstBands; i++) {
+            backgroundUShort[i] = (short)backgroundValues[i];
+        }
+
+        int lineOffset = y0 * lineStride;
+
+        for (int h = y0; h < y1; h++) {
+            float[] rowData = warpData[h];
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            int count = 0;
+            for (int w = 0; w < dstWidth; w++) {
+                float sx = rowData[count++];
+                float sy = rowData[count++];
+
+                int xint = floor(sx);
+                int yint = floor(sy);
+                float xfrac = sx - xint;
+                float yfrac = sy - yint;
+
+                if (xint < minX || xint >= maxX ||
+                    yint < minY || yint >= maxY) {
+                    /* Fill with a background color. */
+                    if (setBackground) {
+                        for (int b = 0; b < dstBands; b++) {
+                            data[b][pixelOffset+bandOffsets[b]] =
+                                backgroundUShort[b];
+                        }
+                    }
+                } else {
+                    int srcOffset = (xint - xmin) * srcPixelStride +
+                        (yint - ymin) * srcScanlineStride;
+                    for (int b = 0; b < dstBands; b++) {
+                        short[] d = srcData[b];
+                        int o = srcOffset + srcBandOffsets[b];
+
+                        int s00 = d[o] & 0xFFFF;
+                        int s01 = d[o+srcPixelStride] & 0xFFFF;
+                        int s10 = d[o+srcScanlineStride] & 0xFFFF;
+                        int s11 = d[o+srcDiagonalStride] & 0xFFFF;
+
+                        float s0 = (s01 - s00) * xfrac + s00;
+                        float s1 = (s11 - s10) * xfrac + s10;
+                        float v = (s1 - s0) * yfrac + s0;
+
+                        data[b][pixelOffset+bandOffsets[b]] = (short)v;
+                    }
+                }
+
+                pixelOffset += pixelStride;
+            }
+        }
+    }
+
+    private void warpRowsShort(RasterAccessor src, int xmin, int ymin,
+                              RasterAccessor dst, float[][] warpData,
+                              int y0, int y1) {
+        short[][] srcData = null;
+        int[] srcBandOffsets = null;
+        int srcPixelStride = 0;
+        int srcScanlineStride = 0;
+        if (src != null) {
+            srcData = src.getShortDataArrays();
+            srcBandOffsets = src.getBandOffsets();
+            srcPixelStride = src.getPixelStride();
+            srcScanlineStride = src.getScanlineStride();
+        }
+        int srcDiagonalStride = srcPixelStride + srcScanlineStride;
+
+        int dstWidth = dst.getWidth();
+        int dstBands = dst.getNumBands();
+
+        int lineStride = dst.getScanlineStride();
+        int pixelStride = dst.getPixelStride();
+        int[] bandOffsets = dst.getBandOffsets();
+        short[][] data = dst.getShortDataArrays();
+
+        short[] backgroundShort = new short[dstBands];
+        for (int i = 0; i < dstBands; i++) {
+            backgroundShort[i] = (short)backgroundValues[i];
+        }
+
+        int lineOffset = y0 * lineStride;
+
+        for (int h = y0; h < y1; h++) {
+            float[] rowData = warpData[h];
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            int count = 0;
+            for (int w = 0; w < dstWidth; w++) {
+                float sx = rowData[count++];
+                float sy = rowData[count++];
+
+                int xint = floor(sx);
+                int yint = floor(sy);
+                float xfrac = sx - xint;
+                float yfrac = sy - yint;
+
+                if (xint < minX || xint >= maxX ||
+                    yint < minY || yint >= maxY) {
+                    /* Fill with a background color. */
+                    if (setBackground) {
+                        for (int b = 0; b < dstBands; b++) {
+                            data[b][pixelOffset+bandOffsets[b]] =
+                                backgroundShort[b];
+                        }
+                    }
+                } else {
+                    int srcOffset = (xint - xmin) * srcPixelStride +
+                        (yint - ymin) * srcScanlineStride;
+                    for (int b = 0; b < dstBands; b++) {
+                        short[] d = srcData[b];
+                        int o = srcOffset + srcBandOffsets[b];
+
+                        int s00 = d[o];
+                        int s01 = d[o+srcPixelStride];
+                        int s10 = d[o+srcScanlineStride];
+                        int s11 = d[o+srcDiagonalStride];
+
+                        float s0 = (s01 - s00) * xfrac + s00;
+                        float s1 = (s11 - s10) * xfrac + s10;
+                        float v = (s1 - s0) * yfrac + s0;
+
+                        data[b][pixelOffset+bandOffsets[b]] = (short)v;
+                    }
+                }
+
+                pixelOffset += pixelStride;
+            }
+        }
+    }
+
+    private void warpRowsInt(RasterAccessor src, int xmin, int ymin,
+                              RasterAccessor dst, float[][] warpData,
+                              int y0, int y1) {
+        int[][] srcData = null;
+        int[] srcBandOffsets = null;
+        int srcPixelStride = 0;
+        int srcScanlineStride = 0;
+        if (src != null) {
+            srcData = src.getIntDataArrays();
+            srcBandOffsets = src.getBandOffsets();
+            srcPixelStride = src.getPixelStride();
+            srcScanlineStride = src.getScanlineStride();
+        }
+        int srcDiagonalStride = srcPixelStride + srcScanlineStride;
+
+        int dstWidth = dst.getWidth();
+        int dstBands = dst.getNumBands();
+
+        int lineStride = dst.getScanlineStride();
+        int pixelStride = dst.getPixelStride();
+        int[] bandOffsets = dst.getBandOffsets();
+        int[][] data = dst.getIntDataArrays();
+
+        int[] backgroundInt = new int[dstBands];
+        for (int i = 0; i < dstBands; i++) {
+            backgroundInt[i] = (int)backgroundValues[i];
+        }
+
+        int lineOffset = y0 * lineStride;
+
+        for (int h = y0; h < y1; h++) {
+            float[] rowData = warpData[h];
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            int count = 0;
+            for (int w = 0; w < dstWidth; w++) {
+                float sx = rowData[count++];
+                float sy = rowData[count++];
+
+                int xint = floor(sx);
+                int yint = floor(sy);
+                float xfrac = sx - xint;
+                float yfrac = sy - yint;
+
+                if (xint < minX || xint >= maxX ||
+                    yint < minY || yint >= maxY) {
+                    /* Fill with a background color. */
+                    if (setBackground) {
+                        for (int b = 0; b < dstBands; b++) {
+                            data[b][pixelOffset+bandOffsets[b]] =
+                                backgroundInt[b];
+                        }
+                    }
+                } else {
+                    int srcOffset = (xint - xmin) * srcPixelStride +
+                        (yint - ymin) * srcScanlineStride;
+                    for (int b = 0; b < dstBands; b++) {
+                        int[] d = srcData[b];
+                        int o = srcOffset + srcBandOffsets[b];
+
+                        int s00 = d[o];
+                        int s01 = d[o+srcPixelStride];
+                        int s10 = d[o+srcScanlineStride];
+                        int s11 = d[o+srcDiagonalStride];
+
+                        float s0 = (s01 - s00) * xfrac + s00;
+                        float s1 = (s11 - s10) * xfrac + s10;
+                        float v = (s1 - s0) * yfrac + s0;
+
+                        data[b][pixelOffset+bandOffsets[b]] = (int)v;
+                    }
+                }
+
+                pixelOffset += pixelStride;
+            }
+        }
+    }
+
+    private void warpRowsFloat(RasterAccessor src, int xmin, int ymin,
+                              RasterAccessor dst, float[][] warpData,
+                              int y0, int y1) {
+        float[][] srcData = null;
+        int[] srcBandOffsets = null;
+        int srcPixelStride = 0;
+        int srcScanlineStride = 0;
+        if (src != null) {
+            srcData = src.getFloatDataArrays();
+            srcBandOffsets = src.getBandOffsets();
+            srcPixelStride = src.getPixelStride();
+            srcScanlineStride = src.getScanlineStride();
+        }
+        int srcDiagonalStride = srcPixelStride + srcScanlineStride;
+
+        int dstWidth = dst.getWidth();
+        int dstBands = dst.getNumBands();
+
+        int lineStride = dst.getScanlineStride();
+        int pixelStride = dst.getPixelStride();
+        int[] bandOffsets = dst.getBandOffsets();
+        float[][] data = dst.getFloatDataArrays();
+
+        float[] backgroundFloat = new float[dstBands];
+        for (int i = 0; i < dstBands; i++) {
+            backgroundFloat[i] = (float)backgroundValues[i];
+        }
+
+        int lineOffset = y0 * lineStride;
+
+        for (int h = y0; h < y1; h++) {
+            float[] rowData = warpData[h];
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            int count = 0;
+            for (int w = 0; w < dstWidth; w++) {
+                float sx = rowData[count++];
+                float sy = rowData[count++];
+
+                int xint = floor(sx);
+                int yint = floor(sy);
+                float xfrac = sx - xint;
+                float yfrac = sy - yint;
+
+                if (xint < minX || xint >= maxX ||
+                    yint < minY || yint >= maxY) {
+                    /* Fill with a background color. */
+                    if (setBackground) {
+                        for (int b = 0; b < dstBands; b++) {
+                            data[b][pixelOffset+bandOffsets[b]] =
+                                backgroundFloat[b];
+                        }
+                    }
+                } else {
+                    int srcOffset = (xint - xmin) * srcPixelStride +
+                        (yint - ymin) * srcScanlineStride;
+                    for (int b = 0; b < dstBands; b++) {
+                        float[] d = srcData[b];
+                        int o = srcOffset + srcBandOffsets[b];
+
+                        float s00 = d[o];
+                        float s01 = d[o+srcPixelStride];
+                        float s10 = d[o+srcScanlineStride];
+                        float s11 = d[o+srcDiagonalStride];
+
+                        float s0 = (s01 - s00) * xfrac + s00;
+                        float s1 = (s11 - s10) * xfrac + s10;
+                        float v = (s1 - s0) * yfrac + s0;
+
+                        data[b][pixelOffset+bandOffsets[b]] = v;
+                    }
+                }
+
+                pixelOffset += pixelStride;
+            }
+        }
+    }
+
+    private void warpRowsDouble(RasterAccessor src, int xmin, int ymin,
+                              RasterAccessor dst, float[][] warpData,
+                              int y0, int y1) {
+        double[][] srcData = null;
+        int[] srcBandOffsets = null;
+        int srcPixelStride = 0;
+        int srcScanlineStride = 0;
+        if (src != null) {
+            srcData = src.getDoubleDataArrays();
+            srcBandOffsets = src.getBandOffsets();
+            srcPixelStride = src.getPixelStride();
+            srcScanlineStride = src.getScanlineStride();
+        }
+        int srcDiagonalStride = srcPixelStride + srcScanlineStride;
+
+        int dstWidth = dst.getWidth();
+        int dstBands = dst.getNumBands();
+
+        int lineStride = dst.getScanlineStride();
+        int pixelStride = dst.getPixelStride();
+        int[] bandOffsets = dst.getBandOffsets();
+        double[][] data = dst.getDoubleDataArrays();
+
+        double[] backgroundDouble = new double[dstBands];
+        for (int i = 0; i < dstBands; i++) {
+            backgroundDouble[i] = backgroundValues[i];
+        }
+
+        int lineOffset = y0 * lineStride;
+
+        for (int h = y0; h < y1; h++) {
+            float[] rowData = warpData[h];
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            int count = 0;
+            for (int w = 0; w < dstWidth; w++) {
+                float sx = rowData[count++];
+                float sy = rowData[count++];
+
+                int xint = floor(sx);
+                int yint = floor(sy);
+                float xfrac = sx - xint;
+                float yfrac = sy - yint;
+
+                if (xint < minX || xint >= maxX ||
+                    yint < minY || yint >= maxY) {
+                    /* Fill with a background color. */
+                    if (setBackground) {
+                        for (int b = 0; b < dstBands; b++) {
+                            data[b][pixelOffset+bandOffsets[b]] =
+                                backgroundDouble[b];
+                        }
+                    }
+                } else {
+                    int srcOffset = (xint - xmin) * srcPixelStride +
+                        (yint - ymin) * srcScanlineStride;
+                    for (int b = 0; b < dstBands; b++) {
+                        double[] d = srcData[b];
+                        int o = srcOffset + srcBandOffsets[b];
+
+                        double s00 = d[o];
+                        double s01 = d[o+srcPixelStride];
+                        double s10 = d[o+srcScanlineStride];
+                        double s11 = d[o+srcDiagonalStride];
+
+                        double s0 = (s01 - s00) * xfrac + s00;
+                        double s1 = (s11 - s10) * xfrac + s10;
+                        double v = (s1 - s0) * yfrac + s0;
+
+                        data[b][pixelOffset+bandOffsets[b]] = v;
+                    }
+                }
+
+                pixelOffset += pixelStride;
+            }
+        }
+    }
+
+    /** Returns the "floor" value of a float. */
+    private static final int floor(float f) {
+        return f >= 0 ? (int)f : (int)f - 1;
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.accel;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.RenderedImage;
+import java.util.Map;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.Interpolation;
+import org.eclipse.imagen.RasterAccessor;
+import org.eclipse.imagen.Warp;
+
+/**
+ * An <code>OpImage</code> implementing the general "Warp" operation with
+ * nearest neighbor interpolation, reproducing the results of the pure
+ * Java <code>WarpNearestOpImage</code> while copying the source samples
+ * directly between the data arrays.
+ *
+ * @see org.eclipse.imagen.Warp
+ * @see org.eclipse.imagen.WarpOpImage
+ * @see org.eclipse.imagen.operator.WarpDescriptor
+ * @see AccelWarpRIF
+ */
+final class AccelWarpNearestOpImage extends AccelWarpOpImage {
+
+    /**
+     * Constructs an AccelWarpNearestOpImage.
+     *
+     * @param source  The source image.
+     * @param layout  The destination image layout.
+     * @param warp    An object defining the warp algorithm.
+     * @param interp  An object describing the interpolation method.
+     */
+    public AccelWarpNearestOpImage(RenderedImage source,
+                                   Map config,
+                                   ImageLayout layout,
+                                   Warp warp,
+                                   Interpolation interp,
+                                   double[] backgroundValues) {
+        super(source,
+              null,   // extender
+              config,
+              layout,
+              warp,
+              interp,
+              backgroundValues,
+              0);
+
+        /*
+         * If the source has IndexColorModel, override the default setting
+         * in OpImage. The dest shall have exactly the same SampleModel and
+         * ColorModel as the source.
+         */
+        ColorModel srcColorModel = source.getColorModel();
+        if (srcColorModel instanceof IndexColorModel) {
+             sampleModel = source.getSampleModel().createCompatibleSampleModel(
+                                                   tileWidth, tileHeight);
+             colorModel = srcColorModel;
+        }
+    }
+
+    protected int position(float f) {
+        return round(f);
+    }
+
+    protected void warpRows(RasterAccessor src, int xmin, int ymin,
+                            RasterAccessor dst, float[][] warpData,
+                            int y0, int y1) {
+        switch (dst.getDataType()) {
+        case DataBuffer.TYPE_BYTE:
+            warpRowsByte(src, xmin, ymin, dst, warpData, y0, y1);
+            break;
+        case DataBuffer.TYPE_USHORT:
+        case DataBuffer.TYPE_SHORT:
+            warpRowsShort(src, xmin, ymin, dst, warpData, y0, y1);
+            break;
+        case DataBuffer.TYPE_INT:
+            warpRowsInt(src, xmin, ymin, dst, warpData, y0, y1);
+            break;
+        case DataBuffer.TYPE_FLOAT:
+            warpRowsFloat(src, xmin, ymin, dst, warpData, y0, y1);
+            break;
+        case DataBuffer.TYPE_DOUBLE:
+            warpRowsDouble(src, xmin, ymin, dst, warpData, y0, y1);
+            break;
+        }
+    }
+
+    private void warpRowsByte(RasterAccessor src, int xmin, int ymin,
+                              RasterAccessor dst, float[][] warpData,
+                              int y0, int y1) {
+        byte[][] srcData = null;
+        int[] srcBandOffsets = null;
+        int srcPixelStride = 0;
+        int srcScanlineStride = 0;
+        if (src != null) {
+            srcData = src.getByteDataArrays();
+            srcBandOffsets = src.getBandOffsets();
+            srcPixelStride = src.getPixelStride();
+            srcScanlineStride = src.getScanlineStride();
+        }
+
+        int dstWidth = dst.getWidth();
+        int dstBands = dst.getNumBands();
+
+        int lineStride = dst.getScanlineStride();
+        int pixelStride = dst.getPixelStride();
+        int[] bandOffsets = dst.getBandOffsets();
+        byte[][] data = dst.getByteDataArrays();
+
+        byte[] backgroundByte = new byte[dstBands];
+        for (int i = 0; i < dstBands; i++) {
+            backgroundByte[i] = (byte)backgroundValues[i];
+        }
+
+        int lineOffset = y0 * lineStride;
+
+        for (int h = y0; h < y1; h++) {
+            float[] rowData = warpData[h];
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            int count = 0;
+            for (int w = 0; w < dstWidth; w++) {
+                int sx = round(rowData[count++]);
+                int sy = round(rowData[count++]);
+
+                if (sx < minX || sx >= maxX || sy < minY || sy >= maxY) {
+                    /* Fill with a background color. */
+                    if (setBackground) {
+                        for (int b = 0; b < dstBands; b++) {
+                            data[b][pixelOffset+bandOffsets[b]] =
+                                backgroundByte[b];
+                        }
+                    }
+                } else {
+                    int srcOffset = (sx - xmin) * srcPixelStride +
+                        (sy - ymin) * srcScanlineStride;
+                    for (int b = 0; b < dstBands; b++) {
+                        data[b][pixelOffset+bandOffsets[b]] =
+                            srcData[b][srcOffset+srcBandOffsets[b]];
+                    }
+                }
+
+                pixelOffset += pixelStride;
+            }
+        }
+    }
+
+    private void warpRowsShort(RasterAccessor src, int xmin, int ymin,
+                              RasterAccessor dst, float[][] warpData,
+                              int y0, int y1) {
+        short[][] srcData = null;
+        int[] srcBandOffsets = null;
+        int srcPixelStride = 0;
+        int srcScanlineStride = 0;
+        if (src != null) {
+            srcData = src.getShortDataArrays();
+            srcBandOffsets = src.getBandOffsets();
+            srcPixelStride = src.getPixelStride();
+            srcScanlineStride = src.getScanlineStride();
+        }
+
+        int dstWidth = dst.getWidth();
+        int dstBands = dst.getNumBands();
+
+        int lineStride = dst.getScanlineStride();
+        int pixelStride = dst.getPixelStride();
+        int[] bandOffsets = dst.getBandOffsets();
+        short[][] data = dst.getShortDataArrays();
+
+        short[] backgroundShort = new short[dstBands];
+        for (int i = 0; i < dstBands; i++) {
+            backgroundShort[i] = (short)backgroundValues[i];
+        }
+
+        int lineOffset = y0 * lineStride;
+
+        for (int h = y0; h < y1; h++) {
+            float[] rowData = warpData[h];
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            int count = 0;
+            for (int w = 0; w < dstWidth; w++) {
+                int sx = round(rowData[count++]);
+                int sy = round(rowData[count++]);
+
+                if (sx < minX || sx >= maxX || sy < minY || sy >= maxY) {
+                    /* Fill with a background color. */
+                    if (setBackground) {
+                        for (int b = 0; b < dstBands; b++) {
+                            data[b][pixelOffset+bandOffsets[b]] =
+                                backgroundShort[b];
+                        }
+                    }
+                } else {
+                    int srcOffset = (sx - xmin) * srcPixelStride +
+                        (sy - ymin) * srcScanlineStride;
+                    for (int b = 0; b < dstBands; b++) {
+                        data[b][pixelOffset+bandOffsets[b]] =
+                            srcData[b][srcOffset+srcBandOffsets[b]];
+                    }
+                }
+
+                pixelOffset += pixelStride;
+            }
+        }
+    }
+
+    private void warpRowsInt(RasterAccessor src, int xmin, int ymin,
+                              RasterAccessor dst, float[][] warpData,
+                              int y0, int y1) {
+        int[][] srcData = null;
+        int[] srcBandOffsets = null;
+        int srcPixelStride = 0;
+        int srcScanlineStride = 0;
+        if (src != null) {
+            srcData = src.getIntDataArrays();
+            srcBandOffsets = src.getBandOffsets();
+            srcPixelStride = src.getPixelStride();
+            srcScanlineStride = src.getScanlineStride();
+        }
+
+        int dstWidth = dst.getWidth();
+        int dstBands = dst.getNumBands();
+
+        int lineStride = dst.getScanlineStride();
+        int pixelStride = dst.getPixelStride();
+        int[] bandOffsets = dst.getBandOffsets();
+        int[][] data = dst.getIntDataArrays();
+
+        int[] backgroundInt = new int[dstBands];
+        for (int i = 0; i < dstBands; i++) {
+            backgroundInt[i] = (int)backgroundValues[i];
+        }
+
+        int lineOffset = y0 * lineStride;
+
+        for (int h = y0; h < y1; h++) {
+            float[] rowData = warpData[h];
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            int count = 0;
+            for (int w = 0; w < dstWidth; w++) {
+                int sx = round(rowData[count++]);
+                int sy = round(rowData[count++]);
+
+                if (sx < minX || sx >= maxX || sy < minY || sy >= maxY) {
+                    /* Fill with a background color. */
+                    if (setBackground) {
+                        for (int b = 0; b < dstBands; b++) {
+                            data[b][pixelOffset+bandOffsets[b]] =
+                                backgroundInt[b];
+                        }
+                    }
+                } else {
+                    int srcOffset = (sx - xmin) * srcPixelStride +
+                        (sy - ymin) * srcScanlineStride;
+                    for (int b = 0; b < dstBands; b++) {
+                        data[b][pixelOffset+bandOffsets[b]] =
+                            srcData[b][srcOffset+srcBandOffsets[b]];
+                    }
+                }
+
+                pixelOffset += pixelStride;
+            }
+        }
+    }
+
+    private void warpRowsFloat(RasterAccessor src, int xmin, int ymin,
+                              RasterAccessor dst, float[][] warpData,
+                              int y0, int y1) {
+        float[][] srcData = null;
+        int[] srcBandOffsets = null;
+        int srcPixelStride = 0;
+        int srcScanlineStride = 0;
+        if (src != null) {
+            srcData = src.getFloatDataArrays();
+            srcBandOffsets = src.getBandOffsets();
+            srcPixelStride = src.getPixelStride();
+            srcScanlineStride = src.getScanlineStride();
+        }
+
+        int dstWidth = dst.getWidth();
+        int dstBands = dst.getNumBands();
+
+        int lineStride = dst.getScanlineStride();
+        int pixelStride = dst.getPixelStride();
+        int[] bandOffsets = dst.getBandOffsets();
+        float[][] data = dst.getFloatDataArrays();
+
+        float[] backgroundFloat = new float[dstBands];
+        for (int i = 0; i < dstBands; i++) {
+            backgroundFloat[i] = (float)backgroundValues[i];
+        }
+
+        int lineOffset = y0 * lineStride;
+
+        for (int h = y0; h < y1; h++) {
+            float[] rowData = warpData[h];
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            int count = 0;
+            for (int w = 0; w < dstWidth; w++) {
+                int sx = round(rowData[count++]);
+                int sy = round(rowData[count++]);
+
+                if (sx < minX || sx >= maxX || sy < minY || sy >= maxY) {
+                    /* Fill with a background color. */
+                    if (setBackground) {
+                        for (int b = 0; b < dstBands; b++) {
+                            data[b][pixelOffset+bandOffsets[b]] =
+                                backgroundFloat[b];
+                        }
+                    }
+                } else {
+                    int srcOffset = (sx - xmin) * srcPixelStride +
+                        (sy - ymin) * srcScanlineStride;
+                    for (int b = 0; b < dstBands; b++) {
+                        data[b][pixelOffset+bandOffsets[b]] =
+                            srcData[b][srcOffset+srcBandOffsets[b]];
+                    }
+                }
+
+                pixelOffset += pixelStride;
+            }
+        }
+    }
+
+    private void warpRowsDouble(RasterAccessor src, int xmin, int ymin,
+                              RasterAccessor dst, float[][] warpData,
+                              int y0, int y1) {
+        double[][] srcData = null;
+        int[] srcBandOffsets = null;
+        int srcPixelStride = 0;
+        int srcScanlineStride = 0;
+        if (src != null) {
+            srcData = src.getDoubleDataArrays();
+            srcBandOffsets = src.getBandOffsets();
+            srcPixelStride = src.getPixelStride();
+            srcScanlineStride = src.getScanlineStride();
+        }
+
+        int dstWidth = dst.getWidth();
+        int dstBands = dst.getNumBands();
+
+        int lineStride = dst.getScanlineStride();
+        int pixelStride = dst.getPixelStride();
+        int[] bandOffsets = dst.getBandOffsets();
+        double[][] data = dst.getDoubleDataArrays();
+
+        double[] backgroundDouble = new double[dstBands];
+        for (int i = 0; i < dstBands; i++) {
+            backgroundDouble[i] = backgroundValues[i];
+        }
+
+        int lineOffset = y0 * lineStride;
+
+        for (int h = y0; h < y1; h++) {
+            float[] rowData = warpData[h];
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            int count = 0;
+            for (int w = 0; w < dstWidth; w++) {
+                int sx = round(rowData[count++]);
+                int sy = round(rowData[count++]);
+
+                if (sx < minX || sx >= maxX || sy < minY || sy >= maxY) {
+                    /* Fill with a background color. */
+                    if (setBackground) {
+                        for (int b = 0; b < dstBands; b++) {
+                            data[b][pixelOffset+bandOffsets[b]] =
+                                backgroundDouble[b];
+                        }
+                    }
+                } else {
+                    int srcOffset = (sx - xmin) * srcPixelStride +
+                        (sy - ymin) * srcScanlineStride;
+                    for (int b = 0; b < dstBands; b++) {
+                        data[b][pixelOffset+bandOffsets[b]] =
+                            srcData[b][srcOffset+srcBandOffsets[b]];
+                    }
+                }
+
+                pixelOffset += pixelStride;
+            }
+        }
+    }
+
+    /** Returns the "round" value of a float. */
+    private static final int round(float f) {
+        return f >= 0 ? (int)(f + 0.5F) : (int)(f - 0.5F);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.accel;
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.util.Map;
+import org.eclipse.imagen.BorderExtender;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.Interpolation;
+import org.eclipse.imagen.PlanarImage;
+import org.eclipse.imagen.RasterAccessor;
+import org.eclipse.imagen.RasterFormatTag;
+import org.eclipse.imagen.Warp;
+import org.eclipse.imagen.WarpOpImage;
+
+/**
+ * An abstract base class for the accelerated "Warp" operations.
+ *
+ * <p> The pure Java implementations of the core read every source sample
+ * through a <code>RandomIter</code>.  Instead, the destination rows are
+ * mapped through the <code>Warp</code> one at a time, the source area
+ * covered by the mapped positions of a group of rows is fetched at once,
+ * and the subclasses read the samples directly from its data arrays.  The
+ * rows of a destination rectangle are split into smaller groups when
+ * their source area is much larger than the rectangle itself, as happens
+ * for strongly rotating or shrinking warps.
+ *
+ * @see AccelWarpNearestOpImage
+ * @see AccelWarpBilinearOpImage
+ */
+abstract class AccelWarpOpImage extends WarpOpImage {
+
+    /**
+     * The number of source pixels needed to the right of and below a
+     * mapped position.
+     */
+    private int padding;
+
+    /** The smallest source X position which may be mapped. */
+    protected int minX;
+
+    /** The largest source X position which may be mapped, exclusive. */
+    protected int maxX;
+
+    /** The smallest source Y position which may be mapped. */
+    protected int minY;
+
+    /** The largest source Y position which may be mapped, exclusive. */
+    protected int maxY;
+
+    /**
+     * Constructs an AccelWarpOpImage.
+     *
+     * @param source  The source image.
+     * @param extender A BorderExtender, or null.
+     * @param layout  The destination image layout.
+     * @param warp    An object defining the warp algorithm.
+     * @param interp  An object describing the interpolation method.
+     * @param padding The number of source pixels needed to the right of
+     *                and below a mapped position.
+     */
+    public AccelWarpOpImage(RenderedImage source,
+                            BorderExtender extender,
+                            Map config,
+                            ImageLayout layout,
+                            Warp warp,
+                            Interpolation interp,
+                            double[] backgroundValues,
+                            int padding) {
+        super(source,
+              layout,
+              config,
+              false,
+              extender,
+              interp,
+              warp,
+              backgroundValues);
+
+        this.padding = padding;
+
+        minX = source.getMinX();
+        maxX = minX + source.getWidth() -
+            (extender != null ? 0 : padding); // Right padding
+        minY = source.getMinY();
+        maxY = minY + source.getHeight() -
+            (extender != null ? 0 : padding); // Bottom padding
+    }
+
+    /** Warps a rectangle. */
+    protected void computeRect(PlanarImage[] sources,
+                               WritableRaster dest,
+                               Rectangle destRect) {
+        // Retrieve format tags.
+        RasterFormatTag[] formatTags = getFormatTags();
+
+        RasterAccessor d = new RasterAccessor(dest, destRect,
+                                              formatTags[1], getColorModel());
+
+        int dstWidth = d.getWidth();
+        int dstHeight = d.getHeight();
+
+        float[][] warpData = new float[dstHeight][2 * dstWidth];
+        for (int h = 0; h < dstHeight; h++) {
+            warp.warpRect(d.getX(), d.getY()+h, dstWidth, 1, warpData[h]);
+        }
+
+        computeRows(sources[0], formatTags[0], d, warpData, 0, dstHeight);
+
+        if (d.isDataCopy()) {
+            d.clampDataArrays();
+            d.copyDataToRaster();
+        }
+    }
+
+    /**
+     * Fetches the source area needed by the destination rows
+     * <code>[y0, y1)</code> and computes them.
+     */
+    private void computeRows(PlanarImage src, RasterFormatTag srcTag,
+                             RasterAccessor dst, float[][] warpData,
+                             int y0, int y1) {
+        int dstWidth = dst.getWidth();
+
+        // Find the source area needed by the rows.
+        int xmin = Integer.MAX_VALUE;
+        int ymin = Integer.MAX_VALUE;
+        int xmax = Integer.MIN_VALUE;
+        int ymax = Integer.MIN_VALUE;
+        for (int h = y0; h < y1; h++) {
+            float[] rowData = warpData[h];
+            int count = 0;
+            for (int w = 0; w < dstWidth; w++) {
+                int xint = position(rowData[count++]);
+                int yint = position(rowData[count++]);
+
+                if (xint >= minX && xint < maxX &&
+                    yint >= minY && yint < maxY) {
+                    xmin = Math.min(xmin, xint);
+                    ymin = Math.min(ymin, yint);
+                    xmax = Math.max(xmax, xint);
+                    ymax = Math.max(ymax, yint);
+                }
+            }
+        }
+
+        RasterAccessor s = null;
+
+        if (xmin <= xmax) {
+            long area = (long)(xmax - xmin + 1 + padding) *
+                (ymax - ymin + 1 + padding);
+            if (y1 - y0 > 1 &&
+                area > 4L * (y1 - y0) * dstWidth + 4096) {
+                int mid = (y0 + y1) / 2;
+                computeRows(src, srcTag, dst, warpData, y0, mid);
+                computeRows(src, srcTag, dst, warpData, mid, y1);
+                return;
+            }
+
+            Rectangle srcRect = new Rectangle(xmin, ymin,
+                                              xmax - xmin + 1 + padding,
+                                              ymax - ymin + 1 + padding);
+            Raster raster = extender != null ?
+                src.getExtendedData(srcRect, extender) :
+                src.getData(srcRect);
+
+            s = new RasterAccessor(raster, srcRect, srcTag,
+                                   src.getColorModel());
+        } else {
+            xmin = ymin = 0;
+        }
+
+        warpRows(s, xmin, ymin, dst, warpData, y0, y1);
+    }
+
+    /**
+     * Returns the source position, in the X or Y direction, of the pixel
+     * read for a mapped coordinate.
+     */
+    protected abstract int position(float f);
+
+    /**
+     * Computes the destination rows <code>[y0, y1)</code> given their
+     * mapped source positions.
+     *
+     * @param src  The source area needed by the rows, or <code>null</code>
+     *             if no mapped position lies inside the source.
+     * @param xmin The X position of the source area.
+     * @param ymin The Y position of the source area.
+     * @param dst  The destination.
+     * @param warpData The mapped source positions of each row.
+     * @param y0   The first row to compute.
+     * @param y1   The last row to compute, exclusive.
+     */
+    protected abstract void warpRows(RasterAccessor src,
+                                     int xmin, int ymin,
+                                     RasterAccessor dst,
+                                     float[][] warpData,
+                                     int y0, int y1);
+}
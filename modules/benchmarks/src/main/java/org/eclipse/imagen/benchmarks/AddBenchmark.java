@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.benchmarks;
+import java.awt.image.RenderedImage;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.imagen.JAI;
+import org.eclipse.imagen.ParameterBlockJAI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the "Add" operation: the time to compute every tile of the
+ * sum of two images.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AddBenchmark {
+
+    @Param({"byte", "ushort", "int", "float", "double"})
+    public String dataType;
+
+    @Param({"64", "256", "512"})
+    public int tileSize;
+
+    private RenderedImage image;
+
+    @Setup
+    public void setup() {
+        int type = BenchmarkImages.dataType(dataType);
+        ParameterBlockJAI pb = new ParameterBlockJAI("add");
+        pb.addSource(BenchmarkImages.createImage(type, tileSize));
+        pb.addSource(BenchmarkImages.createImage(type, tileSize));
+        image = JAI.create("add", pb,
+                           BenchmarkImages.createHints(tileSize)).getRendering();
+    }
+
+    @Benchmark
+    public void add(Blackhole bh) {
+        BenchmarkImages.computeTiles(image, bh);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.benchmarks;
+import java.awt.geom.AffineTransform;
+import java.awt.image.RenderedImage;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.imagen.JAI;
+import org.eclipse.imagen.ParameterBlockJAI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the "Affine" operation rotating an image about its center
+ * with each interpolation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AffineBenchmark {
+
+    @Param({"byte", "ushort", "int", "float", "double"})
+    public String dataType;
+
+    @Param({"64", "256", "512"})
+    public int tileSize;
+
+    @Param({"nearest", "bilinear", "bicubic"})
+    public String interpolation;
+
+    private RenderedImage image;
+
+    @Setup
+    public void setup() {
+        double center = BenchmarkImages.IMAGE_SIZE / 2.0;
+        AffineTransform transform =
+            AffineTransform.getRotateInstance(Math.toRadians(30.0),
+                                              center, center);
+
+        int type = BenchmarkImages.dataType(dataType);
+        ParameterBlockJAI pb = new ParameterBlockJAI("affine");
+        pb.addSource(BenchmarkImages.createImage(type, tileSize));
+        pb.setParameter("transform", transform);
+        pb.setParameter("interpolation",
+                        BenchmarkImages.interpolation(interpolation));
+        image = JAI.create("affine", pb,
+                           BenchmarkImages.createHints(tileSize)).getRendering();
+    }
+
+    @Benchmark
+    public void affine(Blackhole bh) {
+        BenchmarkImages.computeTiles(image, bh);
+    }
+}
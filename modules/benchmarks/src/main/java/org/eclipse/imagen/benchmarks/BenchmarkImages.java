@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.benchmarks;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import org.eclipse.imagen.FloatDoubleColorModel;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.Interpolation;
+import org.eclipse.imagen.JAI;
+import org.eclipse.imagen.RasterFactory;
+import org.eclipse.imagen.TiledImage;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Helpers shared by the benchmarks: synthetic source images, rendering
+ * hints which disable tile caching, and loops which compute every tile
+ * of an image.
+ */
+final class BenchmarkImages {
+
+    /** The width and height of the source images. */
+    static final int IMAGE_SIZE = 1024;
+
+    /** The number of bands of the source images. */
+    static final int NUM_BANDS = 3;
+
+    private BenchmarkImages() {}
+
+    /**
+     * Returns the <code>DataBuffer</code> type named by a benchmark
+     * parameter: "byte", "ushort", "short", "int", "float" or "double".
+     */
+    static int dataType(String name) {
+        if (name.equals("byte")) {
+            return DataBuffer.TYPE_BYTE;
+        } else if (name.equals("ushort")) {
+            return DataBuffer.TYPE_USHORT;
+        } else if (name.equals("short")) {
+            return DataBuffer.TYPE_SHORT;
+        } else if (name.equals("int")) {
+            return DataBuffer.TYPE_INT;
+        } else if (name.equals("float")) {
+            return DataBuffer.TYPE_FLOAT;
+        } else if (name.equals("double")) {
+            return DataBuffer.TYPE_DOUBLE;
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    /**
+     * Returns the <code>Interpolation</code> named by a benchmark
+     * parameter: "nearest", "bilinear" or "bicubic".
+     */
+    static Interpolation interpolation(String name) {
+        if (name.equals("nearest")) {
+            return Interpolation.getInstance(Interpolation.INTERP_NEAREST);
+        } else if (name.equals("bilinear")) {
+            return Interpolation.getInstance(Interpolation.INTERP_BILINEAR);
+        } else if (name.equals("bicubic")) {
+            return Interpolation.getInstance(Interpolation.INTERP_BICUBIC);
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    /**
+     * Returns a color model for pixel interleaved data with
+     * <code>NUM_BANDS</code> bands of the given type, or
+     * <code>null</code> if the type has none.
+     */
+    static ColorModel createColorModel(int dataType) {
+        ColorSpace cs = ColorSpace.getInstance(ColorSpace.CS_sRGB);
+        if (dataType == DataBuffer.TYPE_FLOAT ||
+            dataType == DataBuffer.TYPE_DOUBLE) {
+            return new FloatDoubleColorModel(cs, false, false,
+                                             Transparency.OPAQUE, dataType);
+        }
+        try {
+            return new ComponentColorModel(cs, false, false,
+                                           Transparency.OPAQUE, dataType);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a <code>TiledImage</code> of size
+     * <code>IMAGE_SIZE</code> with <code>NUM_BANDS</code> bands, whose
+     * samples are a pattern of values between 0 and 255.
+     */
+    static TiledImage createImage(int dataType, int tileSize) {
+        return createImage(dataType, 0, 0, IMAGE_SIZE, IMAGE_SIZE, tileSize);
+    }
+
+    /**
+     * Creates a <code>TiledImage</code> with <code>NUM_BANDS</code>
+     * bands whose samples are a pattern of values between 0 and 255.
+     */
+    static TiledImage createImage(int dataType, int minX, int minY,
+                                  int width, int height, int tileSize) {
+        SampleModel sm =
+            RasterFactory.createPixelInterleavedSampleModel(dataType,
+                                                            tileSize,
+                                                            tileSize,
+                                                            NUM_BANDS);
+        TiledImage image =
+            new TiledImage(minX, minY, width, height, 0, 0, sm,
+                           createColorModel(dataType));
+
+        for (int ty = image.getMinTileY(); ty <= image.getMaxTileY(); ty++) {
+            for (int tx = image.getMinTileX(); tx <= image.getMaxTileX(); tx++) {
+                WritableRaster tile = image.getWritableTile(tx, ty);
+                int x0 = Math.max(tile.getMinX(), minX);
+                int y0 = Math.max(tile.getMinY(), minY);
+                int x1 = Math.min(tile.getMinX() + tile.getWidth(),
+                                  minX + width);
+                int y1 = Math.min(tile.getMinY() + tile.getHeight(),
+                                  minY + height);
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        for (int b = 0; b < NUM_BANDS; b++) {
+                            tile.setSample(x, y, b,
+                                           (x * 7 + y * 13 + b * 85) & 0xff);
+                        }
+                    }
+                }
+                image.releaseWritableTile(tx, ty);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Returns rendering hints which set the tile size of the destination
+     * and disable tile caching, so that every request computes the tile.
+     */
+    static RenderingHints createHints(int tileSize) {
+        ImageLayout layout = new ImageLayout();
+        layout.setTileGridXOffset(0);
+        layout.setTileGridYOffset(0);
+        layout.setTileWidth(tileSize);
+        layout.setTileHeight(tileSize);
+
+        RenderingHints hints = new RenderingHints(JAI.KEY_IMAGE_LAYOUT, layout);
+        hints.put(JAI.KEY_TILE_CACHE, JAI.createTileCache(0L));
+        return hints;
+    }
+
+    /** Returns the indices of all the tiles of an image. */
+    static Point[] getTileIndices(RenderedImage image) {
+        int minTileX = image.getMinTileX();
+        int minTileY = image.getMinTileY();
+        int numXTiles = image.getNumXTiles();
+        int numYTiles = image.getNumYTiles();
+
+        Point[] indices = new Point[numXTiles * numYTiles];
+        int i = 0;
+        for (int ty = minTileY; ty < minTileY + numYTiles; ty++) {
+            for (int tx = minTileX; tx < minTileX + numXTiles; tx++) {
+                indices[i++] = new Point(tx, ty);
+            }
+        }
+        return indices;
+    }
+
+    /** Computes every tile of an image in turn. */
+    static void computeTiles(RenderedImage image, Blackhole bh) {
+        int minTileX = image.getMinTileX();
+        int minTileY = image.getMinTileY();
+        int maxTileX = minTileX + image.getNumXTiles();
+        int maxTileY = minTileY + image.getNumYTiles();
+
+        for (int ty = minTileY; ty < maxTileY; ty++) {
+            for (int tx = minTileX; tx < maxTileX; tx++) {
+                Raster tile = image.getTile(tx, ty);
+                bh.consume(tile);
+            }
+        }
+    }
+}
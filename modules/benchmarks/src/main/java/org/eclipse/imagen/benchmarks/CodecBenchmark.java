@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.benchmarks;
+import java.awt.image.DataBuffer;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.imagen.media.codec.BMPEncodeParam;
+import org.eclipse.imagen.media.codec.ByteArraySeekableStream;
+import org.eclipse.imagen.media.codec.ImageCodec;
+import org.eclipse.imagen.media.codec.ImageDecoder;
+import org.eclipse.imagen.media.codec.ImageEncodeParam;
+import org.eclipse.imagen.media.codec.ImageEncoder;
+import org.eclipse.imagen.media.codec.PNGEncodeParam;
+import org.eclipse.imagen.media.codec.TIFFEncodeParam;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the encoding and decoding throughput of the codecs on an
+ * RGB byte image held in memory.  Decoding reads every tile of the
+ * decoded image.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    /**
+     * The format, optionally followed by the compression: "PNG", "BMP",
+     * "TIFF", "TIFF-PackBits" or "TIFF-Deflate".
+     */
+    @Param({"PNG", "BMP", "TIFF", "TIFF-PackBits", "TIFF-Deflate"})
+    public String format;
+
+    @Param({"256"})
+    public int tileSize;
+
+    private RenderedImage image;
+
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws IOException {
+        image = BenchmarkImages.createImage(DataBuffer.TYPE_BYTE, tileSize);
+        encoded = encode().toByteArray();
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream encode() throws IOException {
+        ByteArrayOutputStream out =
+            new ByteArrayOutputStream(encoded == null ? 1 << 20 : encoded.length);
+        ImageEncoder encoder =
+            ImageCodec.createImageEncoder(getCodecName(), out,
+                                          createEncodeParam());
+        encoder.encode(image);
+        return out;
+    }
+
+    @Benchmark
+    public void decode(Blackhole bh) throws IOException {
+        ImageDecoder decoder =
+            ImageCodec.createImageDecoder(getCodecName(),
+                                          new ByteArraySeekableStream(encoded),
+                                          null);
+        BenchmarkImages.computeTiles(decoder.decodeAsRenderedImage(), bh);
+    }
+
+    private String getCodecName() {
+        int index = format.indexOf('-');
+        return index < 0 ? format : format.substring(0, index);
+    }
+
+    private ImageEncodeParam createEncodeParam() {
+        if (format.equals("PNG")) {
+            return PNGEncodeParam.getDefaultEncodeParam(image);
+        } else if (format.equals("BMP")) {
+            return new BMPEncodeParam();
+        }
+
+        TIFFEncodeParam param = new TIFFEncodeParam();
+        param.setWriteTiled(true);
+        param.setTileSize(tileSize, tileSize);
+        if (format.equals("TIFF-PackBits")) {
+            param.setCompression(TIFFEncodeParam.COMPRESSION_PACKBITS);
+        } else if (format.equals("TIFF-Deflate")) {
+            param.setCompression(TIFFEncodeParam.COMPRESSION_DEFLATE);
+        }
+        return param;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.benchmarks;
+import java.awt.image.RenderedImage;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.imagen.JAI;
+import org.eclipse.imagen.KernelJAI;
+import org.eclipse.imagen.ParameterBlockJAI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the "Convolve" operation with a square box kernel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConvolveBenchmark {
+
+    @Param({"byte", "ushort", "int", "float", "double"})
+    public String dataType;
+
+    @Param({"64", "256", "512"})
+    public int tileSize;
+
+    @Param({"3", "7"})
+    public int kernelSize;
+
+    private RenderedImage image;
+
+    @Setup
+    public void setup() {
+        float[] data = new float[kernelSize * kernelSize];
+        Arrays.fill(data, 1.0F / data.length);
+
+        int type = BenchmarkImages.dataType(dataType);
+        ParameterBlockJAI pb = new ParameterBlockJAI("convolve");
+        pb.addSource(BenchmarkImages.createImage(type, tileSize));
+        pb.setParameter("kernel", new KernelJAI(kernelSize, kernelSize, data));
+        image = JAI.create("convolve", pb,
+                           BenchmarkImages.createHints(tileSize)).getRendering();
+    }
+
+    @Benchmark
+    public void convolve(Blackhole bh) {
+        BenchmarkImages.computeTiles(image, bh);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.benchmarks;
+import java.awt.image.RenderedImage;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.imagen.JAI;
+import org.eclipse.imagen.ParameterBlockJAI;
+import org.eclipse.imagen.operator.MosaicDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the "Mosaic" operation overlaying a grid of overlapping
+ * source images.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MosaicBenchmark {
+
+    /** The number of source images along each axis. */
+    private static final int GRID_SIZE = 3;
+
+    @Param({"byte", "ushort", "int", "float", "double"})
+    public String dataType;
+
+    @Param({"64", "256", "512"})
+    public int tileSize;
+
+    @Param({"overlay", "blend"})
+    public String mosaicType;
+
+    private RenderedImage image;
+
+    @Setup
+    public void setup() {
+        int type = BenchmarkImages.dataType(dataType);
+        int size = BenchmarkImages.IMAGE_SIZE / 2;
+        int step = (BenchmarkImages.IMAGE_SIZE - size) / (GRID_SIZE - 1);
+
+        ParameterBlockJAI pb = new ParameterBlockJAI("mosaic");
+        for (int j = 0; j < GRID_SIZE; j++) {
+            for (int i = 0; i < GRID_SIZE; i++) {
+                pb.addSource(BenchmarkImages.createImage(type, i * step,
+                                                         j * step, size, size,
+                                                         tileSize));
+            }
+        }
+        pb.setParameter("mosaicType", mosaicType.equals("overlay") ?
+                        MosaicDescriptor.MOSAIC_TYPE_OVERLAY :
+                        MosaicDescriptor.MOSAIC_TYPE_BLEND);
+        image = JAI.create("mosaic", pb,
+                           BenchmarkImages.createHints(tileSize)).getRendering();
+    }
+
+    @Benchmark
+    public void mosaic(Blackhole bh) {
+        BenchmarkImages.computeTiles(image, bh);
+    }
+}
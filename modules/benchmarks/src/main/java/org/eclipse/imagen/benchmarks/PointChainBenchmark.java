@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.benchmarks;
+import java.awt.RenderingHints;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.imagen.JAI;
+import org.eclipse.imagen.ParameterBlockJAI;
+import org.eclipse.imagen.TiledImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures a chain of point operations which changes the data type,
+ * "AddConst", "MultiplyConst", "Format" to float and "AddConst", with
+ * and without point operation fusion.  The setup checks that the fused and unfused chains produce
+ * identical samples, using int samples which a float cannot hold
+ * exactly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PointChainBenchmark {
+
+    @Param({"byte", "short", "int", "double"})
+    public String dataType;
+
+    @Param({"true", "false"})
+    public boolean fuse;
+
+    @Param({"256"})
+    public int tileSize;
+
+    private RenderedImage image;
+
+    @Setup
+    public void setup() {
+        int type = BenchmarkImages.dataType(dataType);
+        TiledImage source = BenchmarkImages.createImage(type, tileSize);
+        if (type == DataBuffer.TYPE_INT) {
+            spread(source);
+        }
+
+        image = createChain(source, fuse);
+        checkEqual(image, createChain(source, !fuse));
+    }
+
+    /** Spreads the samples of an int image over the whole int range. */
+    private static void spread(TiledImage image) {
+        for (int ty = image.getMinTileY(); ty <= image.getMaxTileY(); ty++) {
+            for (int tx = image.getMinTileX(); tx <= image.getMaxTileX(); tx++) {
+                WritableRaster tile = image.getWritableTile(tx, ty);
+                int maxX = tile.getMinX() + tile.getWidth();
+                int maxY = tile.getMinY() + tile.getHeight();
+                for (int y = tile.getMinY(); y < maxY; y++) {
+                    for (int x = tile.getMinX(); x < maxX; x++) {
+                        for (int b = 0; b < tile.getNumBands(); b++) {
+                            int s = tile.getSample(x, y, b);
+                            tile.setSample(x, y, b,
+                                           (s - 128)*16777259 + x*y + b);
+                        }
+                    }
+                }
+                image.releaseWritableTile(tx, ty);
+            }
+        }
+    }
+
+    private static RenderedImage createChain(RenderedImage source,
+                                             boolean fuse) {
+        RenderingHints hints = BenchmarkImages.createHints(
+                                   source.getTileWidth());
+        hints.put(JAI.KEY_FUSE_POINT_OPERATIONS, Boolean.valueOf(fuse));
+
+        ParameterBlockJAI pb = new ParameterBlockJAI("addconst");
+        pb.addSource(source);
+        pb.setParameter("constants", new double[] {-64.68});
+        RenderedImage image = JAI.create("addconst", pb, hints);
+
+        pb = new ParameterBlockJAI("multiplyconst");
+        pb.addSource(image);
+        pb.setParameter("constants", new double[] {1.37});
+        image = JAI.create("multiplyconst", pb, hints);
+
+        pb = new ParameterBlockJAI("format");
+        pb.addSource(image);
+        pb.setParameter("dataType", DataBuffer.TYPE_FLOAT);
+        image = JAI.create("format", pb, hints);
+
+        pb = new ParameterBlockJAI("addconst");
+        pb.addSource(image);
+        pb.setParameter("constants", new double[] {0.25});
+        return JAI.create("addconst", pb, hints).getRendering();
+    }
+
+    /**
+     * Throws an <code>IllegalStateException</code> unless two images
+     * have the same samples.
+     */
+    private static void checkEqual(RenderedImage a, RenderedImage b) {
+        Raster ra = a.getData();
+        Raster rb = b.getData();
+        int maxX = ra.getMinX() + ra.getWidth();
+        int maxY = ra.getMinY() + ra.getHeight();
+        for (int y = ra.getMinY(); y < maxY; y++) {
+            for (int x = ra.getMinX(); x < maxX; x++) {
+                for (int band = 0; band < ra.getNumBands(); band++) {
+                    double sa = ra.getSampleDouble(x, y, band);
+                    double sb = rb.getSampleDouble(x, y, band);
+                    if (Double.doubleToLongBits(sa) !=
+                        Double.doubleToLongBits(sb)) {
+                        throw new IllegalStateException(
+                            "Fused and unfused chains differ at (" + x +
+                            ", " + y + ") band " + band + ": " + sa +
+                            " != " + sb);
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void pointChain(Blackhole bh) {
+        BenchmarkImages.computeTiles(image, bh);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.benchmarks;
+import java.awt.RenderingHints;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.imagen.JAI;
+import org.eclipse.imagen.KernelJAI;
+import org.eclipse.imagen.ParameterBlockJAI;
+import org.eclipse.imagen.TileCache;
+import org.eclipse.imagen.media.util.ConcurrentTileCache;
+import org.eclipse.imagen.media.util.SunTileCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a tile cache under concurrent load: several threads request
+ * random tiles of a two node chain whose tiles only partly fit in the
+ * cache, so that lookups, insertions and evictions contend.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class TileCacheBenchmark {
+
+    @Param({"sun", "concurrent"})
+    public String cache;
+
+    @Param({"64", "256"})
+    public int tileSize;
+
+    /** The fraction of the tiles of the chain which fit in the cache. */
+    @Param({"0.25", "0.75"})
+    public double capacityRatio;
+
+    private TileCache tileCache;
+
+    private RenderedImage image;
+
+    @Setup
+    public void setup() {
+        int size = BenchmarkImages.IMAGE_SIZE;
+        long chainBytes = 2L * size * size * BenchmarkImages.NUM_BANDS;
+        long capacity = (long)(chainBytes * capacityRatio);
+        tileCache = cache.equals("sun") ?
+            (TileCache)new SunTileCache(capacity) :
+            (TileCache)new ConcurrentTileCache(capacity);
+
+        RenderingHints hints = BenchmarkImages.createHints(tileSize);
+        hints.put(JAI.KEY_TILE_CACHE, tileCache);
+
+        ParameterBlockJAI pb = new ParameterBlockJAI("convolve");
+        pb.addSource(BenchmarkImages.createImage(DataBuffer.TYPE_BYTE,
+                                                 tileSize));
+        pb.setParameter("kernel", KernelJAI.GRADIENT_MASK_SOBEL_HORIZONTAL);
+        RenderedImage convolved = JAI.create("convolve", pb, hints);
+
+        pb = new ParameterBlockJAI("add");
+        pb.addSource(convolved);
+        pb.addSource(convolved);
+        image = JAI.create("add", pb, hints).getRendering();
+    }
+
+    @TearDown
+    public void tearDown() {
+        tileCache.flush();
+    }
+
+    @Benchmark
+    public Raster getTile() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return image.getTile(image.getMinTileX() +
+                             random.nextInt(image.getNumXTiles()),
+                             image.getMinTileY() +
+                             random.nextInt(image.getNumYTiles()));
+    }
+}
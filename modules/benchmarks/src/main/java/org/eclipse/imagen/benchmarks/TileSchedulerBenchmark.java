@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.benchmarks;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.imagen.JAI;
+import org.eclipse.imagen.KernelJAI;
+import org.eclipse.imagen.ParameterBlockJAI;
+import org.eclipse.imagen.PlanarImage;
+import org.eclipse.imagen.TileScheduler;
+import org.eclipse.imagen.media.util.ForkJoinTileScheduler;
+import org.eclipse.imagen.media.util.SunTileScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures a tile scheduler computing all the tiles of a convolution
+ * with <code>getTiles()</code>, from a single thread and from several
+ * threads sharing the scheduler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TileSchedulerBenchmark {
+
+    @Param({"sun", "forkjoin"})
+    public String scheduler;
+
+    @Param({"64", "256"})
+    public int tileSize;
+
+    private PlanarImage image;
+
+    private Point[] tileIndices;
+
+    @Setup
+    public void setup() {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        TileScheduler tileScheduler = scheduler.equals("sun") ?
+            (TileScheduler)new SunTileScheduler() :
+            (TileScheduler)new ForkJoinTileScheduler();
+        tileScheduler.setParallelism(parallelism);
+
+        RenderingHints hints = BenchmarkImages.createHints(tileSize);
+        hints.put(JAI.KEY_TILE_SCHEDULER, tileScheduler);
+
+        float[] data = new float[25];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = 1.0F / data.length;
+        }
+        ParameterBlockJAI pb = new ParameterBlockJAI("convolve");
+        pb.addSource(BenchmarkImages.createImage(DataBuffer.TYPE_FLOAT,
+                                                 tileSize));
+        pb.setParameter("kernel", new KernelJAI(5, 5, data));
+        image = JAI.create("convolve", pb, hints).getRendering();
+        tileIndices = BenchmarkImages.getTileIndices(image);
+    }
+
+    @Benchmark
+    public void getTiles(Blackhole bh) {
+        Raster[] tiles = image.getTiles(tileIndices);
+        bh.consume(tiles);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void getTilesConcurrent(Blackhole bh) {
+        Raster[] tiles = image.getTiles(tileIndices);
+        bh.consume(tiles);
+    }
+}
@@ -185,6 +185,39 @@ public class ByteArraySeekableStream extends SeekableStream {
         }
     }
 
+    /**
+     * Copies up to <code>len</code> bytes from the input array, starting
+     * at offset <code>pos</code>, without changing the stream pointer.
+     *
+     * @param      pos   the offset of the first byte copied.
+     * @param      b     the buffer into which the data is copied.
+     * @param      off   the start offset of the data in <code>b</code>.
+     * @param      len   the maximum number of bytes to copy.
+     * @return     the total number of bytes read into the buffer, or
+     *             <code>-1</code> if <code>pos</code> is at or beyond
+     *             the end of the stream.
+     */
+    public int read(long pos, byte[] b, int off, int len) {
+        if (b == null) {
+            throw new NullPointerException();
+        }
+        if ((off < 0) || (len < 0) || (off + len > b.length) || (pos < 0)) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        long end = Math.min(pos + len, (long)(length + offset));
+
+        if (end <= pos) {
+            return -1;
+        } else {
+            System.arraycopy(src, (int)pos, b, off, (int)(end - pos));
+            return (int)(end - pos);
+        }
+    }
+
     /**
      * Attempts to skip over <code>n</code> bytes of input discarding the 
      * skipped bytes. 
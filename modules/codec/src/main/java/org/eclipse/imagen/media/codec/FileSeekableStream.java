@@ -19,6 +19,10 @@ package org.eclipse.imagen.media.codec;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 
 /**
  * A subclass of <code>SeekableStream</code> that takes its input
@@ -34,6 +38,21 @@ public class FileSeekableStream extends SeekableStream {
     private RandomAccessFile file;
     private long markPos = -1;
 
+    // The file, or null if the stream was constructed from a
+    // RandomAccessFile
+    private File path;
+
+    // The file used for positional reads, opened on demand.  It is
+    // distinct from the RandomAccessFile so that an interrupt, which
+    // closes the channel, does not close the stream.
+    private RandomAccessFile channelFile;
+
+    // The lock of channelFile and closed
+    private final Object channelLock = new Object();
+
+    // Whether the stream has been closed
+    private boolean closed = false;
+
     // Base 2 logarithm of the cache page size
     private static final int PAGE_SHIFT = 9;
 
@@ -82,6 +101,7 @@ public class FileSeekableStream extends SeekableStream {
      */
     public FileSeekableStream(File file) throws IOException {
         this(new RandomAccessFile(file, "r"));
+        this.path = file;
     }
 
     /**
@@ -89,7 +109,7 @@ public class FileSeekableStream extends SeekableStream {
      * <code>String</code> path name.
      */
     public FileSeekableStream(String name) throws IOException {
-        this(new RandomAccessFile(name, "r"));
+        this(new File(name));
     }
 
     /** Returns true since seeking backwards is supported. */
@@ -188,8 +208,93 @@ public class FileSeekableStream extends SeekableStream {
         }
     }
 
+    /**
+     * Reads from a channel of the real <code>File</code> at the given
+     * offset.  Neither the stream pointer nor the page cache is used,
+     * so that several threads may read concurrently.  The channel is
+     * not that of the stream: if a reading thread is interrupted the
+     * channel is closed, the thread receives a
+     * <code>ClosedByInterruptException</code> and the channel is opened
+     * again for subsequent reads.  If the stream was constructed from
+     * a <code>RandomAccessFile</code> the read is performed by the
+     * superclass instead, since the file cannot be opened again.
+     */
+    public final int read(long pos, byte[] b, int off, int len)
+        throws IOException {
+        if (b == null) {
+            throw new NullPointerException();
+        }
+        if ((off < 0) || (len < 0) || (off + len > b.length)) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (pos < 0) {
+            throw new IOException(JaiI18N.getString("FileSeekableStream0"));
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        len = (int)Math.min((long)len, length - pos);
+        if (len <= 0) {
+            return -1;
+        }
+
+        if (path == null) {
+            return super.read(pos, b, off, len);
+        }
+
+        ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+        FileChannel channel = getChannel(null);
+        while (buf.hasRemaining()) {
+            try {
+                if (channel.read(buf, pos + buf.position() - off) < 0) {
+                    break;
+                }
+            } catch (ClosedByInterruptException e) {
+                // This thread was interrupted.
+                getChannel(channel);
+                throw e;
+            } catch (ClosedChannelException e) {
+                // Another thread was interrupted; read from a new channel.
+                channel = getChannel(channel);
+            }
+        }
+
+        int nbytes = buf.position() - off;
+        return nbytes == 0 ? -1 : nbytes;
+    }
+
+    /**
+     * Returns the channel used for positional reads, opening a new one
+     * if there is none or if the current one is <code>closed</code>.
+     */
+    private FileChannel getChannel(FileChannel closedChannel)
+        throws IOException {
+        synchronized (channelLock) {
+            if (closed) {
+                throw new IOException(
+                    JaiI18N.getString("FileSeekableStream1"));
+            }
+            if (channelFile == null ||
+                channelFile.getChannel() == closedChannel) {
+                if (channelFile != null) {
+                    channelFile.close();
+                }
+                channelFile = new RandomAccessFile(path, "r");
+            }
+            return channelFile.getChannel();
+        }
+    }
+
     /** Forwards the request to the real <code>File</code>. */
     public final void close() throws IOException {
+        synchronized (channelLock) {
+            closed = true;
+            if (channelFile != null) {
+                channelFile.close();
+                channelFile = null;
+            }
+        }
         file.close();
     }
 
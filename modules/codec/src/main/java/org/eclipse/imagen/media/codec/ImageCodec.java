@@ -479,7 +479,7 @@ public abstract class ImageCodec {
     protected ImageDecoder createImageDecoder(File src,
                                               ImageDecodeParam param)
         throws IOException {
-        return createImageDecoder(new FileSeekableStream(src), param);
+        return createImageDecoder(SeekableStream.openFile(src), param);
     }
 
     /**
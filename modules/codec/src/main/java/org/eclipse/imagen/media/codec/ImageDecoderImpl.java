@@ -16,10 +16,12 @@
  */
 
 package org.eclipse.imagen.media.codec;
+import java.awt.Rectangle;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.io.InputStream;
 import java.io.IOException;
+import org.eclipse.imagen.media.codecimpl.SubsampledRenderedImage;
 
 /**
  * A partial implementation of the <code>ImageDecoder</code> interface
@@ -42,6 +44,15 @@ public abstract class ImageDecoderImpl implements ImageDecoder {
      */
     protected ImageDecodeParam param;
 
+    /** The region of the source image to decode, or null for all of it. */
+    private Rectangle sourceRegion = null;
+
+    /** The horizontal source subsampling factor. */
+    private int sourceXSubsampling = 1;
+
+    /** The vertical source subsampling factor. */
+    private int sourceYSubsampling = 1;
+
     /**
      * Constructs an <code>ImageDecoderImpl</code> with a given
      * <code>SeekableStream</code> and <code>ImageDecodeParam</code>
@@ -94,6 +105,120 @@ public abstract class ImageDecoderImpl implements ImageDecoder {
         this.param = param;
     }
 
+    /**
+     * Sets the region of the source image to be decoded.  Only the
+     * portion of the region which lies within the image bounds is
+     * decoded; it is an error to decode an image which the region
+     * does not intersect.  A <code>null</code> value selects the
+     * entire image, which is the default.
+     *
+     * <p> The decoded image has its origin at (0, 0) regardless
+     * of the position of the region.
+     *
+     * @param region The source region, or <code>null</code>.
+     * @throws IllegalArgumentException if <code>region</code> is
+     *         non-<code>null</code> and empty.
+     */
+    public void setSourceRegion(Rectangle region) {
+        if (region != null && region.isEmpty()) {
+            throw new IllegalArgumentException(JaiI18N.getString("ImageDecoderImpl0"));
+        }
+        sourceRegion = region == null ? null : new Rectangle(region);
+    }
+
+    /**
+     * Returns a copy of the region of the source image to be decoded,
+     * or <code>null</code> if the entire image is to be decoded.
+     */
+    public Rectangle getSourceRegion() {
+        return sourceRegion == null ? null : new Rectangle(sourceRegion);
+    }
+
+    /**
+     * Sets the integral factors by which the source region is
+     * subsampled.  Pixel (i, j) of the decoded image is the source
+     * pixel at (x + i*xSubsampling, y + j*ySubsampling) where
+     * (x, y) is the upper left corner of the source region, so the
+     * decoded image is
+     * ceil(width/xSubsampling) by ceil(height/ySubsampling) pixels
+     * in size.  The default factors are 1.
+     *
+     * @param xSubsampling The horizontal subsampling factor.
+     * @param ySubsampling The vertical subsampling factor.
+     * @throws IllegalArgumentException if either factor is less than 1.
+     */
+    public void setSourceSubsampling(int xSubsampling, int ySubsampling) {
+        if (xSubsampling < 1 || ySubsampling < 1) {
+            throw new IllegalArgumentException(JaiI18N.getString("ImageDecoderImpl1"));
+        }
+        sourceXSubsampling = xSubsampling;
+        sourceYSubsampling = ySubsampling;
+    }
+
+    /**
+     * Returns the horizontal source subsampling factor.
+     */
+    public int getSourceXSubsampling() {
+        return sourceXSubsampling;
+    }
+
+    /**
+     * Returns the vertical source subsampling factor.
+     */
+    public int getSourceYSubsampling() {
+        return sourceYSubsampling;
+    }
+
+    /**
+     * Returns <code>true</code> if a source region or a subsampling
+     * factor other than 1 has been set.
+     */
+    protected boolean isSourceRegionSet() {
+        return sourceRegion != null ||
+            sourceXSubsampling != 1 || sourceYSubsampling != 1;
+    }
+
+    /**
+     * Returns the source region clipped to the given image bounds.
+     *
+     * @param bounds The bounds of the source image.
+     * @throws IllegalArgumentException if the source region does not
+     *         intersect <code>bounds</code>.
+     */
+    protected Rectangle computeSourceRegion(Rectangle bounds) {
+        if (sourceRegion == null) {
+            return new Rectangle(bounds);
+        }
+        Rectangle region = sourceRegion.intersection(bounds);
+        if (region.isEmpty()) {
+            throw new IllegalArgumentException(JaiI18N.getString("ImageDecoderImpl2"));
+        }
+        return region;
+    }
+
+    /**
+     * Applies the source region and subsampling settings to a fully
+     * decodable image.  Tiles of the returned image are computed on
+     * demand from only those source tiles which contain selected
+     * pixels.  Decoders which cannot honor the settings while
+     * decoding may use this method to apply them afterwards.
+     *
+     * @param image The decoded source image.
+     * @return <code>image</code> itself if no source region or
+     *         subsampling has been set.
+     */
+    protected RenderedImage applySourceRegion(RenderedImage image) {
+        if (!isSourceRegionSet()) {
+            return image;
+        }
+        Rectangle region = computeSourceRegion(
+            new Rectangle(image.getMinX(), image.getMinY(),
+                          image.getWidth(), image.getHeight()));
+        return new SubsampledRenderedImage(image, region,
+                                           sourceXSubsampling,
+                                           sourceYSubsampling);
+    }
+
     /**
      * Returns the <code>SeekableStream</code> associated with
      * this <code>ImageDecoder</code>.
@@ -35,7 +35,7 @@ import java.awt.image.RenderedImage;
  */
 public class JPEGEncodeParam implements ImageEncodeParam {
 
-    private static int  JPEG_MAX_BANDS = 3;
+    private static int  JPEG_MAX_BANDS = 4;
 
     private int[]       hSamp;
     private int[]       vSamp;
@@ -83,6 +83,13 @@ public class JPEGEncodeParam implements ImageEncodeParam {
         qTab[2]     = null;
         qTabSet[2]  = false;
 
+        // Fourth channel - full resolution sampling
+        hSamp[3]    = 1;
+        vSamp[3]    = 1;
+        qTabSlot[3] = 0;
+        qTab[3]     = null;
+        qTabSet[3]  = false;
+
         qual           = 0.75F;
         rstInterval    = 0;
         writeImageOnly = false;
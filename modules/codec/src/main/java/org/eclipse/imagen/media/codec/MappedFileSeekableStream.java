@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.codec;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A subclass of <code>SeekableStream</code> that takes its input
+ * from a memory mapped <code>File</code>.  Backwards seeking is
+ * supported.  The <code>mark()</code> and <code>reset()</code> methods
+ * are supported.
+ *
+ * <p> The file is mapped read-only in consecutive segments of at most
+ * 1 GB, so that files larger than 2 GB may be read.  The file is closed
+ * once it has been mapped; the mapping remains valid until the stream
+ * and its duplicates are closed or garbage collected, and is then
+ * released by the garbage collector.  There is no way to release the
+ * mapping explicitly, and on some platforms, notably Windows, the file
+ * can be neither deleted nor replaced while it is mapped.  Truncating
+ * a mapped file may also crash the virtual machine when the missing
+ * bytes are read.  Applications which need to modify files promptly
+ * after reading them should use a <code>FileSeekableStream</code>.
+ *
+ * <p> As with other streams the stream pointer of an instance is not
+ * safe for use by several threads.  However, the positional
+ * <code>read(long, byte[], int, int)</code> and
+ * <code>getByteBuffer()</code> methods do not use the stream pointer
+ * and may be called concurrently, and <code>duplicate()</code> returns
+ * a stream with its own stream pointer sharing the same mapping.
+ *
+ * <p><b> This class is not a committed part of the JAI API.  It may
+ * be removed or changed in future releases of JAI.</b>
+ *
+ * @see FileSeekableStream
+ */
+public class MappedFileSeekableStream extends SeekableStream {
+
+    // Base 2 logarithm of the segment size
+    private static final int SEGMENT_SHIFT = 30;
+
+    // The segment size, derived from SEGMENT_SHIFT
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+    // Binary mask to find the offset of a pointer within a segment
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    // The mapped segments, shared by duplicates; null once closed
+    private MappedByteBuffer[] segments;
+
+    private final long length;
+
+    private long pointer = 0L;
+
+    /**
+     * Constructs a <code>MappedFileSeekableStream</code> from a
+     * <code>File</code>.
+     *
+     * @throws java.io.FileNotFoundException if the file cannot be opened.
+     * @throws IOException if the file cannot be mapped, for example if
+     *         it is not a regular file.
+     */
+    public MappedFileSeekableStream(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            length = channel.size();
+
+            int numSegments = (int)((length + SEGMENT_SIZE - 1) >> SEGMENT_SHIFT);
+            segments = new MappedByteBuffer[numSegments];
+            for (int i = 0; i < numSegments; i++) {
+                long pos = ((long)i) << SEGMENT_SHIFT;
+                segments[i] =
+                    channel.map(FileChannel.MapMode.READ_ONLY, pos,
+                                Math.min(SEGMENT_SIZE, length - pos));
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Constructs a <code>MappedFileSeekableStream</code> from a
+     * <code>String</code> path name.
+     */
+    public MappedFileSeekableStream(String name) throws IOException {
+        this(new File(name));
+    }
+
+    /** Constructs a duplicate of a stream. */
+    private MappedFileSeekableStream(MappedFileSeekableStream stream) {
+        this.segments = stream.segments;
+        this.length = stream.length;
+    }
+
+    /**
+     * Returns a new stream reading from the same mapping, with its own
+     * stream pointer initially at the start of the file.
+     */
+    public MappedFileSeekableStream duplicate() {
+        return new MappedFileSeekableStream(this);
+    }
+
+    /** Returns true since seeking backwards is supported. */
+    public final boolean canSeekBackwards() {
+        return true;
+    }
+
+    /** Returns the length of the file in bytes. */
+    public final long length() {
+        return length;
+    }
+
+    /**
+     * Returns the number of bytes between the stream pointer and the
+     * end of the file, or <code>Integer.MAX_VALUE</code> if larger.
+     */
+    public final int available() {
+        return (int)Math.max(0L, Math.min(length - pointer,
+                                          (long)Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns the current offset in this stream.
+     *
+     * @return     the offset from the beginning of the stream, in bytes,
+     *             at which the next read occurs.
+     */
+    public final long getFilePointer() {
+        return pointer;
+    }
+
+    public final void seek(long pos) throws IOException {
+        if (pos < 0) {
+            throw new IOException(JaiI18N.getString("MappedFileSeekableStream0"));
+        }
+        pointer = pos;
+    }
+
+    public final long skip(long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        long skipped = Math.max(0L, Math.min(n, length - pointer));
+        pointer += skipped;
+        return skipped;
+    }
+
+    public final int read() throws IOException {
+        MappedByteBuffer[] segments = getSegments();
+        if (pointer >= length) {
+            return -1;
+        }
+
+        int b = segments[(int)(pointer >> SEGMENT_SHIFT)].get(
+                    (int)(pointer & SEGMENT_MASK)) & 0xff;
+        pointer++;
+        return b;
+    }
+
+    public final int read(byte[] b, int off, int len) throws IOException {
+        int nbytes = read(pointer, b, off, len);
+        if (nbytes > 0) {
+            pointer += nbytes;
+        }
+        return nbytes;
+    }
+
+    /**
+     * Copies bytes from the mapping at the given offset.  The stream
+     * pointer is neither used nor changed, so that several threads
+     * may read concurrently.
+     */
+    public final int read(long pos, byte[] b, int off, int len)
+        throws IOException {
+        MappedByteBuffer[] segments = getSegments();
+        if (b == null) {
+            throw new NullPointerException();
+        }
+        if ((off < 0) || (len < 0) || (off + len > b.length) || (pos < 0)) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        len = (int)Math.min((long)len, length - pos);
+        if (len <= 0) {
+            return -1;
+        }
+
+        int n = 0;
+        while (n < len) {
+            MappedByteBuffer segment = segments[(int)(pos >> SEGMENT_SHIFT)];
+            int index = (int)(pos & SEGMENT_MASK);
+            int count = Math.min(len - n, segment.limit() - index);
+
+            // Absolute bulk get: the state of the buffer is not changed.
+            segment.get(index, b, off + n, count);
+
+            pos += count;
+            n += count;
+        }
+        return n;
+    }
+
+    /**
+     * Transfers bytes from the stream pointer into the remaining
+     * space of a <code>ByteBuffer</code>, and advances the stream
+     * pointer accordingly.
+     *
+     * @param dst The buffer into which the bytes are transferred.
+     * @return the number of bytes transferred, or <code>-1</code> if
+     *         the stream pointer is at or beyond the end of the file.
+     * @throws IOException if the stream has been closed.
+     */
+    public final int read(ByteBuffer dst) throws IOException {
+        MappedByteBuffer[] segments = getSegments();
+        if (pointer >= length) {
+            return -1;
+        }
+
+        int len = (int)Math.min((long)dst.remaining(), length - pointer);
+        int n = 0;
+        while (n < len) {
+            MappedByteBuffer segment =
+                segments[(int)(pointer >> SEGMENT_SHIFT)];
+            int index = (int)(pointer & SEGMENT_MASK);
+            int count = Math.min(len - n, segment.limit() - index);
+
+            dst.put(segment.slice(index, count));
+
+            pointer += count;
+            n += count;
+        }
+        return n;
+    }
+
+    /**
+     * Returns a read-only <code>ByteBuffer</code> holding
+     * <code>len</code> bytes of the file starting at offset
+     * <code>pos</code>.  The buffer is a view of the mapping, without
+     * any copy, unless the bytes span two segments in which case they
+     * are copied into a new buffer.  The stream pointer is neither used
+     * nor changed.
+     *
+     * @param pos The offset in the file of the first byte.
+     * @param len The number of bytes.
+     *
+     * @throws IndexOutOfBoundsException if <code>pos</code> or
+     *         <code>len</code> is negative or if the bytes extend
+     *         beyond the end of the file.
+     * @throws IOException if the stream has been closed.
+     */
+    public final ByteBuffer getByteBuffer(long pos, int len)
+        throws IOException {
+        MappedByteBuffer[] segments = getSegments();
+        if (pos < 0 || len < 0 || pos + len > length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (len == 0) {
+            return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        }
+
+        int index = (int)(pos & SEGMENT_MASK);
+        if (index + (long)len <= SEGMENT_SIZE) {
+            MappedByteBuffer segment = segments[(int)(pos >> SEGMENT_SHIFT)];
+            return segment.slice(index, len).asReadOnlyBuffer();
+        }
+
+        byte[] b = new byte[len];
+        read(pos, b, 0, len);
+        return ByteBuffer.wrap(b).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the mapped segments.
+     *
+     * @throws IOException if the stream has been closed.
+     */
+    private MappedByteBuffer[] getSegments() throws IOException {
+        MappedByteBuffer[] segments = this.segments;
+        if (segments == null) {
+            throw new IOException(
+                JaiI18N.getString("MappedFileSeekableStream1"));
+        }
+        return segments;
+    }
+
+    /**
+     * Closes this stream, after which reading from it throws an
+     * <code>IOException</code>.  The file itself is closed once mapped.
+     * The stream drops its references to the mapping, which is released
+     * by the garbage collector once its duplicates are closed too; until
+     * then the file may remain locked on some platforms.
+     */
+    public final void close() {
+        segments = null;
+    }
+}
@@ -302,6 +302,37 @@ public class PNGDecodeParam implements ImageDecodeParam {
         this.expandGrayAlpha = expandGrayAlpha;
     }
 
+    private int stripHeight = 0;
+
+    /**
+     * Returns the number of rows of the strips in which the image is
+     * decoded on demand, or 0 if the image is decoded as a whole.
+     */
+    public int getStripHeight() {
+        return stripHeight;
+    }
+
+    /**
+     * If positive, non-interlaced images will be output as a column of
+     * tiles, each of the given number of rows, which are decoded only
+     * when they are requested.  Only the compressed image data and the
+     * recently used strips are then held in memory.  Decoded strips are
+     * released when memory runs low and are decoded again if requested
+     * later.  Interlaced images are always decoded as a whole.
+     *
+     * <p> By default, the whole image is decoded at once into a single
+     * tile.
+     *
+     * @throws IllegalArgumentException if <code>stripHeight</code> is
+     * negative.
+     */
+    public void setStripHeight(int stripHeight) {
+        if (stripHeight < 0) {
+            throw new IllegalArgumentException(JaiI18N.getString("PNGDecodeParam2"));
+        }
+        this.stripHeight = stripHeight;
+    }
+
     private boolean generateEncodeParam = false;
 
     private PNGEncodeParam encodeParam = null;
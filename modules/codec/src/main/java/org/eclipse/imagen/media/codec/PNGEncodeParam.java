@@ -62,6 +62,12 @@ public abstract class PNGEncodeParam implements ImageEncodeParam {
     /** Constant for use in filtering. */
     public static final int PNG_FILTER_PAETH = 4;
 
+    /**
+     * Constant for use in filtering, indicating that the filter type
+     * is chosen for each row.
+     */
+    public static final int PNG_FILTER_ADAPTIVE = -1;
+
 
     /**
      * Returns an instance of <code>PNGEncodeParam.Palette</code>,
@@ -581,6 +587,99 @@ public abstract class PNGEncodeParam implements ImageEncodeParam {
     public boolean getInterlacing() {
         return useInterlacing;
     }
+
+    private int compressionLevel = 9;
+
+    /**
+     * Sets the compression level used to deflate the image data, from
+     * 0 (no compression) to 9 (best compression), or -1 for the default
+     * level of the <code>java.util.zip.Deflater</code> class.  The
+     * default value is 9.
+     *
+     * @throws IllegalArgumentException if <code>level</code> is not
+     * between -1 and 9.
+     */
+    public void setCompressionLevel(int level) {
+        if (level < -1 || level > 9) {
+            throw new IllegalArgumentException(JaiI18N.getString("PNGEncodeParam26"));
+        }
+        compressionLevel = level;
+    }
+
+    /**
+     * Returns the compression level used to deflate the image data.
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    private int filter = PNG_FILTER_ADAPTIVE;
+
+    /**
+     * Sets the filter type applied to the rows of the image by the
+     * default implementation of <code>filterRow()</code>.  The value
+     * must be one of <code>PNG_FILTER_NONE</code>,
+     * <code>PNG_FILTER_SUB</code>, <code>PNG_FILTER_UP</code>,
+     * <code>PNG_FILTER_AVERAGE</code> and <code>PNG_FILTER_PAETH</code>,
+     * in which case every row uses that filter type, or
+     * <code>PNG_FILTER_ADAPTIVE</code>, in which case the filter type is
+     * chosen for each row.  The default value is
+     * <code>PNG_FILTER_ADAPTIVE</code>.
+     *
+     * <p> A fixed filter type avoids the trial encodings performed for
+     * each row.  <code>PNG_FILTER_NONE</code> is generally best for
+     * palette images and images having fewer than 8 bits per sample.
+     *
+     * @throws IllegalArgumentException if <code>filter</code> is not
+     * one of the constants listed above.
+     */
+    public void setFilter(int filter) {
+        if (filter < PNG_FILTER_ADAPTIVE || filter > PNG_FILTER_PAETH) {
+            throw new IllegalArgumentException(JaiI18N.getString("PNGEncodeParam25"));
+        }
+        this.filter = filter;
+    }
+
+    /**
+     * Returns the filter type set via <code>setFilter()</code>.
+     */
+    public int getFilter() {
+        return filter;
+    }
+
+    private int parallelism = 0;
+
+    /**
+     * Sets the number of threads used to encode the image data.  If
+     * positive, the rows of a non-interlaced image are divided into
+     * blocks which that many worker threads filter and deflate
+     * concurrently, while the calling thread writes the results to the
+     * output in order.  The default value is zero, which means all data
+     * are encoded on the calling thread.  Interlaced images are always
+     * encoded on the calling thread.
+     *
+     * <p> When a value greater than zero is set, the image being encoded
+     * must support concurrent calls to <code>getData()</code>, and
+     * <code>filterRow()</code> must support concurrent calls.  The
+     * compressed data differ from those written sequentially, though
+     * they decompress to the same image data.
+     *
+     * @throws IllegalArgumentException if <code>parallelism</code> is
+     * negative.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException(JaiI18N.getString("PNGEncodeParam27"));
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the number of threads set via <code>setParallelism()</code>.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
     
     // bKGD chunk - delegate to subclasses
 
@@ -1387,7 +1486,9 @@ public abstract class PNGEncodeParam implements ImageEncodeParam {
      * value of the method should contain the filtered data.  The
      * return value will also be used as the filter type.
      *
-     * <p> The default implementation of the method performs a trial
+     * <p> If a fixed filter type has been set via
+     * <code>setFilter()</code>, the default implementation of the
+     * method applies that filter.  Otherwise it performs a trial
      * encoding with each of the filter types, and computes the sum of
      * absolute values of the differences between the raw bytes of the
      * current row and the predicted values.  The index of the filter
@@ -1433,6 +1534,11 @@ public abstract class PNGEncodeParam implements ImageEncodeParam {
                          byte[][] scratchRows,
                          int bytesPerRow,
                          int bytesPerPixel) {
+        if (filter != PNG_FILTER_ADAPTIVE) {
+            return filterRow(filter, currRow, prevRow, scratchRows[filter],
+                             bytesPerRow, bytesPerPixel);
+        }
+
         int[] filterBadness = new int[5];
         for (int i = 0; i < 5; i++) {
             filterBadness[i] = Integer.MAX_VALUE;
@@ -1535,4 +1641,57 @@ public abstract class PNGEncodeParam implements ImageEncodeParam {
         
         return filterType;
     }
+
+    /**
+     * Applies the given filter type to a row.
+     */
+    private static int filterRow(int filterType,
+                                 byte[] currRow,
+                                 byte[] prevRow,
+                                 byte[] filteredRow,
+                                 int bytesPerRow,
+                                 int bytesPerPixel) {
+        int end = bytesPerRow + bytesPerPixel;
+
+        switch (filterType) {
+        case PNG_FILTER_NONE:
+            System.arraycopy(currRow, bytesPerPixel,
+                             filteredRow, bytesPerPixel,
+                             bytesPerRow);
+            break;
+        case PNG_FILTER_SUB:
+            for (int i = bytesPerPixel; i < end; i++) {
+                int curr = currRow[i] & 0xff;
+                int left = currRow[i - bytesPerPixel] & 0xff;
+                filteredRow[i] = (byte)(curr - left);
+            }
+            break;
+        case PNG_FILTER_UP:
+            for (int i = bytesPerPixel; i < end; i++) {
+                int curr = currRow[i] & 0xff;
+                int up = prevRow[i] & 0xff;
+                filteredRow[i] = (byte)(curr - up);
+            }
+            break;
+        case PNG_FILTER_AVERAGE:
+            for (int i = bytesPerPixel; i < end; i++) {
+                int curr = currRow[i] & 0xff;
+                int left = currRow[i - bytesPerPixel] & 0xff;
+                int up = prevRow[i] & 0xff;
+                filteredRow[i] = (byte)(curr - (left + up)/2);
+            }
+            break;
+        case PNG_FILTER_PAETH:
+            for (int i = bytesPerPixel; i < end; i++) {
+                int curr = currRow[i] & 0xff;
+                int left = currRow[i - bytesPerPixel] & 0xff;
+                int up = prevRow[i] & 0xff;
+                int upleft = prevRow[i - bytesPerPixel] & 0xff;
+                filteredRow[i] = (byte)(curr - paethPredictor(left, up, upleft));
+            }
+            break;
+        }
+
+        return filterType;
+    }
 }
@@ -19,8 +19,12 @@ package org.eclipse.imagen.media.codec;
 import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.io.IOException;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 
 /**
  * An abstract subclass of <code>java.io.InputStream</code> that
@@ -70,7 +74,9 @@ import java.io.IOException;
  * <p> The <code>FileSeekableStream</code> class wraps a
  * <code>File</code> or <code>RandomAccessFile</code>.  It forwards
  * requests to the real underlying file.  It performs a limited amount
- * of caching in order to avoid excessive I/O costs.
+ * of caching in order to avoid excessive I/O costs.  The
+ * <code>MappedFileSeekableStream</code> class maps a <code>File</code>
+ * into memory instead, and supports concurrent reads.
  *
  * <p> The <code>SegmentedSeekableStream</code> class performs a
  * different sort of function.  It creates a
@@ -86,7 +92,9 @@ import java.io.IOException;
  * to construct a suitable <code>SeekableStream</code> instance whose
  * data is supplied by a given <code>InputStream</code>.  The caller,
  * by means of the <code>canSeekBackwards</code> parameter, determines
- * whether support for seeking backwards is required.
+ * whether support for seeking backwards is required.  Similarly,
+ * <code>openFile</code> constructs a suitable instance reading from a
+ * local <code>File</code>.
  *
  * @see java.io.DataInput
  * @see java.io.InputStream
@@ -95,6 +103,7 @@ import java.io.IOException;
  * @see FileCacheSeekableStream
  * @see FileSeekableStream
  * @see ForwardSeekableStream
+ * @see MappedFileSeekableStream
  * @see MemoryCacheSeekableStream
  * @see SegmentedSeekableStream
  * @see StreamSegment
@@ -136,6 +145,58 @@ public abstract class SeekableStream
         return stream;
     }
 
+    /**
+     * Returns a <code>SeekableStream</code> that will read from a given
+     * local file.  The file is memory mapped by a
+     * <code>MappedFileSeekableStream</code> if possible, and is otherwise
+     * read by a <code>FileSeekableStream</code>, for example if it is
+     * not a regular file.  Note that closing a mapped stream does not
+     * release the mapping, which may keep the file locked on some
+     * platforms until the stream is garbage collected.
+     *
+     * <p> If the system property
+     * "org.eclipse.imagen.media.codec.SeekableStream.MapFiles" is equal
+     * to the string "false" in a case-insensitive fashion then files are
+     * never mapped and a <code>FileSeekableStream</code> is always
+     * returned.
+     *
+     * @param file A <code>File</code>.
+     * @return An instance of <code>SeekableStream</code>.
+     * @throws java.io.FileNotFoundException if the file cannot be opened.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static SeekableStream openFile(File file) throws IOException {
+        if (!mapFiles()) {
+            return new FileSeekableStream(file);
+        }
+        try {
+            return new MappedFileSeekableStream(file);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            return new FileSeekableStream(file);
+        }
+    }
+
+    /** Returns whether <code>openFile</code> may map files. */
+    private static boolean mapFiles() {
+        // Retrieve the mapping property.
+        Object mapProperty = null;
+        try {
+            mapProperty =
+                AccessController.doPrivileged(new PrivilegedAction() {
+                    public Object run() {
+                        String name =
+                            "org.eclipse.imagen.media.codec.SeekableStream.MapFiles";
+                        return System.getProperty(name);
+                    }
+                });
+        } catch (SecurityException se) {
+            // as if the property isn't set
+        }
+        return !"false".equalsIgnoreCase((String)mapProperty);
+    }
+
     // Methods from InputStream
 
     /**
@@ -328,6 +389,65 @@ public abstract class SeekableStream
 	} while (n < len);
     }
 
+    /**
+     * Reads up to <code>len</code> bytes of data from this stream into
+     * an array of bytes, starting at offset <code>pos</code> of the
+     * stream rather than at the current stream pointer.  The stream
+     * pointer is not changed.
+     *
+     * <p> The implementation in this class synchronizes on this stream,
+     * seeks to <code>pos</code>, reads and seeks back to the previous
+     * position.  Subclasses which can read from a given offset without
+     * moving a shared stream pointer override this method so that
+     * concurrent reads do not block one another.
+     *
+     * @param      pos   the offset in the stream of the first byte read.
+     * @param      b     the buffer into which the data is read.
+     * @param      off   the start offset of the data.
+     * @param      len   the maximum number of bytes read.
+     * @return     the total number of bytes read into the buffer, or
+     *             <code>-1</code> if <code>pos</code> is at or beyond
+     *             the end of the stream.
+     * @exception  IOException  if an I/O error occurs.
+     */
+    public int read(long pos, byte[] b, int off, int len)
+        throws IOException {
+        synchronized (this) {
+            long savePos = getFilePointer();
+            try {
+                seek(pos);
+                return read(b, off, len);
+            } finally {
+                seek(savePos);
+            }
+        }
+    }
+
+    /**
+     * Reads exactly <code>len</code> bytes from this stream into the byte
+     * array, starting at offset <code>pos</code> of the stream rather than
+     * at the current stream pointer.  The stream pointer is not changed.
+     *
+     * @param      pos   the offset in the stream of the first byte read.
+     * @param      b     the buffer into which the data is read.
+     * @param      off   the start offset of the data.
+     * @param      len   the number of bytes to read.
+     * @exception  EOFException  if this stream reaches the end before reading
+     *               all the bytes.
+     * @exception  IOException   if an I/O error occurs.
+     */
+    public final void readFully(long pos, byte[] b, int off, int len)
+        throws IOException {
+        int n = 0;
+        while (n < len) {
+            int count = read(pos + n, b, off + n, len - n);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            n += count;
+        }
+    }
+
     // Methods from DataInput, plus little-endian versions
 
     /**
@@ -71,6 +71,7 @@ public class TIFFDecodeParam implements ImageDecodeParam {
     private boolean decodePaletteAsShorts = false;
     private Long ifdOffset = null;
     private boolean convertJPEGYCbCrToRGB = true;
+    private boolean lazyDirectories = false;
     
     /** Constructs a default instance of <code>TIFFDecodeParam</code>. */
     public TIFFDecodeParam() {
@@ -152,4 +153,26 @@ public class TIFFDecodeParam implements ImageDecodeParam {
     public boolean getJPEGDecompressYCbCrToRGB() {
         return convertJPEGYCbCrToRGB;
     }
+
+    /**
+     * Sets a flag indicating whether Image File Directories (IFDs) are
+     * read lazily.  If <code>true</code>, the values of fields which are
+     * not stored in the IFD entries themselves, such as the tile offset
+     * and byte count arrays, are left in the stream and read on demand,
+     * so that opening a page of a large image is not proportional to
+     * its number of tiles.  The stream must then remain open while the
+     * directory is in use.  The default value is <code>false</code>.
+     *
+     * @see TIFFDirectory#TIFFDirectory(SeekableStream, long, int, boolean)
+     */
+    public void setLazyDirectories(boolean lazyDirectories) {
+        this.lazyDirectories = lazyDirectories;
+    }
+
+    /**
+     * Whether Image File Directories will be read lazily.
+     */
+    public boolean getLazyDirectories() {
+        return lazyDirectories;
+    }
 }
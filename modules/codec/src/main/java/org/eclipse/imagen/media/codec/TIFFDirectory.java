@@ -26,7 +26,9 @@ import java.util.Vector;
 /**
  * A class representing an Image File Directory (IFD) from a TIFF 6.0
  * stream.  The TIFF file format is described in more detail in the
- * comments for the TIFFDescriptor class.
+ * comments for the TIFFDescriptor class.  BigTIFF streams, which use
+ * the magic number 43 and 64-bit offsets and counts, are also
+ * recognized.
  *
  * <p> A TIFF IFD consists of a set of TIFFField tags.  Methods are
  * provided to query the set of tags and to obtain the raw field
@@ -49,6 +51,9 @@ public class TIFFDirectory extends Object implements Serializable {
 
     /** A boolean storing the endianness of the stream. */
     boolean isBigEndian;
+
+    /** Whether the stream is a BigTIFF stream with 64-bit offsets. */
+    boolean isBigTIFF;
     
     /** The number of entries in the IFD. */
     int numEntries;
@@ -84,27 +89,28 @@ public class TIFFDirectory extends Object implements Serializable {
      */
     public TIFFDirectory(SeekableStream stream, int directory)
         throws IOException {
+        this(stream, directory, false);
+    }
 
-        long global_save_offset = stream.getFilePointer();
-        long ifd_offset;
-
-        // Read the TIFF header
-        stream.seek(0L);
-        int endian = stream.readUnsignedShort();
-        if (!isValidEndianTag(endian)) {
-            throw new 
-		IllegalArgumentException(JaiI18N.getString("TIFFDirectory1"));
-        }
-        isBigEndian = (endian == 0x4d4d);
+    /**
+     * Constructs a TIFFDirectory from a SeekableStream, optionally
+     * leaving the field values in the stream until they are requested.
+     * The directory parameter specifies which directory to read from
+     * the linked list present in the stream.
+     *
+     * @param stream a SeekableStream to read from.
+     * @param directory the index of the directory to read.
+     * @param lazy whether the values of fields which are not stored in
+     *        the IFD entries themselves are read on demand.
+     * @see #getField(int)
+     */
+    public TIFFDirectory(SeekableStream stream, int directory, boolean lazy)
+        throws IOException {
 
-        int magic = readUnsignedShort(stream);
-        if (magic != 42) {
-            throw new 
-		IllegalArgumentException(JaiI18N.getString("TIFFDirectory2"));
-        }
+        long global_save_offset = stream.getFilePointer();
 
-        // Get the initial ifd offset as an unsigned int (using a long)
-        ifd_offset = readUnsignedInt(stream);
+        // Read the TIFF header and get the initial ifd offset
+        long ifd_offset = readHeader(stream);
         
         for (int i = 0; i < directory; i++) {
             if (ifd_offset == 0L) {
@@ -112,15 +118,11 @@ public class TIFFDirectory extends Object implements Serializable {
 		   IllegalArgumentException(JaiI18N.getString("TIFFDirectory3"));
             }
             
-            stream.seek(ifd_offset);
-            int entries = readUnsignedShort(stream);
-            stream.skip(12*entries);
-
-            ifd_offset = readUnsignedInt(stream);
+            ifd_offset = readNextIFDOffset(stream, ifd_offset);
         }
 
         stream.seek(ifd_offset);
-        initialize(stream);
+        initialize(stream, lazy);
         stream.seek(global_save_offset);
     }
 
@@ -139,42 +141,91 @@ public class TIFFDirectory extends Object implements Serializable {
      */
     public TIFFDirectory(SeekableStream stream, long ifd_offset, int directory)
         throws IOException {
+        this(stream, ifd_offset, directory, false);
+    }
 
-        long global_save_offset = stream.getFilePointer();
-        stream.seek(0L);
-        int endian = stream.readUnsignedShort();
-        if (!isValidEndianTag(endian)) {
-            throw new 
-		IllegalArgumentException(JaiI18N.getString("TIFFDirectory1"));
-        }
-        isBigEndian = (endian == 0x4d4d);
+    /**
+     * Constructs a TIFFDirectory by reading a SeekableStream from a
+     * given offset, optionally leaving the field values in the stream
+     * until they are requested.  Together with the offsets returned by
+     * <code>getIFDOffsets()</code> this allows any IFD of a stream to
+     * be read without traversing the IFDs preceding it.
+     *
+     * @param stream a SeekableStream to read from.
+     * @param ifd_offset the long byte offset of the directory.
+     * @param directory the index of the directory to read beyond the
+     *        one at the current stream offset; zero indicates the IFD
+     *        at the current offset.
+     * @param lazy whether the values of fields which are not stored in
+     *        the IFD entries themselves are read on demand.
+     * @see #getField(int)
+     */
+    public TIFFDirectory(SeekableStream stream, long ifd_offset, int directory,
+                         boolean lazy)
+        throws IOException {
 
-        // Seek to the first IFD.
-        stream.seek(ifd_offset);
+        long global_save_offset = stream.getFilePointer();
+        readHeader(stream);
 
         // Seek to desired IFD if necessary.
         int dirNum = 0;
         while(dirNum < directory) {
-            // Get the number of fields in the current IFD.
-            int numEntries = readUnsignedShort(stream);
-
-            // Skip to the next IFD offset value field.
-            stream.seek(ifd_offset + 12*numEntries);
-
             // Read the offset to the next IFD beyond this one.
-            ifd_offset = readUnsignedInt(stream);
-
-            // Seek to the next IFD.
-            stream.seek(ifd_offset);
+            ifd_offset = readNextIFDOffset(stream, ifd_offset);
 
             // Increment the directory.
             dirNum++;
         }
 
-        initialize(stream);
+        // Seek to the desired IFD.
+        stream.seek(ifd_offset);
+        initialize(stream, lazy);
         stream.seek(global_save_offset);
     }
 
+    /**
+     * Reads the TIFF or BigTIFF file header, setting the byte order
+     * and format of this directory, and returns the offset of the
+     * first IFD.
+     */
+    private long readHeader(SeekableStream stream) throws IOException {
+        stream.seek(0L);
+        int endian = stream.readUnsignedShort();
+        if (!isValidEndianTag(endian)) {
+            throw new 
+		IllegalArgumentException(JaiI18N.getString("TIFFDirectory1"));
+        }
+        isBigEndian = (endian == 0x4d4d);
+
+        int magic = readUnsignedShort(stream);
+        if (magic == 43) {
+            isBigTIFF = true;
+            int offsetSize = readUnsignedShort(stream);
+            int pad = readUnsignedShort(stream);
+            if (offsetSize != 8 || pad != 0) {
+                throw new 
+		   IllegalArgumentException(JaiI18N.getString("TIFFDirectory5"));
+            }
+        } else if (magic != 42) {
+            throw new 
+		IllegalArgumentException(JaiI18N.getString("TIFFDirectory2"));
+        }
+
+        return readOffset(stream);
+    }
+
+    /**
+     * Returns the offset of the IFD following the one at the given
+     * offset.
+     */
+    private long readNextIFDOffset(SeekableStream stream, long ifd_offset)
+        throws IOException {
+        stream.seek(ifd_offset);
+        long entries = readNumEntries(stream);
+        stream.seek(stream.getFilePointer() + entries*(isBigTIFF ? 20 : 12));
+        return readOffset(stream);
+    }
+
     private static final int[] sizeOfType = {
         0, //  0 = n/a
         1, //  1 = byte
@@ -191,30 +242,42 @@ public class TIFFDirectory extends Object implements Serializable {
         8  // 12 = double 
     };
 
-    private void initialize(SeekableStream stream) throws IOException {
+    static int getSizeOfType(int type) {
+        if (type >= TIFFField.TIFF_LONG8 && type <= TIFFField.TIFF_IFD8) {
+            return 8;
+        }
+        return sizeOfType[type];
+    }
+
+    private void initialize(SeekableStream stream, boolean lazy)
+        throws IOException {
         long nextTagOffset;
-        int i, j;
+        int i;
 
         IFDOffset = stream.getFilePointer();
 
-        numEntries = readUnsignedShort(stream);
+        numEntries = (int)readNumEntries(stream);
         fields = new TIFFField[numEntries];
+
+        // Values up to this many bytes are stored in the entry itself
+        int inlineSize = isBigTIFF ? 8 : 4;
         
         for (i = 0; i < numEntries; i++) {
             int tag = readUnsignedShort(stream);
             int type = readUnsignedShort(stream);
-            int count = (int)(readUnsignedInt(stream));
-            int value = 0;
+            int count = (int)(isBigTIFF ?
+                              readLong(stream) : readUnsignedInt(stream));
 	    
             // The place to return to to read the next tag
-            nextTagOffset = stream.getFilePointer() + 4;
+            nextTagOffset = stream.getFilePointer() + inlineSize;
 
+            boolean isOutOfLine = false;
 	    try {
-		// If the tag data can't fit in 4 bytes, the next 4 bytes
-		// contain the starting offset of the data
-		if (count*sizeOfType[type] > 4) {
-		    value = (int)(readUnsignedInt(stream));
-		    stream.seek(value);
+		// If the tag data can't fit in the entry, the entry
+		// contains the starting offset of the data
+		if ((long)count*getSizeOfType(type) > inlineSize) {
+		    stream.seek(readOffset(stream));
+                    isOutOfLine = true;
 		}
 	    } catch (ArrayIndexOutOfBoundsException ae) {
 
@@ -226,115 +289,21 @@ public class TIFFDirectory extends Object implements Serializable {
 	    }
 
             fieldIndex.put(new Integer(tag), new Integer(i));
-            Object obj = null;
 
-            try {
-                switch (type) {
-                case TIFFField.TIFF_BYTE:
-                case TIFFField.TIFF_SBYTE:
-                case TIFFField.TIFF_UNDEFINED:
-                case TIFFField.TIFF_ASCII:
-                    byte[] bvalues = new byte[count];
-                    stream.readFully(bvalues, 0, count);
-
-                    if (type == TIFFField.TIFF_ASCII) {
-
-                        // Can be multiple strings
-                        int index = 0, prevIndex = 0;
-                        Vector v = new Vector();
+            // The count of ASCII fields is not known before they are read.
+            if (isOutOfLine && lazy && type != TIFFField.TIFF_ASCII) {
+                fields[i] = new TIFFLazyField(tag, type, count, stream,
+                                              stream.getFilePointer(),
+                                              isBigEndian);
+                stream.seek(nextTagOffset);
+                continue;
+            }
 
-                        while (index < count) {
-			
-                            while ((index < count) && (bvalues[index++] != 0));
-
-                            // When we encountered zero, means one string has ended
-                            v.add(new String(bvalues, prevIndex, 
-                                             (index - prevIndex)) );
-                            prevIndex = index;
-                        }
-
-                        count = v.size();
-                        String strings[] = new String[count];
-                        for (int c = 0 ; c < count; c++) {
-                            strings[c] = (String)v.elementAt(c);
-                        }
-
-                        obj = strings;
-                    } else {
-                        obj = bvalues;
-                    }
-
-                    break;
-
-                case TIFFField.TIFF_SHORT:
-                    char[] cvalues = new char[count];
-                    for (j = 0; j < count; j++) {
-                        cvalues[j] = (char)(readUnsignedShort(stream));
-                    }
-                    obj = cvalues;
-                    break;
-                
-                case TIFFField.TIFF_LONG:
-                    long[] lvalues = new long[count];
-                    for (j = 0; j < count; j++) {
-                        lvalues[j] = readUnsignedInt(stream);
-                    }
-                    obj = lvalues;
-                    break;
-                
-                case TIFFField.TIFF_RATIONAL:
-                    long[][] llvalues = new long[count][2];
-                    for (j = 0; j < count; j++) {
-                        llvalues[j][0] = readUnsignedInt(stream);
-                        llvalues[j][1] = readUnsignedInt(stream);
-                    }
-                    obj = llvalues;
-                    break;
-                
-                case TIFFField.TIFF_SSHORT:
-                    short[] svalues = new short[count];
-                    for (j = 0; j < count; j++) {
-                        svalues[j] = readShort(stream);
-                    }
-                    obj = svalues;
-                    break;
-                
-                case TIFFField.TIFF_SLONG:
-                    int[] ivalues = new int[count];
-                    for (j = 0; j < count; j++) {
-                        ivalues[j] = readInt(stream);
-                    }
-                    obj = ivalues;
-                    break;
-                
-                case TIFFField.TIFF_SRATIONAL:
-                    int[][] iivalues = new int[count][2];
-                    for (j = 0; j < count; j++) {
-                        iivalues[j][0] = readInt(stream);
-                        iivalues[j][1] = readInt(stream);
-                    }
-                    obj = iivalues;
-                    break;
-
-                case TIFFField.TIFF_FLOAT:
-                    float[] fvalues = new float[count];
-                    for (j = 0; j < count; j++) {
-                        fvalues[j] = readFloat(stream);
-                    }
-                    obj = fvalues;
-                    break;
-
-                case TIFFField.TIFF_DOUBLE:
-                    double[] dvalues = new double[count];
-                    for (j = 0; j < count; j++) {
-                        dvalues[j] = readDouble(stream);
-                    }
-                    obj = dvalues;
-                    break;
-
-                default:
-                    System.err.println(JaiI18N.getString("TIFFDirectory0"));
-                    break;
+            try {
+                Object obj = readValues(stream, type, count);
+                if (type == TIFFField.TIFF_ASCII) {
+                    // Can be multiple strings
+                    count = ((String[])obj).length;
                 }
 
                 fields[i] = new TIFFField(tag, type, count, obj);
@@ -356,7 +325,138 @@ public class TIFFDirectory extends Object implements Serializable {
         }
 
         // Read the offset of the next IFD.
-        nextIFDOffset = readUnsignedInt(stream);
+        nextIFDOffset = readOffset(stream);
+    }
+
+    /**
+     * Reads <code>count</code> values of the given type from the current
+     * position of the stream and returns them as an array of the Java
+     * type corresponding to the type, as described for the
+     * <code>TIFFField</code> constructor.
+     */
+    Object readValues(SeekableStream stream, int type, int count)
+        throws IOException {
+        Object obj = null;
+        int j;
+
+        switch (type) {
+        case TIFFField.TIFF_BYTE:
+        case TIFFField.TIFF_SBYTE:
+        case TIFFField.TIFF_UNDEFINED:
+        case TIFFField.TIFF_ASCII:
+            byte[] bvalues = new byte[count];
+            stream.readFully(bvalues, 0, count);
+
+            if (type == TIFFField.TIFF_ASCII) {
+
+                // Can be multiple strings
+                int index = 0, prevIndex = 0;
+                Vector v = new Vector();
+
+                while (index < count) {
+			
+                    while ((index < count) && (bvalues[index++] != 0));
+
+                    // When we encountered zero, means one string has ended
+                    v.add(new String(bvalues, prevIndex, 
+                                     (index - prevIndex)) );
+                    prevIndex = index;
+                }
+
+                String strings[] = new String[v.size()];
+                for (int c = 0 ; c < strings.length; c++) {
+                    strings[c] = (String)v.elementAt(c);
+                }
+
+                obj = strings;
+            } else {
+                obj = bvalues;
+            }
+
+            break;
+
+        case TIFFField.TIFF_SHORT:
+            char[] cvalues = new char[count];
+            for (j = 0; j < count; j++) {
+                cvalues[j] = (char)(readUnsignedShort(stream));
+            }
+            obj = cvalues;
+            break;
+        
+        case TIFFField.TIFF_LONG:
+            long[] lvalues = new long[count];
+            for (j = 0; j < count; j++) {
+                lvalues[j] = readUnsignedInt(stream);
+            }
+            obj = lvalues;
+            break;
+        
+        case TIFFField.TIFF_RATIONAL:
+            long[][] llvalues = new long[count][2];
+            for (j = 0; j < count; j++) {
+                llvalues[j][0] = readUnsignedInt(stream);
+                llvalues[j][1] = readUnsignedInt(stream);
+            }
+            obj = llvalues;
+            break;
+        
+        case TIFFField.TIFF_SSHORT:
+            short[] svalues = new short[count];
+            for (j = 0; j < count; j++) {
+                svalues[j] = readShort(stream);
+            }
+            obj = svalues;
+            break;
+        
+        case TIFFField.TIFF_SLONG:
+            int[] ivalues = new int[count];
+            for (j = 0; j < count; j++) {
+                ivalues[j] = readInt(stream);
+            }
+            obj = ivalues;
+            break;
+        
+        case TIFFField.TIFF_SRATIONAL:
+            int[][] iivalues = new int[count][2];
+            for (j = 0; j < count; j++) {
+                iivalues[j][0] = readInt(stream);
+                iivalues[j][1] = readInt(stream);
+            }
+            obj = iivalues;
+            break;
+
+        case TIFFField.TIFF_FLOAT:
+            float[] fvalues = new float[count];
+            for (j = 0; j < count; j++) {
+                fvalues[j] = readFloat(stream);
+            }
+            obj = fvalues;
+            break;
+
+        case TIFFField.TIFF_DOUBLE:
+            double[] dvalues = new double[count];
+            for (j = 0; j < count; j++) {
+                dvalues[j] = readDouble(stream);
+            }
+            obj = dvalues;
+            break;
+
+        case TIFFField.TIFF_LONG8:
+        case TIFFField.TIFF_SLONG8:
+        case TIFFField.TIFF_IFD8:
+            long[] l8values = new long[count];
+            for (j = 0; j < count; j++) {
+                l8values[j] = readLong(stream);
+            }
+            obj = l8values;
+            break;
+
+        default:
+            System.err.println(JaiI18N.getString("TIFFDirectory0"));
+            break;
+        }
+
+        return obj;
     }
 
     /** Returns the number of directory entries. */
@@ -375,7 +475,13 @@ public class TIFFDirectory extends Object implements Serializable {
      * actually contain the offset to the field's value rather than
      * the value itself (the latter occurring if and only if the
      * value fits into 4 bytes).  In other words, the value of the
-     * field will already have been read from the TIFF stream.</p>
+     * field will already have been read from the TIFF stream.  The
+     * exception are, if the directory was constructed in lazy mode,
+     * all fields other than ASCII ones whose value is not stored in
+     * the IFD entry.  The values of these fields are read
+     * from the stream on demand, so the stream must remain open while
+     * they are in use, and a <code>RuntimeException</code> is thrown
+     * if they cannot be read.</p>
      */
     public TIFFField getField(int tag) {
         Integer i = (Integer)fieldIndex.get(new Integer(tag));
@@ -547,41 +653,31 @@ public class TIFFDirectory extends Object implements Serializable {
         }
     }
 
-    private float readFloat(SeekableStream stream)
+    private long readOffset(SeekableStream stream)
         throws IOException {
-        if (isBigEndian) {
-            return stream.readFloat();
-        } else {
-            return stream.readFloatLE();
-        }
+        return isBigTIFF ? readLong(stream) : readUnsignedInt(stream);
     }
 
-    private double readDouble(SeekableStream stream)
+    private long readNumEntries(SeekableStream stream)
         throws IOException {
-        if (isBigEndian) {
-            return stream.readDouble();
-        } else {
-            return stream.readDoubleLE();
-        }
+        return isBigTIFF ? readLong(stream) : readUnsignedShort(stream);
     }
 
-    private static int readUnsignedShort(SeekableStream stream,
-                                         boolean isBigEndian)
+    private float readFloat(SeekableStream stream)
         throws IOException {
         if (isBigEndian) {
-            return stream.readUnsignedShort();
+            return stream.readFloat();
         } else {
-            return stream.readUnsignedShortLE();
+            return stream.readFloatLE();
         }
     }
 
-    private static long readUnsignedInt(SeekableStream stream,
-                                        boolean isBigEndian) 
+    private double readDouble(SeekableStream stream)
         throws IOException {
         if (isBigEndian) {
-            return stream.readUnsignedInt();
+            return stream.readDouble();
         } else {
-            return stream.readUnsignedIntLE();
+            return stream.readDoubleLE();
         }
     }
 
@@ -593,42 +689,48 @@ public class TIFFDirectory extends Object implements Serializable {
      */
     public static int getNumDirectories(SeekableStream stream)
         throws IOException{
+        return getIFDOffsets(stream).length;
+    }
+
+    /**
+     * Returns the offsets of the image directories (subimages) stored
+     * in a given TIFF file, represented by a <code>SeekableStream</code>.
+     * Only the entry count and the link to the next IFD of each
+     * directory are read.  The IFD of any subimage may then be read
+     * directly by passing its offset to the <code>TIFFDirectory</code>
+     * constructors taking an offset.
+     */
+    public static long[] getIFDOffsets(SeekableStream stream)
+        throws IOException {
         long pointer = stream.getFilePointer(); // Save stream pointer
 
-        stream.seek(0L);
-        int endian = stream.readUnsignedShort();
-        if (!isValidEndianTag(endian)) {
-            throw new 
-		IllegalArgumentException(JaiI18N.getString("TIFFDirectory1"));
-        }
-        boolean isBigEndian = (endian == 0x4d4d);
-        int magic = readUnsignedShort(stream, isBigEndian);
-        if (magic != 42) {
-            throw new 
-		IllegalArgumentException(JaiI18N.getString("TIFFDirectory2"));
-        }
-        
-        stream.seek(4L);
-        long offset = readUnsignedInt(stream, isBigEndian);
+        TIFFDirectory dir = new TIFFDirectory();
+        long offset = dir.readHeader(stream);
 
+        long[] offsets = new long[16];
         int numDirectories = 0;
         while (offset != 0L) {
-            ++numDirectories;
-
             // EOFException means IFD was probably not properly terminated.
+            long ifdOffset = offset;
             try {
-                stream.seek(offset);
-                int entries = readUnsignedShort(stream, isBigEndian);
-                stream.skip(12*entries);
-                offset = readUnsignedInt(stream, isBigEndian);
+                offset = dir.readNextIFDOffset(stream, offset);
             } catch(EOFException eof) {
-                numDirectories--;
                 break;
             }
+
+            if (numDirectories == offsets.length) {
+                long[] newOffsets = new long[2*offsets.length];
+                System.arraycopy(offsets, 0, newOffsets, 0, numDirectories);
+                offsets = newOffsets;
+            }
+            offsets[numDirectories++] = ifdOffset;
         }
       
         stream.seek(pointer); // Reset stream pointer
-        return numDirectories;
+
+        long[] result = new long[numDirectories];
+        System.arraycopy(offsets, 0, result, 0, numDirectories);
+        return result;
     }
 
     /**
@@ -640,6 +742,14 @@ public class TIFFDirectory extends Object implements Serializable {
 	return isBigEndian;
     }
 
+    /**
+     * Returns a boolean indicating whether the TIFF file is a BigTIFF
+     * file, i.e. whether it uses 64-bit offsets and counts.
+     */
+    public boolean isBigTIFF() {
+        return isBigTIFF;
+    }
+
     /**
      * Returns the offset of the IFD corresponding to this
      * <code>TIFFDirectory</code>.
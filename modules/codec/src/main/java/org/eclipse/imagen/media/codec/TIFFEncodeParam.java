@@ -65,7 +65,6 @@ public class TIFFEncodeParam implements ImageEncodeParam {
 
     /**
      * LZW compression.
-     * <p><b>Not supported.</b>
      */
     public static final int COMPRESSION_LZW           = 5;
 
@@ -81,6 +80,16 @@ public class TIFFEncodeParam implements ImageEncodeParam {
      */
     public static final int COMPRESSION_DEFLATE       = 32946;
 
+    /** No prediction. */
+    public static final int PREDICTOR_NONE            = 1;
+
+    /**
+     * Horizontal differencing prediction.  Each sample is replaced by
+     * its difference from the corresponding sample of the preceding
+     * pixel in the row before compression.
+     */
+    public static final int PREDICTOR_HORIZONTAL_DIFFERENCING = 2;
+
     private int compression = COMPRESSION_NONE;
 
     private boolean reverseFillOrder = false;
@@ -100,8 +109,14 @@ public class TIFFEncodeParam implements ImageEncodeParam {
 
     private int deflateLevel = Deflater.DEFAULT_COMPRESSION;
 
+    private int predictor = PREDICTOR_NONE;
+
+    private int parallelism = 0;
+
     private boolean isLittleEndian = false;
 
+    private boolean writeBigTIFF = false;
+
     /** 
      * Constructs a TIFFEncodeParam object with default values for
      * all parameters.
@@ -118,7 +133,7 @@ public class TIFFEncodeParam implements ImageEncodeParam {
     /**
      * Specifies the type of compression to be used.  The compression type
      * specified will be honored only if it is compatible with the image
-     * being written out.  Currently only PackBits, JPEG, and DEFLATE
+     * being written out.  Currently only PackBits, JPEG, LZW and DEFLATE
      * compression schemes are supported.
      *
      * <p> If <code>compression</code> is set to any value but
@@ -142,6 +157,7 @@ public class TIFFEncodeParam implements ImageEncodeParam {
         case COMPRESSION_GROUP3_2D:
         case COMPRESSION_GROUP4:
         case COMPRESSION_PACKBITS:
+        case COMPRESSION_LZW:
         case COMPRESSION_JPEG_TTN2:
         case COMPRESSION_DEFLATE:
             // Do nothing.
@@ -339,6 +355,61 @@ public class TIFFEncodeParam implements ImageEncodeParam {
         return deflateLevel;
     }
 
+    /**
+     * Sets the predictor to be applied to the data before compression.
+     * Prediction usually makes continuous-tone images considerably more
+     * compressible.  The predictor is honored only if the compression
+     * type is LZW and the image has 8-bit samples; otherwise it is
+     * ignored.  The default value is <code>PREDICTOR_NONE</code>.
+     *
+     * @throws IllegalArgumentException if <code>predictor</code> is not
+     * one of the defined <code>PREDICTOR_*</code> constants.
+     */
+    public void setPredictor(int predictor) {
+        if(predictor != PREDICTOR_NONE &&
+           predictor != PREDICTOR_HORIZONTAL_DIFFERENCING) {
+	    throw new IllegalArgumentException(JaiI18N.getString("TIFFEncodeParam2"));
+        }
+
+        this.predictor = predictor;
+    }
+
+    /**
+     * Returns the predictor set via <code>setPredictor()</code>.
+     */
+    public int getPredictor() {
+        return predictor;
+    }
+
+    /**
+     * Sets the number of threads used to encode the strips or tiles of
+     * an image.  If positive, that many worker threads retrieve and
+     * compress data segments concurrently while the calling thread
+     * writes the results to the output in order.  The default value is
+     * zero, which means all data are encoded on the calling thread.
+     * This setting is ignored if the compression type is JPEG.
+     *
+     * <p> When a value greater than zero is set, the image being encoded
+     * must support concurrent calls to <code>getData()</code>.
+     *
+     * @throws IllegalArgumentException if <code>parallelism</code> is
+     * negative.
+     */
+    public void setParallelism(int parallelism) {
+        if(parallelism < 0) {
+	    throw new IllegalArgumentException(JaiI18N.getString("TIFFEncodeParam3"));
+        }
+
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the number of threads set via <code>setParallelism()</code>.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
     /**
      * Sets flag indicating whether to convert RGB data to YCbCr when the
      * compression type is JPEG.  The default value is <code>true</code>.
@@ -437,4 +508,24 @@ public class TIFFEncodeParam implements ImageEncodeParam {
     public boolean getLittleEndian() {
         return this.isLittleEndian;
     }
+
+    /**
+     * Sets a flag indicating whether the output stream is written in
+     * the BigTIFF format, which uses 64-bit offsets and byte counts and
+     * so is not limited to 4 GB.  If <code>false</code>, the encoder
+     * still writes BigTIFF if the estimated size of the images being
+     * encoded would exceed the 4 GB limit of classic TIFF.  The default
+     * value is <code>false</code>.
+     */
+    public void setWriteBigTIFF(boolean writeBigTIFF) {
+        this.writeBigTIFF = writeBigTIFF;
+    }
+
+    /**
+     * Returns the value of the flag indicating whether the output stream
+     * is always written in the BigTIFF format.
+     */
+    public boolean getWriteBigTIFF() {
+        return writeBigTIFF;
+    }
 }
@@ -28,7 +28,8 @@ import java.io.Serializable;
  * <p> A field in a TIFF Image File Directory (IFD).  A field is defined
  * as a sequence of values of identical data type.  TIFF 6.0 defines
  * 12 data types, which are mapped internally onto the Java datatypes
- * byte, int, long, float, and double.
+ * byte, int, long, float, and double.  The 64-bit integral types
+ * added by BigTIFF are mapped onto long.
  *
  * <p><b> This class is not a committed part of the JAI API.  It may
  * be removed or changed in future releases of JAI.</b>
@@ -74,6 +75,15 @@ public class TIFFField extends Object implements Comparable, Serializable {
     /** Flag for 64 bit IEEE doubles. */
     public static final int TIFF_DOUBLE    = 12;
 
+    /** Flag for 64 bit unsigned integers (BigTIFF). */
+    public static final int TIFF_LONG8     = 16;
+
+    /** Flag for 64 bit signed integers (BigTIFF). */
+    public static final int TIFF_SLONG8    = 17;
+
+    /** Flag for 64 bit IFD offsets (BigTIFF). */
+    public static final int TIFF_IFD8      = 18;
+
     /** The tag number. */
     int tag;
 
@@ -123,6 +133,12 @@ public class TIFFField extends Object implements Comparable, Serializable {
      * <td><tt>TIFF_FLOAT</tt></td>     <td><tt>float</tt></td>
      * <tr>
      * <td><tt>TIFF_DOUBLE</tt></td>    <td><tt>double</tt></td>
+     * <tr>
+     * <td><tt>TIFF_LONG8</tt></td>     <td><tt>long</tt></td>
+     * <tr>
+     * <td><tt>TIFF_SLONG8</tt></td>    <td><tt>long</tt></td>
+     * <tr>
+     * <td><tt>TIFF_IFD8</tt></td>      <td><tt>long</tt></td>
      * </table>
      *
      * <p>Note that the <code>data</code> parameter should always
@@ -215,11 +231,11 @@ public class TIFFField extends Object implements Comparable, Serializable {
     }
 
     /**
-     * Returns TIFF_LONG data as an array of longs (signed 64-bit
-     * integers).
+     * Returns TIFF_LONG, TIFF_LONG8, TIFF_SLONG8 or TIFF_IFD8 data as
+     * an array of longs (signed 64-bit integers).
      *
      * <p> A ClassCastException will be thrown if the field is not
-     * of type TIFF_LONG.
+     * of type TIFF_LONG, TIFF_LONG8, TIFF_SLONG8 or TIFF_IFD8.
      */
     public long[] getAsLongs() {
         return (long[])data;
@@ -297,7 +313,8 @@ public class TIFFField extends Object implements Comparable, Serializable {
 
     /**
      * Returns data in TIFF_BYTE, TIFF_SBYTE, TIFF_UNDEFINED, TIFF_SHORT,
-     * TIFF_SSHORT, TIFF_SLONG, or TIFF_LONG format as a long.
+     * TIFF_SSHORT, TIFF_SLONG, TIFF_LONG, TIFF_LONG8, TIFF_SLONG8, or
+     * TIFF_IFD8 format as a long.
      *
      * <p> TIFF_BYTE and TIFF_UNDEFINED data are treated as unsigned;
      * that is, no sign extension will take place and the returned
@@ -306,7 +323,8 @@ public class TIFFField extends Object implements Comparable, Serializable {
      *
      * <p> A ClassCastException will be thrown if the field is not of
      * type TIFF_BYTE, TIFF_SBYTE, TIFF_UNDEFINED, TIFF_SHORT,
-     * TIFF_SSHORT, TIFF_SLONG, or TIFF_LONG.
+     * TIFF_SSHORT, TIFF_SLONG, TIFF_LONG, TIFF_LONG8, TIFF_SLONG8, or
+     * TIFF_IFD8.
      */
     public long getAsLong(int index) {
         switch (type) {
@@ -320,7 +338,7 @@ public class TIFFField extends Object implements Comparable, Serializable {
             return ((short[])data)[index];
         case TIFF_SLONG:
             return ((int[])data)[index];
-        case TIFF_LONG:
+        case TIFF_LONG: case TIFF_LONG8: case TIFF_SLONG8: case TIFF_IFD8:
             return ((long[])data)[index];
         default:
             throw new ClassCastException();
@@ -332,8 +350,8 @@ public class TIFFField extends Object implements Comparable, Serializable {
      * TIFF_SRATIONAL or TIFF_RATIONAL format are evaluated by
      * dividing the numerator into the denominator using
      * double-precision arithmetic and then truncating to single
-     * precision.  Data in TIFF_SLONG, TIFF_LONG, or TIFF_DOUBLE
-     * format may suffer from truncation.
+     * precision.  Data in TIFF_SLONG, TIFF_LONG, TIFF_DOUBLE or the
+     * 64-bit integral formats may suffer from truncation.
      *
      * <p> A ClassCastException will be thrown if the field is
      * of type TIFF_UNDEFINED or TIFF_ASCII.
@@ -350,7 +368,7 @@ public class TIFFField extends Object implements Comparable, Serializable {
             return ((short[])data)[index];
         case TIFF_SLONG:
             return ((int[])data)[index];
-        case TIFF_LONG:
+        case TIFF_LONG: case TIFF_LONG8: case TIFF_SLONG8: case TIFF_IFD8:
             return ((long[])data)[index];
         case TIFF_FLOAT:
             return ((float[])data)[index];
@@ -388,7 +406,7 @@ public class TIFFField extends Object implements Comparable, Serializable {
             return ((short[])data)[index];
         case TIFF_SLONG:
             return ((int[])data)[index];
-        case TIFF_LONG:
+        case TIFF_LONG: case TIFF_LONG8: case TIFF_SLONG8: case TIFF_IFD8:
             return ((long[])data)[index];
         case TIFF_FLOAT:
             return ((float[])data)[index];
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.codec;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+
+/**
+ * A <code>TIFFField</code> whose values are left in the stream and
+ * read on demand.  <code>TIFFDirectory</code> uses this class for all
+ * fields stored outside of the IFD entries of a directory read in lazy
+ * mode, such as the strip and tile offset and byte count arrays of
+ * large images, which may hold millions of values of which a decoder
+ * typically needs only a few at a time.
+ *
+ * <p> Single integral values, as requested by <code>getAsInt()</code>,
+ * <code>getAsLong()</code> and so on, are read without locking: a
+ * request following the most recently read window or value reads a
+ * new window of <code>WINDOW_SIZE</code> values, and any other request
+ * outside of that window reads the single value requested.  All other
+ * accessors read the complete array of values the first time they are
+ * called.
+ *
+ * <p> The stream from which the directory was read must remain open
+ * while the field is in use.
+ */
+class TIFFLazyField extends TIFFField {
+
+    /** The number of values read from the stream at a time. */
+    private static final int WINDOW_SIZE = 1024;
+
+    /** The stream containing the values. */
+    private transient SeekableStream stream;
+
+    /** The stream offset of the first value. */
+    private long offset;
+
+    /** Whether the values are stored in big-endian order. */
+    private boolean isBigEndian;
+
+    /** The most recently read window of values, or <code>null</code>. */
+    private transient volatile Window window;
+
+    /**
+     * The index following the value most recently read from the stream;
+     * only a
+     * hint, as it is updated without locking.
+     */
+    private transient volatile int nextIndex = -1;
+
+    /** An immutable run of consecutive values. */
+    private static final class Window {
+
+        /** The index of the first value. */
+        final int start;
+
+        final long[] values;
+
+        Window(int start, long[] values) {
+            this.start = start;
+            this.values = values;
+        }
+    }
+
+    TIFFLazyField(int tag, int type, int count,
+                  SeekableStream stream, long offset, boolean isBigEndian) {
+        super(tag, type, count, null);
+        this.stream = stream;
+        this.offset = offset;
+        this.isBigEndian = isBigEndian;
+    }
+
+    /**
+     * Returns whether single values of the type of this field are read
+     * without reading the complete array.
+     */
+    private boolean isWindowed() {
+        switch (type) {
+        case TIFF_BYTE:
+        case TIFF_SBYTE:
+        case TIFF_UNDEFINED:
+        case TIFF_SHORT:
+        case TIFF_SSHORT:
+        case TIFF_LONG:
+        case TIFF_SLONG:
+        case TIFF_LONG8:
+        case TIFF_SLONG8:
+        case TIFF_IFD8:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /** Reads <code>len</code> bytes starting at byte <code>pos</code>. */
+    private byte[] readBytes(long pos, int len) {
+        byte[] b = new byte[len];
+        try {
+            stream.readFully(offset + pos, b, 0, len);
+        } catch (IOException e) {
+            throw new RuntimeException(JaiI18N.getString("TIFFLazyField0"),
+                                       e);
+        }
+        return b;
+    }
+
+    /**
+     * Reads <code>num</code> values starting at value <code>start</code>
+     * into <code>values</code>.
+     */
+    private void readWindow(int start, int num, long[] values) {
+        int size = TIFFDirectory.getSizeOfType(type);
+        byte[] b = readBytes((long)start*size, num*size);
+
+        for (int i = 0, p = 0; i < num; i++) {
+            long v = 0L;
+            if (isBigEndian) {
+                for (int k = 0; k < size; k++) {
+                    v = (v << 8) | (b[p + k] & 0xff);
+                }
+            } else {
+                for (int k = size - 1; k >= 0; k--) {
+                    v = (v << 8) | (b[p + k] & 0xff);
+                }
+            }
+            switch (type) {
+            case TIFF_SBYTE:
+                v = (byte)v;
+                break;
+            case TIFF_SSHORT:
+                v = (short)v;
+                break;
+            case TIFF_SLONG:
+                v = (int)v;
+                break;
+            }
+            values[i] = v;
+            p += size;
+        }
+    }
+
+    /** Reads all values into <code>data</code> if not yet done. */
+    private synchronized void load() {
+        if (data != null) {
+            return;
+        }
+
+        byte[] b = readBytes(0L, count*TIFFDirectory.getSizeOfType(type));
+        TIFFDirectory dir = new TIFFDirectory();
+        dir.isBigEndian = isBigEndian;
+        try {
+            data = dir.readValues(new ByteArraySeekableStream(b),
+                                  type, count);
+        } catch (IOException e) {
+            throw new RuntimeException(JaiI18N.getString("TIFFLazyField0"),
+                                       e);
+        }
+    }
+
+    public byte[] getAsBytes() {
+        load();
+        return super.getAsBytes();
+    }
+
+    public char[] getAsChars() {
+        load();
+        return super.getAsChars();
+    }
+
+    public short[] getAsShorts() {
+        load();
+        return super.getAsShorts();
+    }
+
+    public int[] getAsInts() {
+        load();
+        return super.getAsInts();
+    }
+
+    public long[] getAsLongs() {
+        load();
+        return super.getAsLongs();
+    }
+
+    public float[] getAsFloats() {
+        load();
+        return super.getAsFloats();
+    }
+
+    public double[] getAsDoubles() {
+        load();
+        return super.getAsDoubles();
+    }
+
+    public int[][] getAsSRationals() {
+        load();
+        return super.getAsSRationals();
+    }
+
+    public long[][] getAsRationals() {
+        load();
+        return super.getAsRationals();
+    }
+
+    public int getAsInt(int index) {
+        switch (type) {
+        case TIFF_BYTE:
+        case TIFF_SBYTE:
+        case TIFF_UNDEFINED:
+        case TIFF_SHORT:
+        case TIFF_SSHORT:
+        case TIFF_SLONG:
+            return (int)getAsLong(index);
+        default:
+            throw new ClassCastException();
+        }
+    }
+
+    public long getAsLong(int index) {
+        if (data != null || !isWindowed()) {
+            load();
+            return super.getAsLong(index);
+        }
+        if (index < 0 || index >= count) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+
+        Window w = window;
+        if (w != null &&
+            index >= w.start && index < w.start + w.values.length) {
+            return w.values[index - w.start];
+        }
+
+        // Sequential requests read ahead; others read a single value.
+        boolean isSequential = w == null ||
+            index == w.start + w.values.length || index == nextIndex;
+        nextIndex = index + 1;
+        if (isSequential) {
+            long[] values = new long[Math.min(WINDOW_SIZE, count - index)];
+            readWindow(index, values.length, values);
+            window = new Window(index, values);
+            return values[0];
+        }
+
+        long[] value = new long[1];
+        readWindow(index, 1, value);
+        return value[0];
+    }
+
+    public float getAsFloat(int index) {
+        if (isWindowed() && type != TIFF_UNDEFINED) {
+            return getAsLong(index);
+        }
+        load();
+        return super.getAsFloat(index);
+    }
+
+    public double getAsDouble(int index) {
+        if (isWindowed() && type != TIFF_UNDEFINED) {
+            return getAsLong(index);
+        }
+        load();
+        return super.getAsDouble(index);
+    }
+
+    public int[] getAsSRational(int index) {
+        load();
+        return super.getAsSRational(index);
+    }
+
+    public long[] getAsRational(int index) {
+        load();
+        return super.getAsRational(index);
+    }
+
+    /**
+     * Serializes the field as a plain <code>TIFFField</code> holding
+     * all of its values, as the stream cannot be serialized.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        load();
+        return new TIFFField(tag, type, count, data);
+    }
+}
@@ -20,10 +20,7 @@ import java.awt.image.DataBuffer;
 import java.awt.image.PixelInterleavedSampleModel;
 import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.InputStream;
-import java.io.IOException;
 import java.io.OutputStream;
 import org.eclipse.imagen.media.codec.ImageCodec;
 import org.eclipse.imagen.media.codec.ImageDecoder;
@@ -92,12 +89,6 @@ public final class BMPCodec extends ImageCodec {
         return new BMPImageDecoder(src, null);
     }
 
-    protected ImageDecoder createImageDecoder(File src,
-                                              ImageDecodeParam param) 
-        throws IOException {
-        return new BMPImageDecoder(new FileInputStream(src), null);
-    }
-
     protected ImageDecoder createImageDecoder(SeekableStream src,
                                               ImageDecodeParam param) {
         return new BMPImageDecoder(src, null);
@@ -17,6 +17,7 @@
 
 package org.eclipse.imagen.media.codecimpl;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Transparency;
 import java.awt.color.ColorSpace;
@@ -33,6 +34,7 @@ import java.awt.image.MultiPixelPackedSampleModel;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.io.IOException;
 import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.InputStream;
 import java.util.Hashtable;
 import java.util.Enumeration;
@@ -41,6 +43,7 @@ import org.eclipse.imagen.media.codec.ImageCodec;
 import org.eclipse.imagen.media.codec.ImageDecoder;
 import org.eclipse.imagen.media.codec.ImageDecoderImpl;
 import org.eclipse.imagen.media.codec.ImageDecodeParam;
+import org.eclipse.imagen.media.codec.SeekableStream;
 import org.eclipse.imagen.media.codecimpl.ImagingListenerProxy;
 import org.eclipse.imagen.media.codecimpl.util.ImagingException;
 import org.eclipse.imagen.media.codecimpl.util.RasterFactory;
@@ -50,6 +53,10 @@ import org.eclipse.imagen.media.codecimpl.util.RasterFactory;
  */
 public class BMPImageDecoder extends ImageDecoderImpl {
 
+    public BMPImageDecoder(SeekableStream input, ImageDecodeParam param) {
+        super(input, param);
+    }
+
     public BMPImageDecoder(InputStream input, ImageDecodeParam param) {
         super(input, param);
     }
@@ -59,7 +66,16 @@ public class BMPImageDecoder extends ImageDecoderImpl {
             throw new IOException(JaiI18N.getString("BMPImageDecoder8"));
         }
         try {
-            return new BMPImage(input);
+            BMPImage image = new BMPImage(input);
+            if (!isSourceRegionSet()) {
+                return image;
+            } else if (!image.canDecodeSourceRegion()) {
+                return applySourceRegion(image);
+            }
+            image.setSourceRegion(computeSourceRegion(image.getBounds()),
+                                  getSourceXSubsampling(),
+                                  getSourceYSubsampling());
+            return image;
         } catch(Exception e) {
             throw CodecUtils.toIOException(e);
         }
@@ -115,6 +131,13 @@ class BMPImage extends SimpleRenderedImage {
 
     private WritableRaster theTile = null;
 
+    // Source region and subsampling, if set
+    private Rectangle sourceRegion = null;
+    private int xSubsampling = 1;
+    private int ySubsampling = 1;
+    private int sourceWidth;
+    private int sourceHeight;
+
     /**
      * Constructor for BMPImage
      *
@@ -1088,6 +1111,141 @@ class BMPImage extends SimpleRenderedImage {
 	return val;
     }
 
+    /**
+     * Returns true if the pixel data are uncompressed, in which case
+     * a source region may be decoded directly from the stream.
+     */
+    boolean canDecodeSourceRegion() {
+	return (compression == BI_RGB || compression == BI_BITFIELDS) &&
+	    (bitsPerPixel == 1 || bitsPerPixel == 4 || bitsPerPixel == 8 ||
+	     bitsPerPixel == 16 || bitsPerPixel == 24 || bitsPerPixel == 32);
+    }
+
+    /**
+     * Restricts decoding to a subsampled region of the image.  Must be
+     * called before the tile is computed and only if
+     * <code>canDecodeSourceRegion()</code> returns true.
+     */
+    void setSourceRegion(Rectangle region,
+			 int xSubsampling, int ySubsampling) {
+	this.sourceRegion = region;
+	this.xSubsampling = xSubsampling;
+	this.ySubsampling = ySubsampling;
+	this.sourceWidth = width;
+	this.sourceHeight = height;
+
+	tileWidth = width = (region.width + xSubsampling - 1)/xSubsampling;
+	tileHeight = height = (region.height + ySubsampling - 1)/ySubsampling;
+	sampleModel = sampleModel.createCompatibleSampleModel(width, height);
+    }
+
+    // Read only the selected scanlines and unpack only the selected
+    // pixels of each into the tile.
+    private void readSourceRegion(WritableRaster tile) {
+	int bytesPerScanline = ((sourceWidth*bitsPerPixel + 31)/32)*4;
+	byte values[] = new byte[bytesPerScanline];
+
+	DataBuffer dataBuffer = tile.getDataBuffer();
+	byte bdata[] = null;
+	short sdata[] = null;
+	int idata[] = null;
+	if (dataBuffer instanceof DataBufferByte) {
+	    bdata = ((DataBufferByte)dataBuffer).getData();
+	} else if (dataBuffer instanceof DataBufferUShort) {
+	    sdata = ((DataBufferUShort)dataBuffer).getData();
+	} else {
+	    idata = ((DataBufferInt)dataBuffer).getData();
+	}
+	int lineStride = bitsPerPixel < 8 ?
+	    ((MultiPixelPackedSampleModel)sampleModel).getScanlineStride() :
+	    width*(bitsPerPixel == 24 ? 3 : 1);
+
+	try {
+	    // Scanlines are visited in the order they are stored.
+	    long nextRow = 0;
+	    for (int k = 0; k < height; k++) {
+		int j = isBottomUp ? height - 1 - k : k;
+		int y = sourceRegion.y + j*ySubsampling;
+		long row = isBottomUp ? sourceHeight - 1 - y : y;
+
+		long n = (row - nextRow)*bytesPerScanline;
+		while (n > 0) {
+		    long skipped = inputStream.skip(n);
+		    if (skipped <= 0) {
+			if (inputStream.read() == -1) {
+			    throw new EOFException();
+			}
+			skipped = 1;
+		    }
+		    n -= skipped;
+		}
+		int off = 0;
+		while (off < bytesPerScanline) {
+		    int read = inputStream.read(values, off,
+						bytesPerScanline - off);
+		    if (read < 0) {
+			throw new EOFException();
+		    }
+		    off += read;
+		}
+		nextRow = row + 1;
+
+		int l = j*lineStride;
+		int x = sourceRegion.x;
+		switch (bitsPerPixel) {
+		case 1:
+		    for (int i = 0; i < width; i++, x += xSubsampling) {
+			int bit = (values[x >> 3] >> (7 - (x & 7))) & 0x1;
+			bdata[l + (i >> 3)] |= (byte)(bit << (7 - (i & 7)));
+		    }
+		    break;
+
+		case 4:
+		    for (int i = 0; i < width; i++, x += xSubsampling) {
+			int nibble = (values[x >> 1] >> (4*(1 - (x & 1)))) & 0xf;
+			bdata[l + (i >> 1)] |= (byte)(nibble << (4*(1 - (i & 1))));
+		    }
+		    break;
+
+		case 8:
+		    for (int i = 0; i < width; i++, x += xSubsampling) {
+			bdata[l++] = values[x];
+		    }
+		    break;
+
+		case 16:
+		    for (int i = 0; i < width; i++, x += xSubsampling) {
+			sdata[l++] = (short)((values[2*x] & 0xff) |
+					     (values[2*x + 1] & 0xff) << 8);
+		    }
+		    break;
+
+		case 24:
+		    for (int i = 0; i < width; i++, x += xSubsampling) {
+			bdata[l++] = values[3*x];
+			bdata[l++] = values[3*x + 1];
+			bdata[l++] = values[3*x + 2];
+		    }
+		    break;
+
+		case 32:
+		    for (int i = 0; i < width; i++, x += xSubsampling) {
+			idata[l++] = (values[4*x] & 0xff) |
+			    (values[4*x + 1] & 0xff) << 8 |
+			    (values[4*x + 2] & 0xff) << 16 |
+			    (values[4*x + 3] & 0xff) << 24;
+		    }
+		    break;
+		}
+	    }
+	} catch (IOException ioe) {
+            String message = JaiI18N.getString("BMPImageDecoder6");
+            ImagingListenerProxy.errorOccurred(message,
+                                   new ImagingException(message, ioe),
+                                   this, false);
+	}
+    }
+
     private boolean isEven(int number) {
 	return (number%2 == 0 ? true : false);
     }
@@ -1167,6 +1325,12 @@ class BMPImage extends SimpleRenderedImage {
 	else if (sampleModel.getDataType() == DataBuffer.TYPE_INT)
 	    idata = (int[])((DataBufferInt)tile.getDataBuffer()).getData();
 
+	if (sourceRegion != null) {
+	    readSourceRegion(tile);
+	    theTile = tile;
+	    return tile;
+	}
+
 	// There should only be one tile.
 	switch(imageType) {
 
@@ -41,7 +41,8 @@ public class FPXImageDecoder extends ImageDecoderImpl {
             throw new IOException(JaiI18N.getString("FPXImageDecoder0"));
         }
         try {
-            return new FPXImage(input, (FPXDecodeParam)param);
+            return applySourceRegion(new FPXImage(input,
+                                                  (FPXDecodeParam)param));
         } catch(Exception e) {
             throw CodecUtils.toIOException(e);
         }
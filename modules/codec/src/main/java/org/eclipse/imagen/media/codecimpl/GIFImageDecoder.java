@@ -135,7 +135,7 @@ public class GIFImageDecoder extends ImageDecoderImpl {
         // Attempt to get the image from the cache.
         Integer pageKey = new Integer(page);
         if(images.containsKey(pageKey)) {
-            return (RenderedImage)images.get(pageKey);
+            return applySourceRegion((RenderedImage)images.get(pageKey));
         }
 
         // If the zeroth image, set the global color table.
@@ -187,7 +187,7 @@ public class GIFImageDecoder extends ImageDecoderImpl {
             }
         }
 
-        return image;
+        return image == null ? null : applySourceRegion(image);
     }
 }
 
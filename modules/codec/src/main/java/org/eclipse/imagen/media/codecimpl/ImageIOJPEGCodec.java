@@ -0,0 +1,604 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.codecimpl;
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.plugins.jpeg.JPEGHuffmanTable;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.plugins.jpeg.JPEGQTable;
+import javax.imageio.spi.ImageReaderWriterSpi;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import org.eclipse.imagen.media.codec.JPEGEncodeParam;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * JPEG encoding and decoding based on the JPEG plug-in of the Image I/O
+ * API, which may be used by any number of threads concurrently.
+ *
+ * <p> An Image I/O reader or writer may only be used by one thread at a
+ * time, so each thread keeps its own instances, and no lock is shared
+ * between threads.  The instances of a thread, and the native state of
+ * the plug-in they hold, are kept until <code>dispose()</code> is
+ * called on that thread or the thread terminates; threads of a pool
+ * which no longer need to code JPEG data should therefore call
+ * <code>dispose()</code>.  The settings of a
+ * <code>JPEGEncodeParam</code> are mapped onto the native image
+ * metadata of the plug-in.
+ *
+ * <p> Images are converted between RGB and YCbCr as described by the
+ * JFIF specification.  <code>Raster</code>s are encoded and decoded
+ * without color conversion.
+ */
+public final class ImageIOJPEGCodec {
+
+    private static final String NATIVE_FORMAT =
+        "javax_imageio_jpeg_image_1.0";
+
+    /** The natural order index of each coefficient in zig-zag order. */
+    private static final int[] ZIGZAG = {
+         0,  1,  8, 16,  9,  2,  3, 10,
+        17, 24, 32, 25, 18, 11,  4,  5,
+        12, 19, 26, 33, 40, 48, 41, 34,
+        27, 20, 13,  6,  7, 14, 21, 28,
+        35, 42, 49, 56, 57, 50, 43, 36,
+        29, 22, 15, 23, 30, 37, 44, 51,
+        58, 59, 52, 45, 38, 31, 39, 46,
+        53, 60, 61, 54, 47, 55, 62, 63
+    };
+
+    private static final JPEGHuffmanTable[] DC_TABLES = {
+        JPEGHuffmanTable.StdDCLuminance, JPEGHuffmanTable.StdDCChrominance
+    };
+
+    private static final JPEGHuffmanTable[] AC_TABLES = {
+        JPEGHuffmanTable.StdACLuminance, JPEGHuffmanTable.StdACChrominance
+    };
+
+    /**
+     * The reader of each thread, created on first use and released by
+     * <code>dispose()</code>.
+     */
+    private static final ThreadLocal readers = new ThreadLocal();
+
+    /**
+     * The writer of each thread, created on first use and released by
+     * <code>dispose()</code>.
+     */
+    private static final ThreadLocal writers = new ThreadLocal();
+
+    private ImageIOJPEGCodec() {}
+
+    /**
+     * Returns the first plug-in supporting the JDK native metadata
+     * format, or the first plug-in if none does.
+     */
+    private static Object getPlugin(Iterator iter) {
+        Object first = null;
+        while (iter.hasNext()) {
+            Object plugin = iter.next();
+            ImageReaderWriterSpi spi = plugin instanceof ImageReader ?
+                (ImageReaderWriterSpi)
+                ((ImageReader)plugin).getOriginatingProvider() :
+                (ImageReaderWriterSpi)
+                ((ImageWriter)plugin).getOriginatingProvider();
+            if (spi != null &&
+                NATIVE_FORMAT.equals(spi.getNativeImageMetadataFormatName())) {
+                return plugin;
+            }
+            if (first == null) {
+                first = plugin;
+            }
+        }
+        return first;
+    }
+
+    private static ImageReader getReader() {
+        ImageReader reader = (ImageReader)readers.get();
+        if (reader == null) {
+            reader = (ImageReader)
+                getPlugin(ImageIO.getImageReadersByFormatName("jpeg"));
+            if (reader == null) {
+                throw new RuntimeException(
+                    JaiI18N.getString("ImageIOJPEGCodec0"));
+            }
+            readers.set(reader);
+        }
+        return reader;
+    }
+
+    private static ImageWriter getWriter() {
+        ImageWriter writer = (ImageWriter)writers.get();
+        if (writer == null) {
+            writer = (ImageWriter)
+                getPlugin(ImageIO.getImageWritersByFormatName("jpeg"));
+            if (writer == null) {
+                throw new RuntimeException(
+                    JaiI18N.getString("ImageIOJPEGCodec0"));
+            }
+            writers.set(writer);
+        }
+        return writer;
+    }
+
+    /**
+     * Disposes of the Image I/O reader and writer of the calling thread,
+     * if any, releasing the native resources they hold.  New instances
+     * are created if the thread codes JPEG data again.
+     */
+    public static void dispose() {
+        ImageReader reader = (ImageReader)readers.get();
+        if (reader != null) {
+            readers.remove();
+            reader.dispose();
+        }
+
+        ImageWriter writer = (ImageWriter)writers.get();
+        if (writer != null) {
+            writers.remove();
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Decodes a JPEG stream into an image, converting YCbCr data to RGB.
+     *
+     * @param input The stream positioned at the start of the JPEG data.
+     *        It is not closed.
+     */
+    public static BufferedImage decode(InputStream input)
+        throws IOException {
+        return decode(input, null, 1, 1);
+    }
+
+    /**
+     * Decodes a subsampled region of a JPEG stream into an image,
+     * converting YCbCr data to RGB.  Pixel (i, j) of the image is the
+     * source pixel at (x + i*xSubsampling, y + j*ySubsampling) where
+     * (x, y) is the upper left corner of the region.  The plug-in
+     * applies the region and subsampling as it reads the scanlines, so
+     * no image of the full size is allocated.
+     *
+     * @param input The stream positioned at the start of the JPEG data.
+     *        It is not closed.
+     * @param sourceRegion The source region, which is clipped to the
+     *        image bounds, or <code>null</code> for the entire image.
+     * @throws IllegalArgumentException if the region does not
+     *         intersect the image.
+     */
+    public static BufferedImage decode(InputStream input,
+                                       Rectangle sourceRegion,
+                                       int xSubsampling, int ySubsampling)
+        throws IOException {
+        ImageReader reader = getReader();
+        ImageInputStream stream = new MemoryCacheImageInputStream(input);
+        try {
+            reader.setInput(stream, true, true);
+            ImageReadParam param = null;
+            if (sourceRegion != null ||
+                xSubsampling != 1 || ySubsampling != 1) {
+                param = reader.getDefaultReadParam();
+                if (sourceRegion != null) {
+                    sourceRegion = sourceRegion.intersection(
+                        new Rectangle(0, 0, reader.getWidth(0),
+                                      reader.getHeight(0)));
+                    if (sourceRegion.isEmpty()) {
+                        throw new IllegalArgumentException(JaiI18N.getString("ImageIOJPEGCodec1"));
+                    }
+                }
+                param.setSourceRegion(sourceRegion);
+                param.setSourceSubsampling(xSubsampling, ySubsampling,
+                                           0, 0);
+            }
+            return reader.read(0, param);
+        } finally {
+            reader.reset();
+            stream.close();
+        }
+    }
+
+    /**
+     * Decodes a JPEG stream into a <code>Raster</code> without color
+     * conversion.
+     *
+     * @param input The stream positioned at the start of the JPEG data.
+     *        It is not closed.
+     * @param streamParam If not <code>null</code>, it is set to the
+     *        subsampling, quantization tables, restart interval and
+     *        markers found in the stream.
+     */
+    public static Raster decodeAsRaster(InputStream input,
+                                        JPEGEncodeParam streamParam)
+        throws IOException {
+        ImageReader reader = getReader();
+        ImageInputStream stream = new MemoryCacheImageInputStream(input);
+        try {
+            reader.setInput(stream, true, streamParam == null);
+            Raster raster = reader.readRaster(0, null);
+            if (streamParam != null) {
+                IIOMetadata metadata = reader.getImageMetadata(0);
+                if (metadata != null) {
+                    getStreamParam((IIOMetadataNode)
+                                   metadata.getAsTree(NATIVE_FORMAT),
+                                   raster.getNumBands(), streamParam);
+                }
+            }
+            return raster;
+        } finally {
+            reader.reset();
+            stream.close();
+        }
+    }
+
+    /**
+     * Encodes a grayscale or RGB image, converting RGB data to YCbCr.
+     *
+     * @param image The image to encode.
+     * @param output The stream to write to.  It is not closed.
+     * @param param The encoding parameters, or <code>null</code> for
+     *        the defaults.
+     */
+    public static void encode(BufferedImage image, OutputStream output,
+                              JPEGEncodeParam param) throws IOException {
+        ImageTypeSpecifier type = new ImageTypeSpecifier(image);
+        encode(new IIOImage(image, null, null), type,
+               image.getSampleModel().getNumBands(), true, output, param);
+    }
+
+    /**
+     * Encodes the bands of a byte <code>Raster</code> as the
+     * components of a JPEG stream without color conversion.
+     *
+     * @param raster The <code>Raster</code> to encode.
+     * @param output The stream to write to.  It is not closed.
+     * @param param The encoding parameters, or <code>null</code> for
+     *        the defaults.
+     */
+    public static void encode(Raster raster, OutputStream output,
+                              JPEGEncodeParam param) throws IOException {
+        int numBands = raster.getNumBands();
+        ImageTypeSpecifier type = numBands < 3 ?
+            ImageTypeSpecifier.createGrayscale(8, DataBuffer.TYPE_BYTE,
+                                               false) :
+            ImageTypeSpecifier.createInterleaved(
+                ColorSpace.getInstance(ColorSpace.CS_sRGB),
+                new int[] {0, 1, 2}, DataBuffer.TYPE_BYTE, false, false);
+        // The writer requires the Raster to have its origin at (0, 0).
+        if (raster.getMinX() != 0 || raster.getMinY() != 0) {
+            raster = raster.createTranslatedChild(0, 0);
+        }
+        encode(new IIOImage(raster, null, null), type, numBands, false,
+               output, param);
+    }
+
+    private static void encode(IIOImage image, ImageTypeSpecifier type,
+                               int numBands, boolean isColorConverted,
+                               OutputStream output,
+                               JPEGEncodeParam param) throws IOException {
+        if (param == null) {
+            param = new JPEGEncodeParam();
+        }
+
+        int[] slots = new int[numBands];
+        JPEGQTable[] qTables = getQTables(param, slots);
+
+        JPEGImageWriteParam writeParam = new JPEGImageWriteParam(null);
+        writeParam.setEncodeTables(qTables, DC_TABLES, AC_TABLES);
+
+        ImageWriter writer = getWriter();
+        ImageOutputStream stream = new MemoryCacheImageOutputStream(output);
+        try {
+            writer.setOutput(stream);
+            if (param.getWriteTablesOnly()) {
+                // An abbreviated stream holding only the tables.
+                writer.prepareWriteSequence(
+                    writer.getDefaultStreamMetadata(writeParam));
+                writer.endWriteSequence();
+            } else {
+                IIOMetadata metadata =
+                    writer.getDefaultImageMetadata(type, null);
+                IIOMetadataNode root =
+                    (IIOMetadataNode)metadata.getAsTree(NATIVE_FORMAT);
+                setStreamParam(root, numBands, isColorConverted,
+                               param, slots, qTables);
+                metadata.setFromTree(NATIVE_FORMAT, root);
+                image.setMetadata(metadata);
+                writer.write(null, image, writeParam);
+            }
+            stream.flush();
+        } finally {
+            writer.reset();
+            stream.close();
+        }
+    }
+
+    /**
+     * Returns the quantization tables indexed by table slot, and stores
+     * the slot used by each component.  Tables which are not set
+     * explicitly are the standard tables scaled to the quality setting.
+     */
+    private static JPEGQTable[] getQTables(JPEGEncodeParam param,
+                                           int[] slots) {
+        int maxSlot = 0;
+        for (int i = 0; i < slots.length; i++) {
+            if (i < 4 && param.isQTableSet(i)) {
+                slots[i] = param.getQTableSlot(i);
+            } else {
+                slots[i] = i == 0 ? 0 : 1;
+            }
+            maxSlot = Math.max(maxSlot, slots[i]);
+        }
+
+        // The linear scale factor corresponding to the quality setting,
+        // as defined by the Independent JPEG Group.
+        float quality = Math.min(Math.max(param.getQuality(), 0.01F), 1.0F);
+        float scale = quality < 0.5F ?
+            0.5F/quality : 2.0F - quality*2.0F;
+
+        JPEGQTable[] qTables = new JPEGQTable[maxSlot + 1];
+        for (int i = 0; i < qTables.length; i++) {
+            qTables[i] = i == 0 ?
+                JPEGQTable.K1Luminance.getScaledInstance(scale, true) :
+                JPEGQTable.K2Chrominance.getScaledInstance(scale, true);
+        }
+
+        for (int i = 0; i < slots.length && i < 4; i++) {
+            if (param.isQTableSet(i)) {
+                int[] zigzag = param.getQTable(i);
+                int[] table = new int[64];
+                for (int j = 0; j < 64; j++) {
+                    table[ZIGZAG[j]] = zigzag[j];
+                }
+                qTables[slots[i]] = new JPEGQTable(table);
+            }
+        }
+
+        return qTables;
+    }
+
+    /**
+     * Sets the native image metadata tree according to the encoding
+     * parameters.
+     */
+    private static void setStreamParam(IIOMetadataNode root, int numBands,
+                                       boolean isColorConverted,
+                                       JPEGEncodeParam param, int[] slots,
+                                       JPEGQTable[] qTables) {
+        IIOMetadataNode variety = getChild(root, "JPEGvariety");
+        IIOMetadataNode markers = getChild(root, "markerSequence");
+        IIOMetadataNode sof = getChild(markers, "sof");
+        IIOMetadataNode sos = getChild(markers, "sos");
+
+        // Add any components missing from the template, using the
+        // Huffman tables of the last one.
+        NodeList componentSpecs = sof.getElementsByTagName("componentSpec");
+        NodeList scanSpecs = sos.getElementsByTagName("scanComponentSpec");
+        for (int i = componentSpecs.getLength(); i < numBands; i++) {
+            IIOMetadataNode spec = copyNode(
+                componentSpecs.item(componentSpecs.getLength() - 1));
+            spec.setAttribute("componentId", Integer.toString(i + 1));
+            sof.appendChild(spec);
+
+            IIOMetadataNode scanSpec =
+                copyNode(scanSpecs.item(scanSpecs.getLength() - 1));
+            scanSpec.setAttribute("componentSelector", Integer.toString(i + 1));
+            sos.appendChild(scanSpec);
+        }
+        componentSpecs = sof.getElementsByTagName("componentSpec");
+        sof.setAttribute("numFrameComponents", Integer.toString(numBands));
+        sos.setAttribute("numScanComponents", Integer.toString(numBands));
+
+        // The sampling factors are the inverse of the subsampling
+        // factors relative to their least common multiple.
+        int[] hSub = new int[numBands];
+        int[] vSub = new int[numBands];
+        int hLcm = 1;
+        int vLcm = 1;
+        for (int i = 0; i < numBands; i++) {
+            hSub[i] = i < 4 ? param.getHorizontalSubsampling(i) : 1;
+            vSub[i] = i < 4 ? param.getVerticalSubsampling(i) : 1;
+            if (numBands == 1) {
+                hSub[i] = vSub[i] = 1;
+            }
+            hLcm = lcm(hLcm, hSub[i]);
+            vLcm = lcm(vLcm, vSub[i]);
+        }
+        for (int i = 0; i < numBands; i++) {
+            IIOMetadataNode spec = (IIOMetadataNode)componentSpecs.item(i);
+            spec.setAttribute("HsamplingFactor",
+                              Integer.toString(hLcm/hSub[i]));
+            spec.setAttribute("VsamplingFactor",
+                              Integer.toString(vLcm/vSub[i]));
+            spec.setAttribute("QtableSelector", Integer.toString(slots[i]));
+        }
+
+        // Quantization tables
+        IIOMetadataNode dqt = getChild(markers, "dqt");
+        while (dqt.hasChildNodes()) {
+            dqt.removeChild(dqt.getFirstChild());
+        }
+        for (int i = 0; i < qTables.length; i++) {
+            IIOMetadataNode table = new IIOMetadataNode("dqtable");
+            table.setAttribute("elementPrecision", "0");
+            table.setAttribute("qtableId", Integer.toString(i));
+            table.setUserObject(qTables[i]);
+            dqt.appendChild(table);
+        }
+
+        // Restart interval
+        if (param.getRestartInterval() > 0) {
+            IIOMetadataNode dri = new IIOMetadataNode("dri");
+            dri.setAttribute("interval",
+                             Integer.toString(param.getRestartInterval()));
+            markers.insertBefore(dri, sof);
+        }
+
+        // JFIF allows only 1 or 3 components.
+        if (!param.getWriteJFIFHeader() || (numBands != 1 && numBands != 3)) {
+            while (variety.hasChildNodes()) {
+                variety.removeChild(variety.getFirstChild());
+            }
+
+            // Without a JFIF marker the writer would not convert RGB data
+            // which is not subsampled, whereas readers would assume YCbCr,
+            // so the conversion is signalled by an Adobe marker instead.
+            if (isColorConverted && numBands == 3) {
+                IIOMetadataNode adobe = new IIOMetadataNode("app14Adobe");
+                adobe.setAttribute("version", "100");
+                adobe.setAttribute("flags0", "0");
+                adobe.setAttribute("flags1", "0");
+                adobe.setAttribute("transform", "1");
+                markers.insertBefore(adobe, markers.getFirstChild());
+            }
+        }
+
+        // Omitting the tables yields an abbreviated stream holding only
+        // the image, which is encoded with the tables of the write
+        // parameters.
+        if (param.getWriteImageOnly()) {
+            NodeList children = markers.getChildNodes();
+            for (int i = children.getLength() - 1; i >= 0; i--) {
+                Node child = children.item(i);
+                String name = child.getNodeName();
+                if (name.equals("dqt") || name.equals("dht")) {
+                    markers.removeChild(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the encoding parameters according to a native image metadata
+     * tree.
+     */
+    private static void getStreamParam(IIOMetadataNode root, int numBands,
+                                       JPEGEncodeParam param) {
+        IIOMetadataNode variety = getChild(root, "JPEGvariety");
+        IIOMetadataNode markers = getChild(root, "markerSequence");
+        if (markers == null) {
+            return;
+        }
+
+        param.setWriteJFIFHeader(variety != null &&
+                                 getChild(variety, "app0JFIF") != null);
+
+        IIOMetadataNode dri = getChild(markers, "dri");
+        param.setRestartInterval(dri == null ?
+                                 0 : Integer.parseInt(dri.getAttribute("interval")));
+
+        JPEGQTable[] qTables = new JPEGQTable[4];
+        NodeList tables = markers.getElementsByTagName("dqtable");
+        for (int i = 0; i < tables.getLength(); i++) {
+            IIOMetadataNode table = (IIOMetadataNode)tables.item(i);
+            int id = Integer.parseInt(table.getAttribute("qtableId"));
+            if (id >= 0 && id < 4) {
+                qTables[id] = (JPEGQTable)table.getUserObject();
+            }
+        }
+        param.setWriteImageOnly(tables.getLength() == 0);
+
+        IIOMetadataNode sof = getChild(markers, "sof");
+        if (sof == null) {
+            return;
+        }
+        NodeList specs = sof.getElementsByTagName("componentSpec");
+        int count = Math.min(Math.min(specs.getLength(), numBands), 4);
+        int hMax = 1;
+        int vMax = 1;
+        for (int i = 0; i < count; i++) {
+            IIOMetadataNode spec = (IIOMetadataNode)specs.item(i);
+            hMax = Math.max(hMax,
+                            Integer.parseInt(spec.getAttribute("HsamplingFactor")));
+            vMax = Math.max(vMax,
+                            Integer.parseInt(spec.getAttribute("VsamplingFactor")));
+        }
+        for (int i = 0; i < count; i++) {
+            IIOMetadataNode spec = (IIOMetadataNode)specs.item(i);
+            param.setHorizontalSubsampling(i, hMax/
+                Integer.parseInt(spec.getAttribute("HsamplingFactor")));
+            param.setVerticalSubsampling(i, vMax/
+                Integer.parseInt(spec.getAttribute("VsamplingFactor")));
+
+            int slot = Integer.parseInt(spec.getAttribute("QtableSelector"));
+            if (slot >= 0 && slot < 4 && qTables[slot] != null) {
+                int[] table = qTables[slot].getTable();
+                int[] zigzag = new int[64];
+                for (int j = 0; j < 64; j++) {
+                    zigzag[j] = table[ZIGZAG[j]];
+                }
+                param.setQTable(i, slot, zigzag);
+            }
+        }
+    }
+
+    private static IIOMetadataNode getChild(IIOMetadataNode node,
+                                            String name) {
+        for (Node child = node.getFirstChild();
+             child != null;
+             child = child.getNextSibling()) {
+            if (child.getNodeName().equals(name)) {
+                return (IIOMetadataNode)child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a node having the name and attributes of another node.
+     */
+    private static IIOMetadataNode copyNode(Node node) {
+        IIOMetadataNode copy = new IIOMetadataNode(node.getNodeName());
+        NamedNodeMap attributes = node.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            copy.setAttribute(attribute.getNodeName(),
+                              attribute.getNodeValue());
+        }
+        return copy;
+    }
+
+    private static int lcm(int a, int b) {
+        int x = a;
+        int y = b;
+        while (y != 0) {
+            int t = x % y;
+            x = y;
+            y = t;
+        }
+        return a/x*b;
+    }
+}
@@ -18,13 +18,13 @@
 package org.eclipse.imagen.media.codecimpl;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.awt.image.ComponentSampleModel;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
-import java.io.FilterInputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import org.eclipse.imagen.media.codec.ImageDecoderImpl;
@@ -32,7 +32,6 @@ import org.eclipse.imagen.media.codec.ImageDecodeParam;
 import org.eclipse.imagen.media.codec.JPEGDecodeParam;
 import org.eclipse.imagen.media.codecimpl.ImagingListenerProxy;
 import org.eclipse.imagen.media.codecimpl.util.ImagingException;
-import obsolete.image.codec.jpeg.ImageFormatException;
 
 /**
  * @since EA2
@@ -49,47 +48,17 @@ public class JPEGImageDecoder extends ImageDecoderImpl {
             throw new IOException(JaiI18N.getString("JPEGImageDecoder0"));
         }
         try {
-            return new JPEGImage(input, param);
+            return new JPEGImage(input, param, getSourceRegion(),
+                                 getSourceXSubsampling(),
+                                 getSourceYSubsampling());
         } catch(Exception e) {
             throw CodecUtils.toIOException(e);
         }
     }
 }
 
-/**
- * FilterInputStream subclass which does not support mark/reset.
- * Used to work around a failure of com.sun.image.codec.jpeg.JPEGImageDecoder
- * in which decodeAsBufferedImage() blocks in reset() if a corrupted JPEG
- * image is encountered.
- */
-class NoMarkStream extends FilterInputStream {
-    NoMarkStream(InputStream in) {
-        super(in);
-    }
-
-    /**
-     * Disallow mark/reset.
-     */
-    public boolean markSupported() {
-        return false;
-    }
-
-    /**
-     * Disallow close() from closing the stream passed in.
-     */
-    public final void close() throws IOException {
-        // Deliberately do nothing.
-    }
-}
-
 class JPEGImage extends SimpleRenderedImage {
 
-    /**
-     * Mutex for the entire class to circumvent thread unsafety of
-     * com.sun.image.codec.jpeg.JPEGImageDecoder implementation.
-     */
-    private static final Object LOCK = new Object();
-
     private Raster theTile = null;
 
     /**
@@ -97,32 +66,24 @@ class JPEGImage extends SimpleRenderedImage {
      *
      * @param stream The JPEG InputStream.
      * @param param The decoding parameters.
+     * @param sourceRegion The region to decode, or null for all.
+     * @param xSubsampling The horizontal subsampling factor.
+     * @param ySubsampling The vertical subsampling factor.
      */
-    public JPEGImage(InputStream stream, ImageDecodeParam param) {
-        // If the supplied InputStream supports mark/reset wrap it so
-        // it does not.
-        if(stream.markSupported()) {
-            stream = new NoMarkStream(stream);
-        }
-
-        // Lock the entire class to work around lack of thread safety
-        // in com.sun.image.codec.jpeg.JPEGImageDecoder implementation.
+    public JPEGImage(InputStream stream, ImageDecodeParam param,
+                     Rectangle sourceRegion,
+                     int xSubsampling, int ySubsampling) {
+        // The decoder keeps no state shared between threads, so images
+        // may be decoded concurrently.
         BufferedImage image = null;
-        synchronized(LOCK) {
-            obsolete.image.codec.jpeg.JPEGImageDecoder decoder =
-                obsolete.image.codec.jpeg.JPEGCodec.createJPEGDecoder(stream);
-            try {
-                // decodeAsBufferedImage performs default color conversions
-                image = decoder.decodeAsBufferedImage();
-            } catch (ImageFormatException e) {
-                String message = JaiI18N.getString("JPEGImageDecoder1");
-                sendExceptionToListener(message, (Exception)e);
-//                throw new RuntimeException(JaiI18N.getString("JPEGImageDecoder1"));
-            } catch (IOException e) {
-                String message = JaiI18N.getString("JPEGImageDecoder1");
-                sendExceptionToListener(message, (Exception)e);
-//                throw new RuntimeException(JaiI18N.getString("JPEGImageDecoder2"));
-            }
+        try {
+            // decode performs default color conversions
+            image = ImageIOJPEGCodec.decode(stream, sourceRegion,
+                                            xSubsampling, ySubsampling);
+        } catch (IOException e) {
+            String message = JaiI18N.getString("JPEGImageDecoder1");
+            sendExceptionToListener(message, (Exception)e);
+//            throw new RuntimeException(JaiI18N.getString("JPEGImageDecoder2"));
         }
 
         minX = 0;
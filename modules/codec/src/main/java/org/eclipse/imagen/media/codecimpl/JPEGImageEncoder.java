@@ -263,24 +263,10 @@ public class JPEGImageEncoder extends ImageEncoderImpl {
             }
         }
 
-        // Create the Java2D encodeParam based on the BufferedImage
-        obsolete.image.codec.jpeg.JPEGEncodeParam j2dEP =
-            obsolete.image.codec.jpeg.JPEGCodec.getDefaultJPEGEncodeParam(bi);
-
-        // Now modify the Java2D encodeParam based on the options set
-        // in the JAI encodeParam object.
-        if (jaiEP != null) {
-            modifyEncodeParam(jaiEP, j2dEP, numBands);
-        }
-
-        // Now create the encoder with the modified Java2D encodeParam
-        obsolete.image.codec.jpeg.JPEGImageEncoder encoder;
-        encoder = obsolete.image.codec.jpeg.JPEGCodec.createJPEGEncoder(
-                    output, j2dEP);
-
         try {
-          // Write the image data.
-            encoder.encode(bi);
+            // Write the image data.  The encoder keeps no state shared
+            // between threads, so images may be encoded concurrently.
+            ImageIOJPEGCodec.encode(bi, output, jaiEP);
         } catch(IOException e) {
             String message = JaiI18N.getString("JPEGImageEncoder2");
             ImagingListenerProxy.errorOccurred(message, new ImagingException(message, e),
@@ -18,6 +18,7 @@
 package org.eclipse.imagen.media.codecimpl;
 import java.awt.Color;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Transparency;
 import java.awt.color.ColorSpace;
@@ -40,11 +41,14 @@ import java.awt.image.WritableRaster;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.SequenceInputStream;
+import java.lang.ref.SoftReference;
 import java.text.DateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.GregorianCalendar;
@@ -77,7 +81,15 @@ public class PNGImageDecoder extends ImageDecoderImpl {
             throw new IOException(JaiI18N.getString("PNGImageDecoder19"));
         }
         try {
-            return new PNGImage(input, (PNGDecodeParam)param);
+            if (!isSourceRegionSet()) {
+                return new PNGImage(input, (PNGDecodeParam)param);
+            }
+            PNGImage image = new PNGImage(input, (PNGDecodeParam)param,
+                                          getSourceRegion(),
+                                          getSourceXSubsampling(),
+                                          getSourceYSubsampling());
+            return image.isSourceRegionDecoded() ?
+                image : applySourceRegion(image);
         } catch(Exception e) {
             throw CodecUtils.toIOException(e);
         }
@@ -337,6 +349,29 @@ class PNGImage extends SimpleRenderedImage {
 
     private WritableRaster theTile;
 
+    // Strip-wise decoding state, used if the image is decoded on demand.
+    // Decoding proceeds sequentially from nextRow; prior holds the
+    // unfiltered row preceding it.  As the state of the Inflater cannot
+    // be saved, the checkpoint of a strip is the unfiltered row
+    // preceding it, which allows a strip to be revisited by inflating
+    // the data before it again without unfiltering and storing them.
+    private boolean isStreaming = false;
+    private SoftReference[] strips;
+    private byte[][] checkpoints;
+    private int nextRow;
+    private byte[] curr;
+    private byte[] prior;
+    private int outputDepth;
+    private int outputScanlineStride;
+
+    // The requested source region and subsampling.  The region, if
+    // any, is replaced by its intersection with the image bounds once
+    // known; it is applied while decoding non-interlaced images only.
+    private Rectangle sourceRegion = null;
+    private int xSubsampling = 1;
+    private int ySubsampling = 1;
+    private boolean isSourceRegionDecoded = false;
+
     private int[] gammaLut = null;
 
     private void initGammaLut(int bits) {
@@ -386,6 +421,27 @@ class PNGImage extends SimpleRenderedImage {
 
     public PNGImage(InputStream stream, PNGDecodeParam decodeParam)
         throws IOException {
+        this(stream, decodeParam, null, 1, 1);
+    }
+
+    /**
+     * Constructs a <code>PNGImage</code> containing a subsampled
+     * region of the encoded image.  The region and subsampling are
+     * applied while decoding if the image is not interlaced, as
+     * reported by <code>isSourceRegionDecoded()</code>; otherwise the
+     * entire image is decoded.
+     *
+     * @param sourceRegion The source region, or <code>null</code>
+     *        for the entire image.
+     */
+    public PNGImage(InputStream stream, PNGDecodeParam decodeParam,
+                    Rectangle sourceRegion,
+                    int xSubsampling, int ySubsampling)
+        throws IOException {
+
+        this.sourceRegion = sourceRegion;
+        this.xSubsampling = xSubsampling;
+        this.ySubsampling = ySubsampling;
 
         if (!stream.markSupported()) {
             stream = new BufferedInputStream(stream);
@@ -800,11 +856,7 @@ class PNGImage extends SimpleRenderedImage {
         }
 
         // Parse prior IDAT chunks
-        InputStream seqStream =
-            new SequenceInputStream(streamVec.elements());
-        InputStream infStream =
-            new InflaterInputStream(seqStream, new Inflater());
-        dataStream = new DataInputStream(infStream);
+        dataStream = createDataStream();
 
         // Create an empty WritableRaster
         int depth = bitDepth;
@@ -819,9 +871,53 @@ class PNGImage extends SimpleRenderedImage {
         int scanlineStride =
             (depth == 16) ? (bytesPerRow/2) : bytesPerRow;
 
-        theTile = createRaster(width, height, outputBands,
-                               scanlineStride,
-                               depth);
+        // Decode only the source region of a non-interlaced image.
+        if (interlaceMethod == 0 &&
+            (sourceRegion != null || xSubsampling != 1 || ySubsampling != 1)) {
+            Rectangle bounds = new Rectangle(0, 0, width, height);
+            if (sourceRegion != null) {
+                bounds = sourceRegion.intersection(bounds);
+            }
+            if (!bounds.isEmpty()) {
+                sourceRegion = bounds;
+                isSourceRegionDecoded = true;
+            }
+        }
+
+        // Decode the image in strips on demand if requested; interlaced
+        // images are decoded as a whole as each pass spans all rows.
+        int stripHeight = decodeParam.getStripHeight();
+        isStreaming = stripHeight > 0 && stripHeight < height &&
+            interlaceMethod == 0 && !isSourceRegionDecoded;
+
+        if (isSourceRegionDecoded) {
+            int regionWidth =
+                (sourceRegion.width + xSubsampling - 1)/xSubsampling;
+            int regionHeight =
+                (sourceRegion.height + ySubsampling - 1)/ySubsampling;
+            int regionBytesPerRow = (outputBands*regionWidth*depth + 7)/8;
+            theTile = createRaster(regionWidth, regionHeight, outputBands,
+                                   (depth == 16) ?
+                                   regionBytesPerRow/2 : regionBytesPerRow,
+                                   depth);
+        } else if (isStreaming) {
+            tileHeight = stripHeight;
+            outputDepth = depth;
+            outputScanlineStride = scanlineStride;
+
+            int numStrips = (height + stripHeight - 1)/stripHeight;
+            strips = new SoftReference[numStrips];
+            checkpoints = new byte[numStrips][];
+
+            int inputBytesPerRow = (inputBands*width*bitDepth + 7)/8;
+            curr = new byte[inputBytesPerRow];
+            prior = new byte[inputBytesPerRow];
+            nextRow = 0;
+        } else {
+            theTile = createRaster(width, height, outputBands,
+                                   scanlineStride,
+                                   depth);
+        }
 
         if (performGammaCorrection && (gammaLut == null)) {
             initGammaLut(bitDepth);
@@ -832,8 +928,19 @@ class PNGImage extends SimpleRenderedImage {
             initGrayLut(bitDepth);
         }
 
-        decodeImage(interlaceMethod == 1);
-        sampleModel = theTile.getSampleModel();
+        if (isStreaming) {
+            sampleModel = createRaster(width, tileHeight, outputBands,
+                                       scanlineStride,
+                                       depth).getSampleModel();
+        } else if (isSourceRegionDecoded) {
+            decodeRegion();
+            tileWidth = width = theTile.getWidth();
+            tileHeight = height = theTile.getHeight();
+            sampleModel = theTile.getSampleModel();
+        } else {
+            decodeImage(interlaceMethod == 1);
+            sampleModel = theTile.getSampleModel();
+        }
 
         if ((colorType == PNG_COLOR_PALETTE) && !expandPalette) {
             if (outputHasAlphaPalette) {
@@ -1685,66 +1792,14 @@ class PNGImage extends SimpleRenderedImage {
             createRaster(passWidth, 1, inputBands,
                          eltsPerRow,
                          bitDepth);
-        DataBuffer dataBuffer = passRow.getDataBuffer();
-        int type = dataBuffer.getDataType();
-        byte[] byteData = null;
-        short[] shortData = null;
-        if (type == DataBuffer.TYPE_BYTE) {
-            byteData = ((DataBufferByte)dataBuffer).getData();
-        } else {
-            shortData = ((DataBufferUShort)dataBuffer).getData();
-        }
 
         // Decode the (sub)image row-by-row
         int srcY, dstY;
         for (srcY = 0, dstY = yOffset;
              srcY < passHeight;
              srcY++, dstY += yStep) {
-            // Read the filter type byte and a row of data
-            int filter = 0;
-            try {
-                filter = dataStream.read();
-                dataStream.readFully(curr, 0, bytesPerRow);
-            } catch (Exception e) {
-                ImagingListenerProxy.errorOccurred(JaiI18N.getString("PNGImageDecoder2"),
-                                       e, this, false);
-//                e.printStackTrace();
-            }
-
-            switch (filter) {
-            case PNG_FILTER_NONE:
-                break;
-            case PNG_FILTER_SUB:
-                decodeSubFilter(curr, bytesPerRow, bytesPerPixel);
-                break;
-            case PNG_FILTER_UP:
-                decodeUpFilter(curr, prior, bytesPerRow);
-                break;
-            case PNG_FILTER_AVERAGE:
-                decodeAverageFilter(curr, prior, bytesPerRow, bytesPerPixel);
-                break;
-            case PNG_FILTER_PAETH:
-                decodePaethFilter(curr, prior, bytesPerRow, bytesPerPixel);
-                break;
-            default:
-                // Error -- uknown filter type
-                throw new RuntimeException(JaiI18N.getString("PNGImageDecoder16"));
-            }
-
-            // Copy data into passRow byte by byte
-            if (bitDepth < 16) {
-                System.arraycopy(curr, 0, byteData, 0, bytesPerRow);
-            } else {
-                int idx = 0;
-                for (int j = 0; j < eltsPerRow; j++) {
-                    shortData[j] =
-                        (short)((curr[idx] << 8) | (curr[idx + 1] & 0xff));
-                    idx += 2;
-                }
-            }
-
-            processPixels(postProcess,
-                          passRow, imRas, xOffset, xStep, dstY, passWidth);
+            readRow(curr, prior, bytesPerRow);
+            processRow(curr, passRow, imRas, xOffset, xStep, dstY, passWidth);
 
             // Swap curr and prior
             byte[] tmp = prior;
@@ -1753,6 +1808,77 @@ class PNGImage extends SimpleRenderedImage {
         }
     }
 
+    /**
+     * Reads the filter type byte and a row of data and reverses the
+     * filtering of the row, given the previous row of the same pass.
+     */
+    private void readRow(byte[] curr, byte[] prior, int bytesPerRow) {
+        // Read the filter type byte and a row of data
+        int filter = 0;
+        try {
+            filter = dataStream.read();
+            dataStream.readFully(curr, 0, bytesPerRow);
+        } catch (Exception e) {
+            ImagingListenerProxy.errorOccurred(JaiI18N.getString("PNGImageDecoder2"),
+                                   e, this, false);
+//            e.printStackTrace();
+        }
+
+        switch (filter) {
+        case PNG_FILTER_NONE:
+            break;
+        case PNG_FILTER_SUB:
+            decodeSubFilter(curr, bytesPerRow, bytesPerPixel);
+            break;
+        case PNG_FILTER_UP:
+            decodeUpFilter(curr, prior, bytesPerRow);
+            break;
+        case PNG_FILTER_AVERAGE:
+            decodeAverageFilter(curr, prior, bytesPerRow, bytesPerPixel);
+            break;
+        case PNG_FILTER_PAETH:
+            decodePaethFilter(curr, prior, bytesPerRow, bytesPerPixel);
+            break;
+        default:
+            // Error -- uknown filter type
+            throw new RuntimeException(JaiI18N.getString("PNGImageDecoder16"));
+        }
+    }
+
+    /**
+     * Copies an unfiltered row into a one row tall Raster and stores
+     * its pixels, after post-processing, into the destination.
+     */
+    private void processRow(byte[] curr, WritableRaster passRow,
+                            WritableRaster imRas,
+                            int xOffset, int xStep, int dstY,
+                            int passWidth) {
+        copyRow(curr, passRow);
+        processPixels(postProcess,
+                      passRow, imRas, xOffset, xStep, dstY, passWidth);
+    }
+
+    /**
+     * Copies an unfiltered row into a one row tall Raster.
+     */
+    private void copyRow(byte[] curr, WritableRaster passRow) {
+        DataBuffer dataBuffer = passRow.getDataBuffer();
+
+        // Copy data into passRow byte by byte
+        if (bitDepth < 16) {
+            byte[] byteData = ((DataBufferByte)dataBuffer).getData();
+            System.arraycopy(curr, 0, byteData, 0, byteData.length);
+        } else {
+            short[] shortData = ((DataBufferUShort)dataBuffer).getData();
+            int idx = 0;
+            for (int j = 0; j < shortData.length; j++) {
+                shortData[j] =
+                    (short)((curr[idx] << 8) | (curr[idx + 1] & 0xff));
+                idx += 2;
+            }
+        }
+    }
+
     private void decodeImage(boolean useInterlacing) {
         if (!useInterlacing) {
             decodePass(theTile, 0, 0, 1, 1, width, height);
@@ -1767,17 +1893,199 @@ class PNGImage extends SimpleRenderedImage {
         }
     }
 
+    /**
+     * Decodes the source region of a non-interlaced image.  As each row
+     * is unfiltered using the preceding one, all rows up to the last
+     * selected one are inflated and unfiltered, but only the selected
+     * pixels of the selected rows are post-processed and stored.
+     */
+    private void decodeRegion() {
+        int bytesPerRow = (inputBands*width*bitDepth + 7)/8;
+        int eltsPerRow = (bitDepth == 16) ? bytesPerRow/2 : bytesPerRow;
+        byte[] curr = new byte[bytesPerRow];
+        byte[] prior = new byte[bytesPerRow];
+
+        WritableRaster passRow =
+            createRaster(width, 1, inputBands, eltsPerRow, bitDepth);
+
+        // The selected pixels of a row, in a Raster of their own unless
+        // all pixels of the region are selected.
+        int regionWidth = theTile.getWidth();
+        WritableRaster regionRow;
+        if (xSubsampling == 1) {
+            regionRow = passRow.createWritableChild(sourceRegion.x, 0,
+                                                    regionWidth, 1,
+                                                    0, 0, null);
+        } else {
+            int regionBytesPerRow =
+                (inputBands*regionWidth*bitDepth + 7)/8;
+            regionRow = createRaster(regionWidth, 1, inputBands,
+                                     (bitDepth == 16) ?
+                                     regionBytesPerRow/2 : regionBytesPerRow,
+                                     bitDepth);
+        }
+        int[] pixel = new int[inputBands];
+
+        int lastRow = sourceRegion.y +
+            (theTile.getHeight() - 1)*ySubsampling;
+        for (int srcY = 0; srcY <= lastRow; srcY++) {
+            readRow(curr, prior, bytesPerRow);
+
+            int dy = srcY - sourceRegion.y;
+            if (dy >= 0 && dy % ySubsampling == 0) {
+                copyRow(curr, passRow);
+                if (xSubsampling != 1) {
+                    int srcX = sourceRegion.x;
+                    for (int x = 0; x < regionWidth; x++) {
+                        passRow.getPixel(srcX, 0, pixel);
+                        regionRow.setPixel(x, 0, pixel);
+                        srcX += xSubsampling;
+                    }
+                }
+                processPixels(postProcess, regionRow, theTile,
+                              0, 1, dy/ySubsampling, regionWidth);
+            }
+
+            // Swap curr and prior
+            byte[] tmp = prior;
+            prior = curr;
+            curr = tmp;
+        }
+    }
+
+    /**
+     * Returns true if the source region and subsampling given at
+     * construction were applied while decoding.
+     */
+    boolean isSourceRegionDecoded() {
+        return isSourceRegionDecoded;
+    }
+
+    /**
+     * Returns a stream of the inflated image data, positioned at the
+     * start of the first row.
+     */
+    private DataInputStream createDataStream() {
+        Enumeration e = streamVec.elements();
+        while (e.hasMoreElements()) {
+            ((ByteArrayInputStream)e.nextElement()).reset();
+        }
+
+        InputStream seqStream =
+            new SequenceInputStream(streamVec.elements());
+        InputStream infStream =
+            new InflaterInputStream(seqStream, new Inflater());
+        return new DataInputStream(infStream);
+    }
+
+    /**
+     * Reads and unfilters the next row of a non-interlaced image,
+     * recording a checkpoint if the row ends a strip.
+     */
+    private void readStreamRow() {
+        readRow(curr, prior, curr.length);
+
+        // Swap curr and prior
+        byte[] tmp = prior;
+        prior = curr;
+        curr = tmp;
+
+        nextRow++;
+        if (nextRow % tileHeight == 0 && nextRow < height) {
+            int strip = nextRow/tileHeight;
+            if (checkpoints[strip] == null) {
+                checkpoints[strip] = (byte[])prior.clone();
+            }
+        }
+    }
+
+    /**
+     * Decodes a strip of a non-interlaced image.
+     */
+    private Raster decodeStrip(int strip) {
+        int startRow = strip*tileHeight;
+
+        if (nextRow > startRow) {
+            // Inflation cannot go backwards: restart from the first row.
+            dataStream = createDataStream();
+            nextRow = 0;
+            Arrays.fill(prior, (byte)0);
+
+            if (checkpoints[strip] != null) {
+                // Skip the rows preceding the strip without unfiltering
+                // them, each being preceded by its filter type byte.
+                long skip = (long)startRow*(curr.length + 1);
+                try {
+                    while (skip > 0) {
+                        int n = dataStream.skipBytes(
+                            (int)Math.min(skip, Integer.MAX_VALUE));
+                        if (n <= 0) {
+                            throw new EOFException();
+                        }
+                        skip -= n;
+                    }
+                } catch (Exception e) {
+                    ImagingListenerProxy.errorOccurred(JaiI18N.getString("PNGImageDecoder2"),
+                                           e, this, false);
+                }
+                System.arraycopy(checkpoints[strip], 0, prior, 0,
+                                 prior.length);
+                nextRow = startRow;
+            }
+        }
+
+        // Unfilter the rows preceding the strip.
+        while (nextRow < startRow) {
+            readStreamRow();
+        }
+
+        WritableRaster ras = createRaster(width, tileHeight, outputBands,
+                                          outputScanlineStride,
+                                          outputDepth);
+        WritableRaster passRow =
+            createRaster(width, 1, inputBands,
+                         (bitDepth == 16) ? curr.length/2 : curr.length,
+                         bitDepth);
+
+        int endRow = Math.min(startRow + tileHeight, height);
+        while (nextRow < endRow) {
+            int y = nextRow - startRow;
+            readStreamRow();
+            processRow(prior, passRow, ras, 0, 1, y, width);
+        }
+
+        return ras.createWritableTranslatedChild(0, startRow);
+    }
+
     // RenderedImage stuff
 
-    public Raster getTile(int tileX, int tileY) {
-        if (tileX != 0 || tileY != 0) {
+    public synchronized Raster getTile(int tileX, int tileY) {
+        if (!isStreaming) {
+            if (tileX != 0 || tileY != 0) {
+                // Error -- bad tile requested
+                throw new IllegalArgumentException(JaiI18N.getString("PNGImageDecoder17"));
+            }
+            return theTile;
+        }
+
+        if (tileX != 0 || tileY < 0 || tileY >= strips.length) {
             // Error -- bad tile requested
             throw new IllegalArgumentException(JaiI18N.getString("PNGImageDecoder17"));
         }
-        return theTile;
+
+        Raster strip = strips[tileY] == null ?
+            null : (Raster)strips[tileY].get();
+        if (strip == null) {
+            strip = decodeStrip(tileY);
+            strips[tileY] = new SoftReference(strip);
+        }
+        return strip;
     }
 
-    public void dispose() {
+    public synchronized void dispose() {
         theTile = null;
+        if (strips != null) {
+            Arrays.fill(strips, null);
+        }
     }
 }
@@ -18,6 +18,7 @@
  */
 
 package org.eclipse.imagen.media.codecimpl;
+import java.awt.Rectangle;
 import java.awt.image.IndexColorModel;
 import java.awt.image.ColorModel;
 import java.awt.image.Raster;
@@ -29,11 +30,19 @@ import java.io.DataOutputStream;
 import java.io.FileOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Adler32;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import org.eclipse.imagen.media.codec.FileSeekableStream;
@@ -326,109 +335,151 @@ public class PNGImageEncoder extends ImageEncoderImpl {
         cs.writeToStream(dataOutput);
     }
 
-    private byte[] prevRow = null;
-    private byte[] currRow = null;
+    // The number of bytes of filtered data deflated as a unit when the
+    // image data are encoded concurrently.
+    private static final int BLOCK_SIZE = 1 << 17;
 
-    private byte[][] filteredRows = null;
+    // The size of the deflate window.
+    private static final int DICTIONARY_SIZE = 32768;
 
     private static int clamp(int val, int maxValue) {
         return (val > maxValue) ? maxValue : val;
     }
 
-    private void encodePass(OutputStream os,
-                            Raster ras,
-                            int xOffset, int yOffset,
-                            int xSkip, int ySkip) throws IOException {
-        int minX = ras.getMinX();
-        int minY = ras.getMinY();
-        int width = ras.getWidth();
-        int height = ras.getHeight();
-        
-        xOffset *= numBands;
-        xSkip *= numBands;
-
-        int samplesPerByte = 8/bitDepth;
-        
-        int numSamples = width*numBands;
-        int[] samples = new int[numSamples];
-
-        int pixels = (numSamples - xOffset + xSkip - 1)/xSkip;
+    /**
+     * Returns the number of bytes of a row of the given number of
+     * pixels, excluding the filter type byte.
+     */
+    private int getBytesPerRow(int pixels) {
         int bytesPerRow = pixels*numBands;
         if (bitDepth < 8) {
+            int samplesPerByte = 8/bitDepth;
             bytesPerRow = (bytesPerRow + samplesPerByte - 1)/samplesPerByte;
         } else if (bitDepth == 16) {
             bytesPerRow *= 2;
         }
+        return bytesPerRow;
+    }
 
-        if (bytesPerRow == 0) {
-            return;
+    /**
+     * Returns the given rows of the image, without the alpha band if it
+     * is not written.
+     */
+    private Raster getRows(Raster ras) {
+        if (skipAlpha) {
+            int numBands = ras.getNumBands() - 1;
+            int[] bandList = new int[numBands];
+            for (int i = 0; i < numBands; i++) {
+                bandList[i] = i;
+            }
+            ras = ras.createChild(ras.getMinX(), ras.getMinY(),
+                                  ras.getWidth(), ras.getHeight(),
+                                  ras.getMinX(), ras.getMinY(),
+                                  bandList);
         }
+        return ras;
+    }
 
-        currRow = new byte[bytesPerRow + bpp];
-        prevRow = new byte[bytesPerRow + bpp];
-
-        filteredRows = new byte[5][bytesPerRow + bpp];
-
+    /**
+     * Packs every <code>xSkip</code>th sample of a row, starting from
+     * <code>xOffset</code>, into <code>currRow</code> from index
+     * <code>bpp</code> onwards.
+     */
+    private void packRow(Raster ras, int row, int[] samples, byte[] currRow,
+                         int xOffset, int xSkip) {
+        int minX = ras.getMinX();
+        int width = ras.getWidth();
+        int samplesPerByte = 8/bitDepth;
+        int numSamples = width*numBands;
         int maxValue = (1 << bitDepth) - 1;
 
-        for (int row = minY + yOffset; row < minY + height; row += ySkip) {
-            ras.getPixels(minX, row, width, 1, samples);
+        ras.getPixels(minX, row, width, 1, samples);
 
-            if (compressGray) {
-                int shift = 8 - bitDepth;
-                for (int i = 0; i < width; i++) {
-                    samples[i] >>= shift;
-                }
+        if (compressGray) {
+            int shift = 8 - bitDepth;
+            for (int i = 0; i < width; i++) {
+                samples[i] >>= shift;
             }
+        }
 
-            int count = bpp; // leave first 'bpp' bytes zero
-            int pos = 0;
-            int tmp = 0;
-
-            switch (bitDepth) {
-            case 1: case 2: case 4:
-                // Image can only have a single band
-                
-                int mask = samplesPerByte - 1;
-                for (int s = xOffset; s < numSamples; s += xSkip) {
-                    int val = clamp(samples[s] >> bitShift, maxValue);
-                    tmp = (tmp << bitDepth) | val;
-
-                    if ((pos++ & mask) == mask) {
-                        currRow[count++] = (byte)tmp;
-                        tmp = 0;
-                    }
-                }
+        int count = bpp; // leave first 'bpp' bytes zero
+        int pos = 0;
+        int tmp = 0;
+
+        switch (bitDepth) {
+        case 1: case 2: case 4:
+            // Image can only have a single band
+
+            int mask = samplesPerByte - 1;
+            for (int s = xOffset; s < numSamples; s += xSkip) {
+                int val = clamp(samples[s] >> bitShift, maxValue);
+                tmp = (tmp << bitDepth) | val;
 
-                // Left shift the last byte
-                if ((pos & mask) != 0) {
-		    // Fix 4655018: PNGImageEncoder doesn't correctly write some
-		    // bilevel images.
-		    // modify "pos" to "pos & mask" in the sentence below.
-                    tmp <<= (8/bitDepth - (pos & mask) )*bitDepth;
+                if ((pos++ & mask) == mask) {
                     currRow[count++] = (byte)tmp;
+                    tmp = 0;
                 }
-                break;
+            }
 
-            case 8:
-                for (int s = xOffset; s < numSamples; s += xSkip) {
-                    for (int b = 0; b < numBands; b++) {
-                        currRow[count++] =
-                            (byte)clamp(samples[s + b] >> bitShift, maxValue);
-                    }
-                }
-                break;
+            // Left shift the last byte
+            if ((pos & mask) != 0) {
+                // Fix 4655018: PNGImageEncoder doesn't correctly write some
+                // bilevel images.
+                // modify "pos" to "pos & mask" in the sentence below.
+                tmp <<= (8/bitDepth - (pos & mask) )*bitDepth;
+                currRow[count++] = (byte)tmp;
+            }
+            break;
 
-            case 16:
-                for (int s = xOffset; s < numSamples; s += xSkip) {
-                    for (int b = 0; b < numBands; b++) {
-                        int val = clamp(samples[s + b] >> bitShift, maxValue);
-                        currRow[count++] = (byte)(val >> 8);
-                        currRow[count++] = (byte)(val & 0xff);
-                    }
+        case 8:
+            for (int s = xOffset; s < numSamples; s += xSkip) {
+                for (int b = 0; b < numBands; b++) {
+                    currRow[count++] =
+                        (byte)clamp(samples[s + b] >> bitShift, maxValue);
                 }
-                break;
             }
+            break;
+
+        case 16:
+            for (int s = xOffset; s < numSamples; s += xSkip) {
+                for (int b = 0; b < numBands; b++) {
+                    int val = clamp(samples[s + b] >> bitShift, maxValue);
+                    currRow[count++] = (byte)(val >> 8);
+                    currRow[count++] = (byte)(val & 0xff);
+                }
+            }
+            break;
+        }
+    }
+
+    private void encodePass(OutputStream os,
+                            Raster ras,
+                            int xOffset, int yOffset,
+                            int xSkip, int ySkip) throws IOException {
+        int minY = ras.getMinY();
+        int width = ras.getWidth();
+        int height = ras.getHeight();
+        
+        int numSamples = width*numBands;
+        int[] samples = new int[numSamples];
+
+        int pixels = (width - xOffset + xSkip - 1)/xSkip;
+        int bytesPerRow = getBytesPerRow(pixels);
+
+        if (bytesPerRow == 0) {
+            return;
+        }
+
+        xOffset *= numBands;
+        xSkip *= numBands;
+
+        byte[] currRow = new byte[bytesPerRow + bpp];
+        byte[] prevRow = new byte[bytesPerRow + bpp];
+
+        byte[][] filteredRows = new byte[5][bytesPerRow + bpp];
+
+        for (int row = minY + yOffset; row < minY + height; row += ySkip) {
+            packRow(ras, row, samples, currRow, xOffset, xSkip);
 
             // Perform filtering
             int filterType = param.filterRow(currRow, prevRow,
@@ -447,24 +498,26 @@ public class PNGImageEncoder extends ImageEncoderImpl {
 
     private void writeIDAT() throws IOException {
         IDATOutputStream ios = new IDATOutputStream(dataOutput, 8192);
-        DeflaterOutputStream dos =
-            new DeflaterOutputStream(ios, new Deflater(9));
+        int level = param.getCompressionLevel();
 
-        // Future work - don't convert entire image to a Raster
-        Raster ras = image.getData();
+        int rowsPerBlock =
+            Math.max(1, BLOCK_SIZE/(getBytesPerRow(width) + 1));
+        int numBlocks = (height + rowsPerBlock - 1)/rowsPerBlock;
 
-        if (skipAlpha) {
-            int numBands = ras.getNumBands() - 1;
-            int[] bandList = new int[numBands];
-            for (int i = 0; i < numBands; i++) {
-                bandList[i] = i;
-            }
-            ras = ras.createChild(0, 0,
-                                  ras.getWidth(), ras.getHeight(),
-                                  0, 0,
-                                  bandList);
+        int parallelism = param.getParallelism();
+        if (parallelism > 0 && !interlace && numBlocks > 1) {
+            writeBlocks(ios, level, parallelism, rowsPerBlock, numBlocks);
+            ios.flush();
+            return;
         }
 
+        Deflater deflater = new Deflater(level);
+        DeflaterOutputStream dos =
+            new DeflaterOutputStream(ios, deflater);
+
+        // Future work - don't convert entire image to a Raster
+        Raster ras = getRows(image.getData());
+
         if (interlace) {
             // Interlacing pass 1
             encodePass(dos, ras, 0, 0, 8, 8);
@@ -485,9 +538,239 @@ public class PNGImageEncoder extends ImageEncoderImpl {
         }
 
         dos.finish();
+        deflater.end();
         ios.flush();
     }
 
+    /**
+     * Writes the zlib stream of a non-interlaced image as a sequence of
+     * blocks of rows which are filtered and deflated concurrently.
+     *
+     * <p> Each block is deflated independently and ends at a byte
+     * boundary, so the blocks may simply be concatenated.  To retain
+     * most of the compression of a single deflate stream, the
+     * dictionary of each block is primed with the filtered data
+     * preceding it, which the worker computes again from the source
+     * rows.  The Adler-32 checksum of the whole stream is combined from
+     * those of the blocks.
+     */
+    private void writeBlocks(OutputStream os,
+                             final int level,
+                             int parallelism,
+                             final int rowsPerBlock,
+                             final int numBlocks) throws IOException {
+        // zlib header: deflate with a 32K window and no preset dictionary
+        int cmf = 0x78;
+        int flevel;
+        if (level == Deflater.DEFAULT_COMPRESSION || level == 6) {
+            flevel = 2;
+        } else if (level < 2) {
+            flevel = 0;
+        } else if (level < 6) {
+            flevel = 1;
+        } else {
+            flevel = 3;
+        }
+        int flg = flevel << 6;
+        flg |= (31 - ((cmf << 8) | flg) % 31) % 31;
+        os.write(cmf);
+        os.write(flg);
+
+        int window = 2*parallelism;
+        long adler = 1L;
+
+        ExecutorService executor =
+            Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "PNGImageEncoder");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        try {
+            Future[] futures = new Future[window];
+            for (int i = 0; i < numBlocks + window; i++) {
+                int slot = i % window;
+
+                // Write the block previously submitted in this slot.
+                if (i >= window && i - window < numBlocks) {
+                    Block block;
+                    try {
+                        block = (Block)futures[slot].get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof RuntimeException) {
+                            throw (RuntimeException)cause;
+                        } else if (cause instanceof Error) {
+                            throw (Error)cause;
+                        }
+                        throw new RuntimeException(cause);
+                    }
+
+                    os.write(block.data, 0, block.length);
+                    adler = combineAdler32(adler, block.adler,
+                                           block.rawLength);
+                }
+
+                if (i < numBlocks) {
+                    final int blockIndex = i;
+                    futures[slot] = executor.submit(new Callable() {
+                            public Object call() {
+                                return encodeBlock(blockIndex, rowsPerBlock,
+                                                   blockIndex == numBlocks - 1,
+                                                   level);
+                            }
+                        });
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // zlib trailer
+        os.write((int)(adler >>> 24));
+        os.write((int)(adler >>> 16) & 0xff);
+        os.write((int)(adler >>> 8) & 0xff);
+        os.write((int)adler & 0xff);
+    }
+
+    /**
+     * Filters and deflates a block of rows of a non-interlaced image.
+     */
+    private Block encodeBlock(int blockIndex, int rowsPerBlock,
+                              boolean isLast, int level) {
+        int minY = image.getMinY();
+        int bytesPerRow = getBytesPerRow(width);
+        int firstRow = minY + blockIndex*rowsPerBlock;
+        int lastRow = Math.min(firstRow + rowsPerBlock, minY + height);
+
+        // The rows whose filtered data form the dictionary, and the row
+        // preceding them which they are filtered against.
+        int dictRows = (DICTIONARY_SIZE + bytesPerRow)/(bytesPerRow + 1);
+        int startRow = Math.max(minY, firstRow - dictRows);
+        int srcRow = Math.max(minY, startRow - 1);
+
+        Raster ras =
+            getRows(image.getData(new Rectangle(image.getMinX(), srcRow,
+                                                width, lastRow - srcRow)));
+
+        int[] samples = new int[width*numBands];
+        byte[] currRow = new byte[bytesPerRow + bpp];
+        byte[] prevRow = new byte[bytesPerRow + bpp];
+        byte[][] filteredRows = new byte[5][bytesPerRow + bpp];
+
+        byte[] data = new byte[(lastRow - startRow)*(bytesPerRow + 1)];
+        int pos = 0;
+        for (int row = srcRow; row < lastRow; row++) {
+            packRow(ras, row, samples, currRow, 0, numBands);
+
+            if (row >= startRow) {
+                int filterType = param.filterRow(currRow, prevRow,
+                                                 filteredRows,
+                                                 bytesPerRow, bpp);
+                data[pos++] = (byte)filterType;
+                System.arraycopy(filteredRows[filterType], bpp,
+                                 data, pos, bytesPerRow);
+                pos += bytesPerRow;
+            }
+
+            // Swap current and previous rows
+            byte[] swap = currRow;
+            currRow = prevRow;
+            prevRow = swap;
+        }
+
+        int offset = (firstRow - startRow)*(bytesPerRow + 1);
+        int length = data.length - offset;
+
+        Block block = new Block();
+        block.rawLength = length;
+
+        Adler32 checksum = new Adler32();
+        checksum.update(data, offset, length);
+        block.adler = checksum.getValue();
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (offset > 0) {
+                int dictLength = Math.min(offset, DICTIONARY_SIZE);
+                deflater.setDictionary(data, offset - dictLength, dictLength);
+            }
+            deflater.setInput(data, offset, length);
+            if (isLast) {
+                deflater.finish();
+            }
+
+            byte[] buf = new byte[length + (length >> 12) + 64];
+            int count = 0;
+            while (true) {
+                int n = isLast ?
+                    deflater.deflate(buf, count, buf.length - count) :
+                    deflater.deflate(buf, count, buf.length - count,
+                                     Deflater.FULL_FLUSH);
+                count += n;
+                if (isLast ? deflater.finished() : count < buf.length) {
+                    break;
+                }
+                if (count == buf.length) {
+                    byte[] newBuf = new byte[2*buf.length];
+                    System.arraycopy(buf, 0, newBuf, 0, count);
+                    buf = newBuf;
+                }
+            }
+
+            block.data = buf;
+            block.length = count;
+        } finally {
+            deflater.end();
+        }
+
+        return block;
+    }
+
+    /**
+     * Returns the Adler-32 checksum of the concatenation of two byte
+     * sequences given their checksums and the length of the second.
+     */
+    private static long combineAdler32(long adler1, long adler2,
+                                       long length2) {
+        final long BASE = 65521L;
+
+        long rem = length2 % BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (rem*sum1) % BASE;
+        sum1 += (adler2 & 0xffff) + BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) +
+            BASE - rem;
+        if (sum1 >= BASE) {
+            sum1 -= BASE;
+        }
+        if (sum1 >= BASE) {
+            sum1 -= BASE;
+        }
+        if (sum2 >= (BASE << 1)) {
+            sum2 -= (BASE << 1);
+        }
+        if (sum2 >= BASE) {
+            sum2 -= BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * The deflated data of a block of rows.
+     */
+    private static class Block {
+        byte[] data;
+        int length;
+        long adler;
+        int rawLength;
+    }
+
     private void writeIEND() throws IOException {
         ChunkStream cs = new ChunkStream("IEND");
         cs.writeToStream(dataOutput);
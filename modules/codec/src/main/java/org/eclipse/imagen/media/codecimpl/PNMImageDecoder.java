@@ -32,6 +32,7 @@ import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
+import java.io.EOFException;
 import java.io.IOException;
 import org.eclipse.imagen.media.codec.ImageCodec;
 import org.eclipse.imagen.media.codec.ImageDecoder;
@@ -57,7 +58,13 @@ public class PNMImageDecoder extends ImageDecoderImpl {
             throw new IOException(JaiI18N.getString("PNMImageDecoder5"));
         }
         try {
-            return new PNMImage(input);
+            PNMImage image = new PNMImage(input);
+            if (isSourceRegionSet()) {
+                image.setSourceRegion(computeSourceRegion(image.getBounds()),
+                                      getSourceXSubsampling(),
+                                      getSourceYSubsampling());
+            }
+            return image;
         } catch(Exception e) {
             throw CodecUtils.toIOException(e);
         }
@@ -92,6 +99,12 @@ class PNMImage extends SimpleRenderedImage {
 
     private int dataType;
 
+    /** Source region and subsampling, if set. */
+    private Rectangle sourceRegion = null;
+    private int xSubsampling = 1;
+    private int ySubsampling = 1;
+    private int sourceWidth;
+
     /**
      * Construct a PNMImage.
      *
@@ -181,6 +194,83 @@ class PNMImage extends SimpleRenderedImage {
         }
     }
 
+    /**
+     * Restricts decoding to a subsampled region of the image.  Must be
+     * called before the tile is computed.
+     */
+    void setSourceRegion(Rectangle region,
+                         int xSubsampling, int ySubsampling) {
+        this.sourceRegion = region;
+        this.xSubsampling = xSubsampling;
+        this.ySubsampling = ySubsampling;
+        this.sourceWidth = width;
+
+        tileWidth = width = (region.width + xSubsampling - 1)/xSubsampling;
+        tileHeight = height =
+            (region.height + ySubsampling - 1)/ySubsampling;
+        sampleModel = sampleModel.createCompatibleSampleModel(width, height);
+    }
+
+    /**
+     * Reads the selected rows of the source region into the tile,
+     * skipping the other rows and dropping unselected columns.  Rows
+     * below the region are not read at all.
+     */
+    private void readSourceRegion(WritableRaster tile) throws IOException {
+        boolean isBitmap = variant == PBM_ASCII || variant == PBM_RAW;
+        int samplesPerRow = sourceWidth*numBands;
+        int bytesPerRow = isBitmap ? (sourceWidth + 7)/8 : samplesPerRow;
+        byte[] bytes = isRaw(variant) ? new byte[bytesPerRow] : null;
+        int[] row = new int[samplesPerRow];
+        int[] pixels = new int[width*numBands];
+
+        int nextRow = 0;
+        for (int j = 0; j < height; j++) {
+            int y = sourceRegion.y + j*ySubsampling;
+
+            // Skip to and read the selected row.
+            if (isRaw(variant)) {
+                long n = (long)(y - nextRow)*bytesPerRow;
+                while (n > 0) {
+                    int skipped = input.skipBytes((int)Math.min(n, Integer.MAX_VALUE));
+                    if (skipped <= 0) {
+                        throw new EOFException();
+                    }
+                    n -= skipped;
+                }
+                input.readFully(bytes);
+                if (isBitmap) {
+                    for (int i = 0; i < sourceWidth; i++) {
+                        row[i] = (bytes[i >> 3] >> (7 - (i & 7))) & 0x1;
+                    }
+                } else {
+                    for (int i = 0; i < samplesPerRow; i++) {
+                        row[i] = bytes[i] & 0xff;
+                    }
+                }
+            } else {
+                for (int r = nextRow; r < y; r++) {
+                    for (int i = 0; i < samplesPerRow; i++) {
+                        readInteger(input);
+                    }
+                }
+                for (int i = 0; i < samplesPerRow; i++) {
+                    row[i] = readInteger(input);
+                }
+            }
+            nextRow = y + 1;
+
+            int x = sourceRegion.x*numBands;
+            int step = xSubsampling*numBands;
+            for (int i = 0, l = 0; i < width; i++, x += step) {
+                for (int b = 0; b < numBands; b++) {
+                    pixels[l++] = row[x + b];
+                }
+            }
+            tile.setPixels(0, j, width, 1, pixels);
+        }
+    }
+
     /** Returns true if file variant is raw format, false if ASCII. */
     private boolean isRaw(int v) {
         return (v >= PBM_RAW);
@@ -234,6 +324,12 @@ class PNMImage extends SimpleRenderedImage {
 
         // There should only be one tile.
         try {
+            if (sourceRegion != null) {
+                readSourceRegion(tile);
+                input.close();
+                return tile;
+            }
+
             switch (variant) {
             case PBM_ASCII:
             case PBM_RAW:
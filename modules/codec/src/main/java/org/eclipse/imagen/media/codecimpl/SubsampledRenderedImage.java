@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.codecimpl;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+
+/**
+ * A <code>RenderedImage</code> which presents a region of another
+ * image, optionally subsampled by integral factors.  Pixel (i, j) of
+ * this image is the source pixel at
+ * (region.x + i*xSubsampling, region.y + j*ySubsampling); the image
+ * has its origin at (0, 0).
+ *
+ * <p> Tiles are computed on demand.  Only those source tiles which
+ * contain at least one selected pixel are requested, so for a source
+ * which decodes its tiles independently, such as a striped or tiled
+ * TIFF image, the strips and tiles outside the region or between
+ * subsampled rows are never decoded.
+ */
+public class SubsampledRenderedImage extends SimpleRenderedImage {
+
+    private RenderedImage source;
+
+    private Rectangle region;
+
+    private int xSubsampling;
+
+    private int ySubsampling;
+
+    /**
+     * Constructs a <code>SubsampledRenderedImage</code>.
+     *
+     * @param source The source image.
+     * @param region The source region, which must lie within the
+     *        source image bounds.
+     * @param xSubsampling The horizontal subsampling factor.
+     * @param ySubsampling The vertical subsampling factor.
+     */
+    public SubsampledRenderedImage(RenderedImage source, Rectangle region,
+                                   int xSubsampling, int ySubsampling) {
+        this.source = source;
+        this.region = new Rectangle(region);
+        this.xSubsampling = xSubsampling;
+        this.ySubsampling = ySubsampling;
+
+        minX = 0;
+        minY = 0;
+        width = (region.width + xSubsampling - 1)/xSubsampling;
+        height = (region.height + ySubsampling - 1)/ySubsampling;
+
+        // Keep tiles roughly as large in the source as the source's own
+        // tiles so that each of those is decoded about once.
+        tileWidth = source.getNumXTiles() == 1 ? width :
+            Math.max(1, Math.min(width, source.getTileWidth()/xSubsampling));
+        tileHeight = source.getNumYTiles() == 1 ? height :
+            Math.max(1, Math.min(height, source.getTileHeight()/ySubsampling));
+
+        sampleModel =
+            source.getSampleModel().createCompatibleSampleModel(tileWidth,
+                                                                tileHeight);
+        colorModel = source.getColorModel();
+        sources.addElement(source);
+
+        String[] names = source.getPropertyNames();
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                Object value = source.getProperty(names[i]);
+                if (value != null &&
+                    value != java.awt.Image.UndefinedProperty) {
+                    properties.put(names[i].toLowerCase(), value);
+                }
+            }
+        }
+    }
+
+    public Raster getTile(int tileX, int tileY) {
+        if (tileX < getMinTileX() || tileX > getMaxTileX() ||
+            tileY < getMinTileY() || tileY > getMaxTileY()) {
+            throw new IllegalArgumentException(JaiI18N.getString("SubsampledRenderedImage0"));
+        }
+
+        Point org = new Point(tileXToX(tileX), tileYToY(tileY));
+        WritableRaster tile = Raster.createWritableRaster(sampleModel, org);
+        Rectangle rect = tile.getBounds().intersection(getBounds());
+
+        // Source rows and columns of the first and last selected pixels.
+        int sx0 = region.x + rect.x*xSubsampling;
+        int sx1 = region.x + (rect.x + rect.width - 1)*xSubsampling;
+        int sy0 = region.y + rect.y*ySubsampling;
+        int sy1 = region.y + (rect.y + rect.height - 1)*ySubsampling;
+
+        int minTileX = XToTileX(sx0, source.getTileGridXOffset(),
+                                source.getTileWidth());
+        int maxTileX = XToTileX(sx1, source.getTileGridXOffset(),
+                                source.getTileWidth());
+        int minTileY = YToTileY(sy0, source.getTileGridYOffset(),
+                                source.getTileHeight());
+        int maxTileY = YToTileY(sy1, source.getTileGridYOffset(),
+                                source.getTileHeight());
+
+        Object pixel = null;
+        for (int ty = minTileY; ty <= maxTileY; ty++) {
+            int tileMinY = ty*source.getTileHeight() +
+                source.getTileGridYOffset();
+            int tileMaxY = tileMinY + source.getTileHeight() - 1;
+
+            // First and last destination rows within this source tile row.
+            int j0 = Math.max(rect.y,
+                              ceilDiv(Math.max(tileMinY, sy0) - region.y,
+                                      ySubsampling));
+            int j1 = Math.min(rect.y + rect.height - 1,
+                              (Math.min(tileMaxY, sy1) - region.y)/ySubsampling);
+            if (j0 > j1) {
+                // No selected row falls within these tiles: skip them.
+                continue;
+            }
+
+            for (int tx = minTileX; tx <= maxTileX; tx++) {
+                int tileMinX = tx*source.getTileWidth() +
+                    source.getTileGridXOffset();
+                int tileMaxX = tileMinX + source.getTileWidth() - 1;
+
+                int i0 = Math.max(rect.x,
+                                  ceilDiv(Math.max(tileMinX, sx0) - region.x,
+                                          xSubsampling));
+                int i1 = Math.min(rect.x + rect.width - 1,
+                                  (Math.min(tileMaxX, sx1) - region.x)/xSubsampling);
+                if (i0 > i1) {
+                    continue;
+                }
+
+                Raster src = source.getTile(tx, ty);
+                for (int j = j0; j <= j1; j++) {
+                    int sy = region.y + j*ySubsampling;
+                    if (xSubsampling == 1) {
+                        pixel = src.getDataElements(region.x + i0, sy,
+                                                    i1 - i0 + 1, 1, pixel);
+                        tile.setDataElements(i0, j, i1 - i0 + 1, 1, pixel);
+                        pixel = null;
+                    } else {
+                        for (int i = i0; i <= i1; i++) {
+                            pixel = src.getDataElements(region.x + i*xSubsampling,
+                                                        sy, pixel);
+                            tile.setDataElements(i, j, pixel);
+                        }
+                    }
+                }
+            }
+        }
+
+        return tile;
+    }
+
+    /** Returns the smallest integer not less than a/b for a &gt;= 0. */
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1)/b;
+    }
+}
@@ -97,8 +97,8 @@ public class TIFFImage extends SimpleRenderedImage {
     private boolean isTiled;
     int tileSize;
     int tilesX, tilesY;
-    long[] tileOffsets;
-    long[] tileByteCounts;
+    TIFFField tileOffsets;
+    TIFFField tileByteCounts;
     char[] colormap;
     int sampleSize;
     int compression;
@@ -120,8 +120,8 @@ public class TIFFImage extends SimpleRenderedImage {
     JPEGDecodeParam decodeParam = null;
     boolean colorConvertJPEG = false;
 
-    // DEFLATE variables
-    Inflater inflater = null;
+    // DEFLATE variables, one Inflater per thread
+    private ThreadLocal inflaters = null;
 
     // Endian-ness indicator
     boolean isBigEndian;
@@ -132,9 +132,13 @@ public class TIFFImage extends SimpleRenderedImage {
 
     boolean decodePaletteAsShorts;
 
-    // Decoders
-    private TIFFFaxDecoder decoder = null;
-    private TIFFLZWDecoder lzwDecoder = null;
+    // Decoders, one per thread so that tiles may be decoded concurrently
+    private ThreadLocal faxDecoders = null;
+    private ThreadLocal lzwDecoders = null;
+
+    // The obsolete JPEG codec is not thread safe, so JPEG data are
+    // decoded by one thread at a time
+    private static final Object jpegLock = new Object();
 
     /**
      * Decode a buffer of data into a Raster with the specified location.
@@ -156,18 +160,20 @@ public class TIFFImage extends SimpleRenderedImage {
         // Create an InputStream from the compressed data array.
         ByteArrayInputStream jpegStream = new ByteArrayInputStream(data);
 
-        // Create a decoder.
-        JPEGImageDecoder decoder = decodeParam == null ?
-            JPEGCodec.createJPEGDecoder(jpegStream) :
-            JPEGCodec.createJPEGDecoder(jpegStream,
-                                        decodeParam);
-
         // Decode the compressed data into a Raster.
         Raster jpegRaster = null;
         try {
-            jpegRaster = colorConvert ?
-                decoder.decodeAsBufferedImage().getWritableTile(0, 0) :
-                decoder.decodeAsRaster();
+            synchronized (jpegLock) {
+                // Create a decoder.
+                JPEGImageDecoder decoder = decodeParam == null ?
+                    JPEGCodec.createJPEGDecoder(jpegStream) :
+                    JPEGCodec.createJPEGDecoder(jpegStream,
+                                                decodeParam);
+
+                jpegRaster = colorConvert ?
+                    decoder.decodeAsBufferedImage().getWritableTile(0, 0) :
+                    decoder.decodeAsRaster();
+            }
         } catch (IOException ioe) {
             String message = JaiI18N.getString("TIFFImage13");
             ImagingListenerProxy.errorOccurred(message,
@@ -182,9 +188,10 @@ public class TIFFImage extends SimpleRenderedImage {
 
     /**
      * Inflates <code>deflated</code> into <code>inflated</code> using the
-     * <code>Inflater</code> constructed during class instantiation.
+     * <code>Inflater</code> of the current thread.
      */
     private final void inflate(byte[] deflated, byte[] inflated) {
+        Inflater inflater = (Inflater)inflaters.get();
         inflater.setInput(deflated);
         try {
             inflater.inflate(inflated);
@@ -255,27 +262,6 @@ public class TIFFImage extends SimpleRenderedImage {
         return sampleModel;
     }
 
-    /**
-     * Return as a long[] the value of a TIFF_LONG or TIFF_SHORT field.
-     */
-    private final long[] getFieldAsLongs(TIFFField field) {
-        long[] value = null;
-
-        if(field.getType() == TIFFField.TIFF_SHORT) {
-            char[] charValue = field.getAsChars();
-            value = new long[charValue.length];
-            for(int i = 0; i < charValue.length; i++) {
-                value[i] = charValue[i]  & 0xffff;
-            }
-        } else if(field.getType() == TIFFField.TIFF_LONG) {
-            value = field.getAsLongs();
-        } else {
-            throw new RuntimeException();
-        }
-
-        return value;
-    }
-
     /*
      * Check whether the specified tag exists in the specified
      * TIFFDirectory. If not, throw an error message. Otherwise
@@ -306,6 +292,40 @@ public class TIFFImage extends SimpleRenderedImage {
                      TIFFDecodeParam param,
                      int directory)
         throws IOException {
+        this(stream, param, readDirectory(stream, param, directory));
+    }
+
+    /**
+     * Reads the IFD of the specified index, counted from the IFD at the
+     * offset set in the <code>TIFFDecodeParam</code> if any.
+     */
+    private static TIFFDirectory readDirectory(SeekableStream stream,
+                                               TIFFDecodeParam param,
+                                               int directory)
+        throws IOException {
+        boolean lazy = param != null && param.getLazyDirectories();
+        if (param == null || param.getIFDOffset() == null) {
+            return new TIFFDirectory(stream, directory, lazy);
+        } else {
+            return new TIFFDirectory(stream, param.getIFDOffset().longValue(),
+                                     directory, lazy);
+        }
+    }
+
+    /**
+     * Constructs a TIFFImage that acquires its data from a given
+     * SeekableStream and is described by an IFD already read from
+     * the stream.  The IFD offset of the <code>TIFFDecodeParam</code>
+     * is ignored.
+     *
+     * @param stream the SeekableStream to read from.
+     * @param param an instance of TIFFDecodeParam, or null.
+     * @param dir the IFD of the image.
+     */
+    TIFFImage(SeekableStream stream,
+              TIFFDecodeParam param,
+              TIFFDirectory dir)
+        throws IOException {
 
         this.stream = stream;
 	if (param == null) {
@@ -314,12 +334,6 @@ public class TIFFImage extends SimpleRenderedImage {
 
 	decodePaletteAsShorts = param.getDecodePaletteAsShorts();
 
-        // Read the specified directory.
-        TIFFDirectory dir = param.getIFDOffset() == null ?
-            new TIFFDirectory(stream, directory) :
-            new TIFFDirectory(stream, param.getIFDOffset().longValue(),
-                              directory);
-
         // Set a property "tiff_directory".
         properties.put("tiff_directory", dir);
 
@@ -557,14 +571,14 @@ public class TIFFImage extends SimpleRenderedImage {
 					TIFFImageDecoder.TIFF_TILE_LENGTH,
 					"Tile Length").getAsLong(0));
 	    tileOffsets =
-		(getField(dir,
+		getField(dir,
 			 TIFFImageDecoder.TIFF_TILE_OFFSETS,
-			 "Tile Offsets")).getAsLongs();
+			 "Tile Offsets");
 
-	    tileByteCounts = getFieldAsLongs(
+	    tileByteCounts =
 	               getField(dir,
 	                        TIFFImageDecoder.TIFF_TILE_BYTE_COUNTS,
-	                        "Tile Byte Counts"));
+	                        "Tile Byte Counts");
 
         } else {
 
@@ -602,43 +616,47 @@ public class TIFFImage extends SimpleRenderedImage {
 		}
 	    }
 
-	    TIFFField tileOffsetsField =
+	    tileOffsets =
 		getField(dir,
 			 TIFFImageDecoder.TIFF_STRIP_OFFSETS,
 			 "Strip Offsets");
-	    tileOffsets = getFieldAsLongs(tileOffsetsField);
 
-	    TIFFField tileByteCountsField =
+	    tileByteCounts =
                 dir.getField(TIFFImageDecoder.TIFF_STRIP_BYTE_COUNTS);
-            if(tileByteCountsField == null) {
+            if(tileByteCounts == null) {
                 // Attempt to infer the number of bytes in each strip.
                 int totalBytes = ((sampleSize+7)/8)*numBands*width*height;
                 int bytesPerStrip =
                     ((sampleSize+7)/8)*numBands*width*tileHeight;
                 int cumulativeBytes = 0;
-                tileByteCounts = new long[tileOffsets.length];
-                for(int i = 0; i < tileOffsets.length; i++) {
-                    tileByteCounts[i] =
+                int numStrips = tileOffsets.getCount();
+                long[] byteCounts = new long[numStrips];
+                for(int i = 0; i < numStrips; i++) {
+                    byteCounts[i] =
                         Math.min(totalBytes - cumulativeBytes,
                                  bytesPerStrip);
                     cumulativeBytes += bytesPerStrip;
                 }
+                tileByteCounts =
+                    new TIFFField(TIFFImageDecoder.TIFF_STRIP_BYTE_COUNTS,
+                                  TIFFField.TIFF_LONG, numStrips, byteCounts);
 
                 if(compression != COMP_NONE) {
                     // Replace the stream with one that will not throw
                     // an EOFException when it runs past the end.
                     this.stream = new NoEOFStream(stream);
                 }
-            } else {
-                tileByteCounts = getFieldAsLongs(tileByteCountsField);
             }
 
             // Uncompressed image provided in a single tile: clamp to max bytes.
             int maxBytes = width*height*numBands*((sampleSize + 7)/8);
-            if(tileByteCounts.length == 1 &&
+            if(tileByteCounts.getCount() == 1 &&
                compression == COMP_NONE &&
-               tileByteCounts[0] > maxBytes) {
-                tileByteCounts[0] = maxBytes;
+               tileByteCounts.getAsLong(0) > maxBytes) {
+                tileByteCounts =
+                    new TIFFField(TIFFImageDecoder.TIFF_STRIP_BYTE_COUNTS,
+                                  TIFFField.TIFF_LONG, 1,
+                                  new long[] {maxBytes});
             }
 	}
 
@@ -665,7 +683,11 @@ public class TIFFImage extends SimpleRenderedImage {
             // Do nothing.
             break;
         case COMP_DEFLATE:
-            inflater = new Inflater();
+            inflaters = new ThreadLocal() {
+                protected Object initialValue() {
+                    return new Inflater();
+                }
+            };
             break;
         case COMP_FAX_G3_1D:
         case COMP_FAX_G3_2D:
@@ -698,9 +720,13 @@ public class TIFFImage extends SimpleRenderedImage {
                 }
             }
 
-            // Fax encoding, need to create the Fax decoder.
-            decoder = new TIFFFaxDecoder(fillOrder,
-                                         tileWidth, tileHeight);
+            // Fax encoding, need to create the Fax decoders.
+            faxDecoders = new ThreadLocal() {
+                protected Object initialValue() {
+                    return new TIFFFaxDecoder(fillOrder,
+                                              tileWidth, tileHeight);
+                }
+            };
             break;
 
         case COMP_LZW:
@@ -723,8 +749,13 @@ public class TIFFImage extends SimpleRenderedImage {
                 }
             }
 
-            lzwDecoder = new TIFFLZWDecoder(tileWidth, predictor,
-                                            samplesPerPixel);
+            final int lzwSamplesPerPixel = samplesPerPixel;
+            lzwDecoders = new ThreadLocal() {
+                protected Object initialValue() {
+                    return new TIFFLZWDecoder(tileWidth, predictor,
+                                              lzwSamplesPerPixel);
+                }
+            };
             break;
 
         case COMP_JPEG_OLD:
@@ -744,10 +775,12 @@ public class TIFFImage extends SimpleRenderedImage {
                 byte[] jpegTable = jpegTableField.getAsBytes();
                 ByteArrayInputStream tableStream =
                     new ByteArrayInputStream(jpegTable);
-                JPEGImageDecoder decoder =
-                    JPEGCodec.createJPEGDecoder(tableStream);
-                decoder.decodeAsRaster();
-                decodeParam = decoder.getJPEGDecodeParam();
+                synchronized (jpegLock) {
+                    JPEGImageDecoder decoder =
+                        JPEGCodec.createJPEGDecoder(tableStream);
+                    decoder.decodeAsRaster();
+                    decodeParam = decoder.getJPEGDecodeParam();
+                }
             }
 
             break;
@@ -959,8 +992,12 @@ public class TIFFImage extends SimpleRenderedImage {
 
     /**
      * Returns tile (tileX, tileY) as a Raster.
+     *
+     * <p> The bytes of the tile are read at their offset in the stream
+     * without moving its file pointer, and decoded with decoders private
+     * to the calling thread, so that tiles may be read concurrently.
      */
-    public synchronized Raster getTile(int tileX, int tileY) {
+    public Raster getTile(int tileX, int tileY) {
         // Check parameters.
         if ((tileX < 0) || (tileX >= tilesX) ||
             (tileY < 0) || (tileY >= tilesY)) {
@@ -970,10 +1007,11 @@ public class TIFFImage extends SimpleRenderedImage {
         // The tile to return.
         WritableRaster tile = null;
 
-        // Synchronize the rest of the method in case other TIFFImage
-        // instances using the same stream were created by the same
-        // TIFFImageDecoder. This fixes 4690773.
-        synchronized(this.stream) {
+        // The decoders of this thread.
+        TIFFFaxDecoder decoder = faxDecoders == null ?
+            null : (TIFFFaxDecoder)faxDecoders.get();
+        TIFFLZWDecoder lzwDecoder = lzwDecoders == null ?
+            null : (TIFFLZWDecoder)lzwDecoders.get();
 
 	// Get the data array out of the DataBuffer
 	byte bdata[] = null;
@@ -1019,11 +1057,17 @@ public class TIFFImage extends SimpleRenderedImage {
                                                    new Point(tileXToX(tileX),
                                                              tileYToY(tileY)));
 
-	// Save original file pointer position and seek to tile data location.
-	long save_offset = 0;
+	// Number of bytes in this tile (strip) after compression.
+	int byteCount = (int)tileByteCounts.getAsLong(tileY*tilesX + tileX);
+
+	// Read the bytes of the tile at their location without moving the
+	// file pointer of the stream, which may be shared by other threads
+	// and by other TIFFImage instances created by the same
+	// TIFFImageDecoder (4690773), then decode them from memory.
+	byte[] tileData = new byte[byteCount];
 	try {
-	    save_offset = stream.getFilePointer();
-	    stream.seek(tileOffsets[tileY*tilesX + tileX]);
+	    stream.readFully(tileOffsets.getAsLong(tileY*tilesX + tileX),
+                             tileData, 0, byteCount);
 	} catch (IOException ioe) {
             String message = JaiI18N.getString("TIFFImage13");
             ImagingListenerProxy.errorOccurred(message,
@@ -1032,9 +1076,6 @@ public class TIFFImage extends SimpleRenderedImage {
 //	    throw new RuntimeException(JaiI18N.getString("TIFFImage13"));
 	}
 
-	// Number of bytes in this tile (strip) after compression.
-	int byteCount = (int)tileByteCounts[tileY*tilesX + tileX];
-
 	// Find out the number of bytes in the current tile. If the image is
         // tiled this may include pixels which are outside of the image bounds
         // if the image width and height are not multiples of the tile width
@@ -1045,55 +1086,37 @@ public class TIFFImage extends SimpleRenderedImage {
             tileRect : tileRect.intersection(getBounds());
         int unitsInThisTile = newRect.width * newRect.height * numBands;
 
-        // Allocate read buffer if needed.
-	byte data[] = compression != COMP_NONE || imageType == TYPE_PALETTE ?
-            new byte[byteCount] : null;
+        // The compressed data are decoded straight from the tile bytes.
+	byte data[] = tileData;
 
         // Read the data, uncompressing as needed. There are four cases:
         // bilevel, palette-RGB, 4-bit grayscale, and everything else.
         if(imageType == TYPE_BILEVEL) { // bilevel
-	    try {
-		if (compression == COMP_PACKBITS) {
-		    stream.readFully(data, 0, byteCount);
-
-		    // Since the decompressed data will still be packed
-		    // 8 pixels into 1 byte, calculate bytesInThisTile
-		    int bytesInThisTile;
-		    if ((newRect.width % 8) == 0) {
-			bytesInThisTile = (newRect.width/8) * newRect.height;
-		    } else {
-			bytesInThisTile =
-                            (newRect.width/8 + 1) * newRect.height;
-		    }
-		    decodePackbits(data, bytesInThisTile, bdata);
-		} else if (compression == COMP_LZW) {
-		    stream.readFully(data, 0, byteCount);
-		    lzwDecoder.decode(data, bdata, newRect.height);
-		} else if (compression == COMP_FAX_G3_1D) {
-		    stream.readFully(data, 0, byteCount);
-		    decoder.decode1D(bdata, data, 0, newRect.height);
-		} else if (compression == COMP_FAX_G3_2D) {
-		    stream.readFully(data, 0, byteCount);
-		    decoder.decode2D(bdata, data, 0, newRect.height,
-                                     tiffT4Options);
-		} else if (compression == COMP_FAX_G4_2D) {
-		    stream.readFully(data, 0, byteCount);
-                    decoder.decodeT6(bdata, data, 0, newRect.height,
-                                     tiffT6Options);
-		} else if (compression == COMP_DEFLATE) {
-                    stream.readFully(data, 0, byteCount);
-                    inflate(data, bdata);
-		} else if (compression == COMP_NONE) {
-		    stream.readFully(bdata, 0, byteCount);
+	    if (compression == COMP_PACKBITS) {
+		// Since the decompressed data will still be packed
+		// 8 pixels into 1 byte, calculate bytesInThisTile
+		int bytesInThisTile;
+		if ((newRect.width % 8) == 0) {
+		    bytesInThisTile = (newRect.width/8) * newRect.height;
+		} else {
+		    bytesInThisTile =
+                        (newRect.width/8 + 1) * newRect.height;
 		}
-
-		stream.seek(save_offset);
-	    } catch (IOException ioe) {
-                String message = JaiI18N.getString("TIFFImage13");
-                ImagingListenerProxy.errorOccurred(message,
-                                       new ImagingException(message, ioe),
-                                       this, false);
-//		throw new RuntimeException(JaiI18N.getString("TIFFImage13"));
+		decodePackbits(data, bytesInThisTile, bdata);
+	    } else if (compression == COMP_LZW) {
+		lzwDecoder.decode(data, bdata, newRect.height);
+	    } else if (compression == COMP_FAX_G3_1D) {
+		decoder.decode1D(bdata, data, 0, newRect.height);
+	    } else if (compression == COMP_FAX_G3_2D) {
+		decoder.decode2D(bdata, data, 0, newRect.height,
+                                 tiffT4Options);
+	    } else if (compression == COMP_FAX_G4_2D) {
+                decoder.decodeT6(bdata, data, 0, newRect.height,
+                                 tiffT6Options);
+	    } else if (compression == COMP_DEFLATE) {
+                inflate(data, bdata);
+	    } else if (compression == COMP_NONE) {
+		System.arraycopy(tileData, 0, bdata, 0, byteCount);
 	    }
         } else if(imageType == TYPE_PALETTE) { // palette-RGB
 	    if (sampleSize == 16) {
@@ -1115,57 +1138,38 @@ public class TIFFImage extends SimpleRenderedImage {
 		    int entries = unitsBeforeLookup * 2;
 
 		    // Read the data, if compressed, decode it, reset the pointer
-		    try {
-
-			if (compression == COMP_PACKBITS) {
-
-			    stream.readFully(data, 0, byteCount);
-
-			    byte byteArray[] = new byte[entries];
-			    decodePackbits(data, entries, byteArray);
-			    tempData = new short[unitsBeforeLookup];
-			    interpretBytesAsShorts(byteArray, tempData,
-						   unitsBeforeLookup);
-
-			}  else if (compression == COMP_LZW) {
-
-			    // Read in all the compressed data for this tile
-			    stream.readFully(data, 0, byteCount);
+		    if (compression == COMP_PACKBITS) {
 
-			    byte byteArray[] = new byte[entries];
-			    lzwDecoder.decode(data, byteArray, newRect.height);
-			    tempData = new short[unitsBeforeLookup];
-			    interpretBytesAsShorts(byteArray, tempData,
-						   unitsBeforeLookup);
+			byte byteArray[] = new byte[entries];
+			decodePackbits(data, entries, byteArray);
+			tempData = new short[unitsBeforeLookup];
+			interpretBytesAsShorts(byteArray, tempData,
+					       unitsBeforeLookup);
 
-			}  else if (compression == COMP_DEFLATE) {
+		    }  else if (compression == COMP_LZW) {
 
-			    stream.readFully(data, 0, byteCount);
-			    byte byteArray[] = new byte[entries];
-			    inflate(data, byteArray);
-			    tempData = new short[unitsBeforeLookup];
-			    interpretBytesAsShorts(byteArray, tempData,
-						   unitsBeforeLookup);
+			byte byteArray[] = new byte[entries];
+			lzwDecoder.decode(data, byteArray, newRect.height);
+			tempData = new short[unitsBeforeLookup];
+			interpretBytesAsShorts(byteArray, tempData,
+					       unitsBeforeLookup);
 
-			} else if (compression == COMP_NONE) {
+		    }  else if (compression == COMP_DEFLATE) {
 
-			    // byteCount tells us how many bytes are there
-			    // in this tile, but we need to read in shorts,
-			    // which will take half the space, so while
-			    // allocating we divide byteCount by 2.
-			    tempData = new short[byteCount/2];
-			    readShorts(byteCount/2, tempData);
-			}
+			byte byteArray[] = new byte[entries];
+			inflate(data, byteArray);
+			tempData = new short[unitsBeforeLookup];
+			interpretBytesAsShorts(byteArray, tempData,
+					       unitsBeforeLookup);
 
-			stream.seek(save_offset);
+		    } else if (compression == COMP_NONE) {
 
-		    } catch (IOException ioe) {
-                        String message = JaiI18N.getString("TIFFImage13");
-                        ImagingListenerProxy.errorOccurred(message,
-                                               new ImagingException(message, ioe),
-                                               this, false);
-//			throw new RuntimeException(
-//					JaiI18N.getString("TIFFImage13"));
+			// byteCount tells us how many bytes are there
+			// in this tile, but we need to read in shorts,
+			// which will take half the space, so while
+			// allocating we divide byteCount by 2.
+			tempData = new short[byteCount/2];
+			interpretBytesAsShorts(tileData, tempData, byteCount/2);
 		    }
 
 		    if (dataType == DataBuffer.TYPE_USHORT) {
@@ -1216,60 +1220,42 @@ public class TIFFImage extends SimpleRenderedImage {
 		    // No lookup being done here, when RGB values are needed,
 		    // the associated IndexColorModel can be used to get them.
 
-		    try {
-
-			if (compression == COMP_PACKBITS) {
-
-			    stream.readFully(data, 0, byteCount);
-
-			    // Since unitsInThisTile is the number of shorts,
-			    // but we do our decompression in terms of bytes, we
-			    // need to multiply unitsInThisTile by 2 in order to
-			    // figure out how many bytes we'll get after
-			    // decompression.
-			    int bytesInThisTile = unitsInThisTile * 2;
-
-			    byte byteArray[] = new byte[bytesInThisTile];
-			    decodePackbits(data, bytesInThisTile, byteArray);
-			    interpretBytesAsShorts(byteArray, sdata,
-						   unitsInThisTile);
-
-			} else if (compression == COMP_LZW) {
+		    if (compression == COMP_PACKBITS) {
 
-			    stream.readFully(data, 0, byteCount);
+			// Since unitsInThisTile is the number of shorts,
+			// but we do our decompression in terms of bytes, we
+			// need to multiply unitsInThisTile by 2 in order to
+			// figure out how many bytes we'll get after
+			// decompression.
+			int bytesInThisTile = unitsInThisTile * 2;
 
-			    // Since unitsInThisTile is the number of shorts,
-			    // but we do our decompression in terms of bytes, we
-			    // need to multiply unitsInThisTile by 2 in order to
-			    // figure out how many bytes we'll get after
-			    // decompression.
-			    byte byteArray[] = new byte[unitsInThisTile * 2];
-			    lzwDecoder.decode(data, byteArray, newRect.height);
-			    interpretBytesAsShorts(byteArray, sdata,
-						   unitsInThisTile);
+			byte byteArray[] = new byte[bytesInThisTile];
+			decodePackbits(data, bytesInThisTile, byteArray);
+			interpretBytesAsShorts(byteArray, sdata,
+					       unitsInThisTile);
 
-			}  else if (compression == COMP_DEFLATE) {
+		    } else if (compression == COMP_LZW) {
 
-			    stream.readFully(data, 0, byteCount);
-			    byte byteArray[] = new byte[unitsInThisTile * 2];
-			    inflate(data, byteArray);
-			    interpretBytesAsShorts(byteArray, sdata,
-						   unitsInThisTile);
+			// Since unitsInThisTile is the number of shorts,
+			// but we do our decompression in terms of bytes, we
+			// need to multiply unitsInThisTile by 2 in order to
+			// figure out how many bytes we'll get after
+			// decompression.
+			byte byteArray[] = new byte[unitsInThisTile * 2];
+			lzwDecoder.decode(data, byteArray, newRect.height);
+			interpretBytesAsShorts(byteArray, sdata,
+					       unitsInThisTile);
 
-			} else if (compression == COMP_NONE) {
+		    }  else if (compression == COMP_DEFLATE) {
 
-			    readShorts(byteCount/2, sdata);
-			}
+			byte byteArray[] = new byte[unitsInThisTile * 2];
+			inflate(data, byteArray);
+			interpretBytesAsShorts(byteArray, sdata,
+					       unitsInThisTile);
 
-			stream.seek(save_offset);
+		    } else if (compression == COMP_NONE) {
 
-		    } catch (IOException ioe) {
-                        String message = JaiI18N.getString("TIFFImage13");
-                        ImagingListenerProxy.errorOccurred(message,
-                                               new ImagingException(message, ioe),
-                                               this, false);
-//			throw new RuntimeException(
-//					JaiI18N.getString("TIFFImage13"));
+			interpretBytesAsShorts(tileData, sdata, byteCount/2);
 		    }
 		}
 
@@ -1286,60 +1272,42 @@ public class TIFFImage extends SimpleRenderedImage {
 		    int unitsBeforeLookup = unitsInThisTile / 3;
 
 		    // Read the data, if compressed, decode it, reset the pointer
-		    try {
-
-			if (compression == COMP_PACKBITS) {
-
-			    stream.readFully(data, 0, byteCount);
-			    tempData = new byte[unitsBeforeLookup];
-			    decodePackbits(data, unitsBeforeLookup, tempData);
-
-			}  else if (compression == COMP_LZW) {
-
-			    stream.readFully(data, 0, byteCount);
-			    tempData = new byte[unitsBeforeLookup];
-			    lzwDecoder.decode(data, tempData, newRect.height);
+		    if (compression == COMP_PACKBITS) {
 
-                        } else if (compression == COMP_JPEG_TTN2) {
+			tempData = new byte[unitsBeforeLookup];
+			decodePackbits(data, unitsBeforeLookup, tempData);
 
-                            stream.readFully(data, 0, byteCount);
-                            Raster tempTile = decodeJPEG(data,
-                                                         decodeParam,
-                                                         colorConvertJPEG,
-                                                         tile.getMinX(),
-                                                         tile.getMinY());
-                            int[] tempPixels = new int[unitsBeforeLookup];
-                            tempTile.getPixels(tile.getMinX(),
-                                               tile.getMinY(),
-                                               tile.getWidth(),
-                                               tile.getHeight(),
-                                               tempPixels);
-			    tempData = new byte[unitsBeforeLookup];
-                            for(int i = 0; i < unitsBeforeLookup; i++) {
-                                tempData[i] = (byte)tempPixels[i];
-                            }
+		    }  else if (compression == COMP_LZW) {
 
-			}  else if (compression == COMP_DEFLATE) {
+			tempData = new byte[unitsBeforeLookup];
+			lzwDecoder.decode(data, tempData, newRect.height);
 
-			    stream.readFully(data, 0, byteCount);
-			    tempData = new byte[unitsBeforeLookup];
-			    inflate(data, tempData);
+                    } else if (compression == COMP_JPEG_TTN2) {
+
+                        Raster tempTile = decodeJPEG(data,
+                                                     decodeParam,
+                                                     colorConvertJPEG,
+                                                     tile.getMinX(),
+                                                     tile.getMinY());
+                        int[] tempPixels = new int[unitsBeforeLookup];
+                        tempTile.getPixels(tile.getMinX(),
+                                           tile.getMinY(),
+                                           tile.getWidth(),
+                                           tile.getHeight(),
+                                           tempPixels);
+			tempData = new byte[unitsBeforeLookup];
+                        for(int i = 0; i < unitsBeforeLookup; i++) {
+                            tempData[i] = (byte)tempPixels[i];
+                        }
 
-			} else if (compression == COMP_NONE) {
+		    }  else if (compression == COMP_DEFLATE) {
 
-			    tempData = new byte[byteCount];
-			    stream.readFully(tempData, 0, byteCount);
-			}
+			tempData = new byte[unitsBeforeLookup];
+			inflate(data, tempData);
 
-			stream.seek(save_offset);
+		    } else if (compression == COMP_NONE) {
 
-		    } catch (IOException ioe) {
-                        String message = JaiI18N.getString("TIFFImage13");
-                        ImagingListenerProxy.errorOccurred(message,
-                                               new ImagingException(message, ioe),
-                                               this, false);
-//		throw new RuntimeException(
-//					JaiI18N.getString("TIFFImage13"));
+			tempData = tileData;
 		    }
 
 		    // Expand the palette image into an rgb image with ushort
@@ -1365,46 +1333,29 @@ public class TIFFImage extends SimpleRenderedImage {
 		    // No lookup being done here, when RGB values are needed,
 		    // the associated IndexColorModel can be used to get them.
 
-		    try {
-
-			if (compression == COMP_PACKBITS) {
-
-			    stream.readFully(data, 0, byteCount);
-			    decodePackbits(data, unitsInThisTile, bdata);
-
-			} else if (compression == COMP_LZW) {
+		    if (compression == COMP_PACKBITS) {
 
-			    stream.readFully(data, 0, byteCount);
-			    lzwDecoder.decode(data, bdata, newRect.height);
+			decodePackbits(data, unitsInThisTile, bdata);
 
-                        } else if (compression == COMP_JPEG_TTN2) {
+		    } else if (compression == COMP_LZW) {
 
-                            stream.readFully(data, 0, byteCount);
-                            tile.setRect(decodeJPEG(data,
-                                                    decodeParam,
-                                                    colorConvertJPEG,
-                                                    tile.getMinX(),
-                                                    tile.getMinY()));
+			lzwDecoder.decode(data, bdata, newRect.height);
 
-			}  else if (compression == COMP_DEFLATE) {
+                    } else if (compression == COMP_JPEG_TTN2) {
 
-                            stream.readFully(data, 0, byteCount);
-                            inflate(data, bdata);
+                        tile.setRect(decodeJPEG(data,
+                                                decodeParam,
+                                                colorConvertJPEG,
+                                                tile.getMinX(),
+                                                tile.getMinY()));
 
-			} else if (compression == COMP_NONE) {
+		    }  else if (compression == COMP_DEFLATE) {
 
-			    stream.readFully(bdata, 0, byteCount);
-			}
+                        inflate(data, bdata);
 
-			stream.seek(save_offset);
+		    } else if (compression == COMP_NONE) {
 
-		    } catch (IOException ioe) {
-                        String message = JaiI18N.getString("TIFFImage13");
-                        ImagingListenerProxy.errorOccurred(message,
-                                               new ImagingException(message, ioe),
-                                               this, false);
-//		throw new RuntimeException(
-//					JaiI18N.getString("TIFFImage13"));
+			System.arraycopy(tileData, 0, bdata, 0, byteCount);
 		    }
 		}
 
@@ -1419,18 +1370,6 @@ public class TIFFImage extends SimpleRenderedImage {
 
 		    byte tempData[] = null;
 
-		    try {
-			stream.readFully(data, 0, byteCount);
-			stream.seek(save_offset);
-		    } catch (IOException ioe) {
-                        String message = JaiI18N.getString("TIFFImage13");
-                        ImagingListenerProxy.errorOccurred(message,
-                                               new ImagingException(message, ioe),
-                                               this, false);
-//			throw new RuntimeException(
-//					JaiI18N.getString("TIFFImage13"));
-		    }
-
 		    // If compressed, decode the data.
 		    if (compression == COMP_PACKBITS) {
 
@@ -1488,257 +1427,196 @@ public class TIFFImage extends SimpleRenderedImage {
 		} else {
 
 		    // Output byte values, use IndexColorModel for unpacking
-		    try {
-
-			// If compressed, decode the data.
-			if (compression == COMP_PACKBITS) {
-
-			    stream.readFully(data, 0, byteCount);
-			    decodePackbits(data, bytesPostDecoding, bdata);
-
-			}  else if (compression == COMP_LZW) {
+		    // If compressed, decode the data.
+		    if (compression == COMP_PACKBITS) {
 
-			    stream.readFully(data, 0, byteCount);
-			    lzwDecoder.decode(data, bdata, newRect.height);
+			decodePackbits(data, bytesPostDecoding, bdata);
 
-                        }  else if (compression == COMP_DEFLATE) {
+		    }  else if (compression == COMP_LZW) {
 
-			    stream.readFully(data, 0, byteCount);
-			    inflate(data, bdata);
+			lzwDecoder.decode(data, bdata, newRect.height);
 
-			} else if (compression == COMP_NONE) {
+                    }  else if (compression == COMP_DEFLATE) {
 
-			    stream.readFully(bdata, 0, byteCount);
-			}
+			inflate(data, bdata);
 
-			stream.seek(save_offset);
+		    } else if (compression == COMP_NONE) {
 
-		    } catch (IOException ioe) {
-                        String message = JaiI18N.getString("TIFFImage13");
-                        ImagingListenerProxy.errorOccurred(message,
-                                               new ImagingException(message, ioe),
-                                               this, false);
-//			throw new RuntimeException(
-//					JaiI18N.getString("TIFFImage13"));
+			System.arraycopy(tileData, 0, bdata, 0, byteCount);
 		    }
 		}
 	    }
         } else if(imageType == TYPE_GRAY_4BIT) { // 4-bit gray
-            try {
-                if (compression == COMP_PACKBITS) {
-
-                    stream.readFully(data, 0, byteCount);
-
-                    // Since the decompressed data will still be packed
-                    // 2 pixels into 1 byte, calculate bytesInThisTile
-                    int bytesInThisTile;
-                    if ((newRect.width % 8) == 0) {
-                        bytesInThisTile = (newRect.width/2) * newRect.height;
-                    } else {
-                        bytesInThisTile = (newRect.width/2 + 1) *
-                            newRect.height;
-                    }
-
-                    decodePackbits(data, bytesInThisTile, bdata);
-
-                } else if (compression == COMP_LZW) {
-
-                    stream.readFully(data, 0, byteCount);
-                    lzwDecoder.decode(data, bdata, newRect.height);
-
-                }  else if (compression == COMP_DEFLATE) {
-
-                    stream.readFully(data, 0, byteCount);
-                    inflate(data, bdata);
+            if (compression == COMP_PACKBITS) {
 
+                // Since the decompressed data will still be packed
+                // 2 pixels into 1 byte, calculate bytesInThisTile
+                int bytesInThisTile;
+                if ((newRect.width % 8) == 0) {
+                    bytesInThisTile = (newRect.width/2) * newRect.height;
                 } else {
-
-                    stream.readFully(bdata, 0, byteCount);
+                    bytesInThisTile = (newRect.width/2 + 1) *
+                        newRect.height;
                 }
 
-                stream.seek(save_offset);
-	    } catch (IOException ioe) {
-                String message = JaiI18N.getString("TIFFImage13");
-                ImagingListenerProxy.errorOccurred(message,
-                                       new ImagingException(message, ioe),
-                                       this, false);
-//		throw new RuntimeException(JaiI18N.getString("TIFFImage13"));
-	    }
-        } else { // everything else
-	    try {
-
-		if (sampleSize == 8) {
+                decodePackbits(data, bytesInThisTile, bdata);
 
-		    if (compression == COMP_NONE) {
+            } else if (compression == COMP_LZW) {
 
-			stream.readFully(bdata, 0, byteCount);
-
-		    } else if (compression == COMP_LZW) {
-
-			stream.readFully(data, 0, byteCount);
-			lzwDecoder.decode(data, bdata, newRect.height);
+                lzwDecoder.decode(data, bdata, newRect.height);
 
-		    } else if (compression == COMP_PACKBITS) {
-
-			stream.readFully(data, 0, byteCount);
-			decodePackbits(data, unitsInThisTile, bdata);
-
-		    } else if (compression == COMP_JPEG_TTN2) {
-
-			stream.readFully(data, 0, byteCount);
-                        tile.setRect(decodeJPEG(data,
-                                                decodeParam,
-                                                colorConvertJPEG,
-                                                tile.getMinX(),
-                                                tile.getMinY()));
-		    } else if (compression == COMP_DEFLATE) {
+            }  else if (compression == COMP_DEFLATE) {
 
-			stream.readFully(data, 0, byteCount);
-                        inflate(data, bdata);
-                    }
+                inflate(data, bdata);
 
-		} else if (sampleSize == 16) {
+            } else {
 
-		    if (compression == COMP_NONE) {
+                System.arraycopy(tileData, 0, bdata, 0, byteCount);
+            }
+        } else { // everything else
+	    if (sampleSize == 8) {
 
-			readShorts(byteCount/2, sdata);
+		if (compression == COMP_NONE) {
 
-		    } else if (compression == COMP_LZW) {
+		    System.arraycopy(tileData, 0, bdata, 0, byteCount);
 
-			stream.readFully(data, 0, byteCount);
+		} else if (compression == COMP_LZW) {
 
-			// Since unitsInThisTile is the number of shorts,
-			// but we do our decompression in terms of bytes, we
-			// need to multiply unitsInThisTile by 2 in order to
-			// figure out how many bytes we'll get after
-			// decompression.
-			byte byteArray[] = new byte[unitsInThisTile * 2];
-			lzwDecoder.decode(data, byteArray, newRect.height);
-			interpretBytesAsShorts(byteArray, sdata,
-					       unitsInThisTile);
+		    lzwDecoder.decode(data, bdata, newRect.height);
 
-		    } else if (compression == COMP_PACKBITS) {
+		} else if (compression == COMP_PACKBITS) {
 
-			stream.readFully(data, 0, byteCount);
+		    decodePackbits(data, unitsInThisTile, bdata);
 
-			// Since unitsInThisTile is the number of shorts,
-			// but we do our decompression in terms of bytes, we
-			// need to multiply unitsInThisTile by 2 in order to
-			// figure out how many bytes we'll get after
-			// decompression.
-			int bytesInThisTile = unitsInThisTile * 2;
+		} else if (compression == COMP_JPEG_TTN2) {
 
-			byte byteArray[] = new byte[bytesInThisTile];
-			decodePackbits(data, bytesInThisTile, byteArray);
-			interpretBytesAsShorts(byteArray, sdata,
-					       unitsInThisTile);
-		    } else if (compression == COMP_DEFLATE) {
+                    tile.setRect(decodeJPEG(data,
+                                            decodeParam,
+                                            colorConvertJPEG,
+                                            tile.getMinX(),
+                                            tile.getMinY()));
+		} else if (compression == COMP_DEFLATE) {
 
-			stream.readFully(data, 0, byteCount);
-			byte byteArray[] = new byte[unitsInThisTile * 2];
-			inflate(data, byteArray);
-			interpretBytesAsShorts(byteArray, sdata,
-					       unitsInThisTile);
+                    inflate(data, bdata);
+                }
 
-		    }
-		} else if (sampleSize == 32 &&
-                           dataType == DataBuffer.TYPE_INT) { // redundant
-		    if (compression == COMP_NONE) {
+	    } else if (sampleSize == 16) {
 
-			readInts(byteCount/4, idata);
+		if (compression == COMP_NONE) {
 
-		    } else if (compression == COMP_LZW) {
+		    interpretBytesAsShorts(tileData, sdata, byteCount/2);
 
-			stream.readFully(data, 0, byteCount);
+		} else if (compression == COMP_LZW) {
 
-			// Since unitsInThisTile is the number of ints,
-			// but we do our decompression in terms of bytes, we
-			// need to multiply unitsInThisTile by 4 in order to
-			// figure out how many bytes we'll get after
-			// decompression.
-			byte byteArray[] = new byte[unitsInThisTile * 4];
-			lzwDecoder.decode(data, byteArray, newRect.height);
-			interpretBytesAsInts(byteArray, idata,
-                                             unitsInThisTile);
+		    // Since unitsInThisTile is the number of shorts,
+		    // but we do our decompression in terms of bytes, we
+		    // need to multiply unitsInThisTile by 2 in order to
+		    // figure out how many bytes we'll get after
+		    // decompression.
+		    byte byteArray[] = new byte[unitsInThisTile * 2];
+		    lzwDecoder.decode(data, byteArray, newRect.height);
+		    interpretBytesAsShorts(byteArray, sdata,
+					   unitsInThisTile);
 
-		    } else if (compression == COMP_PACKBITS) {
+		} else if (compression == COMP_PACKBITS) {
 
-			stream.readFully(data, 0, byteCount);
+		    // Since unitsInThisTile is the number of shorts,
+		    // but we do our decompression in terms of bytes, we
+		    // need to multiply unitsInThisTile by 2 in order to
+		    // figure out how many bytes we'll get after
+		    // decompression.
+		    int bytesInThisTile = unitsInThisTile * 2;
+
+		    byte byteArray[] = new byte[bytesInThisTile];
+		    decodePackbits(data, bytesInThisTile, byteArray);
+		    interpretBytesAsShorts(byteArray, sdata,
+					   unitsInThisTile);
+		} else if (compression == COMP_DEFLATE) {
 
-			// Since unitsInThisTile is the number of ints,
-			// but we do our decompression in terms of bytes, we
-			// need to multiply unitsInThisTile by 4 in order to
-			// figure out how many bytes we'll get after
-			// decompression.
-			int bytesInThisTile = unitsInThisTile * 4;
+		    byte byteArray[] = new byte[unitsInThisTile * 2];
+		    inflate(data, byteArray);
+		    interpretBytesAsShorts(byteArray, sdata,
+					   unitsInThisTile);
 
-			byte byteArray[] = new byte[bytesInThisTile];
-			decodePackbits(data, bytesInThisTile, byteArray);
-			interpretBytesAsInts(byteArray, idata,
-                                             unitsInThisTile);
-		    } else if (compression == COMP_DEFLATE) {
+		}
+	    } else if (sampleSize == 32 &&
+                       dataType == DataBuffer.TYPE_INT) { // redundant
+		if (compression == COMP_NONE) {
 
-			stream.readFully(data, 0, byteCount);
-			byte byteArray[] = new byte[unitsInThisTile * 4];
-			inflate(data, byteArray);
-			interpretBytesAsInts(byteArray, idata,
-                                             unitsInThisTile);
+		    interpretBytesAsInts(tileData, idata, byteCount/4);
 
-                    }
-		} else if (sampleSize == 32 &&
-                           dataType == DataBuffer.TYPE_FLOAT) { // redundant
-		    if (compression == COMP_NONE) {
+		} else if (compression == COMP_LZW) {
 
-			readFloats(byteCount/4, fdata);
+		    // Since unitsInThisTile is the number of ints,
+		    // but we do our decompression in terms of bytes, we
+		    // need to multiply unitsInThisTile by 4 in order to
+		    // figure out how many bytes we'll get after
+		    // decompression.
+		    byte byteArray[] = new byte[unitsInThisTile * 4];
+		    lzwDecoder.decode(data, byteArray, newRect.height);
+		    interpretBytesAsInts(byteArray, idata,
+                                         unitsInThisTile);
 
-		    } else if (compression == COMP_LZW) {
+		} else if (compression == COMP_PACKBITS) {
 
-			stream.readFully(data, 0, byteCount);
+		    // Since unitsInThisTile is the number of ints,
+		    // but we do our decompression in terms of bytes, we
+		    // need to multiply unitsInThisTile by 4 in order to
+		    // figure out how many bytes we'll get after
+		    // decompression.
+		    int bytesInThisTile = unitsInThisTile * 4;
+
+		    byte byteArray[] = new byte[bytesInThisTile];
+		    decodePackbits(data, bytesInThisTile, byteArray);
+		    interpretBytesAsInts(byteArray, idata,
+                                         unitsInThisTile);
+		} else if (compression == COMP_DEFLATE) {
 
-			// Since unitsInThisTile is the number of floats,
-			// but we do our decompression in terms of bytes, we
-			// need to multiply unitsInThisTile by 4 in order to
-			// figure out how many bytes we'll get after
-			// decompression.
-			byte byteArray[] = new byte[unitsInThisTile * 4];
-			lzwDecoder.decode(data, byteArray, newRect.height);
-			interpretBytesAsFloats(byteArray, fdata,
-                                               unitsInThisTile);
+		    byte byteArray[] = new byte[unitsInThisTile * 4];
+		    inflate(data, byteArray);
+		    interpretBytesAsInts(byteArray, idata,
+                                         unitsInThisTile);
 
-		    } else if (compression == COMP_PACKBITS) {
+                }
+	    } else if (sampleSize == 32 &&
+                       dataType == DataBuffer.TYPE_FLOAT) { // redundant
+		if (compression == COMP_NONE) {
 
-			stream.readFully(data, 0, byteCount);
+		    interpretBytesAsFloats(tileData, fdata, byteCount/4);
 
-			// Since unitsInThisTile is the number of floats,
-			// but we do our decompression in terms of bytes, we
-			// need to multiply unitsInThisTile by 4 in order to
-			// figure out how many bytes we'll get after
-			// decompression.
-			int bytesInThisTile = unitsInThisTile * 4;
+		} else if (compression == COMP_LZW) {
 
-			byte byteArray[] = new byte[bytesInThisTile];
-			decodePackbits(data, bytesInThisTile, byteArray);
-			interpretBytesAsFloats(byteArray, fdata,
-                                               unitsInThisTile);
-		    } else if (compression == COMP_DEFLATE) {
+		    // Since unitsInThisTile is the number of floats,
+		    // but we do our decompression in terms of bytes, we
+		    // need to multiply unitsInThisTile by 4 in order to
+		    // figure out how many bytes we'll get after
+		    // decompression.
+		    byte byteArray[] = new byte[unitsInThisTile * 4];
+		    lzwDecoder.decode(data, byteArray, newRect.height);
+		    interpretBytesAsFloats(byteArray, fdata,
+                                           unitsInThisTile);
 
-			stream.readFully(data, 0, byteCount);
-			byte byteArray[] = new byte[unitsInThisTile * 4];
-                        inflate(data, byteArray);
-			interpretBytesAsFloats(byteArray, fdata,
-                                               unitsInThisTile);
+		} else if (compression == COMP_PACKBITS) {
 
-                    }
-		}
+		    // Since unitsInThisTile is the number of floats,
+		    // but we do our decompression in terms of bytes, we
+		    // need to multiply unitsInThisTile by 4 in order to
+		    // figure out how many bytes we'll get after
+		    // decompression.
+		    int bytesInThisTile = unitsInThisTile * 4;
+
+		    byte byteArray[] = new byte[bytesInThisTile];
+		    decodePackbits(data, bytesInThisTile, byteArray);
+		    interpretBytesAsFloats(byteArray, fdata,
+                                           unitsInThisTile);
+		} else if (compression == COMP_DEFLATE) {
 
-		stream.seek(save_offset);
+		    byte byteArray[] = new byte[unitsInThisTile * 4];
+                    inflate(data, byteArray);
+		    interpretBytesAsFloats(byteArray, fdata,
+                                           unitsInThisTile);
 
-	    } catch (IOException ioe) {
-                String message = JaiI18N.getString("TIFFImage13");
-                ImagingListenerProxy.errorOccurred(message,
-                                       new ImagingException(message, ioe),
-                                       this, false);
-//		throw new RuntimeException(JaiI18N.getString("TIFFImage13"));
+                }
 	    }
 
             // Modify the data for certain special cases.
@@ -1817,71 +1695,9 @@ public class TIFFImage extends SimpleRenderedImage {
             }
         }
 
-        } // synchronized(this.stream)
-
         return tile;
     }
 
-    private void readShorts(int shortCount, short shortArray[]) {
-
-	// Since each short consists of 2 bytes, we need a
-	// byte array of double size
-	int byteCount = 2 * shortCount;
-	byte byteArray[] = new byte[byteCount];
-
-	try {
-	    stream.readFully(byteArray, 0, byteCount);
-	} catch (IOException ioe) {
-            String message = JaiI18N.getString("TIFFImage13");
-            ImagingListenerProxy.errorOccurred(message,
-                                   new ImagingException(message, ioe),
-                                   this, false);
-//	   throw new RuntimeException(JaiI18N.getString("TIFFImage13"));
-	}
-
-	interpretBytesAsShorts(byteArray, shortArray, shortCount);
-    }
-
-    private void readInts(int intCount, int intArray[]) {
-
-	// Since each int consists of 4 bytes, we need a
-	// byte array of quadruple size
-	int byteCount = 4 * intCount;
-	byte byteArray[] = new byte[byteCount];
-
-	try {
-	    stream.readFully(byteArray, 0, byteCount);
-	} catch (IOException ioe) {
-            String message = JaiI18N.getString("TIFFImage13");
-            ImagingListenerProxy.errorOccurred(message,
-                                   new ImagingException(message, ioe),
-                                   this, false);
-//	   throw new RuntimeException(JaiI18N.getString("TIFFImage13"));
-	}
-
-	interpretBytesAsInts(byteArray, intArray, intCount);
-    }
-
-    private void readFloats(int floatCount, float floatArray[]) {
-
-	// Since each float consists of 4 bytes, we need a
-	// byte array of quadruple size
-	int byteCount = 4 * floatCount;
-	byte byteArray[] = new byte[byteCount];
-
-	try {
-	    stream.readFully(byteArray, 0, byteCount);
-	} catch (IOException ioe) {
-            String message = JaiI18N.getString("TIFFImage13");
-            ImagingListenerProxy.errorOccurred(message,
-                                   new ImagingException(message, ioe),
-                                   this, false);
-//	   throw new RuntimeException(JaiI18N.getString("TIFFImage13"));
-	}
-
-	interpretBytesAsFloats(byteArray, floatArray, floatCount);
-    }
-
     // Method to interpret a byte array to a short array, depending on
     // whether the bytes are stored in a big endian or little endian format.
     private void interpretBytesAsShorts(byte byteArray[],
@@ -2108,6 +1924,12 @@ class NoEOFStream extends SeekableStream {
         return count < 0 ? len : count;
     }
 
+    public int read(long pos, byte[] b, int off, int len)
+        throws IOException {
+        int count = stream.read(pos, b, off, len);
+        return count < 0 ? len : count;
+    }
+
     public long getFilePointer() throws IOException {
         return stream.getFilePointer();
     }
@@ -92,14 +92,28 @@ public class TIFFImageDecoder extends ImageDecoderImpl {
     public static final int TIFF_S_MIN_SAMPLE_VALUE         = 340;
     public static final int TIFF_S_MAX_SAMPLE_VALUE         = 341;
 
+    /** The offsets of the IFDs in the stream, read on first use. */
+    private long[] ifdOffsets;
+
     public TIFFImageDecoder(SeekableStream input,
                             ImageDecodeParam param) {
         super(input, param);
     }
 
+    /**
+     * Returns the offsets of the IFDs, so that each page may be opened
+     * without traversing the preceding IFDs again.
+     */
+    private synchronized long[] getIFDOffsets() throws IOException {
+        if (ifdOffsets == null) {
+            ifdOffsets = TIFFDirectory.getIFDOffsets(input);
+        }
+        return ifdOffsets;
+    }
+
     public int getNumPages() throws IOException {
         try {
-            return TIFFDirectory.getNumDirectories(input);
+            return getIFDOffsets().length;
         } catch(Exception e) {
             throw CodecUtils.toIOException(e);
         }
@@ -110,7 +124,17 @@ public class TIFFImageDecoder extends ImageDecoderImpl {
             throw new IOException(JaiI18N.getString("TIFFImageDecoder0"));
         }
         try {
-            return new TIFFImage(input, (TIFFDecodeParam)param, page);
+            TIFFDecodeParam tiffParam = (TIFFDecodeParam)param;
+            if (tiffParam != null && tiffParam.getIFDOffset() != null) {
+                // Pages are counted from the given IFD.
+                return applySourceRegion(new TIFFImage(input, tiffParam, page));
+            }
+
+            boolean lazy = tiffParam != null && tiffParam.getLazyDirectories();
+            TIFFDirectory dir =
+                new TIFFDirectory(input, getIFDOffsets()[page], 0, lazy);
+            // Strips and tiles without selected pixels are never decoded.
+            return applySourceRegion(new TIFFImage(input, tiffParam, dir));
         } catch(Exception e) {
             throw CodecUtils.toIOException(e);
         }
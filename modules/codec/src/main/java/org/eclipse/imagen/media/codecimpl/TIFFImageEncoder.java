@@ -20,6 +20,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.awt.Point;
@@ -40,6 +41,12 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.Deflater;
 import org.eclipse.imagen.media.codec.ImageEncoderImpl;
 import org.eclipse.imagen.media.codec.ImageEncodeParam;
@@ -82,6 +89,8 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
         TIFFEncodeParam.COMPRESSION_JPEG_TTN2;
     private static final int COMP_PACKBITS  =
         TIFFEncodeParam.COMPRESSION_PACKBITS;
+    private static final int COMP_LZW       =
+        TIFFEncodeParam.COMPRESSION_LZW;
     private static final int COMP_DEFLATE   =
         TIFFEncodeParam.COMPRESSION_DEFLATE;
 
@@ -99,9 +108,15 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
     // Default values
     private static final int DEFAULT_ROWS_PER_STRIP = 8;
 
+    // The largest offset which may be stored in a classic TIFF stream
+    private static final long MAX_CLASSIC_OFFSET = 0xffffffffL;
+
     // Little endian flag
     private boolean isLittleEndian = false;
 
+    // BigTIFF flag
+    private boolean isBigTIFF = false;
+
     private static final char[] intsToChars(int[] intArray) {
         int arrayLength = intArray.length;
         char[] charArray = new char[arrayLength];
@@ -129,37 +144,115 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
         // Set the byte order flag before any data are written.
         isLittleEndian = encodeParam.getLittleEndian();
 
-        // Write the file header (8 bytes).
-        writeFileHeader();
+        // Gather all images to be written so that the format may be
+        // chosen according to their total size.
+        ArrayList images = new ArrayList();
+        ArrayList params = new ArrayList();
+        images.add(im);
+        params.add(encodeParam);
 
 	Iterator iter = encodeParam.getExtraImages();
 	if(iter != null) {
-            int ifdOffset = 8;
 	    RenderedImage nextImage = im;
             TIFFEncodeParam nextParam = encodeParam;
-            boolean hasNext;
-            do {
-                hasNext = iter.hasNext();
-                ifdOffset = encode(nextImage, nextParam, ifdOffset, !hasNext);
-	        if(hasNext) {
-                    Object obj = iter.next();
-                    if(obj instanceof RenderedImage) {
-                        nextImage = (RenderedImage)obj;
-                        nextParam = encodeParam;
-                    } else if(obj instanceof Object[]) {
-                        Object[] o = (Object[])obj;
-                        nextImage = (RenderedImage)o[0];
-                        nextParam = (TIFFEncodeParam)o[1];
-                    }
-	        }
-            } while(hasNext);
-        } else {
-	    encode(im, encodeParam, 8, true);
+            while(iter.hasNext()) {
+                Object obj = iter.next();
+                if(obj instanceof RenderedImage) {
+                    nextImage = (RenderedImage)obj;
+                    nextParam = encodeParam;
+                } else if(obj instanceof Object[]) {
+                    Object[] o = (Object[])obj;
+                    nextImage = (RenderedImage)o[0];
+                    nextParam = (TIFFEncodeParam)o[1];
+                }
+                images.add(nextImage);
+                params.add(nextParam);
+            }
+        }
+
+        // Switch to BigTIFF if the 32-bit offsets might not suffice.
+        isBigTIFF = encodeParam.getWriteBigTIFF();
+        long estimatedSize = 0;
+        for(int i = 0; i < images.size() && !isBigTIFF; i++) {
+            estimatedSize +=
+                estimateSize((RenderedImage)images.get(i),
+                             (TIFFEncodeParam)params.get(i));
+            isBigTIFF = estimatedSize > MAX_CLASSIC_OFFSET;
+        }
+
+        // Write the file header (8 or 16 bytes).
+        writeFileHeader();
+
+        long ifdOffset = isBigTIFF ? 16 : 8;
+        for(int i = 0; i < images.size(); i++) {
+            ifdOffset = encode((RenderedImage)images.get(i),
+                               (TIFFEncodeParam)params.get(i),
+                               ifdOffset, i == images.size() - 1);
         }
     }
 
-    private int encode(RenderedImage im, TIFFEncodeParam encodeParam,
-                       int ifdOffset, boolean isLast) throws IOException {
+    /**
+     * Returns an upper bound of the number of bytes needed to store an
+     * image, including its IFD, for the purpose of deciding whether it
+     * fits into a classic TIFF stream.  The bound assumes that no
+     * compression scheme expands the data by more than a constant factor.
+     */
+    private static long estimateSize(RenderedImage im,
+                                     TIFFEncodeParam encodeParam) {
+        int[] sampleSize = im.getSampleModel().getSampleSize();
+        int bitsPerPixel = 0;
+        for(int i = 0; i < sampleSize.length; i++) {
+            bitsPerPixel += sampleSize[i];
+        }
+
+        // Tiles are written in full so account for the padding.
+        long width = im.getWidth();
+        long height = im.getHeight();
+        long tilesX = 1;
+        long numTiles = (height + DEFAULT_ROWS_PER_STRIP - 1)/
+            DEFAULT_ROWS_PER_STRIP;
+        if(encodeParam.getWriteTiled()) {
+            int tileWidth = encodeParam.getTileWidth() > 0 ?
+                encodeParam.getTileWidth() : im.getTileWidth();
+            int tileHeight = encodeParam.getTileHeight() > 0 ?
+                encodeParam.getTileHeight() : im.getTileHeight();
+            tilesX = (width + tileWidth - 1)/tileWidth;
+            long tilesY = (height + tileHeight - 1)/tileHeight;
+            width = tilesX*tileWidth;
+            height = tilesY*tileHeight;
+            numTiles = tilesX*tilesY;
+        } else if(encodeParam.getTileHeight() > 0) {
+            int tileHeight = encodeParam.getTileHeight();
+            numTiles = (height + tileHeight - 1)/tileHeight;
+        }
+
+        long size = (width*bitsPerPixel + 7)/8*height;
+
+        // Allow for the worst case expansion of the compression scheme,
+        // some of which add a few bytes to each row of each segment.
+        long rows = tilesX*height;
+        switch(encodeParam.getCompression()) {
+        case COMP_NONE:
+            break;
+        case COMP_LZW:
+            size += size/2;
+            break;
+        case COMP_GROUP3_1D:
+        case COMP_GROUP3_2D:
+        case COMP_GROUP4:
+            size = 5*size + 4*rows;
+            break;
+        default:
+            size += size/64 + rows;
+            break;
+        }
+
+        // Add the offset and byte count arrays and room for other fields.
+        return size + 16*numTiles + 65536;
+    }
+
+    private long encode(RenderedImage im, TIFFEncodeParam encodeParam,
+                        long ifdOffset, boolean isLast) throws IOException {
         // Cannot store a packed byte image directly so reformat it.
         if(CodecUtils.isPackedByteImage(im)) {
             // Get the source ColorModel.
@@ -243,10 +336,6 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
 	    throw new RuntimeException(JaiI18N.getString("TIFFImageEncoder5"));
 	}
 
-        boolean dataTypeIsShort =
-            dataType == DataBuffer.TYPE_SHORT ||
-            dataType == DataBuffer.TYPE_USHORT;
-
 	ColorModel colorModel = im.getColorModel();
         if (colorModel != null &&
             colorModel instanceof IndexColorModel &&
@@ -530,9 +619,15 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
 	    tileByteCounts[numTiles-1];
 
         // The data will be written after the IFD: create the array here
-        // but fill it in later.
+        // but fill it in later.  Unlike the decoder, the encoder keeps
+        // the offsets and byte counts in memory, as the IFD holding them
+        // is written out in one piece once the byte counts are known;
+        // at 16 bytes per tile they are small compared to the tile data.
 	long tileOffsets[] = new long[numTiles];
 
+        // Offsets and byte counts are 64-bit values in BigTIFF.
+        int offsetType = isBigTIFF ? TIFFField.TIFF_LONG8 : TIFFField.TIFF_LONG;
+
 	// Basic fields - have to be in increasing numerical order.
 	// ImageWidth                     256
 	// ImageLength                    257
@@ -574,7 +669,7 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
 
         if(!isTiled) {
             fields.add(new TIFFField(TIFFImageDecoder.TIFF_STRIP_OFFSETS,
-                                     TIFFField.TIFF_LONG, numTiles, 
+                                     offsetType, numTiles, 
                                      (long[])tileOffsets));
         }
 	
@@ -588,7 +683,7 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
                                      new long[] {(long)tileHeight}));
 
             fields.add(new TIFFField(TIFFImageDecoder.TIFF_STRIP_BYTE_COUNTS,
-                                     TIFFField.TIFF_LONG, numTiles, 
+                                     offsetType, numTiles, 
                                      (long[])tileByteCounts));
         }
 
@@ -608,11 +703,11 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
                                      new long[] {(long)tileHeight}));
 
             fields.add(new TIFFField(TIFFImageDecoder.TIFF_TILE_OFFSETS,
-                                     TIFFField.TIFF_LONG, numTiles, 
+                                     offsetType, numTiles, 
                                      (long[])tileOffsets));
 
             fields.add(new TIFFField(TIFFImageDecoder.TIFF_TILE_BYTE_COUNTS,
-                                     TIFFField.TIFF_LONG, numTiles, 
+                                     offsetType, numTiles, 
                                      (long[])tileByteCounts));
         }
 
@@ -655,7 +750,6 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
         boolean inverseFill = encodeParam.getReverseFillOrder();
         boolean T4encode2D = encodeParam.getT4Encode2D();
         boolean T4PadEOLs = encodeParam.getT4PadEOLs();
-        TIFFFaxEncoder faxEncoder = null;
 
         // Add bilevel compression fields.
         if((imageType == TIFF_BILEVEL_BLACK_IS_ZERO ||
@@ -664,9 +758,6 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
             compression == COMP_GROUP3_2D ||
             compression == COMP_GROUP4)) {
 
-            // Create the encoder.
-            faxEncoder = new TIFFFaxEncoder(inverseFill);
-
             // FillOrder field.
             fields.add(new TIFFField(TIFFImageDecoder.TIFF_FILL_ORDER,
                                      TIFFField.TIFF_SHORT, 1, 
@@ -693,6 +784,20 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
             }
         }
 
+        // LZW compression variables.
+        int predictor = TIFFEncodeParam.PREDICTOR_NONE;
+
+        if(compression == COMP_LZW && sampleSize[0] == 8) {
+            // Horizontal differencing is only defined for 8-bit samples.
+            predictor = encodeParam.getPredictor();
+
+            if(predictor != TIFFEncodeParam.PREDICTOR_NONE) {
+                fields.add(new TIFFField(TIFFImageDecoder.TIFF_PREDICTOR,
+                                         TIFFField.TIFF_SHORT, 1,
+                                         new char[] {(char)predictor}));
+            }
+        }
+
         // Initialize some JPEG variables.
         obsolete.image.codec.jpeg.JPEGEncodeParam jpegEncodeParam = null;
         obsolete.image.codec.jpeg.JPEGImageEncoder jpegEncoder = null;
@@ -849,15 +954,12 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
         //    is used (outCache non-null, tempFile null).
 
         OutputStream outCache = null;
-        byte[] compressBuf = null;
+        int bufSize = 0;
         File tempFile = null;
 
-        int nextIFDOffset = 0;
+        long nextIFDOffset = 0;
         boolean skipByte = false;
 
-        Deflater deflater = null;
-        int deflateLevel = Deflater.DEFAULT_COMPRESSION;
-
         boolean jpegRGBToYCbCr = false;
 
         if(compression == COMP_NONE) {
@@ -881,7 +983,7 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
 
             if(!isLast) {
                 // Determine the offset of the next IFD.
-                nextIFDOffset = (int)(tileOffsets[0] + totalBytesOfData);
+                nextIFDOffset = tileOffsets[0] + totalBytesOfData;
 
                 // IFD offsets must be on a word boundary.
                 if(nextIFDOffset % 2 != 0) {
@@ -890,6 +992,8 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
                 }
             }
 
+            checkOffset(tileOffsets[0] + totalBytesOfData);
+
             // Write the IFD and field overflow before the image data.
             writeDirectory(ifdOffset, fields, nextIFDOffset);
 
@@ -927,7 +1031,6 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
                 }
             }
 
-            int bufSize = 0;
             switch(compression) {
             case COMP_GROUP3_1D:
                 // This initial buffer size is based on an alternating 1-0
@@ -964,23 +1067,23 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
                 }
                 break;
             case COMP_DEFLATE:
-                bufSize = (int)bytesPerTile;
-                deflater = new Deflater(encodeParam.getDeflateLevel());
+                // Allow for expansion of incompressible data, using the
+                // bound of zlib's compressBound().
+                bufSize = (int)(bytesPerTile + (bytesPerTile >> 12) +
+                                (bytesPerTile >> 14) +
+                                (bytesPerTile >> 25) + 13);
+                break;
+            case COMP_LZW:
+                bufSize =
+                    TIFFLZWEncoder.getMaxEncodedSize((int)bytesPerTile);
                 break;
             default:
                 bufSize = 0;
             }
-            if(bufSize != 0) {
-                compressBuf = new byte[bufSize];
-            }
         }
 
         // ---- Writing of actual image data ----
 
-	// Buffer for up to tileHeight rows of pixels
-        int[] pixels = null;
-        float[] fpixels = null;
-
         // Whether to test for contiguous data.
         boolean checkContiguous =
             ((sampleSize[0] == 1 &&
@@ -989,285 +1092,62 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
              (sampleSize[0] == 8 &&
               sampleModel instanceof ComponentSampleModel));
 
-        // Also create a buffer to hold tileHeight lines of the
-        // data to be written to the file, so we can use array writes.
-        byte[] bpixels = null;
-        if(compression != COMP_JPEG_TTN2) {
-            if(dataType == DataBuffer.TYPE_BYTE) {
-                bpixels = new byte[tileHeight * tileWidth * numBands];
-            } else if(dataTypeIsShort) {
-                bpixels = new byte[2 * tileHeight * tileWidth * numBands];
-            } else if(dataType == DataBuffer.TYPE_INT ||
-                      dataType == DataBuffer.TYPE_FLOAT) {
-                bpixels = new byte[4 * tileHeight * tileWidth * numBands];
-            }
+        // JPEG data are written directly by the JPEG encoder and so are
+        // never encoded concurrently.
+        int parallelism = encodeParam.getParallelism();
+        if(compression == COMP_JPEG_TTN2 || numTiles < 2) {
+            parallelism = 0;
         }
 
-	// Process tileHeight rows at a time
-	int lastRow = minY + height;
-        int lastCol = minX + width;
-        int tileNum = 0;
-        for (int row = minY; row < lastRow; row += tileHeight) {
-            int rows = isTiled ?
-                tileHeight : Math.min(tileHeight, lastRow - row);
-            int size = rows * tileWidth * numBands;
-
-            for(int col = minX; col < lastCol; col += tileWidth) {
-                // Grab the pixels
-                Raster src =
-                    im.getData(new Rectangle(col, row, tileWidth, rows));
-
-                boolean useDataBuffer = false;
-                if(compression != COMP_JPEG_TTN2) { // JPEG access Raster
-                    if(checkContiguous) {
-                        if(sampleSize[0] == 8) { // 8-bit
-                            ComponentSampleModel csm =
-                                (ComponentSampleModel)src.getSampleModel();
-                            int[] bankIndices = csm.getBankIndices();
-                            int[] bandOffsets = csm.getBandOffsets();
-                            int pixelStride = csm.getPixelStride();
-                            int lineStride = csm.getScanlineStride();
-
-                            if(pixelStride != numBands ||
-                               lineStride != bytesPerRow) {
-                                useDataBuffer = false;
-                            } else {
-                                useDataBuffer = true;
-                                for(int i = 0;
-                                    useDataBuffer && i < numBands;
-                                    i++) {
-                                    if(bankIndices[i] != 0 ||
-                                       bandOffsets[i] != i) {
-                                        useDataBuffer = false;
-                                    }
-                                }
-                            }
-                        } else { // 1-bit
-                            MultiPixelPackedSampleModel mpp =
-                                (MultiPixelPackedSampleModel)src.getSampleModel();
-                            if(mpp.getNumBands() == 1 &&
-                               mpp.getDataBitOffset() == 0 &&
-                               mpp.getPixelBitStride() == 1) {
-                                useDataBuffer = true;
-                            }
-                        }
-                    }
-
-                    if(!useDataBuffer) {
-                        if(dataType == DataBuffer.TYPE_FLOAT) {
-                            fpixels = src.getPixels(col, row, tileWidth, rows,
-                                                    fpixels);
-                        } else {
-                            pixels = src.getPixels(col, row, tileWidth, rows,
-                                                   pixels);
-                        }
-                    }
-                }
-
-                int index;
-
-                int pixel = 0;;
-                int k = 0;
-                switch(sampleSize[0]) {
-
-                case 1:
-
-                    if(useDataBuffer) {
-                        byte[] btmp =
-                            ((DataBufferByte)src.getDataBuffer()).getData();
-                        MultiPixelPackedSampleModel mpp =
-                            (MultiPixelPackedSampleModel)src.getSampleModel();
-                        int lineStride = mpp.getScanlineStride();
-                        int inOffset =
-                            mpp.getOffset(col -
-                                          src.getSampleModelTranslateX(),
-                                          row -
-                                          src.getSampleModelTranslateY());
-                        if(lineStride == (int)bytesPerRow) {
-                            System.arraycopy(btmp, inOffset,
-                                             bpixels, 0,
-                                             (int)bytesPerRow*rows);
-                        } else {
-                            int outOffset = 0;
-                            for(int j = 0; j < rows; j++) {
-                                System.arraycopy(btmp, inOffset,
-                                                 bpixels, outOffset,
-                                                 (int)bytesPerRow);
-                                inOffset += lineStride;
-                                outOffset += (int)bytesPerRow;
-                            }
-                        }
-                    } else {
-                        index = 0;
-
-                        // For each of the rows in a strip
-                        for (int i=0; i<rows; i++) {
-
-                            // Write number of pixels exactly divisible by 8
-                            for (int j=0; j<tileWidth/8; j++) {
-			
-                                pixel =
-                                    (pixels[index++] << 7) |
-                                    (pixels[index++] << 6) |
-                                    (pixels[index++] << 5) |
-                                    (pixels[index++] << 4) |
-                                    (pixels[index++] << 3) |
-                                    (pixels[index++] << 2) |
-                                    (pixels[index++] << 1) |
-                                    pixels[index++];
-                                bpixels[k++] = (byte)pixel;
-                            }
-
-                            // Write the pixels remaining after division by 8
-                            if (tileWidth%8 > 0) {
-                                pixel = 0;
-                                for (int j=0; j<tileWidth%8; j++) {
-                                    pixel |= (pixels[index++] << (7 - j));
-                                }
-                                bpixels[k++] = (byte)pixel;
-                            }
-                        }
-                    }
-
-                    if(compression == COMP_NONE) {
-                        output.write(bpixels, 0, rows * ((tileWidth+7)/8));
-                    } else if(compression == COMP_GROUP3_1D) {
-                        int rowStride = (tileWidth + 7)/8;
-                        int rowOffset = 0;
-                        int numCompressedBytes = 0;
-                        for(int tileRow = 0; tileRow < rows; tileRow++) {
-                            int numCompressedBytesInRow =
-                                faxEncoder.encodeRLE(bpixels,
-                                                     rowOffset, 0, tileWidth,
-                                                     compressBuf);
-                            output.write(compressBuf,
-                                         0, numCompressedBytesInRow);
-                            rowOffset += rowStride;
-                            numCompressedBytes += numCompressedBytesInRow;
-                        }
-                        tileByteCounts[tileNum++] = numCompressedBytes;
-                    } else if(compression == COMP_GROUP3_2D) {
-                        int numCompressedBytes =
-                            faxEncoder.encodeT4(!T4encode2D,// 1D == !2D
-                                                T4PadEOLs,
-                                                bpixels,
-                                                (tileWidth+7)/8,
-                                                0,
-                                                tileWidth,
-                                                rows,
-                                                compressBuf);
-                        tileByteCounts[tileNum++] = numCompressedBytes;
-                        output.write(compressBuf, 0, numCompressedBytes);
-                    } else if(compression == COMP_GROUP4) {
-                        int numCompressedBytes =
-                            faxEncoder.encodeT6(bpixels,
-                                                (tileWidth+7)/8,
-                                                0,
-                                                tileWidth,
-                                                rows,
-                                                compressBuf);
-                        tileByteCounts[tileNum++] = numCompressedBytes;
-                        output.write(compressBuf, 0, numCompressedBytes);
-                    } else if(compression == COMP_PACKBITS) {
-                        int numCompressedBytes =
-                            compressPackBits(bpixels, rows,
-                                             (int)bytesPerRow,
-                                             compressBuf);
-                        tileByteCounts[tileNum++] = numCompressedBytes;
-                        output.write(compressBuf, 0, numCompressedBytes);
-                    } else if(compression == COMP_DEFLATE) {
-                        int numCompressedBytes =
-                            deflate(deflater, bpixels, compressBuf);
-                        tileByteCounts[tileNum++] = numCompressedBytes;
-                        output.write(compressBuf, 0, numCompressedBytes);
-                    }
-
-                    break;
-
-                case 4:
-		
-                    index = 0;
+        if(parallelism > 0) {
+            // Allow each worker to run one segment ahead of the writer.
+            SegmentEncoder[] segmentEncoders =
+                new SegmentEncoder[Math.min(2*parallelism, numTiles)];
+            for(int i = 0; i < segmentEncoders.length; i++) {
+                segmentEncoders[i] =
+                    new SegmentEncoder(encodeParam, predictor,
+                                       sampleSize[0], dataType, numBands,
+                                       tileWidth, tileHeight,
+                                       (int)bytesPerRow, bufSize,
+                                       checkContiguous);
+            }
 
-                    // For each of the rows in a strip
-                    for (int i=0; i<rows; i++) {
-		    
-                        // Write  the number of pixels that will fit into an 
-                        // even number of nibbles.
-                        for (int j=0; j<tileWidth/2; j++) {
-                            pixel = (pixels[index++] << 4) | pixels[index++];
-                            bpixels[k++] = (byte)pixel;
-                        }
+            writeSegments(im, segmentEncoders, parallelism,
+                          tileWidth, tileHeight, isTiled,
+                          compression == COMP_NONE ? null : tileByteCounts);
+        } else {
+            SegmentEncoder segmentEncoder = null;
+            if(compression != COMP_JPEG_TTN2) {
+                segmentEncoder =
+                    new SegmentEncoder(encodeParam, predictor,
+                                       sampleSize[0], dataType, numBands,
+                                       tileWidth, tileHeight,
+                                       (int)bytesPerRow, bufSize,
+                                       checkContiguous);
+            }
 
-                        // Last pixel for odd-length lines
-                        if ((tileWidth % 2) == 1) {
-                            pixel = pixels[index++] << 4;
-                            bpixels[k++] = (byte)pixel;
-                        }
-                    }
+            // Process tileHeight rows at a time
+            int lastRow = minY + height;
+            int lastCol = minX + width;
+            int tileNum = 0;
+            for (int row = minY; row < lastRow; row += tileHeight) {
+                int rows = isTiled ?
+                    tileHeight : Math.min(tileHeight, lastRow - row);
 
-                    if(compression == COMP_NONE) {
-                        output.write(bpixels, 0, rows * ((tileWidth+1)/2));
-                    } else if(compression == COMP_PACKBITS) {
-                        int numCompressedBytes =
-                            compressPackBits(bpixels, rows,
-                                             (int)bytesPerRow,
-                                             compressBuf);
-                        tileByteCounts[tileNum++] = numCompressedBytes;
-                        output.write(compressBuf, 0, numCompressedBytes);
-                    } else if(compression == COMP_DEFLATE) {
-                        int numCompressedBytes =
-                            deflate(deflater, bpixels, compressBuf);
-                        tileByteCounts[tileNum++] = numCompressedBytes;
-                        output.write(compressBuf, 0, numCompressedBytes);
-                    }
-                    break;
- 
-                case 8:
+                for(int col = minX; col < lastCol; col += tileWidth) {
+                    // Grab the pixels
+                    Raster src =
+                        im.getData(new Rectangle(col, row, tileWidth, rows));
 
                     if(compression != COMP_JPEG_TTN2) {
-                        if(useDataBuffer) {
-                            byte[] btmp =
-                                ((DataBufferByte)src.getDataBuffer()).getData();
-                            ComponentSampleModel csm =
-                                (ComponentSampleModel)src.getSampleModel();
-                            int inOffset =
-                                csm.getOffset(col -
-                                              src.getSampleModelTranslateX(),
-                                              row -
-                                              src.getSampleModelTranslateY());
-                            int lineStride = csm.getScanlineStride();
-                            if(lineStride == (int)bytesPerRow) {
-                                System.arraycopy(btmp,
-                                                 inOffset,
-                                                 bpixels, 0,
-                                                 (int)bytesPerRow*rows);
-                            } else {
-                                int outOffset = 0;
-                                for(int j = 0; j < rows; j++) {
-                                    System.arraycopy(btmp, inOffset,
-                                                     bpixels, outOffset,
-                                                     (int)bytesPerRow);
-                                    inOffset += lineStride;
-                                    outOffset += (int)bytesPerRow;
-                                }
-                            }
-                        } else {
-                            for (int i = 0; i < size; i++) {
-                                bpixels[i] = (byte)pixels[i];
-                            }
+                        segmentEncoder.encode(src, col, row, rows);
+                        output.write(segmentEncoder.data,
+                                     0, segmentEncoder.length);
+                        if(compression != COMP_NONE) {
+                            tileByteCounts[tileNum] = segmentEncoder.length;
                         }
-                    }
-
-                    if(compression == COMP_NONE) {
-                        output.write(bpixels, 0, size);
-                    } else if(compression == COMP_PACKBITS) {
-                        int numCompressedBytes =
-                            compressPackBits(bpixels, rows,
-                                             (int)bytesPerRow,
-                                             compressBuf);
-                        tileByteCounts[tileNum++] = numCompressedBytes;
-                        output.write(compressBuf, 0, numCompressedBytes);
-                    } else if(compression == COMP_JPEG_TTN2) {
+                        tileNum++;
+                    } else {
                         long startPos = getOffset(output);
 
                         // Recreate encoder and parameters if the encoder
@@ -1315,77 +1195,7 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
 
                         long endPos = getOffset(output);
                         tileByteCounts[tileNum++] = (int)(endPos - startPos);
-                    } else if(compression == COMP_DEFLATE) {
-                        int numCompressedBytes =
-                            deflate(deflater, bpixels, compressBuf);
-                        tileByteCounts[tileNum++] = numCompressedBytes;
-                        output.write(compressBuf, 0, numCompressedBytes);
-                    }
-                    break;
-		
-                case 16:
-
-                    int ls = 0;
-                    for (int i = 0; i < size; i++) {
-                        short value = (short)pixels[i];
-                        bpixels[ls++] = (byte)((value & 0xff00) >> 8);
-                        bpixels[ls++] = (byte)(value & 0x00ff);
-                    }
-
-                    if(compression == COMP_NONE) {
-                        output.write(bpixels, 0, size*2);
-                    } else if(compression == COMP_PACKBITS) {
-                        int numCompressedBytes =
-                            compressPackBits(bpixels, rows,
-                                             (int)bytesPerRow,
-                                             compressBuf);
-                        tileByteCounts[tileNum++] = numCompressedBytes;
-                        output.write(compressBuf, 0, numCompressedBytes);
-                    } else if(compression == COMP_DEFLATE) {
-                        int numCompressedBytes =
-                            deflate(deflater, bpixels, compressBuf);
-                        tileByteCounts[tileNum++] = numCompressedBytes;
-                        output.write(compressBuf, 0, numCompressedBytes);
                     }
-                    break;
-
-                case 32:
-                    if(dataType == DataBuffer.TYPE_INT) {
-                        int li = 0;
-                        for (int i = 0; i < size; i++) {
-                            int value = pixels[i];
-                            bpixels[li++] = (byte)((value & 0xff000000) >> 24);
-                            bpixels[li++] = (byte)((value & 0x00ff0000) >> 16);
-                            bpixels[li++] = (byte)((value & 0x0000ff00) >> 8);
-                            bpixels[li++] = (byte)(value & 0x000000ff);
-                        }
-                    } else { // DataBuffer.TYPE_FLOAT
-                        int lf = 0;
-                        for (int i = 0; i < size; i++) {
-                            int value = Float.floatToIntBits(fpixels[i]);
-                            bpixels[lf++] = (byte)((value & 0xff000000) >> 24);
-                            bpixels[lf++] = (byte)((value & 0x00ff0000) >> 16);
-                            bpixels[lf++] = (byte)((value & 0x0000ff00) >> 8);
-                            bpixels[lf++] = (byte)(value & 0x000000ff);
-                        }
-                    }
-                    if(compression == COMP_NONE) {
-                        output.write(bpixels, 0, size*4);
-                    } else if(compression == COMP_PACKBITS) {
-                        int numCompressedBytes =
-                            compressPackBits(bpixels, rows,
-                                             (int)bytesPerRow,
-                                             compressBuf);
-                        tileByteCounts[tileNum++] = numCompressedBytes;
-                        output.write(compressBuf, 0, numCompressedBytes);
-                    } else if(compression == COMP_DEFLATE) {
-                        int numCompressedBytes =
-                            deflate(deflater, bpixels, compressBuf);
-                        tileByteCounts[tileNum++] = numCompressedBytes;
-                        output.write(compressBuf, 0, numCompressedBytes);
-                    }
-                    break;
-
                 }
             }
         }
@@ -1397,13 +1207,13 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
             }
         } else {
             // Recompute tile offsets from the size of the compressed tiles.
-            int totalBytes = 0;
+            long totalBytes = 0;
             for (int i=1; i<numTiles; i++) {
-                int numBytes = (int)tileByteCounts[i-1];
+                long numBytes = tileByteCounts[i-1];
                 totalBytes += numBytes;
                 tileOffsets[i] = tileOffsets[i-1] + numBytes;
             }
-            totalBytes += (int)tileByteCounts[numTiles-1];
+            totalBytes += tileByteCounts[numTiles-1];
 
             nextIFDOffset = isLast ?
                 0 : ifdOffset + dirSize + totalBytes;
@@ -1414,6 +1224,8 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
                 skipByte = true;
             }
 
+            checkOffset(ifdOffset + dirSize + totalBytes);
+
             if(outCache == null) {
                 // Original OutputStream must be a SeekableOutputStream.
 
@@ -1451,7 +1263,7 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
 
                 // Write the image data.
                 byte[] copyBuffer = new byte[8192];
-                int bytesCopied = 0;
+                long bytesCopied = 0;
                 while(bytesCopied < totalBytes) {
                     int bytesRead = fileStream.read(copyBuffer);
                     if(bytesRead == -1) {
@@ -1499,6 +1311,15 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
         return nextIFDOffset;
     }
 
+    /**
+     * Verifies that an offset may be stored in the output stream.
+     */
+    private void checkOffset(long offset) {
+        if(!isBigTIFF && offset > MAX_CLASSIC_OFFSET) {
+            throw new RuntimeException(JaiI18N.getString("TIFFImageEncoder13"));
+        }
+    }
+
     /**
      * Calculates the size of the IFD.
      */
@@ -1506,10 +1327,13 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
         // Get the number of entries.
 	int numEntries = fields.size();
 
-        // Initialize the size excluding that of any values > 4 bytes.
-        int dirSize = 2 + numEntries*12 + 4;
+        // Initialize the size excluding that of any values which do not
+        // fit into the entries.
+        int dirSize = isBigTIFF ?
+            8 + numEntries*20 + 8 : 2 + numEntries*12 + 4;
+        int inlineSize = isBigTIFF ? 8 : 4;
 
-        // Loop over fields adding the size of all values > 4 bytes.
+        // Loop over fields adding the size of all values > 4 (8) bytes.
         Iterator iter = fields.iterator();
         while(iter.hasNext()) {
 	    // Get the field.	    
@@ -1519,7 +1343,7 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
             int valueSize = getValueSize(field);
 
             // Add any excess size.
-	    if(valueSize > 4) {
+	    if(valueSize > inlineSize) {
                 dirSize += valueSize;
             }
         }
@@ -1528,7 +1352,7 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
     }
 
     private void writeFileHeader() throws IOException {
-	// 8 byte image file header
+	// 8 byte image file header (16 bytes for BigTIFF)
 	
 	// Byte order used within the file
         if(isLittleEndian) {
@@ -1541,30 +1365,47 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
             output.write('M');
         }
 
-        // Magic value
-        writeUnsignedShort(42);
+        if(isBigTIFF) {
+            // Magic value, offset size and padding
+            writeUnsignedShort(43);
+            writeUnsignedShort(8);
+            writeUnsignedShort(0);
+
+            // Offset in bytes of the first IFD.
+            writeLong8(16);
+        } else {
+            // Magic value
+            writeUnsignedShort(42);
 	
-	// Offset in bytes of the first IFD.
-	writeLong(8);
+            // Offset in bytes of the first IFD.
+            writeLong(8);
+        }
     }
 
-    private void writeDirectory(int thisIFDOffset, SortedSet fields,
-                                int nextIFDOffset) 
+    private void writeDirectory(long thisIFDOffset, SortedSet fields,
+                                long nextIFDOffset) 
 	throws IOException {
 
-	// 2 byte count of number of directory entries (fields)
+	// 2 (8) byte count of number of directory entries (fields)
 	int numEntries = fields.size();
 
-	long offsetBeyondIFD = thisIFDOffset + 12 * numEntries + 4 + 2;
+	long offsetBeyondIFD = isBigTIFF ?
+            thisIFDOffset + 20 * numEntries + 8 + 8 :
+            thisIFDOffset + 12 * numEntries + 4 + 2;
+        int inlineSize = isBigTIFF ? 8 : 4;
 	ArrayList tooBig = new ArrayList();
 
 	// Write number of fields in the IFD
-	writeUnsignedShort(numEntries);
+        if(isBigTIFF) {
+            writeLong8(numEntries);
+        } else {
+            writeUnsignedShort(numEntries);
+        }
 
         Iterator iter = fields.iterator();
 	while(iter.hasNext()) {
 	    
-	    // 12 byte field entry TIFFField	    
+	    // 12 (20) byte field entry TIFFField	    
 	    TIFFField field = (TIFFField)iter.next();
 
 	    // byte 0-1 Tag that identifies a field
@@ -1575,20 +1416,27 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
 	    int type = field.getType();
 	    writeUnsignedShort(type);
 	    
-	    // bytes 4-7 the number of values of the indicated type except
-            // ASCII-valued fields which require the total number of bytes.
+	    // bytes 4-7 (4-11) the number of values of the indicated type
+            // except ASCII-valued fields which require the total number of
+            // bytes.
 	    int count = field.getCount();
             int valueSize = getValueSize(field);
-	    writeLong(type == TIFFField.TIFF_ASCII ? valueSize : count);
+	    writeOffset(type == TIFFField.TIFF_ASCII ? valueSize : count);
 
-	    // bytes 8 - 11 the value or value offset
-	    if (valueSize > 4) {
+	    // bytes 8 - 11 (12 - 19) the value or value offset
+	    if (valueSize > inlineSize) {
 
-		// We need an offset as data won't fit into 4 bytes
-		writeLong(offsetBeyondIFD);
+		// We need an offset as data won't fit into the entry
+		writeOffset(offsetBeyondIFD);
 		offsetBeyondIFD += valueSize;
 		tooBig.add(field);
 
+	    } else if (isBigTIFF) {
+
+                writeValues(field);
+                for (int i = valueSize; i < 8; i++) {
+                    output.write(0);
+                }
 	    } else {
 
 		writeValuesAsFourBytes(field);		
@@ -1597,9 +1445,9 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
 	}
 
 	// Address of next IFD
-	writeLong(nextIFDOffset);
+	writeOffset(nextIFDOffset);
 
-	// Write the tag values that did not fit into 4 bytes
+	// Write the tag values that did not fit into the entries
 	for (int i = 0; i < tooBig.size(); i++) {
 	    writeValues((TIFFField)tooBig.get(i));
 	} 
@@ -1639,7 +1487,13 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
         4, //  9 = slong
         8, // 10 = srational
         4, // 11 = float
-        8  // 12 = double 
+        8, // 12 = double 
+        4, // 13 = ifd
+        0, // 14 = n/a
+        0, // 15 = n/a
+        8, // 16 = long8
+        8, // 17 = slong8
+        8  // 18 = ifd8
     };
 
     private void writeValuesAsFourBytes(TIFFField field) throws IOException {
@@ -1786,6 +1640,16 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
 	    }
             break;
 
+            // 64 bits
+	case TIFFField.TIFF_LONG8:
+	case TIFFField.TIFF_SLONG8:
+	case TIFFField.TIFF_IFD8:
+	    long longs8[] = field.getAsLongs();
+	    for (int i=0; i<count; i++) {
+		writeLong8(longs8[i]);
+	    }
+	    break;
+
         case TIFFField.TIFF_DOUBLE:
             double[] doubles = field.getAsDoubles();
 	    for (int i=0; i<count; i++) {
@@ -1856,6 +1720,25 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
         }
     }
 
+    private void writeLong8(long l) throws IOException {
+        if(isLittleEndian) {
+            writeLong(l);
+            writeLong(l >>> 32);
+        } else {
+            writeLong(l >>> 32);
+            writeLong(l);
+        }
+    }
+
+    // Writes an offset or count: 4 bytes in TIFF, 8 bytes in BigTIFF.
+    private void writeOffset(long l) throws IOException {
+        if(isBigTIFF) {
+            writeLong8(l);
+        } else {
+            writeLong(l);
+        }
+    }
+
     /**
      * Returns the current offset in the supplied OutputStream.
      * This method should only be used if compressing data.
@@ -1942,12 +1825,457 @@ public class TIFFImageEncoder extends ImageEncoderImpl {
     }
 
     private static int deflate(Deflater deflater,
-                               byte[] inflated, byte[] deflated) {
-        deflater.setInput(inflated);
+                               byte[] inflated, int length,
+                               byte[] deflated) {
+        deflater.setInput(inflated, 0, length);
         deflater.finish();
         int numCompressedBytes = deflater.deflate(deflated);
         deflater.reset();
         return numCompressedBytes;
     }
-}
 
+    /**
+     * Encodes the data segments of an image on worker threads and writes
+     * them to the output in order.  Each segment is encoded by the
+     * <code>SegmentEncoder</code> at its index modulo the number of
+     * encoders, which is reused only once its previous segment has been
+     * written, so the memory in use is bounded by the encoders.
+     *
+     * @param tileByteCounts The array in which to store the number of
+     * bytes of each segment, or <code>null</code> if the counts are
+     * already known.
+     */
+    private void writeSegments(final RenderedImage im,
+                               SegmentEncoder[] segmentEncoders,
+                               int parallelism,
+                               final int tileWidth, final int tileHeight,
+                               final boolean isTiled,
+                               long[] tileByteCounts) throws IOException {
+        final int minX = im.getMinX();
+        final int minY = im.getMinY();
+        final int lastRow = minY + im.getHeight();
+        final int tilesAcross =
+            (im.getWidth() + tileWidth - 1)/tileWidth;
+        int numSegments =
+            tilesAcross*((im.getHeight() + tileHeight - 1)/tileHeight);
+        int window = segmentEncoders.length;
+
+        ExecutorService executor =
+            Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "TIFFImageEncoder");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        try {
+            Future[] futures = new Future[window];
+            for(int i = 0; i < numSegments + window; i++) {
+                int slot = i % window;
+
+                // Write the segment which last used this encoder.
+                if(i >= window) {
+                    SegmentEncoder segmentEncoder;
+                    try {
+                        segmentEncoder = (SegmentEncoder)futures[slot].get();
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    } catch(ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if(cause instanceof RuntimeException) {
+                            throw (RuntimeException)cause;
+                        } else if(cause instanceof Error) {
+                            throw (Error)cause;
+                        }
+                        throw new RuntimeException(cause);
+                    }
+
+                    output.write(segmentEncoder.data,
+                                 0, segmentEncoder.length);
+                    if(tileByteCounts != null) {
+                        tileByteCounts[i - window] = segmentEncoder.length;
+                    }
+                }
+
+                if(i < numSegments) {
+                    final int segment = i;
+                    final SegmentEncoder segmentEncoder =
+                        segmentEncoders[slot];
+                    futures[slot] = executor.submit(new Callable() {
+                            public Object call() {
+                                int row = minY +
+                                    (segment/tilesAcross)*tileHeight;
+                                int col = minX +
+                                    (segment%tilesAcross)*tileWidth;
+                                int rows = isTiled ?
+                                    tileHeight :
+                                    Math.min(tileHeight, lastRow - row);
+                                Raster src =
+                                    im.getData(new Rectangle(col, row,
+                                                             tileWidth,
+                                                             rows));
+                                segmentEncoder.encode(src, col, row, rows);
+                                return segmentEncoder;
+                            }
+                        });
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Converts strips or tiles to the byte layout of the TIFF stream and
+     * compresses them.  Each instance has its own buffers and compressor
+     * so that separate instances may encode segments concurrently.
+     */
+    private static class SegmentEncoder {
+        private int compression;
+        private int sampleSize;
+        private int dataType;
+        private int numBands;
+        private int tileWidth;
+        private int bytesPerRow;
+        private boolean checkContiguous;
+        private boolean T4encode2D;
+        private boolean T4PadEOLs;
+
+        private TIFFFaxEncoder faxEncoder = null;
+        private Deflater deflater = null;
+        private TIFFLZWEncoder lzwEncoder = null;
+
+        // Buffer for up to tileHeight rows of pixels
+        private int[] pixels = null;
+        private float[] fpixels = null;
+
+        // Buffer to hold tileHeight lines of the data to be written
+        // to the file, so we can use array writes.
+        private byte[] bpixels = null;
+
+        private byte[] compressBuf = null;
+        private byte[] rowBuf = null;
+
+        /** The encoded data of the last segment. */
+        byte[] data;
+
+        /** The number of bytes of encoded data. */
+        int length;
+
+        SegmentEncoder(TIFFEncodeParam encodeParam, int predictor,
+                       int sampleSize, int dataType, int numBands,
+                       int tileWidth, int tileHeight, int bytesPerRow,
+                       int bufSize, boolean checkContiguous) {
+            this.compression = encodeParam.getCompression();
+            this.sampleSize = sampleSize;
+            this.dataType = dataType;
+            this.numBands = numBands;
+            this.tileWidth = tileWidth;
+            this.bytesPerRow = bytesPerRow;
+            this.checkContiguous = checkContiguous;
+            this.T4encode2D = encodeParam.getT4Encode2D();
+            this.T4PadEOLs = encodeParam.getT4PadEOLs();
+
+            if(dataType == DataBuffer.TYPE_BYTE) {
+                bpixels = new byte[tileHeight * tileWidth * numBands];
+            } else if(dataType == DataBuffer.TYPE_USHORT ||
+                      dataType == DataBuffer.TYPE_SHORT) {
+                bpixels = new byte[2 * tileHeight * tileWidth * numBands];
+            } else if(dataType == DataBuffer.TYPE_INT ||
+                      dataType == DataBuffer.TYPE_FLOAT) {
+                bpixels = new byte[4 * tileHeight * tileWidth * numBands];
+            }
+
+            switch(compression) {
+            case COMP_GROUP3_1D:
+                // Rows are encoded one at a time and then concatenated.
+                rowBuf = new byte[bufSize];
+                bufSize *= tileHeight;
+                // Fall through.
+            case COMP_GROUP3_2D:
+            case COMP_GROUP4:
+                faxEncoder =
+                    new TIFFFaxEncoder(encodeParam.getReverseFillOrder());
+                break;
+            case COMP_DEFLATE:
+                deflater = new Deflater(encodeParam.getDeflateLevel());
+                break;
+            case COMP_LZW:
+                lzwEncoder = new TIFFLZWEncoder(tileWidth, predictor,
+                                                numBands);
+                break;
+            }
+
+            if(bufSize != 0) {
+                compressBuf = new byte[bufSize];
+            }
+        }
+
+        /**
+         * Encodes the segment of <code>src</code> with upper left corner
+         * <code>(col,&nbsp;row)</code> and height <code>rows</code>
+         * into <code>data</code>.
+         */
+        void encode(Raster src, int col, int row, int rows) {
+            int size = rows * tileWidth * numBands;
+
+            boolean useDataBuffer = false;
+            if(checkContiguous) {
+                if(sampleSize == 8) { // 8-bit
+                    ComponentSampleModel csm =
+                        (ComponentSampleModel)src.getSampleModel();
+                    int[] bankIndices = csm.getBankIndices();
+                    int[] bandOffsets = csm.getBandOffsets();
+                    int pixelStride = csm.getPixelStride();
+                    int lineStride = csm.getScanlineStride();
+
+                    if(pixelStride != numBands ||
+                       lineStride != bytesPerRow) {
+                        useDataBuffer = false;
+                    } else {
+                        useDataBuffer = true;
+                        for(int i = 0;
+                            useDataBuffer && i < numBands;
+                            i++) {
+                            if(bankIndices[i] != 0 ||
+                               bandOffsets[i] != i) {
+                                useDataBuffer = false;
+                            }
+                        }
+                    }
+                } else { // 1-bit
+                    MultiPixelPackedSampleModel mpp =
+                        (MultiPixelPackedSampleModel)src.getSampleModel();
+                    if(mpp.getNumBands() == 1 &&
+                       mpp.getDataBitOffset() == 0 &&
+                       mpp.getPixelBitStride() == 1) {
+                        useDataBuffer = true;
+                    }
+                }
+            }
+
+            if(!useDataBuffer) {
+                if(dataType == DataBuffer.TYPE_FLOAT) {
+                    fpixels = src.getPixels(col, row, tileWidth, rows,
+                                            fpixels);
+                } else {
+                    pixels = src.getPixels(col, row, tileWidth, rows,
+                                           pixels);
+                }
+            }
+
+            int index;
+
+            int pixel = 0;
+            int k = 0;
+            switch(sampleSize) {
+
+            case 1:
+
+                if(useDataBuffer) {
+                    byte[] btmp =
+                        ((DataBufferByte)src.getDataBuffer()).getData();
+                    MultiPixelPackedSampleModel mpp =
+                        (MultiPixelPackedSampleModel)src.getSampleModel();
+                    int lineStride = mpp.getScanlineStride();
+                    int inOffset =
+                        mpp.getOffset(col -
+                                      src.getSampleModelTranslateX(),
+                                      row -
+                                      src.getSampleModelTranslateY());
+                    if(lineStride == bytesPerRow) {
+                        System.arraycopy(btmp, inOffset,
+                                         bpixels, 0,
+                                         bytesPerRow*rows);
+                    } else {
+                        int outOffset = 0;
+                        for(int j = 0; j < rows; j++) {
+                            System.arraycopy(btmp, inOffset,
+                                             bpixels, outOffset,
+                                             bytesPerRow);
+                            inOffset += lineStride;
+                            outOffset += bytesPerRow;
+                        }
+                    }
+                } else {
+                    index = 0;
+
+                    // For each of the rows in a strip
+                    for (int i=0; i<rows; i++) {
+
+                        // Write number of pixels exactly divisible by 8
+                        for (int j=0; j<tileWidth/8; j++) {
+
+                            pixel =
+                                (pixels[index++] << 7) |
+                                (pixels[index++] << 6) |
+                                (pixels[index++] << 5) |
+                                (pixels[index++] << 4) |
+                                (pixels[index++] << 3) |
+                                (pixels[index++] << 2) |
+                                (pixels[index++] << 1) |
+                                pixels[index++];
+                            bpixels[k++] = (byte)pixel;
+                        }
+
+                        // Write the pixels remaining after division by 8
+                        if (tileWidth%8 > 0) {
+                            pixel = 0;
+                            for (int j=0; j<tileWidth%8; j++) {
+                                pixel |= (pixels[index++] << (7 - j));
+                            }
+                            bpixels[k++] = (byte)pixel;
+                        }
+                    }
+                }
+                break;
+
+            case 4:
+
+                index = 0;
+
+                // For each of the rows in a strip
+                for (int i=0; i<rows; i++) {
+
+                    // Write  the number of pixels that will fit into an 
+                    // even number of nibbles.
+                    for (int j=0; j<tileWidth/2; j++) {
+                        pixel = (pixels[index++] << 4) | pixels[index++];
+                        bpixels[k++] = (byte)pixel;
+                    }
+
+                    // Last pixel for odd-length lines
+                    if ((tileWidth % 2) == 1) {
+                        pixel = pixels[index++] << 4;
+                        bpixels[k++] = (byte)pixel;
+                    }
+                }
+                break;
+
+            case 8:
+
+                if(useDataBuffer) {
+                    byte[] btmp =
+                        ((DataBufferByte)src.getDataBuffer()).getData();
+                    ComponentSampleModel csm =
+                        (ComponentSampleModel)src.getSampleModel();
+                    int inOffset =
+                        csm.getOffset(col -
+                                      src.getSampleModelTranslateX(),
+                                      row -
+                                      src.getSampleModelTranslateY());
+                    int lineStride = csm.getScanlineStride();
+                    if(lineStride == bytesPerRow) {
+                        System.arraycopy(btmp,
+                                         inOffset,
+                                         bpixels, 0,
+                                         bytesPerRow*rows);
+                    } else {
+                        int outOffset = 0;
+                        for(int j = 0; j < rows; j++) {
+                            System.arraycopy(btmp, inOffset,
+                                             bpixels, outOffset,
+                                             bytesPerRow);
+                            inOffset += lineStride;
+                            outOffset += bytesPerRow;
+                        }
+                    }
+                } else {
+                    for (int i = 0; i < size; i++) {
+                        bpixels[i] = (byte)pixels[i];
+                    }
+                }
+                break;
+
+            case 16:
+
+                int ls = 0;
+                for (int i = 0; i < size; i++) {
+                    short value = (short)pixels[i];
+                    bpixels[ls++] = (byte)((value & 0xff00) >> 8);
+                    bpixels[ls++] = (byte)(value & 0x00ff);
+                }
+                break;
+
+            case 32:
+                if(dataType == DataBuffer.TYPE_INT) {
+                    int li = 0;
+                    for (int i = 0; i < size; i++) {
+                        int value = pixels[i];
+                        bpixels[li++] = (byte)((value & 0xff000000) >> 24);
+                        bpixels[li++] = (byte)((value & 0x00ff0000) >> 16);
+                        bpixels[li++] = (byte)((value & 0x0000ff00) >> 8);
+                        bpixels[li++] = (byte)(value & 0x000000ff);
+                    }
+                } else { // DataBuffer.TYPE_FLOAT
+                    int lf = 0;
+                    for (int i = 0; i < size; i++) {
+                        int value = Float.floatToIntBits(fpixels[i]);
+                        bpixels[lf++] = (byte)((value & 0xff000000) >> 24);
+                        bpixels[lf++] = (byte)((value & 0x00ff0000) >> 16);
+                        bpixels[lf++] = (byte)((value & 0x0000ff00) >> 8);
+                        bpixels[lf++] = (byte)(value & 0x000000ff);
+                    }
+                }
+                break;
+            }
+
+            data = compressBuf;
+            switch(compression) {
+            case COMP_NONE:
+                data = bpixels;
+                length = rows * bytesPerRow;
+                break;
+            case COMP_GROUP3_1D:
+                int rowStride = (tileWidth + 7)/8;
+                int rowOffset = 0;
+                length = 0;
+                for(int tileRow = 0; tileRow < rows; tileRow++) {
+                    int numCompressedBytesInRow =
+                        faxEncoder.encodeRLE(bpixels,
+                                             rowOffset, 0, tileWidth,
+                                             rowBuf);
+                    System.arraycopy(rowBuf, 0, compressBuf, length,
+                                     numCompressedBytesInRow);
+                    rowOffset += rowStride;
+                    length += numCompressedBytesInRow;
+                }
+                break;
+            case COMP_GROUP3_2D:
+                length = faxEncoder.encodeT4(!T4encode2D,// 1D == !2D
+                                             T4PadEOLs,
+                                             bpixels,
+                                             (tileWidth+7)/8,
+                                             0,
+                                             tileWidth,
+                                             rows,
+                                             compressBuf);
+                break;
+            case COMP_GROUP4:
+                length = faxEncoder.encodeT6(bpixels,
+                                             (tileWidth+7)/8,
+                                             0,
+                                             tileWidth,
+                                             rows,
+                                             compressBuf);
+                break;
+            case COMP_PACKBITS:
+                length = compressPackBits(bpixels, rows,
+                                          bytesPerRow,
+                                          compressBuf);
+                break;
+            case COMP_DEFLATE:
+                length = deflate(deflater, bpixels,
+                                 rows * bytesPerRow, compressBuf);
+                break;
+            case COMP_LZW:
+                length = lzwEncoder.encode(bpixels,
+                                           rows * bytesPerRow, rows,
+                                           compressBuf);
+                break;
+            }
+        }
+    }
+}
@@ -25,7 +25,14 @@ package org.eclipse.imagen.media.codecimpl;
  */
 public class TIFFLZWDecoder {
 
-    byte stringTable[][];
+    // The string table is held as a prefix code and a final byte per
+    // entry so that adding a string never allocates; strings are
+    // written out by walking the prefix chain backwards from its end.
+    int prefix[] = new int[4096];
+    byte suffix[] = new byte[4096];
+    byte first[] = new byte[4096];
+    int length[] = new int[4096];
+
     byte data[] = null, uncompData[];
     int tableIndex, bitsToGet = 9;
     int bytePointer, bitPointer;
@@ -46,6 +53,12 @@ public class TIFFLZWDecoder {
 	this.w = w;
 	this.predictor = predictor;
 	this.samplesPerPixel = samplesPerPixel;
+
+	for (int i=0; i<256; i++) {
+	    suffix[i] = (byte)i;
+	    first[i] = (byte)i;
+	    length[i] = 1;
+	}
     }
 
     /**
@@ -77,7 +90,6 @@ public class TIFFLZWDecoder {
 	nextBits = 0;
 
 	int code, oldCode = 0;
-	byte string[];
  
         int uncompDataLength = uncompData.length;
 	while ( ((code = getNextCode()) != 257) && 
@@ -92,25 +104,27 @@ public class TIFFLZWDecoder {
 		    break;
 		}
 
-		writeString(stringTable[code]);
+		writeString(code);
 		oldCode = code;
 
 	    } else {
 
 		if (code < tableIndex) {
 
-		    string = stringTable[code];
-
-		    writeString(string);
-		    addStringToTable(stringTable[oldCode], string[0]); 
+		    writeString(code);
+		    addStringToTable(oldCode, first[code]);
 		    oldCode = code;
 
 		} else {
 
-		    string = stringTable[oldCode];
-		    string = composeString(string, string[0]);
-		    writeString(string);
-		    addStringToTable(string);
+		    // The code is not yet in the table: the string is that
+		    // of the previous code followed by its own first byte.
+		    byte firstByte = first[oldCode];
+		    writeString(oldCode);
+		    if (dstIndex < uncompDataLength) {
+			uncompData[dstIndex++] = firstByte;
+		    }
+		    addStringToTable(oldCode, firstByte);
 		    oldCode = code;
 		}
 
@@ -139,64 +153,52 @@ public class TIFFLZWDecoder {
 
 
     /**
-     * Initialize the string table.
+     * Initialize the string table.  The 256 single-byte strings are
+     * permanent so only the table size and code width need resetting.
      */
     public void initializeStringTable() {
-
-	stringTable = new byte[4096][];
-	
-	for (int i=0; i<256; i++) {
-	    stringTable[i] = new byte[1];
-	    stringTable[i][0] = (byte)i;
-	}
-	
 	tableIndex = 258;
 	bitsToGet = 9;
     }
 
     /**
-     * Write out the string just uncompressed.
+     * Write out the string for <code>code</code>, truncated at the end
+     * of the output array.
      */
-    public void writeString(byte string[]) {
+    public void writeString(int code) {
+	int end = dstIndex + length[code];
+	int limit = uncompData.length;
+
+	// Skip the tail of the string which does not fit.
+	int i = end - 1;
+	while (i >= limit) {
+	    code = prefix[code];
+	    i--;
+	}
 
-        if(dstIndex < uncompData.length) {
-            int maxIndex = Math.min(string.length,
-				    uncompData.length - dstIndex);
+	while (i >= dstIndex) {
+	    uncompData[i--] = suffix[code];
+	    code = prefix[code];
+	}
 
-            for (int i=0; i < maxIndex; i++) {
-                uncompData[dstIndex++] = string[i];
-            }
-        }
+	dstIndex = Math.min(end, limit);
     }
     
     /**
-     * Add a new string to the string table.
-     */
-    public void addStringToTable(byte oldString[], byte newString) {
-	int length = oldString.length;
-	byte string[] = new byte[length + 1];
-	System.arraycopy(oldString, 0, string, 0, length);
-	string[length] = newString;
-	
-	// Add this new String to the table
-	stringTable[tableIndex++] = string;
-	
-	if (tableIndex == 511) {
-	    bitsToGet = 10;
-	} else if (tableIndex == 1023) {
-	    bitsToGet = 11;
-	} else if (tableIndex == 2047) {
-	    bitsToGet = 12;
-	} 
-    }
-
-    /**
-     * Add a new string to the string table.
+     * Add the string for <code>prefixCode</code> followed by
+     * <code>newByte</code> to the string table.
      */
-    public void addStringToTable(byte string[]) {
-	
-	// Add this new String to the table
-	stringTable[tableIndex++] = string;
+    public void addStringToTable(int prefixCode, byte newByte) {
+
+	// Once the table is full a conforming encoder emits a clear code;
+	// anything else just keeps using the existing entries.
+	if (tableIndex < 4096) {
+	    prefix[tableIndex] = prefixCode;
+	    suffix[tableIndex] = newByte;
+	    first[tableIndex] = first[prefixCode];
+	    length[tableIndex] = length[prefixCode] + 1;
+	    tableIndex++;
+	}
 	
 	if (tableIndex == 511) {
 	    bitsToGet = 10;
@@ -207,18 +209,6 @@ public class TIFFLZWDecoder {
 	} 
     }
 
-    /**
-     * Append <code>newString</code> to the end of <code>oldString</code>.
-     */
-    public byte[] composeString(byte oldString[], byte newString) {
-	int length = oldString.length;
-	byte string[] = new byte[length + 1];
-	System.arraycopy(oldString, 0, string, 0, length);
-	string[length] = newString;
-
-	return string;
-    }
-
     // Returns the next 9, 10, 11 or 12 bits
     public int getNextCode() {
         // Attempt to get the next code. The exception is caught to make
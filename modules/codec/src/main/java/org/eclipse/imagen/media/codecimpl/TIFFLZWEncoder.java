@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.codecimpl;
+
+import java.util.Arrays;
+
+/**
+ * A class for performing TIFF LZW encoding.  The output uses the
+ * "early change" code width convention of the TIFF 6.0 specification
+ * and is therefore readable by <code>TIFFLZWDecoder</code>.
+ *
+ * <p> The string table is an open-addressed hash of (prefix code,
+ * byte) pairs which is allocated once and reused for every segment
+ * encoded by the same instance.  Instances are not thread-safe.
+ */
+public class TIFFLZWEncoder {
+
+    private static final int CLEAR_CODE = 256;
+    private static final int EOI_CODE = 257;
+    private static final int FIRST_CODE = 258;
+
+    // The table is reset once this code would be assigned so that the
+    // decoder, which runs one entry behind, never exceeds 12 bits.
+    private static final int MAX_CODE = 4094;
+
+    private static final int HASH_BITS = 13;
+    private static final int HASH_SIZE = 1 << HASH_BITS;
+
+    private int hashKeys[] = new int[HASH_SIZE];
+    private int hashCodes[] = new int[HASH_SIZE];
+
+    private int w, predictor, samplesPerPixel;
+
+    private int nextCode;
+    private int bitsToPut;
+
+    private byte compData[];
+    private int bytePointer;
+    private int nextData;
+    private int nextBits;
+
+    /**
+     * Returns the maximum number of bytes which encoding
+     * <code>length</code> bytes of data may produce.
+     */
+    public static int getMaxEncodedSize(int length) {
+        // At most one 12-bit code per input byte plus the clear codes
+        // inserted every time the table fills and the final EOI.
+        int numCodes = length + length/(MAX_CODE - FIRST_CODE) + 3;
+        return (numCodes*12 + 7)/8;
+    }
+
+    /**
+     * Constructs an encoder for rows of <code>w</code> pixels.
+     *
+     * @param w               The number of pixels in a row.
+     * @param predictor       The TIFF predictor: 1 for none or 2 for
+     *                        horizontal differencing of 8-bit samples.
+     * @param samplesPerPixel The number of samples in a pixel.
+     */
+    public TIFFLZWEncoder(int w, int predictor, int samplesPerPixel) {
+        this.w = w;
+        this.predictor = predictor;
+        this.samplesPerPixel = samplesPerPixel;
+    }
+
+    /**
+     * Method to LZW encode data.  If horizontal differencing is in
+     * effect the rows of <code>data</code> are differenced in place.
+     *
+     * @param data            The data to compress.
+     * @param length          The number of bytes of data to compress.
+     * @param h               The number of rows the data contains.
+     * @param compData        Array to return the compressed data in; its
+     *                        length must be at least
+     *                        <code>getMaxEncodedSize(length)</code>.
+     * @return The number of bytes of compressed data.
+     */
+    public int encode(byte data[], int length, int h, byte compData[]) {
+
+        // Horizontal Differencing Predictor
+        if (predictor == 2) {
+            int rowLength = w*samplesPerPixel;
+            for (int j = 0; j < h; j++) {
+                int rowStart = j*rowLength;
+                for (int i = rowStart + rowLength - 1;
+                     i >= rowStart + samplesPerPixel; i--) {
+                    data[i] -= data[i - samplesPerPixel];
+                }
+            }
+        }
+
+        this.compData = compData;
+        bytePointer = 0;
+        nextData = 0;
+        nextBits = 0;
+
+        initializeStringTable();
+        writeCode(CLEAR_CODE);
+
+        if (length > 0) {
+            int code = data[0] & 0xff;
+
+            for (int i = 1; i < length; i++) {
+                int b = data[i] & 0xff;
+                int key = (code << 8) | b;
+
+                int slot = hash(key);
+                int k;
+                while ((k = hashKeys[slot]) != -1 && k != key) {
+                    slot = (slot + 1) & (HASH_SIZE - 1);
+                }
+
+                if (k == key) {
+                    code = hashCodes[slot];
+                    continue;
+                }
+
+                writeCode(code);
+
+                hashKeys[slot] = key;
+                hashCodes[slot] = nextCode++;
+
+                if (nextCode == MAX_CODE) {
+                    writeCode(CLEAR_CODE);
+                    initializeStringTable();
+                } else if (nextCode == 512) {
+                    bitsToPut = 10;
+                } else if (nextCode == 1024) {
+                    bitsToPut = 11;
+                } else if (nextCode == 2048) {
+                    bitsToPut = 12;
+                }
+
+                code = b;
+            }
+
+            writeCode(code);
+
+            // The decoder adds an entry for the last code before it
+            // reads the EOI so its code width may already have grown.
+            if (nextCode == 511 || nextCode == 1023 || nextCode == 2047) {
+                bitsToPut++;
+            }
+        }
+
+        writeCode(EOI_CODE);
+
+        // Flush the remaining bits.
+        if (nextBits > 0) {
+            compData[bytePointer++] = (byte)(nextData << (8 - nextBits));
+        }
+
+        this.compData = null;
+
+        return bytePointer;
+    }
+
+    /**
+     * Initialize the string table.
+     */
+    private void initializeStringTable() {
+        Arrays.fill(hashKeys, -1);
+        nextCode = FIRST_CODE;
+        bitsToPut = 9;
+    }
+
+    private static int hash(int key) {
+        return (key*0x9E3779B1) >>> (32 - HASH_BITS);
+    }
+
+    // Writes the code MSB first using the current code width.
+    private void writeCode(int code) {
+        nextData = (nextData << bitsToPut) | code;
+        nextBits += bitsToPut;
+
+        while (nextBits >= 8) {
+            nextBits -= 8;
+            compData[bytePointer++] = (byte)(nextData >> nextBits);
+        }
+
+        nextData &= (1 << nextBits) - 1;
+    }
+}
@@ -281,6 +281,6 @@ final class WBMPImageDecoder extends ImageDecoderImpl {
         input.readFully(((DataBufferByte)tile.getDataBuffer()).getData(),
                    0, height*sm.getScanlineStride());
 
-        return bi;
+        return applySourceRegion(bi);
     }
 }
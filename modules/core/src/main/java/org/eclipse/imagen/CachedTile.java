@@ -51,6 +51,16 @@ public interface CachedTile {
     /** Returns the memory size of the cached tile */
     long getTileSize();
 
+    /** Returns the time in nanoseconds it took to compute the tile,
+     *  including the time spent obtaining its sources.  A value of 0
+     *  means that the cost of the tile is unknown, which is what the
+     *  default implementation returns for implementations that do not
+     *  record it.
+     */
+    default long getTileComputeTime() {
+        return 0L;
+    }
+
     /** Returns information about which method
      *  triggered a notification event.  In the
      *  Sun Microsystems implementation, events
@@ -176,6 +176,7 @@ public final class JAI {
     private static final int HINT_CACHED_TILE_RECYCLING_ENABLED = 123;
     private static final int HINT_TRANSFORM_ON_COLORMAP = 124;
     private static final int HINT_IMAGING_LISTENER = 125;
+    private static final int HINT_FUSE_POINT_OPERATIONS = 126;
 
     //
     // Public keys
@@ -373,7 +374,7 @@ public final class JAI {
     /**
      * Key for <code>TileFactory</code> object values.
      * The common <code>RenderingHints</code> contain a
-     * {@link RecyclingTileFactory}-valued hint corresponding
+     * {@link PooledTileFactory}-valued hint corresponding
      * to this key. The value is the same as that to which
      * {@link #KEY_TILE_RECYCLER} is initially mapped.
      *
@@ -388,7 +389,7 @@ public final class JAI {
     /**
      * Key for <code>TileRecycler</code> object values.
      * The common <code>RenderingHints</code> contain a
-     * {@link RecyclingTileFactory}-valued hint corresponding
+     * {@link PooledTileFactory}-valued hint corresponding
      * to this key. The value is the same as that to which
      * {@link #KEY_TILE_FACTORY} is initially mapped.
      *
@@ -531,6 +532,21 @@ public final class JAI {
 	new RenderingKey(HINT_IMAGING_LISTENER,
 			 ImagingListener.class);
 
+    /**
+     * Key that indicates whether the rendering of a chain of point
+     * operations such as "Rescale", "Clamp", "Format" and "Lookup" is
+     * computed in a single pass rather than one tile per operation.
+     * The hint applies to the node of the last operation fused.  The
+     * corresponding object must be a <code>Boolean</code>.  The common
+     * <code>RenderingHints</code> do not contain a default hint
+     * corresponding to this key.  The default behavior is equivalent to
+     * setting a hint with a value of <code>Boolean.TRUE</code>.
+     *
+     * @see org.eclipse.imagen.media.opimage.PointOpFusion
+     */
+    public static RenderingHints.Key KEY_FUSE_POINT_OPERATIONS =
+        new RenderingKey(HINT_FUSE_POINT_OPERATIONS, Boolean.class);
+
     /**
      * Initial default tile size. Applies to both dimensions.
      */
@@ -583,7 +599,7 @@ public final class JAI {
         this.renderingHints.put(KEY_TILE_CACHE, tileCache);
         this.renderingHints.put(KEY_TILE_SCHEDULER, tileScheduler);
 
-        TileFactory rtf = new RecyclingTileFactory();
+        TileFactory rtf = new PooledTileFactory();
         this.renderingHints.put(KEY_TILE_FACTORY, rtf);
         this.renderingHints.put(KEY_TILE_RECYCLER, rtf);
         this.renderingHints.put(KEY_CACHED_TILE_RECYCLING_ENABLED,
@@ -18,7 +18,10 @@
 package org.eclipse.imagen;
 
 import org.eclipse.imagen.media.util.ImageUtil;
+import org.eclipse.imagen.media.util.CostAwareTileCache;
+import org.eclipse.imagen.media.util.InFlightTiles;
 import org.eclipse.imagen.media.util.JDKWorkarounds;
+import org.eclipse.imagen.media.util.TileInstrumentation;
 import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
@@ -1094,6 +1097,29 @@ public abstract class OpImage extends PlanarImage {
         }
     }
 
+    /**
+     * Adds a tile to the tile cache together with the time it took to
+     * compute.  The compute time is passed on if the tile cache is a
+     * <code>CostAwareTileCache</code>; otherwise this method is
+     * equivalent to <code>addTileToCache(tileX, tileY, tile)</code>.
+     *
+     * @param tileX  The X index of the tile.
+     * @param tileY  The Y index of the tile.
+     * @param tile  The tile to be added to the cache.
+     * @param computeTime  The compute time of the tile in nanoseconds.
+     */
+    protected void addTileToCache(int tileX,
+                                  int tileY,
+                                  Raster tile,
+                                  long computeTime) {
+        if (cache instanceof CostAwareTileCache) {
+            ((CostAwareTileCache)cache).add(this, tileX, tileY, tile,
+                                            tileCacheMetric, computeTime);
+        } else {
+            addTileToCache(tileX, tileY, tile);
+        }
+    }
+
     /**
      * Returns the <code>tileCacheMetric</code> instance variable by reference.
      *
@@ -1111,7 +1137,9 @@ public abstract class OpImage extends PlanarImage {
      * <p> This method attempts to retrieve the requested tile from the
      * cache.  If the tile is not currently in the cache, it schedules
      * the tile for computation and adds it to the cache once the tile
-     * has been computed.
+     * has been computed.  If several threads request a tile which is
+     * not in the cache at the same time, it is computed only once and
+     * the result returned to all of them.
      *
      * <p> If a subclass overrides this method, then it needs to handle
      * tile caching and scheduling.  It should also override
@@ -1130,25 +1158,56 @@ public abstract class OpImage extends PlanarImage {
             // Check if tile is available in the cache.
             tile = getTileFromCache(tileX, tileY);
 
+            if (TileInstrumentation.isEnabled()) {
+                TileInstrumentation.cacheAccessed(this, tileX, tileY,
+                                                  tile != null);
+            }
+
             if (tile == null) {         // tile not in cache
-                try {
-                    tile = scheduler.scheduleTile(this, tileX, tileY);
-                } catch (OutOfMemoryError e) {
-                    // Empty the cache and call System.gc()
-                    if(cache != null) {
-                        cache.flush();
-                        System.gc(); //slow
-                    }
+                // Threads missing the same tile concurrently wait for a
+                // single computation.
+                final int tx = tileX;
+                final int ty = tileY;
+                tile = InFlightTiles.compute(this, tileX, tileY,
+                                             () -> scheduleAndCacheTile(tx, ty));
+            }
+        }
 
-                    // Need to reissue the tile scheduling.
-                    tile = scheduler.scheduleTile(this, tileX, tileY);
-                }
+        return tile;
+    }
 
-                // Cache the result tile.
-                addTileToCache(tileX, tileY, tile);
+    /**
+     * Schedules a tile which was not found in the cache for computation
+     * and caches the result.  Called by <code>getTile()</code> while no
+     * other thread is computing the same tile.  The cache is checked
+     * again first as the tile may have been added by a computation which
+     * completed since the previous check.
+     */
+    private Raster scheduleAndCacheTile(int tileX, int tileY) {
+        Raster tile = getTileFromCache(tileX, tileY);
+        if (tile != null) {
+            return tile;
+        }
+
+        // The compute time includes obtaining the source tiles.
+        long start = System.nanoTime();
+        try {
+            tile = scheduler.scheduleTile(this, tileX, tileY);
+        } catch (OutOfMemoryError e) {
+            // Empty the cache and call System.gc()
+            if(cache != null) {
+                cache.flush();
+                System.gc(); //slow
             }
+
+            // Need to reissue the tile scheduling.
+            start = System.nanoTime();
+            tile = scheduler.scheduleTile(this, tileX, tileY);
         }
 
+        // Cache the result tile.
+        addTileToCache(tileX, tileY, tile, System.nanoTime() - start);
+
         return tile;
     }
 
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen;
+
+import java.awt.image.Raster;
+
+/**
+ * Interface implemented by <code>StatisticsOpImage</code> subclasses
+ * whose statistics can be accumulated over each source tile separately
+ * and merged afterwards.  The source tiles of such images are
+ * accumulated concurrently using the default <code>TileScheduler</code>,
+ * and each partial statistics object is merged into the statistics as
+ * soon as its tile has been accumulated.  Tiles are therefore merged in
+ * no particular order, so that the merge must be associative and
+ * commutative.
+ *
+ * @see StatisticsOpImage
+ */
+public interface ParallelStatistics {
+
+    /**
+     * Returns an object that will be used to gather the named statistic
+     * over a single tile, independently of the other tiles, or
+     * <code>null</code> if the named statistic can only be accumulated
+     * sequentially.
+     *
+     * @param name  The name of the statistic to be gathered.
+     */
+    Object createPartialStatistics(String name);
+
+    /**
+     * Accumulates statistics on the specified region into a partial
+     * statistics object.  The region of interest and X and Y sampling
+     * rate should be respected.  This method may be invoked by several
+     * threads at once, each with its own partial statistics object, and
+     * while another thread holds the lock of the image; it must
+     * therefore not synchronize on the image.
+     *
+     * @param name  The name of the statistic to be gathered.
+     * @param source  A <code>Raster</code> containing source pixels.
+     * @param partial  A statistics object generated by a previous call
+     *        to createPartialStatistics.
+     */
+    void accumulatePartialStatistics(String name,
+                                     Raster source,
+                                     Object partial);
+
+    /**
+     * Merges partial statistics into the statistics object.  Partial
+     * statistics are merged one at a time, but possibly by different
+     * threads and in any order.
+     *
+     * @param name  The name of the statistic to be gathered.
+     * @param stats  A statistics object generated by a previous call
+     *        to createStatistics.
+     * @param partial  A statistics object generated by a previous call
+     *        to createPartialStatistics.
+     */
+    void mergeStatistics(String name, Object stats, Object partial);
+}
@@ -37,6 +37,7 @@ import java.security.PrivilegedAction;
 import org.eclipse.imagen.util.CaselessStringKey;
 import org.eclipse.imagen.media.util.ImageUtil;
 import org.eclipse.imagen.media.util.JDKWorkarounds;
+import org.eclipse.imagen.media.util.TileInstrumentation;
 
 /**
  * An abstract base class for image operators that require only the
@@ -753,7 +754,8 @@ public abstract class PointOpImage extends OpImage {
                 if (raster == null) {
                     // Compute the tile.
                     try {
-                        raster = source0AsOpImage.computeTile(tileX, tileY);
+                        raster = TileInstrumentation.computeTile(source0AsOpImage,
+                                                                tileX, tileY);
                         if (raster instanceof WritableRaster) {
                             dest = (WritableRaster)raster;
                         }
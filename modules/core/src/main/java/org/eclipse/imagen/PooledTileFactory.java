@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A <code>RecyclingTileFactory</code> which keeps recycled data banks in
+ * a pool of bounded size instead of behind <code>SoftReference</code>s.
+ * Reuse thus does not depend on the timing of garbage collection, and
+ * the amount of memory retained by the pool never exceeds its memory
+ * capacity.
+ *
+ * <p> Data banks are pooled by size class, i.e., by data type, number
+ * of banks and bank size.  Each thread first recycles into and reuses
+ * from a small magazine of its own, which requires no synchronization
+ * with other threads; banks which do not fit in the magazine go to a
+ * shared depot.  When recycling a bank would exceed the memory capacity,
+ * the least recently recycled banks of the depot are evicted, and the
+ * bank is dropped if that does not free enough memory.
+ *
+ * <p> The pool records the number of tiles created from a pooled bank
+ * (hits), created with a new <code>DataBuffer</code> (misses), and of
+ * banks evicted or dropped.  An instance of this class is the default
+ * <code>JAI.KEY_TILE_FACTORY</code> and <code>JAI.KEY_TILE_RECYCLER</code>
+ * hint, and is thus used whenever
+ * <code>JAI.KEY_CACHED_TILE_RECYCLING_ENABLED</code> is set to
+ * <code>TRUE</code> without supplying a specific recycler.
+ *
+ * @see RecyclingTileFactory
+ * @see JAI#KEY_CACHED_TILE_RECYCLING_ENABLED
+ */
+public class PooledTileFactory extends RecyclingTileFactory {
+
+    /** The default memory capacity of the pool (32 MB). */
+    public static final long DEFAULT_MEMORY_CAPACITY = 32L * 1024L * 1024L;
+
+    /** The number of banks held by the magazine of each thread. */
+    private static final int MAGAZINE_SIZE = 4;
+
+    /** The shared banks, mapped from size class to a deque of banks. */
+    private final ConcurrentHashMap depot = new ConcurrentHashMap();
+
+    /** The magazine of each thread. */
+    private final ThreadLocal magazines = new ThreadLocal() {
+        protected Object initialValue() {
+            Magazine magazine = new Magazine();
+            magazineRefs.add(new MagazineRef(Thread.currentThread(),
+                                             magazine, deadThreads));
+            return magazine;
+        }
+    };
+
+    /** References to the magazines of all threads. */
+    private final Set magazineRefs = ConcurrentHashMap.newKeySet();
+
+    /** Queue of the references of the threads which are gone. */
+    private final ReferenceQueue deadThreads = new ReferenceQueue();
+
+    /** The maximum amount of memory retained by the pool. */
+    private volatile long memoryCapacity;
+
+    /** The amount of memory retained by the pool. */
+    private final AtomicLong memoryUsed = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Constructs a <code>PooledTileFactory</code> with the default
+     * memory capacity.
+     */
+    public PooledTileFactory() {
+        this(DEFAULT_MEMORY_CAPACITY);
+    }
+
+    /**
+     * Constructs a <code>PooledTileFactory</code>.
+     *
+     * @param memoryCapacity  The maximum amount of memory in bytes
+     *        retained by recycled banks.
+     *
+     * @throws IllegalArgumentException if <code>memoryCapacity</code>
+     *         is negative.
+     */
+    public PooledTileFactory(long memoryCapacity) {
+        if (memoryCapacity < 0) {
+            throw new IllegalArgumentException
+                (JaiI18N.getString("PooledTileFactory0"));
+        }
+        this.memoryCapacity = memoryCapacity;
+    }
+
+    /**
+     * Returns the maximum amount of memory in bytes retained by
+     * recycled banks.
+     */
+    public long getMemoryCapacity() {
+        return memoryCapacity;
+    }
+
+    /**
+     * Sets the maximum amount of memory in bytes retained by recycled
+     * banks.  Banks are evicted if the pool currently uses more.
+     *
+     * @throws IllegalArgumentException if <code>memoryCapacity</code>
+     *         is negative.
+     */
+    public void setMemoryCapacity(long memoryCapacity) {
+        if (memoryCapacity < 0) {
+            throw new IllegalArgumentException
+                (JaiI18N.getString("PooledTileFactory0"));
+        }
+        this.memoryCapacity = memoryCapacity;
+
+        while (memoryUsed.get() > memoryCapacity && evictOne()) {
+        }
+    }
+
+    /**
+     * Returns the amount of memory in bytes retained by recycled banks.
+     */
+    public long getMemoryUsed() {
+        return memoryUsed.get();
+    }
+
+    /** Returns the number of tiles created from a recycled bank. */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /** Returns the number of tiles for which no bank was available. */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of banks which were evicted or not retained
+     * because of the memory capacity.
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /** Resets the hit, miss and eviction counts to zero. */
+    public void resetCounts() {
+        hitCount.reset();
+        missCount.reset();
+        evictionCount.reset();
+    }
+
+    /** Removes all the recycled banks from the pool. */
+    public void flush() {
+        expungeDeadThreads();
+
+        Iterator refs = magazineRefs.iterator();
+        while (refs.hasNext()) {
+            memoryUsed.addAndGet(-((MagazineRef)refs.next()).magazine.clear());
+        }
+
+        Iterator deques = depot.values().iterator();
+        while (deques.hasNext()) {
+            ConcurrentLinkedDeque deque = (ConcurrentLinkedDeque)deques.next();
+            Bank bank;
+            while ((bank = (Bank)deque.pollFirst()) != null) {
+                memoryUsed.addAndGet(-bank.size);
+            }
+        }
+    }
+
+    /**
+     * Recycle the given tile.  Its banks are retained only if this does
+     * not exceed the memory capacity once older banks are evicted.
+     */
+    public void recycleTile(Raster tile) {
+        expungeDeadThreads();
+
+        DataBuffer db = tile.getDataBuffer();
+        int type = db.getDataType();
+        int numBanks = db.getNumBanks();
+        int size = db.getSize();
+
+        long key = sizeClass(type, numBanks, size);
+        Bank bank = new Bank(getBankData(db),
+                             getDataBankSize(type, numBanks, size));
+
+        if (!reserve(bank.size)) {
+            evictionCount.increment();
+            return;
+        }
+
+        if (!((Magazine)magazines.get()).put(key, bank)) {
+            Long depotKey = Long.valueOf(key);
+            ConcurrentLinkedDeque deque =
+                (ConcurrentLinkedDeque)depot.get(depotKey);
+            if (deque == null) {
+                deque = new ConcurrentLinkedDeque();
+                ConcurrentLinkedDeque prev =
+                    (ConcurrentLinkedDeque)depot.putIfAbsent(depotKey, deque);
+                if (prev != null) {
+                    deque = prev;
+                }
+            }
+            deque.offerFirst(bank);
+        }
+    }
+
+    /**
+     * Retrieve an array of the specified type and length from the
+     * magazine of the current thread or else from the depot.
+     */
+    Object getRecycledArray(int arrayType, long numBanks, long arrayLength) {
+        long key = sizeClass(arrayType, numBanks, arrayLength);
+
+        Bank bank = ((Magazine)magazines.get()).take(key);
+        if (bank == null) {
+            ConcurrentLinkedDeque deque =
+                (ConcurrentLinkedDeque)depot.get(Long.valueOf(key));
+            if (deque != null) {
+                bank = (Bank)deque.pollFirst();
+            }
+        }
+
+        if (bank == null) {
+            missCount.increment();
+            return null;
+        }
+
+        memoryUsed.addAndGet(-bank.size);
+        hitCount.increment();
+        return bank.data;
+    }
+
+    private static long sizeClass(int type, long numBanks, long size) {
+        return ((long)type << 56) | (numBanks << 32) | size;
+    }
+
+    /**
+     * Accounts for <code>size</code> more bytes, evicting banks from the
+     * depot as needed.  Returns <code>false</code> if the bytes do not fit.
+     */
+    private boolean reserve(long size) {
+        long capacity = memoryCapacity;
+        if (size > capacity) {
+            return false;
+        }
+
+        while (true) {
+            long used = memoryUsed.get();
+            if (used + size <= capacity) {
+                if (memoryUsed.compareAndSet(used, used + size)) {
+                    return true;
+                }
+            } else if (!evictOne()) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently recycled bank of some size class, or
+     * failing that a bank held by the magazine of some thread.
+     */
+    private boolean evictOne() {
+        Bank bank = null;
+
+        Iterator deques = depot.values().iterator();
+        while (bank == null && deques.hasNext()) {
+            bank = (Bank)((ConcurrentLinkedDeque)deques.next()).pollLast();
+        }
+
+        Iterator refs = magazineRefs.iterator();
+        while (bank == null && refs.hasNext()) {
+            bank = ((MagazineRef)refs.next()).magazine.evict();
+        }
+
+        if (bank == null) {
+            return false;
+        }
+
+        memoryUsed.addAndGet(-bank.size);
+        evictionCount.increment();
+        return true;
+    }
+
+    /** Releases the magazines of the threads which are gone. */
+    private void expungeDeadThreads() {
+        MagazineRef ref;
+        while ((ref = (MagazineRef)deadThreads.poll()) != null) {
+            magazineRefs.remove(ref);
+            memoryUsed.addAndGet(-ref.magazine.clear());
+        }
+    }
+
+    /** Recycled bank data and its size in bytes. */
+    private static final class Bank {
+        final Object data;
+        final long size;
+
+        Bank(Object data, long size) {
+            this.data = data;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The banks recycled by a thread.  Only that thread uses the
+     * magazine, except when the pool is flushed, so its lock is
+     * uncontended.
+     */
+    private static final class Magazine {
+        private final long[] keys = new long[MAGAZINE_SIZE];
+        private final Bank[] banks = new Bank[MAGAZINE_SIZE];
+        private int count = 0;
+
+        synchronized boolean put(long key, Bank bank) {
+            if (count == MAGAZINE_SIZE) {
+                return false;
+            }
+            keys[count] = key;
+            banks[count++] = bank;
+            return true;
+        }
+
+        synchronized Bank take(long key) {
+            for (int i = count - 1; i >= 0; i--) {
+                if (keys[i] == key) {
+                    Bank bank = banks[i];
+                    count--;
+                    keys[i] = keys[count];
+                    banks[i] = banks[count];
+                    banks[count] = null;
+                    return bank;
+                }
+            }
+            return null;
+        }
+
+        synchronized Bank evict() {
+            if (count == 0) {
+                return null;
+            }
+            Bank bank = banks[0];
+            count--;
+            keys[0] = keys[count];
+            banks[0] = banks[count];
+            banks[count] = null;
+            return bank;
+        }
+
+        /** Empties the magazine and returns the number of bytes freed. */
+        synchronized long clear() {
+            long size = 0L;
+            for (int i = 0; i < count; i++) {
+                size += banks[i].size;
+                banks[i] = null;
+            }
+            count = 0;
+            return size;
+        }
+    }
+
+    /** Releases the magazine of a thread once the thread is gone. */
+    private static final class MagazineRef extends WeakReference {
+        final Magazine magazine;
+
+        MagazineRef(Thread thread, Magazine magazine, ReferenceQueue queue) {
+            super(thread, queue);
+            this.magazine = magazine;
+        }
+    }
+}
@@ -322,7 +322,7 @@ public class ROI implements Serializable {
         }
 
 	byte[] packedData =
-	    ImageUtil.getPackedBinaryData(theImage.getData(), rect);
+	    ImageUtil.getPackedBinaryData(theImage.getData(rect), rect);
 
 	// ImageUtil.getPackedBinaryData does not zero out the extra
 	// bits used to pad to the nearest byte - therefore ignore
@@ -431,7 +431,7 @@ public class ROI implements Serializable {
         }
 
 	byte[] packedData =
-	    ImageUtil.getPackedBinaryData(theImage.getData(), r);
+	    ImageUtil.getPackedBinaryData(theImage.getData(r), r);
 
 	// ImageUtil.getPackedBinaryData does not zero out the extra
 	// bits used to pad to the nearest byte - therefore ignore
@@ -857,7 +857,7 @@ public class ROI implements Serializable {
         }
 
 	byte[] data = ImageUtil.getPackedBinaryData(
-				    theImage.getData(), rect);
+				    theImage.getData(rect), rect);
 
 	// ImageUtil.getPackedBinaryData does not zero out the extra
 	// bits used to pad to the nearest byte - so zero these
@@ -970,7 +970,7 @@ public class ROI implements Serializable {
         }
 
 	byte[] data = ImageUtil.getPackedBinaryData(
-				    theImage.getData(), rect);
+				    theImage.getData(rect), rect);
 
 	// ImageUtil.getPackedBinaryData does not zero out the extra
 	// bits used to pad to the nearest byte - therefore ignore
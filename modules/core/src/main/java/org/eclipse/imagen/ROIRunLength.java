@@ -0,0 +1,1067 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.DataBuffer;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.LinkedList;
+import org.eclipse.imagen.media.util.ImageUtil;
+
+/**
+ * A class representing a region of interest as runs of included
+ * pixels.  The mask is divided into a grid of tiles anchored at
+ * (0, 0).  Each tile is recorded as empty, as entirely included,
+ * or as the list of runs of included pixels on each of its rows.
+ *
+ * <p> Point and rectangle queries, <code>getAsBitmask()</code> and
+ * <code>getAsRectangleList()</code> are answered directly from the
+ * runs without copying any raster data.  A point query costs
+ * constant time in empty and entirely included tiles and a binary
+ * search of a single row of runs otherwise.  The boolean operations
+ * <code>add()</code>, <code>subtract()</code>, <code>intersect()</code>
+ * and <code>exclusiveOr()</code> merge the runs of the two operands
+ * tile by tile and return a new <code>ROIRunLength</code>; an operand
+ * which is not an <code>ROIRunLength</code> is converted first.
+ *
+ * <p> The image form of the mask is only created when
+ * <code>getAsImage()</code> is called, for instance when the
+ * <code>ROI</code> is transformed or combined with an <code>ROI</code>
+ * of another class by that class.
+ *
+ * @see ROI
+ * @see ROIShape
+ */
+public class ROIRunLength extends ROI {
+
+    /** The default width and height of the tiles of the mask. */
+    private static final int DEFAULT_TILE_SIZE = 256;
+
+    /** Tile state: no pixel of the tile is included. */
+    private static final byte EMPTY = 0;
+
+    /** Tile state: every pixel of the tile is included. */
+    private static final byte FULL = 1;
+
+    /** Tile state: the tile is described by its rows of runs. */
+    private static final byte MIXED = 2;
+
+    private static final int OP_ADD = 0;
+    private static final int OP_SUBTRACT = 1;
+    private static final int OP_INTERSECT = 2;
+    private static final int OP_XOR = 3;
+
+    /** The bounds of the mask. */
+    private Rectangle bounds;
+
+    /** The width of the tiles of the mask. */
+    private int tileWidth;
+
+    /** The height of the tiles of the mask. */
+    private int tileHeight;
+
+    /** The index of the leftmost column of tiles. */
+    private int minTileX;
+
+    /** The index of the uppermost row of tiles. */
+    private int minTileY;
+
+    /** The number of columns of tiles. */
+    private int numXTiles;
+
+    /** The number of rows of tiles. */
+    private int numYTiles;
+
+    /** The state of each tile, in row-major order. */
+    private byte[] tileStates;
+
+    /**
+     * The runs of the <code>MIXED</code> tiles.  Entry <i>j</i> of a
+     * tile holds the runs of row <i>j</i> of the tile as pairs of
+     * absolute (start, end) X coordinates, the end being exclusive,
+     * or <code>null</code> if the row is empty.
+     */
+    private int[][][] tileRuns;
+
+    /** The image form of the mask, created on demand. */
+    private transient PlanarImage image = null;
+
+    /**
+     * Constructs an <code>ROIRunLength</code> from a
+     * <code>RenderedImage</code>.  The inclusion threshold is 127.
+     *
+     * @param im A single-banded RenderedImage.
+     *
+     * @throws IllegalArgumentException if im is null.
+     * @throws IllegalArgumentException if im does not have exactly one band
+     */
+    public ROIRunLength(RenderedImage im) {
+        this(im, 127);
+    }
+
+    /**
+     * Constructs an <code>ROIRunLength</code> from a
+     * <code>RenderedImage</code>.  Pixels whose value is greater than
+     * or equal to the threshold are included.  As for <code>ROI</code>,
+     * any positive threshold includes the set pixels of a bilevel image.
+     *
+     * @param im A single-banded RenderedImage.
+     * @param threshold The desired inclusion threshold.
+     *
+     * @throws IllegalArgumentException if im is null.
+     * @throws IllegalArgumentException if im does not have exactly one band
+     */
+    public ROIRunLength(RenderedImage im, int threshold) {
+        this(im, threshold, DEFAULT_TILE_SIZE, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Constructs an <code>ROIRunLength</code> from a
+     * <code>RenderedImage</code> using tiles of the given size.
+     *
+     * @param im A single-banded RenderedImage.
+     * @param threshold The desired inclusion threshold.
+     * @param tileWidth The width of the tiles of the mask.
+     * @param tileHeight The height of the tiles of the mask.
+     *
+     * @throws IllegalArgumentException if im is null.
+     * @throws IllegalArgumentException if im does not have exactly one band
+     * @throws IllegalArgumentException if tileWidth or tileHeight is
+     *         not positive.
+     */
+    public ROIRunLength(RenderedImage im, int threshold,
+                        int tileWidth, int tileHeight) {
+
+        if (im == null) {
+            throw new IllegalArgumentException(JaiI18N.getString("Generic0"));
+        }
+
+        SampleModel sm = im.getSampleModel();
+
+        if (sm.getNumBands() != 1) {
+            throw new IllegalArgumentException(JaiI18N.getString("ROI0"));
+        }
+
+        initTiles(new Rectangle(im.getMinX(), im.getMinY(),
+                                im.getWidth(), im.getHeight()),
+                  tileWidth, tileHeight);
+        this.threshold = threshold;
+
+        // A bilevel image is used as is for any positive threshold.
+        int t = ((threshold >= 1) && ImageUtil.isBinary(sm)) ? 1 : threshold;
+
+        int dataType = sm.getDataType();
+        boolean isFloat = dataType == DataBuffer.TYPE_FLOAT ||
+                          dataType == DataBuffer.TYPE_DOUBLE;
+
+        int[] iSamples = isFloat ? null : new int[tileWidth];
+        double[] dSamples = isFloat ? new double[tileWidth] : null;
+        int[] buf = new int[tileWidth + 1];
+
+        for (int ty = minTileY; ty < minTileY + numYTiles; ty++) {
+            for (int tx = minTileX; tx < minTileX + numXTiles; tx++) {
+                Rectangle clip = getTileClip(tx, ty);
+                Raster ras = im.getData(clip);
+                int x0 = clip.x;
+                int[][] rows = new int[tileHeight][];
+
+                for (int y = clip.y; y < clip.y + clip.height; y++) {
+                    int n = 0;
+                    int start = -1;
+
+                    if (isFloat) {
+                        dSamples = ras.getSamples(x0, y, clip.width, 1, 0,
+                                                  dSamples);
+                        for (int i = 0; i < clip.width; i++) {
+                            if (dSamples[i] >= t) {
+                                if (start < 0) {
+                                    start = i;
+                                }
+                            } else if (start >= 0) {
+                                buf[n++] = x0 + start;
+                                buf[n++] = x0 + i;
+                                start = -1;
+                            }
+                        }
+                    } else {
+                        iSamples = ras.getSamples(x0, y, clip.width, 1, 0,
+                                                  iSamples);
+                        for (int i = 0; i < clip.width; i++) {
+                            if (iSamples[i] >= t) {
+                                if (start < 0) {
+                                    start = i;
+                                }
+                            } else if (start >= 0) {
+                                buf[n++] = x0 + start;
+                                buf[n++] = x0 + i;
+                                start = -1;
+                            }
+                        }
+                    }
+
+                    if (start >= 0) {
+                        buf[n++] = x0 + start;
+                        buf[n++] = x0 + clip.width;
+                    }
+
+                    if (n > 0) {
+                        rows[y - ty*tileHeight] = Arrays.copyOf(buf, n);
+                    }
+                }
+
+                setTile(tx, ty, rows, clip);
+            }
+        }
+    }
+
+    /**
+     * Constructs an <code>ROIRunLength</code> holding the same mask
+     * as another <code>ROI</code>.  The mask is read from the
+     * <code>ROI</code> one tile at a time using its
+     * <code>getAsBitmask()</code> method.
+     *
+     * @param roi An ROI.
+     *
+     * @throws IllegalArgumentException if roi is null.
+     */
+    public ROIRunLength(ROI roi) {
+        this(roi, DEFAULT_TILE_SIZE, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Constructs an <code>ROIRunLength</code> holding the same mask
+     * as another <code>ROI</code> using tiles of the given size.
+     *
+     * @param roi An ROI.
+     * @param tileWidth The width of the tiles of the mask.
+     * @param tileHeight The height of the tiles of the mask.
+     *
+     * @throws IllegalArgumentException if roi is null.
+     * @throws IllegalArgumentException if tileWidth or tileHeight is
+     *         not positive.
+     */
+    public ROIRunLength(ROI roi, int tileWidth, int tileHeight) {
+
+        if (roi == null) {
+            throw new IllegalArgumentException(JaiI18N.getString("Generic0"));
+        }
+
+        initTiles(roi.getBounds(), tileWidth, tileHeight);
+        this.threshold = roi.getThreshold();
+
+        int[][] mask = new int[tileHeight][(tileWidth + 31)/32];
+        int[] buf = new int[tileWidth + 1];
+
+        for (int ty = minTileY; ty < minTileY + numYTiles; ty++) {
+            for (int tx = minTileX; tx < minTileX + numXTiles; tx++) {
+                Rectangle clip = getTileClip(tx, ty);
+
+                // Some implementations only set bits so clear the mask.
+                for (int j = 0; j < clip.height; j++) {
+                    Arrays.fill(mask[j], 0);
+                }
+
+                if (roi.getAsBitmask(clip.x, clip.y,
+                                     clip.width, clip.height, mask) == null) {
+                    continue;
+                }
+
+                int[][] rows = new int[tileHeight][];
+
+                for (int j = 0; j < clip.height; j++) {
+                    int[] bits = mask[j];
+                    int n = 0;
+                    int start = -1;
+
+                    for (int i = 0; i < clip.width; i++) {
+                        if ((bits[i >> 5] & (0x80000000 >>> (i & 31))) != 0) {
+                            if (start < 0) {
+                                start = i;
+                            }
+                        } else if (start >= 0) {
+                            buf[n++] = clip.x + start;
+                            buf[n++] = clip.x + i;
+                            start = -1;
+                        }
+                    }
+
+                    if (start >= 0) {
+                        buf[n++] = clip.x + start;
+                        buf[n++] = clip.x + clip.width;
+                    }
+
+                    if (n > 0) {
+                        rows[clip.y + j - ty*tileHeight] =
+                            Arrays.copyOf(buf, n);
+                    }
+                }
+
+                setTile(tx, ty, rows, clip);
+            }
+        }
+    }
+
+    /** Constructs an empty mask with the given bounds and tiling. */
+    private ROIRunLength(Rectangle bounds, int tileWidth, int tileHeight,
+                         int threshold) {
+        initTiles(bounds, tileWidth, tileHeight);
+        this.threshold = threshold;
+    }
+
+    /** Sets up an empty tile grid covering the given bounds. */
+    private void initTiles(Rectangle bounds, int tileWidth, int tileHeight) {
+
+        if (tileWidth <= 0 || tileHeight <= 0) {
+            throw new IllegalArgumentException(
+                JaiI18N.getString("ROIRunLength0"));
+        }
+
+        this.bounds = new Rectangle(bounds.x, bounds.y,
+                                    Math.max(bounds.width, 0),
+                                    Math.max(bounds.height, 0));
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+
+        if (this.bounds.isEmpty()) {
+            minTileX = minTileY = numXTiles = numYTiles = 0;
+        } else {
+            minTileX = Math.floorDiv(bounds.x, tileWidth);
+            minTileY = Math.floorDiv(bounds.y, tileHeight);
+            numXTiles = Math.floorDiv(bounds.x + bounds.width - 1,
+                                      tileWidth) - minTileX + 1;
+            numYTiles = Math.floorDiv(bounds.y + bounds.height - 1,
+                                      tileHeight) - minTileY + 1;
+        }
+
+        tileStates = new byte[numXTiles*numYTiles];
+        tileRuns = new int[numXTiles*numYTiles][][];
+    }
+
+    /** Returns the part of a tile which lies within the bounds. */
+    private Rectangle getTileClip(int tx, int ty) {
+        return bounds.intersection(new Rectangle(tx*tileWidth,
+                                                 ty*tileHeight,
+                                                 tileWidth, tileHeight));
+    }
+
+    /**
+     * Stores the rows of runs of a tile, recording it as
+     * <code>EMPTY</code> or <code>FULL</code> where possible.
+     */
+    private void setTile(int tx, int ty, int[][] rows, Rectangle clip) {
+        int t = (ty - minTileY)*numXTiles + tx - minTileX;
+        int x1 = clip.x + clip.width;
+        int j0 = clip.y - ty*tileHeight;
+
+        boolean isEmpty = true;
+        boolean isFull = true;
+        for (int j = j0; j < j0 + clip.height; j++) {
+            int[] runs = rows[j];
+            if (runs == null) {
+                isFull = false;
+            } else {
+                isEmpty = false;
+                if (runs.length != 2 || runs[0] != clip.x || runs[1] != x1) {
+                    isFull = false;
+                }
+            }
+        }
+
+        if (isEmpty) {
+            tileStates[t] = EMPTY;
+            tileRuns[t] = null;
+        } else if (isFull) {
+            tileStates[t] = FULL;
+            tileRuns[t] = null;
+        } else {
+            tileStates[t] = MIXED;
+            tileRuns[t] = rows;
+        }
+    }
+
+    /**
+     * Returns the state of this mask over a rectangle lying within a
+     * single tile: <code>EMPTY</code> or <code>FULL</code> if it is
+     * known to be uniform there and <code>MIXED</code> otherwise.
+     */
+    private byte getState(int tx, int ty, Rectangle clip) {
+        if (tx < minTileX || tx >= minTileX + numXTiles ||
+            ty < minTileY || ty >= minTileY + numYTiles ||
+            !bounds.intersects(clip)) {
+            return EMPTY;
+        }
+
+        byte state = tileStates[(ty - minTileY)*numXTiles + tx - minTileX];
+
+        return (state == FULL && !bounds.contains(clip)) ? MIXED : state;
+    }
+
+    /**
+     * Returns the runs of row y of a tile, or <code>null</code> if the
+     * row is empty.  The runs are not clipped to any rectangle and the
+     * returned array must not be modified.
+     */
+    private int[] getRuns(int tx, int ty, int y) {
+        if (tx < minTileX || tx >= minTileX + numXTiles ||
+            ty < minTileY || ty >= minTileY + numYTiles ||
+            y < bounds.y || y >= bounds.y + bounds.height) {
+            return null;
+        }
+
+        int t = (ty - minTileY)*numXTiles + tx - minTileX;
+
+        switch (tileStates[t]) {
+        case FULL:
+            int x0 = Math.max(tx*tileWidth, bounds.x);
+            int x1 = Math.min((tx + 1)*tileWidth, bounds.x + bounds.width);
+            return new int[] {x0, x1};
+        case MIXED:
+            return tileRuns[t][y - ty*tileHeight];
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Returns the index of the run containing x, or
+     * (-(insertion point) - 1) where the insertion point is the index
+     * of the first run starting after x.
+     */
+    private static int findRun(int[] runs, int x) {
+        int lo = 0;
+        int hi = runs.length/2 - 1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (x < runs[2*mid]) {
+                hi = mid - 1;
+            } else if (x >= runs[2*mid + 1]) {
+                lo = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -(lo + 1);
+    }
+
+    /**
+     * Collects the runs of row y clipped to [x0, x1) into buf,
+     * joining runs which abut across tile boundaries, and returns
+     * the number of entries written.  The buffer must have at least
+     * (x1 - x0 + 1) entries.
+     */
+    private int getRow(int y, int x0, int x1, int[] buf) {
+        int ty = Math.floorDiv(y, tileHeight);
+        int txMax = Math.floorDiv(x1 - 1, tileWidth);
+        int n = 0;
+
+        for (int tx = Math.floorDiv(x0, tileWidth); tx <= txMax; tx++) {
+            int[] runs = getRuns(tx, ty, y);
+            if (runs == null) {
+                continue;
+            }
+
+            for (int k = 0; k < runs.length; k += 2) {
+                int s = Math.max(runs[k], x0);
+                int e = Math.min(runs[k + 1], x1);
+                if (s >= e) {
+                    continue;
+                }
+                if (n > 0 && buf[n - 1] == s) {
+                    buf[n - 1] = e;
+                } else {
+                    buf[n++] = s;
+                    buf[n++] = e;
+                }
+            }
+        }
+
+        return n;
+    }
+
+    /** Returns the inclusion/exclusion threshold value. */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Sets the inclusion/exclusion threshold value.  The mask is
+     * thresholded when the <code>ROIRunLength</code> is constructed,
+     * so this only changes the value reported by
+     * <code>getThreshold()</code>.
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /** Returns the bounds of the mask as a <code>Rectangle</code>. */
+    public Rectangle getBounds() {
+        return new Rectangle(bounds);
+    }
+
+    /** Returns the bounds of the mask as a <code>Rectangle2D</code>. */
+    public Rectangle2D getBounds2D() {
+        return new Rectangle2D.Float((float) bounds.x,
+                                     (float) bounds.y,
+                                     (float) bounds.width,
+                                     (float) bounds.height);
+    }
+
+    /**
+     * Returns <code>true</code> if the mask contains the point (x, y).
+     *
+     * @param x An int specifying the X coordinate of the pixel to be queried.
+     * @param y An int specifying the Y coordinate of the pixel to be queried.
+     * @return <code>true</code> if the pixel lies within the mask.
+     */
+    public boolean contains(int x, int y) {
+        if (!bounds.contains(x, y)) {
+            return false;
+        }
+
+        int tx = Math.floorDiv(x, tileWidth);
+        int ty = Math.floorDiv(y, tileHeight);
+        int t = (ty - minTileY)*numXTiles + tx - minTileX;
+
+        switch (tileStates[t]) {
+        case FULL:
+            return true;
+        case MIXED:
+            int[] runs = tileRuns[t][y - ty*tileHeight];
+            return runs != null && findRun(runs, x) >= 0;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if a given <code>Rectangle</code> is
+     * entirely included within the mask.
+     *
+     * @param rect A <code>Rectangle</code> specifying the region to be tested
+     *        for inclusion.
+     * @throws IllegalArgumentException if rect is null.
+     * @return <code>true</code> if the rectangle is entirely
+     *         contained within the mask.
+     */
+    public boolean contains(Rectangle rect) {
+        if ( rect == null ) {
+            throw new IllegalArgumentException(JaiI18N.getString("Generic0"));
+        }
+
+        if (rect.isEmpty() || !rect.equals(rect.intersection(bounds))) {
+            return false;
+        }
+
+        int x1 = rect.x + rect.width;
+        int y1 = rect.y + rect.height;
+        int txMax = Math.floorDiv(x1 - 1, tileWidth);
+        int tyMax = Math.floorDiv(y1 - 1, tileHeight);
+
+        for (int ty = Math.floorDiv(rect.y, tileHeight); ty <= tyMax; ty++) {
+            int ys = Math.max(rect.y, ty*tileHeight);
+            int ye = Math.min(y1, (ty + 1)*tileHeight);
+
+            for (int tx = Math.floorDiv(rect.x, tileWidth); tx <= txMax; tx++) {
+                int t = (ty - minTileY)*numXTiles + tx - minTileX;
+                byte state = tileStates[t];
+
+                if (state == EMPTY) {
+                    return false;
+                } else if (state == FULL) {
+                    continue;
+                }
+
+                int xs = Math.max(rect.x, tx*tileWidth);
+                int xe = Math.min(x1, (tx + 1)*tileWidth);
+                int[][] rows = tileRuns[t];
+
+                for (int y = ys; y < ye; y++) {
+                    int[] runs = rows[y - ty*tileHeight];
+                    if (runs == null) {
+                        return false;
+                    }
+                    int k = findRun(runs, xs);
+                    if (k < 0 || runs[2*k + 1] < xe) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns <code>true</code> if a given <code>Rectangle</code>
+     * intersects the mask.
+     *
+     * @param rect A <code>Rectangle</code> specifying the region to be tested
+     *        for inclusion.
+     * @throws IllegalArgumentException if rect is null.
+     * @return <code>true</code> if the rectangle intersects the mask.
+     */
+    public boolean intersects(Rectangle rect) {
+        if ( rect == null ) {
+            throw new IllegalArgumentException(JaiI18N.getString("Generic0"));
+        }
+
+        Rectangle r = rect.intersection(bounds);
+
+        if (r.isEmpty()) {
+            return false;
+        }
+
+        int x1 = r.x + r.width;
+        int y1 = r.y + r.height;
+        int txMax = Math.floorDiv(x1 - 1, tileWidth);
+        int tyMax = Math.floorDiv(y1 - 1, tileHeight);
+
+        for (int ty = Math.floorDiv(r.y, tileHeight); ty <= tyMax; ty++) {
+            int ys = Math.max(r.y, ty*tileHeight);
+            int ye = Math.min(y1, (ty + 1)*tileHeight);
+
+            for (int tx = Math.floorDiv(r.x, tileWidth); tx <= txMax; tx++) {
+                int t = (ty - minTileY)*numXTiles + tx - minTileX;
+                byte state = tileStates[t];
+
+                if (state == FULL) {
+                    return true;
+                } else if (state == EMPTY) {
+                    continue;
+                }
+
+                int xs = Math.max(r.x, tx*tileWidth);
+                int xe = Math.min(x1, (tx + 1)*tileWidth);
+                int[][] rows = tileRuns[t];
+
+                for (int y = ys; y < ye; y++) {
+                    int[] runs = rows[y - ty*tileHeight];
+                    if (runs == null) {
+                        continue;
+                    }
+                    int k = findRun(runs, xs);
+                    if (k >= 0) {
+                        return true;
+                    }
+                    k = -(k + 1);
+                    if (2*k < runs.length && runs[2*k] < xe) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Combines this mask with another one tile by tile.  Tiles whose
+     * result follows from the operands being empty or entirely
+     * included are recorded without looking at their rows.
+     */
+    private ROI combine(ROI roi, int op) {
+
+        if (roi == null) {
+            throw new IllegalArgumentException(JaiI18N.getString("Generic0"));
+        }
+
+        ROIRunLength other;
+        if (roi instanceof ROIRunLength &&
+            ((ROIRunLength)roi).tileWidth == tileWidth &&
+            ((ROIRunLength)roi).tileHeight == tileHeight) {
+            other = (ROIRunLength)roi;
+        } else {
+            other = new ROIRunLength(roi, tileWidth, tileHeight);
+        }
+
+        Rectangle b;
+        switch (op) {
+        case OP_SUBTRACT:
+            b = bounds;
+            break;
+        case OP_INTERSECT:
+            b = bounds.intersection(other.bounds);
+            break;
+        default:
+            b = bounds.union(other.bounds);
+            break;
+        }
+
+        ROIRunLength result =
+            new ROIRunLength(b, tileWidth, tileHeight, threshold);
+
+        for (int ty = result.minTileY;
+             ty < result.minTileY + result.numYTiles; ty++) {
+            for (int tx = result.minTileX;
+                 tx < result.minTileX + result.numXTiles; tx++) {
+                Rectangle clip = result.getTileClip(tx, ty);
+                int t = (ty - result.minTileY)*result.numXTiles +
+                        tx - result.minTileX;
+
+                byte state = combineStates(getState(tx, ty, clip),
+                                           other.getState(tx, ty, clip), op);
+                if (state != MIXED) {
+                    result.tileStates[t] = state;
+                    continue;
+                }
+
+                int x0 = clip.x;
+                int x1 = clip.x + clip.width;
+                int[][] rows = new int[tileHeight][];
+
+                for (int y = clip.y; y < clip.y + clip.height; y++) {
+                    rows[y - ty*tileHeight] =
+                        combineRuns(getRuns(tx, ty, y),
+                                    other.getRuns(tx, ty, y), op, x0, x1);
+                }
+
+                result.setTile(tx, ty, rows, clip);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the state of a result tile given the states of the
+     * operands over it, or <code>MIXED</code> if the rows of the tile
+     * have to be combined.
+     */
+    private static byte combineStates(byte a, byte b, int op) {
+        switch (op) {
+        case OP_ADD:
+            if (a == FULL || b == FULL) {
+                return FULL;
+            }
+            return (a == EMPTY && b == EMPTY) ? EMPTY : MIXED;
+        case OP_SUBTRACT:
+            if (a == EMPTY || b == FULL) {
+                return EMPTY;
+            }
+            return (a == FULL && b == EMPTY) ? FULL : MIXED;
+        case OP_INTERSECT:
+            if (a == EMPTY || b == EMPTY) {
+                return EMPTY;
+            }
+            return (a == FULL && b == FULL) ? FULL : MIXED;
+        default:
+            if (a == MIXED || b == MIXED) {
+                return MIXED;
+            }
+            return (a == b) ? EMPTY : FULL;
+        }
+    }
+
+    /**
+     * Combines two rows of runs over [x0, x1) and returns the
+     * resulting runs, or <code>null</code> if none remain.
+     */
+    private static int[] combineRuns(int[] a, int[] b, int op,
+                                     int x0, int x1) {
+        int na = (a == null) ? 0 : a.length;
+        int nb = (b == null) ? 0 : b.length;
+        int[] out = new int[na + nb + 2];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+
+        for (int x = x0; x < x1; ) {
+            while (i < na && a[i + 1] <= x) {
+                i += 2;
+            }
+            while (j < nb && b[j + 1] <= x) {
+                j += 2;
+            }
+
+            boolean inA = i < na && a[i] <= x;
+            boolean inB = j < nb && b[j] <= x;
+
+            // The next position at which either operand changes.
+            int next = x1;
+            if (i < na) {
+                next = Math.min(next, inA ? a[i + 1] : a[i]);
+            }
+            if (j < nb) {
+                next = Math.min(next, inB ? b[j + 1] : b[j]);
+            }
+
+            boolean in;
+            switch (op) {
+            case OP_ADD:
+                in = inA || inB;
+                break;
+            case OP_SUBTRACT:
+                in = inA && !inB;
+                break;
+            case OP_INTERSECT:
+                in = inA && inB;
+                break;
+            default:
+                in = inA != inB;
+                break;
+            }
+
+            if (in) {
+                if (n > 0 && out[n - 1] == x) {
+                    out[n - 1] = next;
+                } else {
+                    out[n++] = x;
+                    out[n++] = next;
+                }
+            }
+
+            x = next;
+        }
+
+        return (n == 0) ? null : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Adds another <code>ROI</code> to this one and returns the result
+     * as a new <code>ROIRunLength</code>.  The bounds of the result
+     * are the union of the bounds of the two <code>ROI</code>s.
+     *
+     * @param roi An ROI.
+     * @throws IllegalArgumentException if roi is null.
+     * @return A new ROI containing the new ROI data.
+     */
+    public ROI add(ROI roi) {
+        return combine(roi, OP_ADD);
+    }
+
+    /**
+     * Subtracts another <code>ROI</code> from this one and returns the
+     * result as a new <code>ROIRunLength</code>.  The bounds of the
+     * result are the bounds of <code>this</code> <code>ROI</code>.
+     *
+     * @param roi An ROI.
+     * @throws IllegalArgumentException if roi is null.
+     * @return A new ROI containing the new ROI data.
+     */
+    public ROI subtract(ROI roi) {
+        return combine(roi, OP_SUBTRACT);
+    }
+
+    /**
+     * Intersects this <code>ROI</code> with another one and returns the
+     * result as a new <code>ROIRunLength</code>.  The bounds of the
+     * result are the intersection of the bounds of the two
+     * <code>ROI</code>s.
+     *
+     * @param roi An ROI.
+     * @throws IllegalArgumentException if roi is null.
+     * @return A new ROI containing the new ROI data.
+     */
+    public ROI intersect(ROI roi) {
+        return combine(roi, OP_INTERSECT);
+    }
+
+    /**
+     * Exclusive-ors this <code>ROI</code> with another one and returns
+     * the result as a new <code>ROIRunLength</code>.  The bounds of the
+     * result are the union of the bounds of the two <code>ROI</code>s.
+     *
+     * @param roi An ROI.
+     * @throws IllegalArgumentException if roi is null.
+     * @return A new ROI containing the new ROI data.
+     */
+    public ROI exclusiveOr(ROI roi) {
+        return combine(roi, OP_XOR);
+    }
+
+    /**
+     * Returns the mask as a bilevel <code>PlanarImage</code> whose
+     * <code>SampleModel</code> is an instance of
+     * <code>MultiPixelPackedSampleModel</code> and whose tiles are
+     * those of the mask.  The image is created on the first call.
+     *
+     * @return The <code>ROI</code> as a <code>PlanarImage</code>.
+     */
+    public synchronized PlanarImage getAsImage() {
+
+        if (image != null) {
+            return image;
+        }
+
+        SampleModel sm =
+            new MultiPixelPackedSampleModel(DataBuffer.TYPE_BYTE,
+                                            tileWidth, tileHeight, 1);
+        TiledImage ti = new TiledImage(bounds.x, bounds.y,
+                                       bounds.width, bounds.height, 0, 0,
+                                       sm, PlanarImage.createColorModel(sm));
+
+        int[] buf = new int[tileWidth + 1];
+
+        for (int ty = minTileY; ty < minTileY + numYTiles; ty++) {
+            for (int tx = minTileX; tx < minTileX + numXTiles; tx++) {
+                int t = (ty - minTileY)*numXTiles + tx - minTileX;
+                if (tileStates[t] == EMPTY) {
+                    continue;
+                }
+
+                Rectangle clip = getTileClip(tx, ty);
+                int lineStride = (clip.width + 7)/8;
+                byte[] data = new byte[lineStride*clip.height];
+
+                if (tileStates[t] == FULL) {
+                    Arrays.fill(data, (byte)0xff);
+                } else {
+                    for (int j = 0; j < clip.height; j++) {
+                        int n = getRow(clip.y + j, clip.x,
+                                       clip.x + clip.width, buf);
+                        int offset = j*lineStride;
+                        for (int k = 0; k < n; k += 2) {
+                            for (int p = buf[k] - clip.x;
+                                 p < buf[k + 1] - clip.x; p++) {
+                                data[offset + (p >> 3)] |=
+                                    (byte)(0x80 >> (p & 7));
+                            }
+                        }
+                    }
+                }
+
+                WritableRaster wr = ti.getWritableTile(tx, ty);
+                ImageUtil.setPackedBinaryData(data, wr, clip);
+                ti.releaseWritableTile(tx, ty);
+            }
+        }
+
+        image = ti;
+
+        return image;
+    }
+
+    /**
+     * Returns a bitmask for a given rectangular region of the ROI
+     * indicating whether the pixel is included in the region of
+     * interest.  The results are packed into 32-bit integers, with
+     * the MSB considered to lie on the left.  The last entry in each
+     * row of the result may have bits that lie outside of the
+     * requested rectangle.  These bits are guaranteed to be zeroed.
+     *
+     * <p> The <code>mask</code> array, if supplied, must be of length
+     * equal to or greater than <code>height</code> and each of its
+     * subarrays must have length equal to or greater than (width +
+     * 31)/32.  If <code>null</code> is passed in, a suitable array
+     * will be constructed.  If the mask is non-null but has
+     * insufficient size, an exception will be thrown.
+     *
+     * @param x The X coordinate of the upper left corner of the rectangle.
+     * @param y The Y coordinate of the upper left corner of the rectangle.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     * @param mask A two-dimensional array of ints at least
+     *        (width + 31)/32 entries wide and (height) entries tall,
+     *        or null.
+     * @return A reference to the <code>mask</code> parameter, or
+     *         to a newly constructed array if <code>mask</code> is
+     *         <code>null</code>. If the specified rectangle does not
+     *         intersect the mask then a <code>null</code> is returned.
+     */
+    public int[][] getAsBitmask(int x, int y,
+                                int width, int height,
+                                int[][] mask) {
+
+        Rectangle rect =
+            bounds.intersection(new Rectangle(x, y, width, height));
+
+        if (rect.isEmpty()) {
+            return null;
+        }
+
+        int bitmaskIntWidth = (width + 31)/32;
+
+        if (mask == null) {
+            mask = new int[height][bitmaskIntWidth];
+        } else if (mask.length < height || mask[0].length < bitmaskIntWidth) {
+            throw new RuntimeException(JaiI18N.getString("ROI3"));
+        } else {
+            for (int row = 0; row < height; row++) {
+                Arrays.fill(mask[row], 0, bitmaskIntWidth, 0);
+            }
+        }
+
+        int[] buf = new int[rect.width + 1];
+
+        for (int yy = rect.y; yy < rect.y + rect.height; yy++) {
+            int[] bits = mask[yy - y];
+            int n = getRow(yy, rect.x, rect.x + rect.width, buf);
+
+            for (int k = 0; k < n; k += 2) {
+                int from = buf[k] - x;
+                int to = buf[k + 1] - x;
+
+                while (from < to) {
+                    int shift = from & 31;
+                    int count = Math.min(32 - shift, to - from);
+                    bits[from >> 5] |= (count == 32) ? -1 :
+                        ((1 << count) - 1) << (32 - shift - count);
+                    from += count;
+                }
+            }
+        }
+
+        return mask;
+    }
+
+    /**
+     * Returns a <code>LinkedList</code> of <code>Rectangle</code>s for
+     * a given rectangular region of the ROI.
+     *
+     * @param x The X coordinate of the upper left corner of the rectangle.
+     * @param y The Y coordinate of the upper left corner of the rectangle.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     * @param mergeRectangles <code>true</code> if the <code>Rectangle</code>s
+     *        are to be merged into a minimal set.
+     * @return A <code>LinkedList</code> of <code>Rectangle</code>s.
+     *         If the specified rectangle does not intersect the mask
+     *         then a <code>null</code> is returned.
+     */
+    protected LinkedList getAsRectangleList(int x, int y,
+                                            int width, int height,
+                                            boolean mergeRectangles) {
+
+        Rectangle rect =
+            bounds.intersection(new Rectangle(x, y, width, height));
+
+        if (rect.isEmpty()) {
+            return null;
+        }
+
+        LinkedList rectList = new LinkedList();
+        int[] buf = new int[rect.width + 1];
+
+        for (int yy = rect.y; yy < rect.y + rect.height; yy++) {
+            int n = getRow(yy, rect.x, rect.x + rect.width, buf);
+            for (int k = 0; k < n; k += 2) {
+                rectList.addLast(
+                    new Rectangle(buf[k], yy, buf[k + 1] - buf[k], 1));
+            }
+        }
+
+        return mergeRectangles ? mergeRunLengthList(rectList) : rectList;
+    }
+}
@@ -179,6 +179,13 @@ public class RecyclingTileFactory extends Observable
      * data of the <code>DataBuffer</code>.
      */
     private static SoftReference getBankReference(DataBuffer db) {
+        return new SoftReference(getBankData(db));
+    }
+
+    /**
+     * Returns the internal bank data of the <code>DataBuffer</code>.
+     */
+    static Object getBankData(DataBuffer db) {
         Object array = null;
 
         switch(db.getDataType()) {
@@ -206,14 +213,14 @@ public class RecyclingTileFactory extends Observable
 
         }
 
-        return new SoftReference(array);
+        return array;
     }
 
     /**
      * Returns the amount of memory (in bytes) used by the supplied data
      * bank array.
      */
-    private static long getDataBankSize(int dataType, int numBanks, int size) {
+    static long getDataBankSize(int dataType, int numBanks, int size) {
         int bytesPerElement = 0;
         switch(dataType) {
         case DataBuffer.TYPE_BYTE:
@@ -442,7 +449,7 @@ public class RecyclingTileFactory extends Observable
     /**
      * Retrieve an array of the specified type and length.
      */
-    private Object getRecycledArray(int arrayType,
+    Object getRecycledArray(int arrayType,
                                     long numBanks,
                                     long arrayLength) {
         Long key = new Long(((long)arrayType << 56) |
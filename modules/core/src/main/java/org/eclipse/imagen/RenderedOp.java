@@ -17,8 +17,10 @@
 
 package org.eclipse.imagen;
 
+import org.eclipse.imagen.media.opimage.PointOpFusion;
 import org.eclipse.imagen.media.util.ImageUtil;
 import org.eclipse.imagen.media.util.PropertyUtil;
+import org.eclipse.imagen.media.util.TileInstrumentation;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
@@ -767,6 +769,13 @@ public class RenderedOp extends PlanarImage
      * <code>PlanarImage</code> by invoking
      * <code>PlanarImage.wrapRenderedImage()</code>.
      *
+     * <p> If the operation is a point operation whose source is the
+     * rendering of a chain of point operations, the rendering may be
+     * replaced by an equivalent image computing the whole chain in a
+     * single pass, unless the hint
+     * <code>JAI.KEY_FUSE_POINT_OPERATIONS</code> is set to
+     * <code>Boolean.FALSE</code>.
+     *
      * @return The resulting image as a <code>PlanarImage</code>.
      *
      * @throws RuntimeException if the image factory charged with rendering
@@ -833,6 +842,16 @@ public class RenderedOp extends PlanarImage
             throw new RuntimeException(JaiI18N.getString("RenderedOp0"));
         }
 
+        // Compute any chain of point operations ending here in one pass.
+        rendering = PointOpFusion.fuse(rendering,
+                                       nodeSupport.getRenderingHints());
+
+        // Attribute the statistics of the rendering to the operation.
+        if (TileInstrumentation.isEnabled()) {
+            TileInstrumentation.setOperationName(rendering,
+                                                 nodeSupport.getOperationName());
+        }
+
         // XXX: RenderedImageList - bpb 8 dec 2000
         // If rendering is a wrapped RenderedImageList whose primary image
         // is a RenderedOp, reset the sources of the primary image
@@ -20,6 +20,8 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Vector;
 import org.eclipse.imagen.media.util.PropertyUtil;
 
@@ -47,9 +49,14 @@ import org.eclipse.imagen.media.util.PropertyUtil;
  *
  * <p> Subclasses should provide implementations
  * of the <code>getStatisticsNames</code>, <code>createStatistics</code>,
- * and <code>accumulateStatistics</code> methods.
+ * and <code>accumulateStatistics</code> methods.  Subclasses whose
+ * statistics can be accumulated over each tile separately and merged
+ * afterwards may also implement <code>ParallelStatistics</code>, in
+ * which case the source tiles are accumulated concurrently using the
+ * default <code>TileScheduler</code>.
  * 
  * @see OpImage
+ * @see ParallelStatistics
  */
 public abstract class StatisticsOpImage extends OpImage {
     
@@ -254,51 +261,31 @@ public abstract class StatisticsOpImage extends OpImage {
 
                 if (!stats.equals(java.awt.Image.UndefinedProperty)) {
                     PlanarImage source = getSource(0);
-
-                    // Cycle throw all source tiles.
-                    int minTileX = source.getMinTileX();
-                    int maxTileX = source.getMaxTileX();
-                    int minTileY = source.getMinTileY();
-                    int maxTileY = source.getMaxTileY();
-
-                    for (int y = minTileY; y <= maxTileY; y++) {
-                        for (int x = minTileX; x <= maxTileX; x++) {
-                            // Determine the required region of this tile.
-                            // (Note that getTileRect() instersects tile and
-                            // image bounds.)
-                            Rectangle tileRect = getTileRect(x, y);
-
-                            // Process if and only if within ROI bounds.
-                            if (roi.intersects(tileRect)) {
-
-                                // If checking for skipped tiles determine
-                                // whether this tile is "hit".
-                                if(checkForSkippedTiles &&
-                                   tileRect.x >= xStart &&
-                                   tileRect.y >= yStart) {
-                                    // Determine the offset within the tile.
-                                    int offsetX =
-                                        (xPeriod -
-                                         ((tileRect.x - xStart) % xPeriod)) %
-                                        xPeriod;
-                                    int offsetY =
-                                        (yPeriod -
-                                         ((tileRect.y - yStart) % yPeriod)) %
-                                        yPeriod;
-
-                                    // Continue with next tile if offset
-                                    // is larger than either tile dimension.
-                                    if(offsetX >= tileRect.width ||
-                                       offsetY >= tileRect.height) {
-                                        continue;
-                                    }
-                                }
-
-                                // Accumulate statistics for this tile.
-                                accumulateStatistics(name,
-                                                     source.getData(tileRect),
-                                                     stats);
-                            }
+                    Point[] tileIndices = getStatisticsTileIndices(source);
+                    TileScheduler scheduler =
+                        JAI.getDefaultInstance().getTileScheduler();
+
+                    if (tileIndices.length > 1 &&
+                        scheduler.getParallelism() > 0 &&
+                        this instanceof ParallelStatistics &&
+                        ((ParallelStatistics)this).createPartialStatistics(
+                                                   name) != null) {
+                        // Accumulate the tiles concurrently and merge the
+                        // partial statistics as they complete.
+                        PartialAccumulator accumulator =
+                            new PartialAccumulator((ParallelStatistics)this,
+                                                   name, stats, source,
+                                                   tileIndices);
+                        accumulator.accumulate(scheduler);
+                    } else {
+                        for (int i = 0; i < tileIndices.length; i++) {
+                            Rectangle tileRect = getTileRect(tileIndices[i].x,
+                                                             tileIndices[i].y);
+
+                            // Accumulate statistics for this tile.
+                            accumulateStatistics(name,
+                                                 source.getData(tileRect),
+                                                 stats);
                         }
                     }
 
@@ -311,6 +298,61 @@ public abstract class StatisticsOpImage extends OpImage {
         return stats;
     }
 
+    /**
+     * Returns the indices of the source tiles over which the statistics
+     * are accumulated, in row order: the tiles which intersect the ROI
+     * and contain at least one sample position.
+     */
+    private Point[] getStatisticsTileIndices(PlanarImage source) {
+        ArrayList indices = new ArrayList();
+
+        // Cycle throw all source tiles.
+        int minTileX = source.getMinTileX();
+        int maxTileX = source.getMaxTileX();
+        int minTileY = source.getMinTileY();
+        int maxTileY = source.getMaxTileY();
+
+        for (int y = minTileY; y <= maxTileY; y++) {
+            for (int x = minTileX; x <= maxTileX; x++) {
+                // Determine the required region of this tile.
+                // (Note that getTileRect() instersects tile and
+                // image bounds.)
+                Rectangle tileRect = getTileRect(x, y);
+
+                // Process if and only if within ROI bounds.
+                if (roi.intersects(tileRect)) {
+
+                    // If checking for skipped tiles determine
+                    // whether this tile is "hit".
+                    if(checkForSkippedTiles &&
+                       tileRect.x >= xStart &&
+                       tileRect.y >= yStart) {
+                        // Determine the offset within the tile.
+                        int offsetX =
+                            (xPeriod -
+                             ((tileRect.x - xStart) % xPeriod)) %
+                            xPeriod;
+                        int offsetY =
+                            (yPeriod -
+                             ((tileRect.y - yStart) % yPeriod)) %
+                            yPeriod;
+
+                        // Continue with next tile if offset
+                        // is larger than either tile dimension.
+                        if(offsetX >= tileRect.width ||
+                           offsetY >= tileRect.height) {
+                            continue;
+                        }
+                    }
+
+                    indices.add(new Point(x, y));
+                }
+            }
+        }
+
+        return (Point[])indices.toArray(new Point[indices.size()]);
+    }
+
     /**
      * Returns a list of property names that are recognized by this image.
      *
@@ -388,4 +430,183 @@ public abstract class StatisticsOpImage extends OpImage {
     protected abstract void accumulateStatistics(String name,
                                                  Raster source,
                                                  Object stats);
+
+    /**
+     * Accumulates partial statistics over a list of tiles, sharing the
+     * tiles between the <code>TileScheduler</code> workers and the
+     * calling thread.  The workers accumulate the tiles in the order in
+     * which they are computed, while the calling thread accumulates
+     * those not yet claimed starting from the last one; tiles whose
+     * computation failed or was cancelled are accumulated by the calling
+     * thread.  The partial statistics of each tile are merged by the
+     * thread which accumulated it as soon as they are complete, so that
+     * at most one partial statistics object per thread is live at any
+     * time.  The calling thread never waits for a tile which is not
+     * being accumulated, so that the statistics may be requested from
+     * within a worker thread.
+     */
+    private final class PartialAccumulator
+        implements TileComputationListener {
+
+        /** The tile has not been claimed. */
+        private static final int PENDING = 0;
+
+        /** The tile is being accumulated. */
+        private static final int CLAIMED = 1;
+
+        /** The tile has been merged into the statistics. */
+        private static final int DONE = 2;
+
+        private final ParallelStatistics parallel;
+        private final String name;
+        private final PlanarImage source;
+        private final Point[] tileIndices;
+
+        /** The index of each tile in tileIndices, by tile index. */
+        private final HashMap slots;
+
+        /** The state of each tile; also the lock of the states. */
+        private final int[] states;
+
+        /** The statistics into which the tiles are merged. */
+        private final Object stats;
+
+        PartialAccumulator(ParallelStatistics parallel, String name,
+                           Object stats, PlanarImage source,
+                           Point[] tileIndices) {
+            this.parallel = parallel;
+            this.name = name;
+            this.stats = stats;
+            this.source = source;
+            this.tileIndices = tileIndices;
+
+            slots = new HashMap();
+            for (int i = 0; i < tileIndices.length; i++) {
+                slots.put(tileIndices[i], new Integer(i));
+            }
+            states = new int[tileIndices.length];
+        }
+
+        /** Accumulates all the tiles and merges them into stats. */
+        void accumulate(TileScheduler scheduler) {
+            TileRequest request =
+                scheduler.scheduleTiles(source, tileIndices,
+                                        new TileComputationListener[]
+                                        {this});
+            try {
+                for (int i = tileIndices.length - 1; i >= 0 && claim(i); i--) {
+                    accumulate(i, null);
+                }
+
+                for (int i = 0; i < tileIndices.length; i++) {
+                    while (!await(i)) {
+                        if (claim(i)) {
+                            accumulate(i, null);
+                        }
+                    }
+                }
+            } finally {
+                scheduler.cancelTiles(request, null);
+            }
+        }
+
+        /** Claims a pending tile for accumulation. */
+        private boolean claim(int i) {
+            synchronized (states) {
+                if (states[i] != PENDING) {
+                    return false;
+                }
+                states[i] = CLAIMED;
+                return true;
+            }
+        }
+
+        /**
+         * Accumulates a claimed tile and merges it into the statistics.
+         * If <code>tile</code> is <code>null</code> the data are
+         * requested from the source.
+         */
+        private void accumulate(int i, Raster tile) {
+            boolean merged = false;
+            try {
+                Rectangle tileRect = getTileRect(tileIndices[i].x,
+                                                 tileIndices[i].y);
+                if (tile == null || !tile.getBounds().contains(tileRect)) {
+                    tile = source.getData(tileRect);
+                } else {
+                    tile = tile.createChild(tileRect.x, tileRect.y,
+                                            tileRect.width, tileRect.height,
+                                            tileRect.x, tileRect.y, null);
+                }
+
+                Object partial = parallel.createPartialStatistics(name);
+                parallel.accumulatePartialStatistics(name, tile, partial);
+
+                // Merges are serialized on this accumulator.
+                synchronized (this) {
+                    parallel.mergeStatistics(name, stats, partial);
+                }
+                merged = true;
+            } finally {
+                // A failed tile becomes pending again.
+                synchronized (states) {
+                    states[i] = merged ? DONE : PENDING;
+                    states.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Waits until a tile is no longer being accumulated and returns
+         * whether it has been merged.
+         */
+        private boolean await(int i) {
+            boolean interrupted = false;
+            try {
+                synchronized (states) {
+                    while (states[i] == CLAIMED) {
+                        try {
+                            states.wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    return states[i] == DONE;
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        public void tileComputed(Object eventSource,
+                                 TileRequest[] requests,
+                                 PlanarImage image, int tileX, int tileY,
+                                 Raster tile) {
+            Integer slot = (Integer)slots.get(new Point(tileX, tileY));
+            if (slot != null && tile != null && claim(slot.intValue())) {
+                try {
+                    accumulate(slot.intValue(), tile);
+                } catch (RuntimeException e) {
+                    // The tile is accumulated again by the calling thread,
+                    // which reports the failure if it recurs.
+                }
+            }
+        }
+
+        public void tileCancelled(Object eventSource,
+                                  TileRequest[] requests,
+                                  PlanarImage image, int tileX, int tileY) {
+            // The tile is accumulated by the calling thread.
+        }
+
+        public void tileComputationFailure(Object eventSource,
+                                           TileRequest[] requests,
+                                           PlanarImage image,
+                                           int tileX, int tileY,
+                                           Throwable situation) {
+            // The tile is accumulated by the calling thread.
+        }
+    }
 }
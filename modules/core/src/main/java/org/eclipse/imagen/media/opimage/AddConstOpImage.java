@@ -55,7 +55,8 @@ import org.eclipse.imagen.media.util.ImageUtil;
  * @see AddConstCRIF
  *
  */
-final class AddConstOpImage extends ColormapOpImage {
+final class AddConstOpImage extends ColormapOpImage
+    implements FusiblePointOp {
 
     /** The constants to be added, one for each band. */
     protected double[] constants;
@@ -137,6 +138,61 @@ final class AddConstOpImage extends ColormapOpImage {
     }
 
 
+    /**
+     * Returns the function computing this image from its source, or
+     * <code>null</code> if the colormap is transformed or the source
+     * and destination data types differ.
+     */
+    public SampleFunction getSampleFunction() {
+        final int dataType = getSampleModel().getDataType();
+        if (isColormapOperation() ||
+            getSource(0).getSampleModel().getDataType() != dataType) {
+            return null;
+        }
+
+        return new SampleFunction(dataType) {
+            void transform(double[] samples, int length, int band) {
+                double c = constants[band];
+                int k = ImageUtil.clampRoundInt(c);
+
+                switch (dataType) {
+                case DataBuffer.TYPE_BYTE:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = ImageUtil.clampByte((int)samples[i] + k) & 0xFF;
+                    }
+                    break;
+                case DataBuffer.TYPE_USHORT:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] =
+                            ImageUtil.clampUShort((int)samples[i] + k) & 0xFFFF;
+                    }
+                    break;
+                case DataBuffer.TYPE_SHORT:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = ImageUtil.clampShort((int)samples[i] + k);
+                    }
+                    break;
+                case DataBuffer.TYPE_INT:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] =
+                            ImageUtil.clampInt((int)samples[i] + (long)k);
+                    }
+                    break;
+                case DataBuffer.TYPE_FLOAT:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = ImageUtil.clampFloat(samples[i] + c);
+                    }
+                    break;
+                case DataBuffer.TYPE_DOUBLE:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = samples[i] + c;
+                    }
+                    break;
+                }
+            }
+        };
+    }
+
     /**
      * Adds a constant to the pixel values within a specified rectangle.
      *
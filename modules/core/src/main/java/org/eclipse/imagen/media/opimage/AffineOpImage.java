@@ -61,7 +61,7 @@ import org.eclipse.imagen.media.util.ImageUtil;
  * </ul>
  *
  */
-class AffineOpImage extends GeometricOpImage {
+public class AffineOpImage extends GeometricOpImage {
 
     /**
      * Unsigned short Max Value
@@ -101,9 +101,9 @@ class AffineOpImage extends GeometricOpImage {
     protected static final int geom_frac_max = 0x100000;
 
     double m00, m10, flr_m00, flr_m10;
-    double fracdx, fracdx1, fracdy, fracdy1;
-    int incx, incx1, incy, incy1;
-    int ifracdx, ifracdx1, ifracdy, ifracdy1;
+    protected double fracdx, fracdx1, fracdy, fracdy1;
+    protected int incx, incx1, incy, incy1;
+    protected int ifracdx, ifracdx1, ifracdy, ifracdy1;
 
     /**
      * Padding values for interpolation
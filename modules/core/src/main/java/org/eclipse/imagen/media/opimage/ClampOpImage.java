@@ -49,7 +49,7 @@ import org.eclipse.imagen.media.util.ImageUtil;
  *
  * @since EA2
  */
-final class ClampOpImage extends PointOpImage {
+final class ClampOpImage extends PointOpImage implements FusiblePointOp {
 
     /** Lookup table for byte data */
     private byte[][] byteTable = null;
@@ -120,6 +120,73 @@ final class ClampOpImage extends PointOpImage {
         permitInPlaceOperation();
     }
 
+    /**
+     * Returns the function computing this image from its source, or
+     * <code>null</code> if the source and destination data types differ.
+     */
+    public SampleFunction getSampleFunction() {
+        final int dataType = getSampleModel().getDataType();
+        if (getSource(0).getSampleModel().getDataType() != dataType) {
+            return null;
+        }
+
+        return new SampleFunction(dataType) {
+            void transform(double[] samples, int length, int band) {
+                double lo = low[band];
+                double hi = high[band];
+
+                switch (dataType) {
+                case DataBuffer.TYPE_BYTE:
+                case DataBuffer.TYPE_USHORT:
+                case DataBuffer.TYPE_SHORT:
+                    int ilo = (int)lo;
+                    int ihi = (int)hi;
+                    double slo, shi;
+                    if (dataType == DataBuffer.TYPE_BYTE) {
+                        slo = (byte)ilo & 0xFF;
+                        shi = (byte)ihi & 0xFF;
+                    } else if (dataType == DataBuffer.TYPE_USHORT) {
+                        slo = (short)ilo & 0xFFFF;
+                        shi = (short)ihi & 0xFFFF;
+                    } else {
+                        slo = (short)ilo;
+                        shi = (short)ihi;
+                    }
+                    for (int i = 0; i < length; i++) {
+                        if (samples[i] < ilo) {
+                            samples[i] = slo;
+                        } else if (samples[i] > ihi) {
+                            samples[i] = shi;
+                        }
+                    }
+                    break;
+                case DataBuffer.TYPE_INT:
+                case DataBuffer.TYPE_FLOAT:
+                case DataBuffer.TYPE_DOUBLE:
+                    double dlo, dhi;
+                    if (dataType == DataBuffer.TYPE_INT) {
+                        dlo = (int)lo;
+                        dhi = (int)hi;
+                    } else if (dataType == DataBuffer.TYPE_FLOAT) {
+                        dlo = (float)lo;
+                        dhi = (float)hi;
+                    } else {
+                        dlo = lo;
+                        dhi = hi;
+                    }
+                    for (int i = 0; i < length; i++) {
+                        if (samples[i] < lo) {
+                            samples[i] = dlo;
+                        } else if (samples[i] > hi) {
+                            samples[i] = dhi;
+                        }
+                    }
+                    break;
+                }
+            }
+        };
+    }
+
     /**
      * Map the pixels inside a specified rectangle whose value is within a 
      * range to a constant on a per-band basis.
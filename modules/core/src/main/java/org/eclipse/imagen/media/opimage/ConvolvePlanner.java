@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.opimage;
+import java.awt.image.DataBuffer;
+import java.awt.image.RenderedImage;
+import java.util.Map;
+import org.eclipse.imagen.BorderExtender;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.KernelJAI;
+import org.eclipse.imagen.OpImage;
+
+/**
+ * Chooses how a convolution is computed for the "Convolve" and
+ * "UnsharpMask" operations.
+ *
+ * <p> In order of preference, the strategies are:
+ * <ul>
+ * <li> "3x3": <code>Convolve3x3OpImage</code>, for 3x3 kernels centered
+ * on their key element and integral data;
+ * <li> "separable": <code>SeparableConvolveOpImage</code>, for kernels
+ * which <code>KernelJAI</code> reports as separable and, except for
+ * double data, for those whose data are the outer product of two
+ * vectors up to a relative tolerance, such as one dimensional kernels
+ * and separable kernels of large magnitude;
+ * <li> "fft": <code>FFTConvolveOpImage</code>, for other kernels having
+ * at least <code>FFT_THRESHOLD</code> elements, or
+ * <code>FLOAT_FFT_THRESHOLD</code> elements for floating point data;
+ * <li> "direct": <code>ConvolveOpImage</code>.
+ * </ul>
+ *
+ * <p> The chosen strategy is set as the "ConvolveStrategy" property of
+ * the image.
+ */
+final class ConvolvePlanner {
+
+    /** The name of the property holding the chosen strategy. */
+    static final String STRATEGY_PROPERTY = "ConvolveStrategy";
+
+    /**
+     * The number of elements from which non-separable kernels are
+     * convolved using the Fast Fourier Transform, for integral data.
+     */
+    static final int FFT_THRESHOLD = 49;
+
+    /**
+     * The number of elements from which non-separable kernels are
+     * convolved using the Fast Fourier Transform, for floating point
+     * data, whose direct convolution loops are faster.
+     */
+    static final int FLOAT_FFT_THRESHOLD = 121;
+
+    /**
+     * The largest difference between the kernel data and the outer
+     * product of two vectors for the kernel to be considered separable,
+     * relative to the largest kernel element.
+     */
+    private static final double SEPARABLE_TOLERANCE = 1.0E-6;
+
+    /** The maximum number of power iterations of the separability test. */
+    private static final int MAX_ITERATIONS = 64;
+
+    private ConvolvePlanner() {}
+
+    /**
+     * Creates the image convolving a source with a pre-rotated kernel.
+     *
+     * @param source a RenderedImage.
+     * @param extender a BorderExtender, or null.
+     * @param config configurable attributes of the image, or null.
+     * @param layout an ImageLayout optionally containing the tile grid layout,
+     *        SampleModel, and ColorModel, or null.
+     * @param kJAI the pre-rotated convolution KernelJAI.
+     */
+    static RenderedImage create(RenderedImage source,
+                                BorderExtender extender,
+                                Map config,
+                                ImageLayout layout,
+                                KernelJAI kJAI) {
+        int dataType = source.getSampleModel().getDataType();
+        boolean dataTypeOk = (dataType == DataBuffer.TYPE_BYTE ||
+                              dataType == DataBuffer.TYPE_SHORT ||
+                              dataType == DataBuffer.TYPE_INT);
+        boolean isFloat = (dataType == DataBuffer.TYPE_FLOAT ||
+                           dataType == DataBuffer.TYPE_DOUBLE);
+
+        OpImage image;
+        String strategy;
+
+        // Unlike SeparableConvolveOpImage, ConvolveOpImage adds 0.5 to
+        // double results, so other kernels are not treated as separable
+        // for double data in order not to change their results.
+        KernelJAI separable = dataType != DataBuffer.TYPE_DOUBLE ?
+            getSeparableKernel(kJAI) :
+            kJAI.isSeparable() ? kJAI : null;
+
+        if (kJAI.getWidth() == 3 && kJAI.getHeight() == 3 &&
+            kJAI.getXOrigin() == 1 && kJAI.getYOrigin() == 1 &&
+            dataTypeOk) {
+            image = new Convolve3x3OpImage(source, extender, config,
+                                           layout, kJAI);
+            strategy = "3x3";
+        } else if (separable != null) {
+            image = new SeparableConvolveOpImage(source, extender, config,
+                                                 layout, separable);
+            strategy = "separable";
+        } else if (kJAI.getWidth()*kJAI.getHeight() >=
+                   (isFloat ? FLOAT_FFT_THRESHOLD : FFT_THRESHOLD)) {
+            image = new FFTConvolveOpImage(source, extender, config,
+                                           layout, kJAI);
+            strategy = "fft";
+        } else {
+            image = new ConvolveOpImage(source, extender, config,
+                                        layout, kJAI);
+            strategy = "direct";
+        }
+
+        image.setProperty(STRATEGY_PROPERTY, strategy);
+
+        return image;
+    }
+
+    /**
+     * Returns a separable kernel equal to the given one up to rounding,
+     * or <code>null</code> if there is none.
+     *
+     * <p> The kernel data are approximated by the outer product of their
+     * first left and right singular vectors, computed by power
+     * iteration; the kernel is separable if the approximation differs
+     * from each kernel element by at most
+     * <code>SEPARABLE_TOLERANCE</code> times the largest element.
+     *
+     * @param kernel the KernelJAI.
+     */
+    static KernelJAI getSeparableKernel(KernelJAI kernel) {
+        if (kernel.isSeparable()) {
+            return kernel;
+        }
+
+        int kw = kernel.getWidth();
+        int kh = kernel.getHeight();
+        float[] kdata = kernel.getKernelData();
+
+        // Start from the row of largest norm.
+        double[] v = new double[kw];
+        double[] u = new double[kh];
+        double maxNorm = 0.0;
+        double maxElement = 0.0;
+        for (int j = 0; j < kh; j++) {
+            double norm = 0.0;
+            for (int i = 0; i < kw; i++) {
+                double k = kdata[j*kw + i];
+                norm += k*k;
+                maxElement = Math.max(maxElement, Math.abs(k));
+            }
+            if (norm > maxNorm) {
+                maxNorm = norm;
+                for (int i = 0; i < kw; i++) {
+                    v[i] = kdata[j*kw + i];
+                }
+            }
+        }
+
+        if (maxNorm == 0.0) {
+            return null;
+        }
+
+        // Power iteration on K^T K: u = K v, v = K^T u / |K^T u|.
+        double sigma = 0.0;
+        for (int iter = 0; iter < MAX_ITERATIONS; iter++) {
+            double norm = 0.0;
+            for (int i = 0; i < kw; i++) {
+                norm += v[i]*v[i];
+            }
+            norm = Math.sqrt(norm);
+            for (int i = 0; i < kw; i++) {
+                v[i] /= norm;
+            }
+
+            for (int j = 0; j < kh; j++) {
+                double s = 0.0;
+                for (int i = 0; i < kw; i++) {
+                    s += kdata[j*kw + i]*v[i];
+                }
+                u[j] = s;
+            }
+
+            double[] w = new double[kw];
+            for (int j = 0; j < kh; j++) {
+                for (int i = 0; i < kw; i++) {
+                    w[i] += kdata[j*kw + i]*u[j];
+                }
+            }
+
+            // |K^T u| = sigma^2 when v is a singular vector.
+            double previous = sigma;
+            sigma = 0.0;
+            for (int i = 0; i < kw; i++) {
+                sigma += w[i]*w[i];
+            }
+            sigma = Math.sqrt(Math.sqrt(sigma));
+            v = w;
+
+            if (Math.abs(sigma - previous) <= 1.0E-12*sigma) {
+                break;
+            }
+        }
+
+        // Normalize v and recompute u = K v, so that K ~ u v^T.
+        double norm = 0.0;
+        for (int i = 0; i < kw; i++) {
+            norm += v[i]*v[i];
+        }
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < kw; i++) {
+            v[i] /= norm;
+        }
+        for (int j = 0; j < kh; j++) {
+            double s = 0.0;
+            for (int i = 0; i < kw; i++) {
+                s += kdata[j*kw + i]*v[i];
+            }
+            u[j] = s;
+        }
+
+        // Rank-1 test.
+        double tolerance = SEPARABLE_TOLERANCE*maxElement;
+        for (int j = 0; j < kh; j++) {
+            for (int i = 0; i < kw; i++) {
+                if (Math.abs(kdata[j*kw + i] - u[j]*v[i]) > tolerance) {
+                    return null;
+                }
+            }
+        }
+
+        // Split the singular value, the norm of u, evenly between the
+        // two vectors.
+        norm = 0.0;
+        for (int j = 0; j < kh; j++) {
+            norm += u[j]*u[j];
+        }
+        double scale = Math.sqrt(Math.sqrt(norm));
+        float[] dataH = new float[kw];
+        float[] dataV = new float[kh];
+        for (int i = 0; i < kw; i++) {
+            dataH[i] = (float)(v[i]*scale);
+        }
+        for (int j = 0; j < kh; j++) {
+            dataV[j] = (float)(u[j]/scale);
+        }
+
+        return new KernelJAI(kw, kh,
+                             kernel.getXOrigin(), kernel.getYOrigin(),
+                             dataH, dataV);
+    }
+}
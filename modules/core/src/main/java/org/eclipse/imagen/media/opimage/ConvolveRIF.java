@@ -17,9 +17,7 @@
 
 package org.eclipse.imagen.media.opimage;
 import java.awt.RenderingHints;
-import java.awt.image.DataBuffer;
 import java.awt.image.RenderedImage;
-import java.awt.image.SampleModel;
 import java.awt.image.renderable.ParameterBlock;
 import java.awt.image.renderable.RenderedImageFactory;
 import org.eclipse.imagen.BorderExtender;
@@ -28,7 +26,12 @@ import org.eclipse.imagen.KernelJAI;
 import java.util.Map;
 
 /**
+ * A <code>RIF</code> supporting the "Convolve" operation in the rendered
+ * image layer, the convolution strategy being chosen by
+ * <code>ConvolvePlanner</code>.
+ *
  * @see ConvolveOpImage
+ * @see ConvolvePlanner
  */
 public class ConvolveRIF implements RenderedImageFactory {
 
@@ -54,33 +57,10 @@ public class ConvolveRIF implements RenderedImageFactory {
             (KernelJAI)paramBlock.getObjectParameter(0);
         KernelJAI kJAI = unRotatedKernel.getRotatedKernel();
 
-        int dataType = 
-           paramBlock.getRenderedSource(0).getSampleModel().getDataType();
-        boolean dataTypeOk = (dataType == DataBuffer.TYPE_BYTE ||
-                              dataType == DataBuffer.TYPE_SHORT ||
-                              dataType == DataBuffer.TYPE_INT);
-
-        if (kJAI.getWidth() == 3 && kJAI.getHeight() == 3 &&
-            kJAI.getXOrigin() == 1 && kJAI.getYOrigin() == 1 &&
-            dataTypeOk) {
-            return new Convolve3x3OpImage(paramBlock.getRenderedSource(0),
-                                          extender,
-                                          renderHints,
-                                          layout,
-                                          kJAI);
-        } else if (kJAI.isSeparable()) {
-           return new SeparableConvolveOpImage(paramBlock.getRenderedSource(0),
-                                               extender,
-                                               renderHints,
-                                               layout,
-                                               kJAI);
-
-        } else {
-            return new ConvolveOpImage(paramBlock.getRenderedSource(0),
-                                       extender,
-                                       renderHints,
-                                       layout,
-                                       kJAI);
-        }
+        return ConvolvePlanner.create(paramBlock.getRenderedSource(0),
+                                      extender,
+                                      renderHints,
+                                      layout,
+                                      kJAI);
     }
 }
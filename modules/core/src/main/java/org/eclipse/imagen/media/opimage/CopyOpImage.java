@@ -36,7 +36,8 @@ import java.util.Map;
  * An OpImage class that copies an image from source to dest.
  *
  */
-public final class CopyOpImage extends PointOpImage {
+public final class CopyOpImage extends PointOpImage
+    implements FusiblePointOp {
 
     /**
      * Constructs an CopyOpImage. The image dimensions are copied
@@ -53,6 +54,51 @@ public final class CopyOpImage extends PointOpImage {
         super(source, layout, config, true);
     }
 
+    /**
+     * Returns the function computing this image from its source: the
+     * conversion of the samples to the destination data type, clamping
+     * them to its range.
+     */
+    public SampleFunction getSampleFunction() {
+        final int dataType = getSampleModel().getDataType();
+        return new SampleFunction(dataType) {
+            void transform(double[] samples, int length, int band) {
+                double lo, hi;
+                switch (dataType) {
+                case DataBuffer.TYPE_BYTE:
+                    lo = 0;
+                    hi = 0xFF;
+                    break;
+                case DataBuffer.TYPE_USHORT:
+                    lo = 0;
+                    hi = 0xFFFF;
+                    break;
+                case DataBuffer.TYPE_SHORT:
+                    lo = Short.MIN_VALUE;
+                    hi = Short.MAX_VALUE;
+                    break;
+                case DataBuffer.TYPE_INT:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = (int)samples[i];
+                    }
+                    return;
+                case DataBuffer.TYPE_FLOAT:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = (float)samples[i];
+                    }
+                    return;
+                default:
+                    return;
+                }
+
+                for (int i = 0; i < length; i++) {
+                    double s = samples[i];
+                    samples[i] = s < lo ? lo : (s > hi ? hi : (int)s);
+                }
+            }
+        };
+    }
+
     /**
      * Adds the pixel values of a rectangle with a given constant.
      * The sources are cobbled.
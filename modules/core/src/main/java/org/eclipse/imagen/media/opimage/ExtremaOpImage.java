@@ -27,6 +27,7 @@ import java.util.LinkedList;
 import java.util.ListIterator;
 import org.eclipse.imagen.ImageLayout;
 import org.eclipse.imagen.OpImage;
+import org.eclipse.imagen.ParallelStatistics;
 import org.eclipse.imagen.PixelAccessor;
 import org.eclipse.imagen.PlanarImage;
 import org.eclipse.imagen.ROI;
@@ -41,7 +42,8 @@ import org.eclipse.imagen.media.util.ImageUtil;
  * @see org.eclipse.imagen.operator.ExtremaDescriptor
  * @see ExtremaCRIF
  */
-public class ExtremaOpImage extends StatisticsOpImage {
+public class ExtremaOpImage extends StatisticsOpImage
+    implements ParallelStatistics {
 
     protected double[][] extrema;
 
@@ -161,16 +163,76 @@ public class ExtremaOpImage extends StatisticsOpImage {
         return t == 0 ? pos : pos + (period - t);
     }
 
-    protected void accumulateStatistics(String name,
-                                        Raster source,
-                                        Object stats) {
+    private void initialize() {
         if(!isInitialized) {
             srcPA = new PixelAccessor(getSourceImage(0));
             srcSampleType = srcPA.sampleType == PixelAccessor.TYPE_BIT ?
                 DataBuffer.TYPE_BYTE : srcPA.sampleType;
             isInitialized = true;
         }
+    }
+
+    protected void accumulateStatistics(String name,
+                                        Raster source,
+                                        Object stats) {
+        initialize();
+
+        accumulate(source, null);
+
+        if (extrema != null) {
+            copyStatistics(name, stats);
+        }
+    }
+
+    /**
+     * Returns the minimum and maximum of each band accumulated over a
+     * single tile, as <code>double[2][]</code> whose elements are
+     * <code>null</code> until a pixel has been counted.  As the runs
+     * of extremal values depend on the order in which the pixels are
+     * visited, they are accumulated sequentially if
+     * <code>saveLocations</code> is set.
+     */
+    public Object createPartialStatistics(String name) {
+        if (saveLocations) {
+            return null;
+        }
 
+        initialize();
+        return new double[2][];
+    }
+
+    public void accumulatePartialStatistics(String name,
+                                            Raster source,
+                                            Object partial) {
+        accumulate(source, (double[][])partial);
+    }
+
+    public void mergeStatistics(String name,
+                                Object stats,
+                                Object partial) {
+        double[][] ext = (double[][])partial;
+        if (ext[0] != null) {
+            if (extrema == null) {
+                extrema = new double[2][];
+                extrema[0] = (double[])ext[0].clone();
+                extrema[1] = (double[])ext[1].clone();
+            } else {
+                for (int i = 0; i < srcPA.numBands; i++) {
+                    extrema[0][i] = Math.min(extrema[0][i], ext[0][i]);
+                    extrema[1][i] = Math.max(extrema[1][i], ext[1][i]);
+                }
+            }
+
+            copyStatistics(name, stats);
+        }
+    }
+
+    /**
+     * Accumulates the extrema of the pixels within the ROI into
+     * <code>partial</code>, or into <code>extrema</code> if
+     * <code>partial</code> is <code>null</code>.
+     */
+    private void accumulate(Raster source, double[][] partial) {
         Rectangle srcBounds = getSourceImage(0).getBounds().intersection(
                                                   source.getBounds());
 
@@ -204,32 +266,46 @@ public class ExtremaOpImage extends StatisticsOpImage {
                 continue;	// no pixel to count in this rectangle
             }
 
-            initializeState(source);
+            double[][] ext;
+            if (partial == null) {
+                initializeState(source);
+                ext = extrema;
+            } else {
+                if (partial[0] == null) {
+                    // Initialize with the first pixel to be counted.
+                    partial[0] = source.getPixel(rect.x, rect.y,
+                                                 (double[])null);
+                    partial[1] = (double[])partial[0].clone();
+                }
+                ext = partial;
+            }
 
             UnpackedImageData uid = srcPA.getPixels(source, rect,
                                                     srcSampleType, false);
             switch (uid.type) {
             case DataBuffer.TYPE_BYTE:
-                accumulateStatisticsByte(uid);
+                accumulateStatisticsByte(uid, ext);
                 break;
             case DataBuffer.TYPE_USHORT:
-                accumulateStatisticsUShort(uid);
+                accumulateStatisticsUShort(uid, ext);
                 break;
             case DataBuffer.TYPE_SHORT:
-                accumulateStatisticsShort(uid);
+                accumulateStatisticsShort(uid, ext);
                 break;
             case DataBuffer.TYPE_INT:
-                accumulateStatisticsInt(uid);
+                accumulateStatisticsInt(uid, ext);
                 break;
             case DataBuffer.TYPE_FLOAT:
-                accumulateStatisticsFloat(uid);
+                accumulateStatisticsFloat(uid, ext);
                 break;
             case DataBuffer.TYPE_DOUBLE:
-                accumulateStatisticsDouble(uid);
+                accumulateStatisticsDouble(uid, ext);
                 break;
             }
         }
+    }
 
+    private void copyStatistics(String name, Object stats) {
         if (name.equalsIgnoreCase("extrema")) {
             double[][] ext = (double[][])stats;
             for (int i = 0; i < srcPA.numBands; i++) {
@@ -258,7 +334,8 @@ public class ExtremaOpImage extends StatisticsOpImage {
 	}
     }
 
-    private void accumulateStatisticsByte(UnpackedImageData uid) {
+    private void accumulateStatisticsByte(UnpackedImageData uid,
+                                          double[][] ext) {
         Rectangle rect = uid.rect;
         byte[][] data = uid.getByteData();
         int lineStride = uid.lineStride;
@@ -269,8 +346,8 @@ public class ExtremaOpImage extends StatisticsOpImage {
 
         if (!saveLocations) {
             for (int b = 0; b < srcPA.numBands; b++) {
-                int min = (int)extrema[0][b];       // minimum
-                int max = (int)extrema[1][b];       // maximum
+                int min = (int)ext[0][b];       // minimum
+                int max = (int)ext[1][b];       // maximum
 
                 byte[] d = data[b];
                 int lastLine = uid.bandOffsets[b] + rect.height * lineStride;
@@ -288,13 +365,13 @@ public class ExtremaOpImage extends StatisticsOpImage {
                         }
                     }
                 }
-                extrema[0][b] = min;
-                extrema[1][b] = max;
+                ext[0][b] = min;
+                ext[1][b] = max;
             }
         } else {
             for (int b = 0; b < srcPA.numBands; b++) {
-                int min = (int)extrema[0][b];	// minimum
-                int max = (int)extrema[1][b];	// maximum
+                int min = (int)ext[0][b];	// minimum
+                int max = (int)ext[1][b];	// maximum
                 ArrayList minList = minLocations[b];
                 ArrayList maxList = maxLocations[b];
                 int minCount = minCounts[b];
@@ -363,15 +440,16 @@ public class ExtremaOpImage extends StatisticsOpImage {
                     }
                 }
 
-                extrema[0][b] = min;
-                extrema[1][b] = max;
+                ext[0][b] = min;
+                ext[1][b] = max;
                 minCounts[b] = minCount;
                 maxCounts[b] = maxCount;
             }
         }
     }
 
-    private void accumulateStatisticsUShort(UnpackedImageData uid) {
+    private void accumulateStatisticsUShort(UnpackedImageData uid,
+                                            double[][] ext) {
         Rectangle rect = uid.rect;
         short[][] data = uid.getShortData();
         int lineStride = uid.lineStride;
@@ -382,8 +460,8 @@ public class ExtremaOpImage extends StatisticsOpImage {
 
         if (!saveLocations) {
             for (int b = 0; b < srcPA.numBands; b++) {
-                int min = (int)extrema[0][b];       // minimum
-                int max = (int)extrema[1][b];       // maximum
+                int min = (int)ext[0][b];       // minimum
+                int max = (int)ext[1][b];       // maximum
 
                 short[] d = data[b];
                 int lastLine = uid.bandOffsets[b] + rect.height * lineStride;
@@ -401,13 +479,13 @@ public class ExtremaOpImage extends StatisticsOpImage {
                         }
                     }
                 }
-                extrema[0][b] = min;
-                extrema[1][b] = max;
+                ext[0][b] = min;
+                ext[1][b] = max;
             }
         } else {
             for (int b = 0; b < srcPA.numBands; b++) {
-                int min = (int)extrema[0][b];       // minimum
-                int max = (int)extrema[1][b];       // maximum
+                int min = (int)ext[0][b];       // minimum
+                int max = (int)ext[1][b];       // maximum
                 ArrayList minList = minLocations[b];
                 ArrayList maxList = maxLocations[b];
                 int minCount = minCounts[b];
@@ -476,15 +554,16 @@ public class ExtremaOpImage extends StatisticsOpImage {
                     }
                 }
 
-                extrema[0][b] = min;
-                extrema[1][b] = max;
+                ext[0][b] = min;
+                ext[1][b] = max;
                 minCounts[b] = minCount;
                 maxCounts[b] = maxCount;
             }
         }
     }
 
-    private void accumulateStatisticsShort(UnpackedImageData uid) {
+    private void accumulateStatisticsShort(UnpackedImageData uid,
+                                           double[][] ext) {
         Rectangle rect = uid.rect;
         short[][] data = uid.getShortData();
         int lineStride = uid.lineStride;
@@ -495,8 +574,8 @@ public class ExtremaOpImage extends StatisticsOpImage {
 
         if (!saveLocations) {
             for (int b = 0; b < srcPA.numBands; b++) {
-                int min = (int)extrema[0][b];       // minimum
-                int max = (int)extrema[1][b];       // maximum
+                int min = (int)ext[0][b];       // minimum
+                int max = (int)ext[1][b];       // maximum
 
                 short[] d = data[b];
                 int lastLine = uid.bandOffsets[b] + rect.height * lineStride;
@@ -514,13 +593,13 @@ public class ExtremaOpImage extends StatisticsOpImage {
                         }
                     }
                 }
-                extrema[0][b] = min;
-                extrema[1][b] = max;
+                ext[0][b] = min;
+                ext[1][b] = max;
             }
         } else {
             for (int b = 0; b < srcPA.numBands; b++) {
-                int min = (int)extrema[0][b];       // minimum
-                int max = (int)extrema[1][b];       // maximum
+                int min = (int)ext[0][b];       // minimum
+                int max = (int)ext[1][b];       // maximum
                 ArrayList minList = minLocations[b];
                 ArrayList maxList = maxLocations[b];
                 int minCount = minCounts[b];
@@ -589,15 +668,16 @@ public class ExtremaOpImage extends StatisticsOpImage {
                     }
                 }
 
-                extrema[0][b] = min;
-                extrema[1][b] = max;
+                ext[0][b] = min;
+                ext[1][b] = max;
                 minCounts[b] = minCount;
                 maxCounts[b] = maxCount;
             }
         }
     }
 
-    private void accumulateStatisticsInt(UnpackedImageData uid) {
+    private void accumulateStatisticsInt(UnpackedImageData uid,
+                                         double[][] ext) {
         Rectangle rect = uid.rect;
         int[][] data = uid.getIntData();
         int lineStride = uid.lineStride;
@@ -608,8 +688,8 @@ public class ExtremaOpImage extends StatisticsOpImage {
 
         if (!saveLocations) {
             for (int b = 0; b < srcPA.numBands; b++) {
-                int min = (int)extrema[0][b];       // minimum
-                int max = (int)extrema[1][b];       // maximum
+                int min = (int)ext[0][b];       // minimum
+                int max = (int)ext[1][b];       // maximum
 
                 int[] d = data[b];
                 int lastLine = uid.bandOffsets[b] + rect.height * lineStride;
@@ -627,13 +707,13 @@ public class ExtremaOpImage extends StatisticsOpImage {
                         }
                     }
                 }
-                extrema[0][b] = min;
-                extrema[1][b] = max;
+                ext[0][b] = min;
+                ext[1][b] = max;
             }
         } else {
             for (int b = 0; b < srcPA.numBands; b++) {
-                int min = (int)extrema[0][b];       // minimum
-                int max = (int)extrema[1][b];       // maximum
+                int min = (int)ext[0][b];       // minimum
+                int max = (int)ext[1][b];       // maximum
                 ArrayList minList = minLocations[b];
                 ArrayList maxList = maxLocations[b];
                 int minCount = minCounts[b];
@@ -702,15 +782,16 @@ public class ExtremaOpImage extends StatisticsOpImage {
                     }
                 }
 
-                extrema[0][b] = min;
-                extrema[1][b] = max;
+                ext[0][b] = min;
+                ext[1][b] = max;
                 minCounts[b] = minCount;
                 maxCounts[b] = maxCount;
             }
         }
     }
 
-    private void accumulateStatisticsFloat(UnpackedImageData uid) {
+    private void accumulateStatisticsFloat(UnpackedImageData uid,
+                                           double[][] ext) {
         Rectangle rect = uid.rect;
         float[][] data = uid.getFloatData();
         int lineStride = uid.lineStride;
@@ -721,8 +802,8 @@ public class ExtremaOpImage extends StatisticsOpImage {
 
         if (!saveLocations) {
             for (int b = 0; b < srcPA.numBands; b++) {
-                float min = (float)extrema[0][b];       // minimum
-                float max = (float)extrema[1][b];       // maximum
+                float min = (float)ext[0][b];       // minimum
+                float max = (float)ext[1][b];       // maximum
 
                 float[] d = data[b];
                 int lastLine = uid.bandOffsets[b] + rect.height * lineStride;
@@ -740,13 +821,13 @@ public class ExtremaOpImage extends StatisticsOpImage {
                         }
                     }
                 }
-                extrema[0][b] = min;
-                extrema[1][b] = max;
+                ext[0][b] = min;
+                ext[1][b] = max;
             }
         } else {
             for (int b = 0; b < srcPA.numBands; b++) {
-                float min = (float)extrema[0][b];       // minimum
-                float max = (float)extrema[1][b];       // maximum
+                float min = (float)ext[0][b];       // minimum
+                float max = (float)ext[1][b];       // maximum
                 ArrayList minList = minLocations[b];
                 ArrayList maxList = maxLocations[b];
                 int minCount = minCounts[b];
@@ -815,15 +896,16 @@ public class ExtremaOpImage extends StatisticsOpImage {
                     }
                 }
 
-                extrema[0][b] = min;
-                extrema[1][b] = max;
+                ext[0][b] = min;
+                ext[1][b] = max;
                 minCounts[b] = minCount;
                 maxCounts[b] = maxCount;
             }
         }
     }
 
-    private void accumulateStatisticsDouble(UnpackedImageData uid) {
+    private void accumulateStatisticsDouble(UnpackedImageData uid,
+                                            double[][] ext) {
         Rectangle rect = uid.rect;
         double[][] data = uid.getDoubleData();
         int lineStride = uid.lineStride;
@@ -834,8 +916,8 @@ public class ExtremaOpImage extends StatisticsOpImage {
 
         if (!saveLocations) {
             for (int b = 0; b < srcPA.numBands; b++) {
-                double min = extrema[0][b];       // minimum
-                double max = extrema[1][b];       // maximum
+                double min = ext[0][b];       // minimum
+                double max = ext[1][b];       // maximum
 
                 double[] d = data[b];
                 int lastLine = uid.bandOffsets[b] + rect.height * lineStride;
@@ -853,13 +935,13 @@ public class ExtremaOpImage extends StatisticsOpImage {
                         }
                     }
                 }
-                extrema[0][b] = min;
-                extrema[1][b] = max;
+                ext[0][b] = min;
+                ext[1][b] = max;
             }
         } else {
             for (int b = 0; b < srcPA.numBands; b++) {
-                double min = extrema[0][b];       // minimum
-                double max = extrema[1][b];       // maximum
+                double min = ext[0][b];       // minimum
+                double max = ext[1][b];       // maximum
                 ArrayList minList = minLocations[b];
                 ArrayList maxList = maxLocations[b];
                 int minCount = minCounts[b];
@@ -928,8 +1010,8 @@ public class ExtremaOpImage extends StatisticsOpImage {
                     }
                 }
 
-                extrema[0][b] = min;
-                extrema[1][b] = max;
+                ext[0][b] = min;
+                ext[1][b] = max;
                 minCounts[b] = minCount;
                 maxCounts[b] = maxCount;
             }
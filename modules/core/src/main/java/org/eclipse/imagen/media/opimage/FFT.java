@@ -644,10 +644,9 @@ public class FFT {
     public void transform() {
         int i, k, j, l; // Index variables
 
-        Integer i18n = new Integer(length);
-        NumberFormat numberFormatter = NumberFormat.getNumberInstance(Locale.getDefault());
-	    
         if(real.length < length || imag.length < length) {
+            Integer i18n = new Integer(length);
+            NumberFormat numberFormatter = NumberFormat.getNumberInstance(Locale.getDefault());
             throw new RuntimeException(numberFormatter.format(i18n) + JaiI18N.getString("FFT3"));
         }
 
@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.opimage;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.Map;
+import org.eclipse.imagen.AreaOpImage;
+import org.eclipse.imagen.BorderExtender;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.KernelJAI;
+import org.eclipse.imagen.RasterAccessor;
+import org.eclipse.imagen.RasterFormatTag;
+import org.eclipse.imagen.media.util.MathJAI;
+
+/**
+ * An OpImage class to perform convolution on a source image using
+ * the Fast Fourier Transform.
+ *
+ * <p> The destination rectangle is divided into blocks whose source
+ * area, padded by the kernel, fits in a power of 2 sized array.  For
+ * each block the source samples are transformed, multiplied by the
+ * transform of the kernel and transformed back, which produces the
+ * same sums as <code>ConvolveOpImage</code> up to rounding.  The
+ * samples of two bands are transformed at once, one as the real part
+ * and the other as the imaginary part, as the kernel is real.  The
+ * cost of a destination sample grows with the logarithm of the
+ * kernel size, instead of with its area.
+ *
+ * @see ConvolveOpImage
+ * @see FFT
+ * @see KernelJAI
+ */
+final class FFTConvolveOpImage extends AreaOpImage {
+
+    /**
+     * The kernel with which to do the convolve operation.
+     */
+    protected KernelJAI kernel;
+
+    /** Kernel variables. */
+    private int kw, kh;
+
+    /** The transforms of the kernel, keyed by the block array size. */
+    private Hashtable spectra = new Hashtable();
+
+    /**
+     * Creates a FFTConvolveOpImage given the image source and
+     * pre-rotated convolution kernel.  The image dimensions are derived
+     * from the source image.  The tile grid layout, SampleModel, and
+     * ColorModel may optionally be specified by an ImageLayout
+     * object.
+     *
+     * @param source a RenderedImage.
+     * @param extender a BorderExtender, or null.
+     * @param layout an ImageLayout optionally containing the tile grid layout,
+     *        SampleModel, and ColorModel, or null.
+     * @param kernel the pre-rotated convolution KernelJAI.
+     */
+    public FFTConvolveOpImage(RenderedImage source,
+                              BorderExtender extender,
+                              Map config,
+                              ImageLayout layout,
+                              KernelJAI kernel) {
+        super(source,
+              layout,
+              config,
+              true,
+              extender,
+              kernel.getLeftPadding(),
+              kernel.getRightPadding(),
+              kernel.getTopPadding(),
+              kernel.getBottomPadding());
+
+        this.kernel = kernel;
+        kw = kernel.getWidth();
+        kh = kernel.getHeight();
+    }
+
+    /**
+     * Performs convolution on a specified rectangle. The sources are
+     * cobbled.
+     *
+     * @param sources an array of source Rasters, guaranteed to provide all
+     *                necessary source data for computing the output.
+     * @param dest a WritableRaster tile containing the area to be computed.
+     * @param destRect the rectangle within dest to be processed.
+     */
+    protected void computeRect(Raster[] sources,
+                               WritableRaster dest,
+                               Rectangle destRect) {
+        // Retrieve format tags.
+        RasterFormatTag[] formatTags = getFormatTags();
+
+        Raster source = sources[0];
+        Rectangle srcRect = mapDestRect(destRect, 0);
+
+        RasterAccessor srcAccessor =
+            new RasterAccessor(source, srcRect,
+                               formatTags[0], getSourceImage(0).getColorModel());
+        RasterAccessor dstAccessor =
+            new RasterAccessor(dest, destRect,
+                               formatTags[1], getColorModel());
+
+        int dwidth = dstAccessor.getWidth();
+        int dheight = dstAccessor.getHeight();
+        int dnumBands = dstAccessor.getNumBands();
+
+        // Size the blocks and set up the transforms.
+        int nx = getBlockLength(kw, dwidth);
+        int ny = getBlockLength(kh, dheight);
+        int bw = nx - kw + 1;
+        int bh = ny - kh + 1;
+
+        double[][] spectrum = getSpectrum(nx, ny);
+
+        FFT forwardX = new FFT(true, new Integer(FFT.SCALING_NONE), nx);
+        FFT forwardY = new FFT(true, new Integer(FFT.SCALING_NONE), ny);
+        FFT inverseX = new FFT(false, new Integer(FFT.SCALING_DIMENSIONS), nx);
+        FFT inverseY = new FFT(false, new Integer(FFT.SCALING_DIMENSIONS), ny);
+
+        double[] real = new double[nx*ny];
+        double[] imag = new double[nx*ny];
+
+        for (int y = 0; y < dheight; y += bh) {
+            int h = Math.min(bh, dheight - y);
+
+            for (int x = 0; x < dwidth; x += bw) {
+                int w = Math.min(bw, dwidth - x);
+
+                for (int k = 0; k < dnumBands; k += 2) {
+                    Arrays.fill(real, 0.0);
+                    Arrays.fill(imag, 0.0);
+
+                    loadBand(srcAccessor, k, x, y,
+                             w + kw - 1, h + kh - 1, real, nx);
+                    if (k + 1 < dnumBands) {
+                        loadBand(srcAccessor, k + 1, x, y,
+                                 w + kw - 1, h + kh - 1, imag, nx);
+                    }
+
+                    transformRows(forwardX, real, imag, nx, h + kh - 1);
+                    transformColumns(forwardY, real, imag, nx, ny);
+                    multiply(real, imag, spectrum[0], spectrum[1]);
+                    transformColumns(inverseY, real, imag, nx, ny);
+                    transformRows(inverseX, real, imag, nx, h);
+
+                    storeBand(dstAccessor, k, x, y, w, h, real, nx);
+                    if (k + 1 < dnumBands) {
+                        storeBand(dstAccessor, k + 1, x, y, w, h, imag, nx);
+                    }
+                }
+            }
+        }
+
+        // If the RasterAccessor object set up a temporary buffer for the
+        // op to write to, tell the RasterAccessor to write that data
+        // to the raster no that we're done with it.
+        if (dstAccessor.isDataCopy()) {
+            dstAccessor.clampDataArrays();
+            dstAccessor.copyDataToRaster();
+        }
+    }
+
+    /**
+     * Returns the power of 2 array length, in one direction, which
+     * minimizes the cost per destination sample of the transforms of the
+     * blocks covering <code>length</code> destination samples.
+     */
+    private static int getBlockLength(int kernelLength, int length) {
+        int maxLength =
+            MathJAI.nextPositivePowerOf2(length + kernelLength - 1);
+
+        int best = maxLength;
+        double bestCost = Double.MAX_VALUE;
+        for (int n = MathJAI.nextPositivePowerOf2(kernelLength);
+             n <= maxLength; n <<= 1) {
+            int samples = Math.min(n - kernelLength + 1, length);
+            double cost = n*(Math.log(n) + 1.0)/samples;
+            if (cost < bestCost) {
+                best = n;
+                bestCost = cost;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Returns the transform of the kernel, placed so that the product
+     * with the transform of a block yields the sums of
+     * <code>ConvolveOpImage</code>, as a real and an imaginary array.
+     */
+    private double[][] getSpectrum(int nx, int ny) {
+        Dimension size = new Dimension(nx, ny);
+        double[][] spectrum = (double[][])spectra.get(size);
+
+        if (spectrum == null) {
+            double[] real = new double[nx*ny];
+            double[] imag = new double[nx*ny];
+
+            float[] kdata = kernel.getKernelData();
+            for (int u = 0; u < kh; u++) {
+                int row = ((ny - u) % ny)*nx;
+                for (int v = 0; v < kw; v++) {
+                    real[row + (nx - v) % nx] = kdata[u*kw + v];
+                }
+            }
+
+            transformRows(new FFT(true, new Integer(FFT.SCALING_NONE), nx),
+                          real, imag, nx, ny);
+            transformColumns(new FFT(true, new Integer(FFT.SCALING_NONE), ny),
+                             real, imag, nx, ny);
+
+            spectrum = new double[][] {real, imag};
+            spectra.put(size, spectrum);
+        }
+
+        return spectrum;
+    }
+
+    /** Transforms the first <code>rows</code> rows of an array. */
+    private static void transformRows(FFT fft, double[] real, double[] imag,
+                                      int nx, int rows) {
+        for (int offset = 0; offset < rows*nx; offset += nx) {
+            fft.setData(DataBuffer.TYPE_DOUBLE,
+                        real, offset, 1, imag, offset, 1, nx);
+            fft.transform();
+            fft.getData(DataBuffer.TYPE_DOUBLE,
+                        real, offset, 1, imag, offset, 1);
+        }
+    }
+
+    /** Transforms the columns of an array. */
+    private static void transformColumns(FFT fft, double[] real, double[] imag,
+                                         int nx, int ny) {
+        for (int offset = 0; offset < nx; offset++) {
+            fft.setData(DataBuffer.TYPE_DOUBLE,
+                        real, offset, nx, imag, offset, nx, ny);
+            fft.transform();
+            fft.getData(DataBuffer.TYPE_DOUBLE,
+                        real, offset, nx, imag, offset, nx);
+        }
+    }
+
+    /** Multiplies an array by the transform of the kernel. */
+    private static void multiply(double[] real, double[] imag,
+                                 double[] kreal, double[] kimag) {
+        for (int i = 0; i < real.length; i++) {
+            double r = real[i];
+            double m = imag[i];
+            real[i] = r*kreal[i] - m*kimag[i];
+            imag[i] = r*kimag[i] + m*kreal[i];
+        }
+    }
+
+    /**
+     * Copies the <code>width</code> by <code>height</code> source samples
+     * of a band starting at <code>(x, y)</code> into an array.
+     */
+    private static void loadBand(RasterAccessor src, int band,
+                                 int x, int y, int width, int height,
+                                 double[] data, int nx) {
+        int srcPixelStride = src.getPixelStride();
+        int srcScanlineStride = src.getScanlineStride();
+        int srcScanlineOffset = src.getBandOffset(band) +
+            y*srcScanlineStride + x*srcPixelStride;
+
+        for (int j = 0; j < height; j++) {
+            int srcPixelOffset = srcScanlineOffset;
+            int offset = j*nx;
+
+            switch (src.getDataType()) {
+            case DataBuffer.TYPE_BYTE:
+                byte[] byteData = src.getByteDataArray(band);
+                for (int i = 0; i < width; i++) {
+                    data[offset++] = byteData[srcPixelOffset] & 0xff;
+                    srcPixelOffset += srcPixelStride;
+                }
+                break;
+            case DataBuffer.TYPE_USHORT:
+                short[] ushortData = src.getShortDataArray(band);
+                for (int i = 0; i < width; i++) {
+                    data[offset++] = ushortData[srcPixelOffset] & 0xffff;
+                    srcPixelOffset += srcPixelStride;
+                }
+                break;
+            case DataBuffer.TYPE_SHORT:
+                short[] shortData = src.getShortDataArray(band);
+                for (int i = 0; i < width; i++) {
+                    data[offset++] = shortData[srcPixelOffset];
+                    srcPixelOffset += srcPixelStride;
+                }
+                break;
+            case DataBuffer.TYPE_INT:
+                int[] intData = src.getIntDataArray(band);
+                for (int i = 0; i < width; i++) {
+                    data[offset++] = intData[srcPixelOffset];
+                    srcPixelOffset += srcPixelStride;
+                }
+                break;
+            case DataBuffer.TYPE_FLOAT:
+                float[] floatData = src.getFloatDataArray(band);
+                for (int i = 0; i < width; i++) {
+                    data[offset++] = floatData[srcPixelOffset];
+                    srcPixelOffset += srcPixelStride;
+                }
+                break;
+            case DataBuffer.TYPE_DOUBLE:
+                double[] doubleData = src.getDoubleDataArray(band);
+                for (int i = 0; i < width; i++) {
+                    data[offset++] = doubleData[srcPixelOffset];
+                    srcPixelOffset += srcPixelStride;
+                }
+                break;
+            }
+
+            srcScanlineOffset += srcScanlineStride;
+        }
+    }
+
+    /**
+     * Writes the <code>width</code> by <code>height</code> convolved
+     * samples of a band starting at <code>(x, y)</code>, rounding and
+     * clamping them as <code>ConvolveOpImage</code> does.
+     */
+    private static void storeBand(RasterAccessor dst, int band,
+                                  int x, int y, int width, int height,
+                                  double[] data, int nx) {
+        int dstPixelStride = dst.getPixelStride();
+        int dstScanlineStride = dst.getScanlineStride();
+        int dstScanlineOffset = dst.getBandOffset(band) +
+            y*dstScanlineStride + x*dstPixelStride;
+
+        for (int j = 0; j < height; j++) {
+            int dstPixelOffset = dstScanlineOffset;
+            int offset = j*nx;
+
+            switch (dst.getDataType()) {
+            case DataBuffer.TYPE_BYTE:
+                byte[] byteData = dst.getByteDataArray(band);
+                for (int i = 0; i < width; i++) {
+                    int val = (int)(data[offset++] + 0.5);
+                    if (val < 0) {
+                        val = 0;
+                    } else if (val > 255) {
+                        val = 255;
+                    }
+                    byteData[dstPixelOffset] = (byte)val;
+                    dstPixelOffset += dstPixelStride;
+                }
+                break;
+            case DataBuffer.TYPE_USHORT:
+                short[] ushortData = dst.getShortDataArray(band);
+                for (int i = 0; i < width; i++) {
+                    int val = (int)(data[offset++] + 0.5);
+                    if (val < 0) {
+                        val = 0;
+                    } else if (val > 0xffff) {
+                        val = 0xffff;
+                    }
+                    ushortData[dstPixelOffset] = (short)val;
+                    dstPixelOffset += dstPixelStride;
+                }
+                break;
+            case DataBuffer.TYPE_SHORT:
+                short[] shortData = dst.getShortDataArray(band);
+                for (int i = 0; i < width; i++) {
+                    int val = (int)(data[offset++] + 0.5);
+                    if (val < Short.MIN_VALUE) {
+                        val = Short.MIN_VALUE;
+                    } else if (val > Short.MAX_VALUE) {
+                        val = Short.MAX_VALUE;
+                    }
+                    shortData[dstPixelOffset] = (short)val;
+                    dstPixelOffset += dstPixelStride;
+                }
+                break;
+            case DataBuffer.TYPE_INT:
+                int[] intData = dst.getIntDataArray(band);
+                for (int i = 0; i < width; i++) {
+                    intData[dstPixelOffset] = (int)(data[offset++] + 0.5);
+                    dstPixelOffset += dstPixelStride;
+                }
+                break;
+            case DataBuffer.TYPE_FLOAT:
+                float[] floatData = dst.getFloatDataArray(band);
+                for (int i = 0; i < width; i++) {
+                    floatData[dstPixelOffset] = (float)data[offset++];
+                    dstPixelOffset += dstPixelStride;
+                }
+                break;
+            case DataBuffer.TYPE_DOUBLE:
+                // Offset as by ConvolveOpImage, which this image replaces.
+                double[] doubleData = dst.getDoubleDataArray(band);
+                for (int i = 0; i < width; i++) {
+                    doubleData[dstPixelOffset] = data[offset++] + 0.5;
+                    dstPixelOffset += dstPixelStride;
+                }
+                break;
+            }
+
+            dstScanlineOffset += dstScanlineStride;
+        }
+    }
+}
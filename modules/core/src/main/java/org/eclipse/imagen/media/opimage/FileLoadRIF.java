@@ -20,6 +20,7 @@ import java.awt.RenderingHints;
 import java.awt.image.RenderedImage;
 import java.awt.image.renderable.ParameterBlock;
 import java.awt.image.renderable.RenderedImageFactory;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.io.IOException;
@@ -31,7 +32,6 @@ import org.eclipse.imagen.OpImage;
 import org.eclipse.imagen.RenderedImageAdapter;
 import org.eclipse.imagen.registry.RIFRegistry;
 import org.eclipse.imagen.util.ImagingListener;
-import org.eclipse.imagen.media.codec.FileSeekableStream;
 import org.eclipse.imagen.media.codec.ImageDecodeParam;
 import org.eclipse.imagen.media.codec.SeekableStream;
 import org.eclipse.imagen.media.util.ImageUtil;
@@ -113,7 +113,7 @@ public class FileLoadRIF implements RenderedImageFactory {
 
 	    SeekableStream src = null;
 	    try {
-                src = new FileSeekableStream(fileName);
+                src = SeekableStream.openFile(new File(fileName));
             } catch (FileNotFoundException fnfe) {
 		// Try to get the file as an InputStream resource. This would
 		// happen when the application and image file are packaged in
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.opimage;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Map;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.PointOpImage;
+import org.eclipse.imagen.RasterAccessor;
+import org.eclipse.imagen.RasterFormatTag;
+
+/**
+ * An <code>OpImage</code> computing a chain of point operations in a
+ * single pass.  Each line of each band of the source is read once,
+ * passed through the <code>SampleFunction</code>s of the operations in
+ * order and written to the destination, so that no intermediate tile
+ * is created or cached.
+ *
+ * <p> When the source is of byte type the chain is evaluated once per
+ * band for each of the 256 possible values and the tile is computed by
+ * table lookup.
+ *
+ * @see PointOpFusion
+ */
+final class FusedPointOpImage extends PointOpImage {
+
+    /** The functions of the fused operations, in order. */
+    private final SampleFunction[] functions;
+
+    /** The composed functions per band for byte sources. */
+    private double[][] byteTable = null;
+
+    /**
+     * Constructor.
+     *
+     * @param source  The source of the first fused operation.
+     * @param config  Configurable attributes of the image.
+     * @param layout  The layout of the last fused operation.
+     * @param functions  The functions of the fused operations, in order,
+     *        stored as reference.
+     */
+    public FusedPointOpImage(RenderedImage source,
+                             Map config,
+                             ImageLayout layout,
+                             SampleFunction[] functions) {
+        super(source, layout, config, true);
+        this.functions = functions;
+    }
+
+    /** Returns the functions of the fused operations by reference. */
+    SampleFunction[] getSampleFunctions() {
+        return functions;
+    }
+
+    private synchronized void initByteTable() {
+        if (byteTable != null) {
+            return;
+        }
+
+        int numBands = getSampleModel().getNumBands();
+        double[][] table = new double[numBands][256];
+        for (int b = 0; b < numBands; b++) {
+            double[] t = table[b];
+            for (int i = 0; i < 256; i++) {
+                t[i] = i;
+            }
+            for (int f = 0; f < functions.length; f++) {
+                functions[f].transform(t, 256, b);
+            }
+        }
+        byteTable = table;
+    }
+
+    /**
+     * Computes the fused operations within a specified rectangle.
+     *
+     * @param sources   Cobbled sources, guaranteed to provide all the
+     *                  source data necessary for computing the rectangle.
+     * @param dest      The tile containing the rectangle to be computed.
+     * @param destRect  The rectangle within the tile to be computed.
+     */
+    protected void computeRect(Raster[] sources,
+                               WritableRaster dest,
+                               Rectangle destRect) {
+        // The source and destination are accessed in their own data
+        // types, as a common type such as float would not hold all int
+        // samples exactly.  The chain has component sample models and no
+        // IndexColorModel, so no expansion is needed.
+        SampleModel srcSM = sources[0].getSampleModel();
+        SampleModel dstSM = dest.getSampleModel();
+        RasterFormatTag srcTag =
+            new RasterFormatTag(srcSM,
+                                RasterAccessor.findCompatibleTag(null, srcSM));
+        RasterFormatTag dstTag =
+            new RasterFormatTag(dstSM,
+                                RasterAccessor.findCompatibleTag(null, dstSM));
+
+        Rectangle srcRect = mapDestRect(destRect, 0);
+
+        RasterAccessor dst = new RasterAccessor(dest, destRect,
+                                                dstTag, getColorModel());
+        RasterAccessor src = new RasterAccessor(sources[0], srcRect,
+                                                srcTag,
+                                                getSource(0).getColorModel());
+
+        int dstWidth = dst.getWidth();
+        int dstHeight = dst.getHeight();
+        int dstBands = dst.getNumBands();
+
+        int srcLineStride = src.getScanlineStride();
+        int[] srcBandOffsets = src.getBandOffsets();
+
+        int dstLineStride = dst.getScanlineStride();
+        int[] dstBandOffsets = dst.getBandOffsets();
+
+        double[][] table = null;
+        if (getSource(0).getSampleModel().getDataType() ==
+            DataBuffer.TYPE_BYTE) {
+            initByteTable();
+            table = byteTable;
+        }
+
+        double[] line = new double[dstWidth];
+
+        for (int b = 0; b < dstBands; b++) {
+            int srcLineOffset = srcBandOffsets[b];
+            int dstLineOffset = dstBandOffsets[b];
+
+            for (int h = 0; h < dstHeight; h++) {
+                readLine(src, b, srcLineOffset, line, dstWidth);
+                if (table != null) {
+                    double[] t = table[b];
+                    for (int w = 0; w < dstWidth; w++) {
+                        line[w] = t[(int)line[w]];
+                    }
+                } else {
+                    for (int f = 0; f < functions.length; f++) {
+                        functions[f].transform(line, dstWidth, b);
+                    }
+                }
+                writeLine(dst, b, dstLineOffset, line, dstWidth);
+
+                srcLineOffset += srcLineStride;
+                dstLineOffset += dstLineStride;
+            }
+        }
+
+        if (dst.needsClamping()) {
+            /* Further clamp down to underlying raster data type. */
+            dst.clampDataArrays();
+        }
+        dst.copyDataToRaster();
+    }
+
+    private static void readLine(RasterAccessor src, int band, int offset,
+                                 double[] line, int width) {
+        int stride = src.getPixelStride();
+
+        switch (src.getDataType()) {
+        case DataBuffer.TYPE_BYTE:
+            byte[] bs = src.getByteDataArray(band);
+            for (int w = 0; w < width; w++, offset += stride) {
+                line[w] = bs[offset] & 0xFF;
+            }
+            break;
+        case DataBuffer.TYPE_USHORT:
+            short[] us = src.getShortDataArray(band);
+            for (int w = 0; w < width; w++, offset += stride) {
+                line[w] = us[offset] & 0xFFFF;
+            }
+            break;
+        case DataBuffer.TYPE_SHORT:
+            short[] ss = src.getShortDataArray(band);
+            for (int w = 0; w < width; w++, offset += stride) {
+                line[w] = ss[offset];
+            }
+            break;
+        case DataBuffer.TYPE_INT:
+            int[] is = src.getIntDataArray(band);
+            for (int w = 0; w < width; w++, offset += stride) {
+                line[w] = is[offset];
+            }
+            break;
+        case DataBuffer.TYPE_FLOAT:
+            float[] fs = src.getFloatDataArray(band);
+            for (int w = 0; w < width; w++, offset += stride) {
+                line[w] = fs[offset];
+            }
+            break;
+        case DataBuffer.TYPE_DOUBLE:
+            double[] ds = src.getDoubleDataArray(band);
+            for (int w = 0; w < width; w++, offset += stride) {
+                line[w] = ds[offset];
+            }
+            break;
+        }
+    }
+
+    private static void writeLine(RasterAccessor dst, int band, int offset,
+                                  double[] line, int width) {
+        int stride = dst.getPixelStride();
+
+        switch (dst.getDataType()) {
+        case DataBuffer.TYPE_BYTE:
+            byte[] bd = dst.getByteDataArray(band);
+            for (int w = 0; w < width; w++, offset += stride) {
+                bd[offset] = (byte)(int)line[w];
+            }
+            break;
+        case DataBuffer.TYPE_USHORT:
+        case DataBuffer.TYPE_SHORT:
+            short[] sd = dst.getShortDataArray(band);
+            for (int w = 0; w < width; w++, offset += stride) {
+                sd[offset] = (short)(int)line[w];
+            }
+            break;
+        case DataBuffer.TYPE_INT:
+            int[] id = dst.getIntDataArray(band);
+            for (int w = 0; w < width; w++, offset += stride) {
+                id[offset] = (int)line[w];
+            }
+            break;
+        case DataBuffer.TYPE_FLOAT:
+            float[] fd = dst.getFloatDataArray(band);
+            for (int w = 0; w < width; w++, offset += stride) {
+                fd[offset] = (float)line[w];
+            }
+            break;
+        case DataBuffer.TYPE_DOUBLE:
+            double[] dd = dst.getDoubleDataArray(band);
+            for (int w = 0; w < width; w++, offset += stride) {
+                dd[offset] = line[w];
+            }
+            break;
+        }
+    }
+}
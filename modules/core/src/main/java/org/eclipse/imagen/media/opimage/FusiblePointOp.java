@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.opimage;
+
+/**
+ * Implemented by single source point operations whose computation may
+ * be expressed as a <code>SampleFunction</code>, allowing
+ * <code>PointOpFusion</code> to fuse them with adjacent operations.
+ *
+ * @see PointOpFusion
+ */
+interface FusiblePointOp {
+
+    /**
+     * Returns the function computing this image from its source, or
+     * <code>null</code> if the image cannot be computed by one, for
+     * instance because it transforms a colormap rather than pixels.
+     */
+    SampleFunction getSampleFunction();
+}
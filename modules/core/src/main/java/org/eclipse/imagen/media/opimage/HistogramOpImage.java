@@ -23,6 +23,7 @@ import java.awt.image.RenderedImage;
 import java.util.LinkedList;
 import java.util.ListIterator;
 import org.eclipse.imagen.Histogram;
+import org.eclipse.imagen.ParallelStatistics;
 import org.eclipse.imagen.PixelAccessor;
 import org.eclipse.imagen.ROI;
 import org.eclipse.imagen.StatisticsOpImage;
@@ -36,7 +37,8 @@ import org.eclipse.imagen.UnpackedImageData;
  * @see org.eclipse.imagen.operator.HistogramDescriptor
  * @see HistogramCRIF
  */
-final class HistogramOpImage extends StatisticsOpImage {
+final class HistogramOpImage extends StatisticsOpImage
+    implements ParallelStatistics {
 
     /** Number of bins per band. */
     private int[] numBins;
@@ -111,4 +113,30 @@ final class HistogramOpImage extends StatisticsOpImage {
         Histogram histogram = (Histogram)stats;
         histogram.countPixels(source, roi, xStart, yStart, xPeriod, yPeriod);
     }
+
+    public Object createPartialStatistics(String name) {
+        return createStatistics(name);
+    }
+
+    public void accumulatePartialStatistics(String name,
+                                            Raster source,
+                                            Object partial) {
+        accumulateStatistics(name, source, partial);
+    }
+
+    public void mergeStatistics(String name,
+                                Object stats,
+                                Object partial) {
+        Histogram histogram = (Histogram)stats;
+        Histogram counts = (Histogram)partial;
+
+        for (int b = 0; b < numBands; b++) {
+            int[] bins = histogram.getBins(b);
+            int[] partialBins = counts.getBins(b);
+
+            for (int i = 0; i < bins.length; i++) {
+                bins[i] += partialBins[i];
+            }
+        }
+    }
 }
@@ -93,7 +93,8 @@ import org.eclipse.imagen.media.util.JDKWorkarounds;
  * @see LookupCRIF
  *
  */
-final class LookupOpImage extends ColormapOpImage {
+final class LookupOpImage extends ColormapOpImage
+    implements FusiblePointOp {
 
     /**
      * The lookup table associated with this operation.
@@ -165,6 +166,26 @@ final class LookupOpImage extends ColormapOpImage {
         }
     }
 
+    /**
+     * Returns the function computing this image from its source, or
+     * <code>null</code> if the colormap is transformed.
+     */
+    public SampleFunction getSampleFunction() {
+        if (isColormapOperation()) {
+            return null;
+        }
+
+        final int numBands = getSampleModel().getNumBands();
+        return new SampleFunction(getSampleModel().getDataType()) {
+            void transform(double[] samples, int length, int band) {
+                int b = table.getNumBands() < numBands ? 0 : band;
+                for (int i = 0; i < length; i++) {
+                    samples[i] = table.lookupDouble(b, (int)samples[i]);
+                }
+            }
+        };
+    }
+
     /**
      * Performs the table lookup operation within a specified rectangle.
      *
@@ -26,6 +26,7 @@ import java.util.LinkedList;
 import java.util.ListIterator;
 import org.eclipse.imagen.ImageLayout;
 import org.eclipse.imagen.OpImage;
+import org.eclipse.imagen.ParallelStatistics;
 import org.eclipse.imagen.PixelAccessor;
 import org.eclipse.imagen.PlanarImage;
 import org.eclipse.imagen.RasterAccessor;
@@ -43,7 +44,8 @@ import org.eclipse.imagen.UnpackedImageData;
  * @see MeanCRIF
  *
  */
-public class MeanOpImage extends StatisticsOpImage {
+public class MeanOpImage extends StatisticsOpImage
+    implements ParallelStatistics {
 
     private boolean isInitialized = false;
 
@@ -106,9 +108,7 @@ public class MeanOpImage extends StatisticsOpImage {
         }
     }
 
-    protected void accumulateStatistics(String name,
-                                        Raster source,
-                                        Object stats) {
+    private void initialize() {
         if(!isInitialized) {
             srcPA = new PixelAccessor(getSourceImage(0));
             srcSampleType = srcPA.sampleType == PixelAccessor.TYPE_BIT ?
@@ -118,7 +118,55 @@ public class MeanOpImage extends StatisticsOpImage {
             totalPixelCount = 0;
             isInitialized = true;
         }
+    }
+
+    protected void accumulateStatistics(String name,
+                                        Raster source,
+                                        Object stats) {
+        initialize();
+
+        totalPixelCount += accumulate(source, totalPixelValue);
+
+        updateMean(name, stats);
+    }
 
+    /**
+     * Returns the sums of the samples of each band followed by the
+     * number of pixels, accumulated over a single tile.
+     */
+    public Object createPartialStatistics(String name) {
+        if (!name.equalsIgnoreCase("mean")) {
+            return null;
+        }
+
+        initialize();
+        return new double[srcPA.numBands + 1];
+    }
+
+    public void accumulatePartialStatistics(String name,
+                                            Raster source,
+                                            Object partial) {
+        double[] sums = (double[])partial;
+        sums[srcPA.numBands] += accumulate(source, sums);
+    }
+
+    public void mergeStatistics(String name,
+                                Object stats,
+                                Object partial) {
+        double[] sums = (double[])partial;
+        for (int i = 0; i < srcPA.numBands; i++) {
+            totalPixelValue[i] += sums[i];
+        }
+        totalPixelCount += (int)sums[srcPA.numBands];
+
+        updateMean(name, stats);
+    }
+
+    /**
+     * Adds the samples of each band within the ROI to <code>sums</code>
+     * and returns the number of pixels.
+     */
+    private int accumulate(Raster source, double[] sums) {
         Rectangle srcBounds = getSourceImage(0).getBounds().intersection(
                                                   source.getBounds());
 
@@ -132,10 +180,11 @@ public class MeanOpImage extends StatisticsOpImage {
                                               srcBounds.width,
                                               srcBounds.height);
             if (rectList == null) {
-                return; // ROI does not intersect with Raster boundary.
+                return 0; // ROI does not intersect with Raster boundary.
             }
         }
         ListIterator iterator = rectList.listIterator(0);
+        int count = 0;
 
         while (iterator.hasNext()) {
             Rectangle rect = srcBounds.intersection((Rectangle)iterator.next());
@@ -157,26 +206,30 @@ public class MeanOpImage extends StatisticsOpImage {
 
             switch (uid.type) {
             case DataBuffer.TYPE_BYTE:
-                accumulateStatisticsByte(uid);
+                count += accumulateStatisticsByte(uid, sums);
                 break;
             case DataBuffer.TYPE_USHORT:
-                accumulateStatisticsUShort(uid);
+                count += accumulateStatisticsUShort(uid, sums);
                 break;
             case DataBuffer.TYPE_SHORT:
-                accumulateStatisticsShort(uid);
+                count += accumulateStatisticsShort(uid, sums);
                 break;
             case DataBuffer.TYPE_INT:
-                accumulateStatisticsInt(uid);
+                count += accumulateStatisticsInt(uid, sums);
                 break;
             case DataBuffer.TYPE_FLOAT:
-                accumulateStatisticsFloat(uid);
+                count += accumulateStatisticsFloat(uid, sums);
                 break;
             case DataBuffer.TYPE_DOUBLE:
-                accumulateStatisticsDouble(uid);
+                count += accumulateStatisticsDouble(uid, sums);
                 break;
             }
         }
 
+        return count;
+    }
+
+    private void updateMean(String name, Object stats) {
         if(name.equalsIgnoreCase("mean")) {
             // This is a totally disgusting hack but no worse than the
             // code was before ... bpb 1 September 2000
@@ -190,7 +243,8 @@ public class MeanOpImage extends StatisticsOpImage {
         }
     }
 
-    private void accumulateStatisticsByte(UnpackedImageData uid) {
+    private int accumulateStatisticsByte(UnpackedImageData uid,
+                                         double[] sums) {
         Rectangle rect = uid.rect;
         byte[][] data = uid.getByteData();
         int lineStride = uid.lineStride;
@@ -207,15 +261,16 @@ public class MeanOpImage extends StatisticsOpImage {
                 int lastPixel = lo + rect.width * pixelStride;
 
                 for (int po = lo; po < lastPixel; po += pixelInc) {
-                    totalPixelValue[b] += d[po] & 0xff;
+                    sums[b] += d[po] & 0xff;
                 }
             }
         }
-        totalPixelCount += (int)Math.ceil((double)rect.height / yPeriod) *
-                           (int)Math.ceil((double)rect.width / xPeriod);
+        return (int)Math.ceil((double)rect.height / yPeriod) *
+               (int)Math.ceil((double)rect.width / xPeriod);
     }
 
-    private void accumulateStatisticsUShort(UnpackedImageData uid) {
+    private int accumulateStatisticsUShort(UnpackedImageData uid,
+                                           double[] sums) {
         Rectangle rect = uid.rect;
         short[][] data = uid.getShortData();
         int lineStride = uid.lineStride;
@@ -232,15 +287,16 @@ public class MeanOpImage extends StatisticsOpImage {
                 int lastPixel = lo + rect.width * pixelStride;
 
                 for (int po = lo; po < lastPixel; po += pixelInc) {
-                    totalPixelValue[b] += d[po] & 0xffff;
+                    sums[b] += d[po] & 0xffff;
                 }
             }
         }
-        totalPixelCount += (int)Math.ceil((double)rect.height / yPeriod) *
-                           (int)Math.ceil((double)rect.width / xPeriod);
+        return (int)Math.ceil((double)rect.height / yPeriod) *
+               (int)Math.ceil((double)rect.width / xPeriod);
     }
 
-    private void accumulateStatisticsShort(UnpackedImageData uid) {
+    private int accumulateStatisticsShort(UnpackedImageData uid,
+                                          double[] sums) {
         Rectangle rect = uid.rect;
         short[][] data = uid.getShortData();
         int lineStride = uid.lineStride;
@@ -257,15 +313,16 @@ public class MeanOpImage extends StatisticsOpImage {
                 int lastPixel = lo + rect.width * pixelStride;
 
                 for (int po = lo; po < lastPixel; po += pixelInc) {
-                    totalPixelValue[b] += d[po];
+                    sums[b] += d[po];
                 }
             }
         }
-        totalPixelCount += (int)Math.ceil((double)rect.height / yPeriod) *
-                           (int)Math.ceil((double)rect.width / xPeriod);
+        return (int)Math.ceil((double)rect.height / yPeriod) *
+               (int)Math.ceil((double)rect.width / xPeriod);
     }
 
-    private void accumulateStatisticsInt(UnpackedImageData uid) {
+    private int accumulateStatisticsInt(UnpackedImageData uid,
+                                        double[] sums) {
         Rectangle rect = uid.rect;
         int[][] data = uid.getIntData();
         int lineStride = uid.lineStride;
@@ -282,15 +339,16 @@ public class MeanOpImage extends StatisticsOpImage {
                 int lastPixel = lo + rect.width * pixelStride;
 
                 for (int po = lo; po < lastPixel; po += pixelInc) {
-                    totalPixelValue[b] += d[po];
+                    sums[b] += d[po];
                 }
             }
         }
-        totalPixelCount += (int)Math.ceil((double)rect.height / yPeriod) *
-                           (int)Math.ceil((double)rect.width / xPeriod);
+        return (int)Math.ceil((double)rect.height / yPeriod) *
+               (int)Math.ceil((double)rect.width / xPeriod);
     }
 
-    private void accumulateStatisticsFloat(UnpackedImageData uid) {
+    private int accumulateStatisticsFloat(UnpackedImageData uid,
+                                          double[] sums) {
         Rectangle rect = uid.rect;
         float[][] data = uid.getFloatData();
         int lineStride = uid.lineStride;
@@ -307,15 +365,16 @@ public class MeanOpImage extends StatisticsOpImage {
                 int lastPixel = lo + rect.width * pixelStride;
 
                 for (int po = lo; po < lastPixel; po += pixelInc) {
-                    totalPixelValue[b] += d[po];
+                    sums[b] += d[po];
                 }
             }
         }
-        totalPixelCount += (int)Math.ceil((double)rect.height / yPeriod) *
-                           (int)Math.ceil((double)rect.width / xPeriod);
+        return (int)Math.ceil((double)rect.height / yPeriod) *
+               (int)Math.ceil((double)rect.width / xPeriod);
     }
 
-    private void accumulateStatisticsDouble(UnpackedImageData uid) {
+    private int accumulateStatisticsDouble(UnpackedImageData uid,
+                                           double[] sums) {
         Rectangle rect = uid.rect;
         double[][] data = uid.getDoubleData();
         int lineStride = uid.lineStride;
@@ -332,11 +391,11 @@ public class MeanOpImage extends StatisticsOpImage {
                 int lastPixel = lo + rect.width * pixelStride;
 
                 for (int po = lo; po < lastPixel; po += pixelInc) {
-                    totalPixelValue[b] += d[po];
+                    sums[b] += d[po];
                 }
             }
         }
-        totalPixelCount += (int)Math.ceil((double)rect.height / yPeriod) *
-                           (int)Math.ceil((double)rect.width / xPeriod);
+        return (int)Math.ceil((double)rect.height / yPeriod) *
+               (int)Math.ceil((double)rect.width / xPeriod);
     }
 }
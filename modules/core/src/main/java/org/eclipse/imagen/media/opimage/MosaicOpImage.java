@@ -67,6 +67,26 @@ public class MosaicOpImage extends OpImage {
     private BorderExtender zeroExtender;
     private PlanarImage[] roiImage;
 
+    /**
+     * Bounds of the sources clipped to the mosaic bounds; null for
+     * sources which do not intersect the mosaic.
+     */
+    private Rectangle[] sourceBounds;
+
+    /**
+     * Grid index of the source bounds.  The cells are aligned with the
+     * tile grid and are an integral number of tiles in size, so each
+     * tile lies within a single cell.  Each cell lists in ascending
+     * order the indices of the sources which intersect it.
+     */
+    private int cellWidth;
+    private int cellHeight;
+    private int minCellX;
+    private int minCellY;
+    private int numXCells;
+    private int numYCells;
+    private int[][] cellSources;
+
     private static final ImageLayout getLayout(Vector sources,
                                                ImageLayout layout) {
 
@@ -382,6 +402,150 @@ public class MosaicOpImage extends OpImage {
                 }
             }
         }
+
+        // Index the sources by location.
+        buildSourceIndex();
+    }
+
+    /**
+     * Builds the grid index of the source bounds.  The cell size is
+     * about the average size of the sources so that each source is
+     * listed in a few cells only.
+     */
+    private void buildSourceIndex() {
+        int numSources = getNumSources();
+        Rectangle bounds = getBounds();
+
+        // Clip the source bounds and average their sizes.
+        sourceBounds = new Rectangle[numSources];
+        long sumWidth = 0;
+        long sumHeight = 0;
+        int numIntersecting = 0;
+        for(int i = 0; i < numSources; i++) {
+            Rectangle r = getSourceImage(i).getBounds().intersection(bounds);
+            if(!r.isEmpty()) {
+                sourceBounds[i] = r;
+                sumWidth += r.width;
+                sumHeight += r.height;
+                numIntersecting++;
+            }
+        }
+
+        int xTiles = 1;
+        int yTiles = 1;
+        if(numIntersecting > 0) {
+            xTiles = (int)Math.max(1, sumWidth/numIntersecting/tileWidth);
+            yTiles = (int)Math.max(1, sumHeight/numIntersecting/tileHeight);
+        }
+
+        // Limit the number of cells if the sources are small and sparse.
+        long maxCells = 4L*numSources + 64;
+        while(true) {
+            cellWidth = xTiles*tileWidth;
+            cellHeight = yTiles*tileHeight;
+            minCellX = Math.floorDiv(getMinX() - tileGridXOffset, cellWidth);
+            minCellY = Math.floorDiv(getMinY() - tileGridYOffset, cellHeight);
+            numXCells = Math.floorDiv(getMaxX() - 1 - tileGridXOffset,
+                                      cellWidth) - minCellX + 1;
+            numYCells = Math.floorDiv(getMaxY() - 1 - tileGridYOffset,
+                                      cellHeight) - minCellY + 1;
+            if((long)numXCells*numYCells <= maxCells) {
+                break;
+            }
+            if(numXCells >= numYCells) {
+                xTiles *= 2;
+            } else {
+                yTiles *= 2;
+            }
+        }
+
+        // Count the sources of each cell, then list them in order.
+        int[] counts = new int[numXCells*numYCells];
+        for(int pass = 0; pass < 2; pass++) {
+            if(pass == 1) {
+                cellSources = new int[counts.length][];
+                for(int c = 0; c < counts.length; c++) {
+                    cellSources[c] = new int[counts[c]];
+                    counts[c] = 0;
+                }
+            }
+            for(int i = 0; i < numSources; i++) {
+                Rectangle r = sourceBounds[i];
+                if(r == null) {
+                    continue;
+                }
+                int cx0 = getCellX(r.x);
+                int cx1 = getCellX(r.x + r.width - 1);
+                int cy0 = getCellY(r.y);
+                int cy1 = getCellY(r.y + r.height - 1);
+                for(int cy = cy0; cy <= cy1; cy++) {
+                    for(int cx = cx0; cx <= cx1; cx++) {
+                        int c = cy*numXCells + cx;
+                        if(pass == 1) {
+                            cellSources[c][counts[c]] = i;
+                        }
+                        counts[c]++;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Returns the column, relative to the first, of the cell at x. */
+    private int getCellX(int x) {
+        return Math.floorDiv(x - tileGridXOffset, cellWidth) - minCellX;
+    }
+
+    /** Returns the row, relative to the first, of the cell at y. */
+    private int getCellY(int y) {
+        return Math.floorDiv(y - tileGridYOffset, cellHeight) - minCellY;
+    }
+
+    /**
+     * Returns in ascending order the indices of the sources whose bounds
+     * intersect a rectangle.
+     */
+    private int[] getIntersectingSources(Rectangle rect) {
+        rect = rect.intersection(getBounds());
+        if(rect.isEmpty()) {
+            return new int[0];
+        }
+
+        int cx0 = getCellX(rect.x);
+        int cx1 = getCellX(rect.x + rect.width - 1);
+        int cy0 = getCellY(rect.y);
+        int cy1 = getCellY(rect.y + rect.height - 1);
+
+        // Gather the candidates; a source may be listed in several cells.
+        int[] indices = new int[8];
+        int count = 0;
+        for(int cy = cy0; cy <= cy1; cy++) {
+            for(int cx = cx0; cx <= cx1; cx++) {
+                int[] cell = cellSources[cy*numXCells + cx];
+                for(int k = 0; k < cell.length; k++) {
+                    if(sourceBounds[cell[k]].intersects(rect)) {
+                        if(count == indices.length) {
+                            indices = Arrays.copyOf(indices, 2*count);
+                        }
+                        indices[count++] = cell[k];
+                    }
+                }
+            }
+        }
+
+        if(cx0 != cx1 || cy0 != cy1) {
+            // Restore the order and remove duplicates.
+            Arrays.sort(indices, 0, count);
+            int unique = 0;
+            for(int k = 0; k < count; k++) {
+                if(unique == 0 || indices[k] != indices[unique - 1]) {
+                    indices[unique++] = indices[k];
+                }
+            }
+            count = unique;
+        }
+
+        return Arrays.copyOf(indices, count);
     }
 
     public Rectangle mapDestRect(Rectangle destRect,
@@ -410,6 +574,27 @@ public class MosaicOpImage extends OpImage {
         return sourceRect.intersection(getBounds());
     }
 
+    public Point[] getTileDependencies(int tileX, int tileY,
+                                       int sourceIndex) {
+        if(sourceIndex < 0 || sourceIndex >= getNumSources()) {
+            throw new IllegalArgumentException(JaiI18N.getString("Generic1"));
+        }
+
+        // Look the source up in the cell of the tile.
+        Rectangle rect = getTileRect(tileX, tileY);
+        if(rect.isEmpty() || sourceBounds[sourceIndex] == null) {
+            return null;
+        }
+        int[] cell = cellSources[getCellY(rect.y)*numXCells +
+                                 getCellX(rect.x)];
+        if(Arrays.binarySearch(cell, sourceIndex) < 0 ||
+           !sourceBounds[sourceIndex].intersects(rect)) {
+            return null;
+        }
+
+        return super.getTileDependencies(tileX, tileY, sourceIndex);
+    }
+
     public Raster computeTile(int tileX, int tileY) {
         // Create a new Raster.
         WritableRaster dest = createWritableRaster(sampleModel,
@@ -419,7 +604,9 @@ public class MosaicOpImage extends OpImage {
         // Determine the active area; tile intersects with image's bounds.
         Rectangle destRect = getTileRect(tileX, tileY);
 
-        int numSources = getNumSources();
+        // Only the sources intersecting the tile are visited.
+        int[] sourceIndices = getIntersectingSources(destRect);
+        int numSources = sourceIndices.length;
 
         Raster[] rasterSources = new Raster[numSources];
         Raster[] alpha = sourceAlpha != null ?
@@ -428,36 +615,31 @@ public class MosaicOpImage extends OpImage {
             new Raster[numSources] : null;
 
         // Cobble areas
-        for (int i = 0; i < numSources; i++) {
+        for (int k = 0; k < numSources; k++) {
+            int i = sourceIndices[k];
             PlanarImage source = getSourceImage(i);
-            Rectangle srcRect = mapDestRect(destRect, i);
-
-            // If srcRect is empty, set the Raster for this source to
-            // null; otherwise pass srcRect to getData(). If srcRect
-            // is null, getData() will return a Raster containing the
-            // data of the entire source image.
-            rasterSources[i] = srcRect != null && srcRect.isEmpty() ?
-                null : source.getExtendedData(destRect, sourceExtender);
-
-            if(rasterSources[i] != null) {
-                if(sourceAlpha != null && sourceAlpha[i] != null) {
-                    alpha[i] = sourceAlpha[i].getExtendedData(destRect,
-                                                              zeroExtender);
-                }
 
-                if(sourceROI != null && sourceROI[i] != null) {
-                    roi[i] = roiImage[i].getExtendedData(destRect,
-                                                         zeroExtender);
-                }
+            rasterSources[k] =
+                source.getExtendedData(destRect, sourceExtender);
+
+            if(sourceAlpha != null && sourceAlpha[i] != null) {
+                alpha[k] = sourceAlpha[i].getExtendedData(destRect,
+                                                          zeroExtender);
+            }
+
+            if(sourceROI != null && sourceROI[i] != null) {
+                roi[k] = roiImage[i].getExtendedData(destRect,
+                                                     zeroExtender);
             }
         }
 
-        computeRect(rasterSources, dest, destRect, alpha, roi);
+        computeRect(rasterSources, dest, destRect, alpha, roi,
+                    sourceIndices);
 
-        for (int i = 0; i < numSources; i++) {
-            Raster sourceData = rasterSources[i];
+        for (int k = 0; k < numSources; k++) {
+            Raster sourceData = rasterSources[k];
             if(sourceData != null) {
-                PlanarImage source = getSourceImage(i);
+                PlanarImage source = getSourceImage(sourceIndices[k]);
 
                 // Recycle the source tile
                 if(source.overlapsMultipleTiles(sourceData.getBounds())) {
@@ -480,9 +662,32 @@ public class MosaicOpImage extends OpImage {
                                Rectangle destRect,
                                Raster[] alphaRaster,
                                Raster[] roiRaster) {
+        computeRect(sources, dest, destRect, alphaRaster, roiRaster, null);
+    }
+
+    /**
+     * Computes a rectangle from a subset of the sources.
+     *
+     * @param sourceIndices The index of the source of each element of
+     *        the arrays in ascending order, or null if the arrays hold
+     *        all sources.
+     */
+    private void computeRect(Raster[] sources,
+                             WritableRaster dest,
+                             Rectangle destRect,
+                             Raster[] alphaRaster,
+                             Raster[] roiRaster,
+                             int[] sourceIndices) {
         // Save the source count.
         int numSources = sources.length;
 
+        if(sourceIndices == null) {
+            sourceIndices = new int[numSources];
+            for(int i = 0; i < numSources; i++) {
+                sourceIndices[i] = i;
+            }
+        }
+
         // Put all non-null sources in a list.
         ArrayList sourceList = new ArrayList(numSources);
         for(int i = 0; i < numSources; i++) {
@@ -538,7 +743,7 @@ public class MosaicOpImage extends OpImage {
                         new RasterFormatTag(alphaSM, alphaFormatTagID);
                     a[i] = new RasterAccessor(alphaRaster[i], destRect,  
                                               alphaFormatTag,
-                                              sourceAlpha[i].getColorModel());
+                                              sourceAlpha[sourceIndices[i]].getColorModel());
                 }
             }
         }
@@ -546,22 +751,22 @@ public class MosaicOpImage extends OpImage {
         // Branch to data type-specific method.
         switch (d.getDataType()) {
         case DataBuffer.TYPE_BYTE:
-            computeRectByte(s, d, a, roiRaster);
+            computeRectByte(s, d, a, roiRaster, sourceIndices);
             break;
         case DataBuffer.TYPE_USHORT:
-            computeRectUShort(s, d, a, roiRaster);
+            computeRectUShort(s, d, a, roiRaster, sourceIndices);
             break;
         case DataBuffer.TYPE_SHORT:
-            computeRectShort(s, d, a, roiRaster);
+            computeRectShort(s, d, a, roiRaster, sourceIndices);
             break;
         case DataBuffer.TYPE_INT:
-            computeRectInt(s, d, a, roiRaster);
+            computeRectInt(s, d, a, roiRaster, sourceIndices);
             break;
         case DataBuffer.TYPE_FLOAT:
-            computeRectFloat(s, d, a, roiRaster);
+            computeRectFloat(s, d, a, roiRaster, sourceIndices);
             break;
         case DataBuffer.TYPE_DOUBLE:
-            computeRectDouble(s, d, a, roiRaster);
+            computeRectDouble(s, d, a, roiRaster, sourceIndices);
             break;
         }
 
@@ -571,7 +776,8 @@ public class MosaicOpImage extends OpImage {
     private void computeRectByte(RasterAccessor[] src,
                                  RasterAccessor dst,
                                  RasterAccessor[] alfa,
-                                 Raster[] roi) {
+                                 Raster[] roi,
+                                 int[] sourceIndices) {
         // Save the source count.
         int numSources = src.length;
 
@@ -643,11 +849,18 @@ public class MosaicOpImage extends OpImage {
             weightTypes[i] = WEIGHT_TYPE_THRESHOLD;
             if(alfa[i] != null) {
                 weightTypes[i] = WEIGHT_TYPE_ALPHA;
-            } else if(sourceROI != null && sourceROI[i] != null) {
+            } else if(sourceROI != null &&
+                      sourceROI[sourceIndices[i]] != null) {
                 weightTypes[i] = WEIGHT_TYPE_ROI;
             }
         }
 
+        // Get the thresholds of the sources.
+        double[][] thresholds = new double[numSources][];
+        for(int i = 0; i < numSources; i++) {
+            thresholds[i] = sourceThreshold[sourceIndices[i]];
+        }
+
         // Set up source offset and data variabls.
         int[] sLineOffsets = new int[numSources];
         int[] sPixelOffsets = new int[numSources];
@@ -727,7 +940,7 @@ public class MosaicOpImage extends OpImage {
                             default: // WEIGHT_TYPE_THRESHOLD
                                 setDestValue =
                                     (sourceValue&0xff) >=
-                                    sourceThreshold[s][b];
+                                    thresholds[s][b];
                             }
 
                             // Set the destination value if a non-zero
@@ -810,7 +1023,7 @@ public class MosaicOpImage extends OpImage {
                             default: // WEIGHT_TYPE_THRESHOLD
                                 weight =
                                     (sourceValue&0xff) >=
-                                    sourceThreshold[s][b] ?
+                                    thresholds[s][b] ?
                                     1.0F : 0.0F;
                             }
 
@@ -839,7 +1052,8 @@ public class MosaicOpImage extends OpImage {
     private void computeRectUShort(RasterAccessor[] src,
                                    RasterAccessor dst,
                                    RasterAccessor[] alfa,
-                                   Raster[] roi) {
+                                   Raster[] roi,
+                                   int[] sourceIndices) {
         // Save the source count.
         int numSources = src.length;
 
@@ -911,11 +1125,18 @@ public class MosaicOpImage extends OpImage {
             weightTypes[i] = WEIGHT_TYPE_THRESHOLD;
             if(alfa[i] != null) {
                 weightTypes[i] = WEIGHT_TYPE_ALPHA;
-            } else if(sourceROI != null && sourceROI[i] != null) {
+            } else if(sourceROI != null &&
+                      sourceROI[sourceIndices[i]] != null) {
                 weightTypes[i] = WEIGHT_TYPE_ROI;
             }
         }
 
+        // Get the thresholds of the sources.
+        double[][] thresholds = new double[numSources][];
+        for(int i = 0; i < numSources; i++) {
+            thresholds[i] = sourceThreshold[sourceIndices[i]];
+        }
+
         // Set up source offset and data variabls.
         int[] sLineOffsets = new int[numSources];
         int[] sPixelOffsets = new int[numSources];
@@ -995,7 +1216,7 @@ public class MosaicOpImage extends OpImage {
                             default: // WEIGHT_TYPE_THRESHOLD
                                 setDestValue =
                                     (sourceValue&0xffff) >=
-                                    sourceThreshold[s][b];
+                                    thresholds[s][b];
                             }
 
                             // Set the destination value if a non-zero
@@ -1078,7 +1299,7 @@ public class MosaicOpImage extends OpImage {
                             default: // WEIGHT_TYPE_THRESHOLD
                                 weight =
                                     (sourceValue&0xffff) >=
-                                    sourceThreshold[s][b] ?
+                                    thresholds[s][b] ?
                                     1.0F : 0.0F;
                             }
 
@@ -1107,7 +1328,8 @@ public class MosaicOpImage extends OpImage {
     private void computeRectShort(RasterAccessor[] src,
                                   RasterAccessor dst,
                                   RasterAccessor[] alfa,
-                                  Raster[] roi) {
+                                  Raster[] roi,
+                                  int[] sourceIndices) {
         // Save the source count.
         int numSources = src.length;
 
@@ -1179,11 +1401,18 @@ public class MosaicOpImage extends OpImage {
             weightTypes[i] = WEIGHT_TYPE_THRESHOLD;
             if(alfa[i] != null) {
                 weightTypes[i] = WEIGHT_TYPE_ALPHA;
-            } else if(sourceROI != null && sourceROI[i] != null) {
+            } else if(sourceROI != null &&
+                      sourceROI[sourceIndices[i]] != null) {
                 weightTypes[i] = WEIGHT_TYPE_ROI;
             }
         }
 
+        // Get the thresholds of the sources.
+        double[][] thresholds = new double[numSources][];
+        for(int i = 0; i < numSources; i++) {
+            thresholds[i] = sourceThreshold[sourceIndices[i]];
+        }
+
         // Set up source offset and data variabls.
         int[] sLineOffsets = new int[numSources];
         int[] sPixelOffsets = new int[numSources];
@@ -1263,7 +1492,7 @@ public class MosaicOpImage extends OpImage {
                             default: // WEIGHT_TYPE_THRESHOLD
                                 setDestValue =
                                     sourceValue >=
-                                    sourceThreshold[s][b];
+                                    thresholds[s][b];
                             }
 
                             // Set the destination value if a non-zero
@@ -1346,7 +1575,7 @@ public class MosaicOpImage extends OpImage {
                             default: // WEIGHT_TYPE_THRESHOLD
                                 weight =
                                     sourceValue >=
-                                    sourceThreshold[s][b] ?
+                                    thresholds[s][b] ?
                                     1.0F : 0.0F;
                             }
 
@@ -1375,7 +1604,8 @@ public class MosaicOpImage extends OpImage {
     private void computeRectInt(RasterAccessor[] src,
                                 RasterAccessor dst,
                                 RasterAccessor[] alfa,
-                                Raster[] roi) {
+                                Raster[] roi,
+                                int[] sourceIndices) {
         // Save the source count.
         int numSources = src.length;
 
@@ -1447,11 +1677,18 @@ public class MosaicOpImage extends OpImage {
             weightTypes[i] = WEIGHT_TYPE_THRESHOLD;
             if(alfa[i] != null) {
                 weightTypes[i] = WEIGHT_TYPE_ALPHA;
-            } else if(sourceROI != null && sourceROI[i] != null) {
+            } else if(sourceROI != null &&
+                      sourceROI[sourceIndices[i]] != null) {
                 weightTypes[i] = WEIGHT_TYPE_ROI;
             }
         }
 
+        // Get the thresholds of the sources.
+        double[][] thresholds = new double[numSources][];
+        for(int i = 0; i < numSources; i++) {
+            thresholds[i] = sourceThreshold[sourceIndices[i]];
+        }
+
         // Set up source offset and data variabls.
         int[] sLineOffsets = new int[numSources];
         int[] sPixelOffsets = new int[numSources];
@@ -1531,7 +1768,7 @@ public class MosaicOpImage extends OpImage {
                             default: // WEIGHT_TYPE_THRESHOLD
                                 setDestValue =
                                     sourceValue >=
-                                    sourceThreshold[s][b];
+                                    thresholds[s][b];
                             }
 
                             // Set the destination value if a non-zero
@@ -1614,7 +1851,7 @@ public class MosaicOpImage extends OpImage {
                             default: // WEIGHT_TYPE_THRESHOLD
                                 weight =
                                     sourceValue >=
-                                    sourceThreshold[s][b] ?
+                                    thresholds[s][b] ?
                                     1.0F : 0.0F;
                             }
 
@@ -1643,7 +1880,8 @@ public class MosaicOpImage extends OpImage {
     private void computeRectFloat(RasterAccessor[] src,
                                   RasterAccessor dst,
                                   RasterAccessor[] alfa,
-                                  Raster[] roi) {
+                                  Raster[] roi,
+                                  int[] sourceIndices) {
         // Save the source count.
         int numSources = src.length;
 
@@ -1715,11 +1953,18 @@ public class MosaicOpImage extends OpImage {
             weightTypes[i] = WEIGHT_TYPE_THRESHOLD;
             if(alfa[i] != null) {
                 weightTypes[i] = WEIGHT_TYPE_ALPHA;
-            } else if(sourceROI != null && sourceROI[i] != null) {
+            } else if(sourceROI != null &&
+                      sourceROI[sourceIndices[i]] != null) {
                 weightTypes[i] = WEIGHT_TYPE_ROI;
             }
         }
 
+        // Get the thresholds of the sources.
+        double[][] thresholds = new double[numSources][];
+        for(int i = 0; i < numSources; i++) {
+            thresholds[i] = sourceThreshold[sourceIndices[i]];
+        }
+
         // Set up source offset and data variabls.
         int[] sLineOffsets = new int[numSources];
         int[] sPixelOffsets = new int[numSources];
@@ -1799,7 +2044,7 @@ public class MosaicOpImage extends OpImage {
                             default: // WEIGHT_TYPE_THRESHOLD
                                 setDestValue =
                                     sourceValue >=
-                                    sourceThreshold[s][b];
+                                    thresholds[s][b];
                             }
 
                             // Set the destination value if a non-zero
@@ -1880,7 +2125,7 @@ public class MosaicOpImage extends OpImage {
                             default: // WEIGHT_TYPE_THRESHOLD
                                 weight =
                                     sourceValue >=
-                                    sourceThreshold[s][b] ?
+                                    thresholds[s][b] ?
                                     1.0F : 0.0F;
                             }
 
@@ -1909,7 +2154,8 @@ public class MosaicOpImage extends OpImage {
     private void computeRectDouble(RasterAccessor[] src,
                                    RasterAccessor dst,
                                    RasterAccessor[] alfa,
-                                   Raster[] roi) {
+                                   Raster[] roi,
+                                   int[] sourceIndices) {
         // Save the source count.
         int numSources = src.length;
 
@@ -1981,11 +2227,18 @@ public class MosaicOpImage extends OpImage {
             weightTypes[i] = WEIGHT_TYPE_THRESHOLD;
             if(alfa[i] != null) {
                 weightTypes[i] = WEIGHT_TYPE_ALPHA;
-            } else if(sourceROI != null && sourceROI[i] != null) {
+            } else if(sourceROI != null &&
+                      sourceROI[sourceIndices[i]] != null) {
                 weightTypes[i] = WEIGHT_TYPE_ROI;
             }
         }
 
+        // Get the thresholds of the sources.
+        double[][] thresholds = new double[numSources][];
+        for(int i = 0; i < numSources; i++) {
+            thresholds[i] = sourceThreshold[sourceIndices[i]];
+        }
+
         // Set up source offset and data variabls.
         int[] sLineOffsets = new int[numSources];
         int[] sPixelOffsets = new int[numSources];
@@ -2065,7 +2318,7 @@ public class MosaicOpImage extends OpImage {
                             default: // WEIGHT_TYPE_THRESHOLD
                                 setDestValue =
                                     sourceValue >=
-                                    sourceThreshold[s][b];
+                                    thresholds[s][b];
                             }
 
                             // Set the destination value if a non-zero
@@ -2146,7 +2399,7 @@ public class MosaicOpImage extends OpImage {
                             default: // WEIGHT_TYPE_THRESHOLD
                                 weight =
                                     sourceValue >=
-                                    sourceThreshold[s][b] ?
+                                    thresholds[s][b] ?
                                     1.0F : 0.0F;
                             }
 
@@ -55,7 +55,8 @@ import java.util.Map;
  *
  * @since EA2
  */
-final class MultiplyConstOpImage extends ColormapOpImage {
+final class MultiplyConstOpImage extends ColormapOpImage
+    implements FusiblePointOp {
 
     /** The constants to be multiplied, one for each band. */
     protected double[] constants;
@@ -107,6 +108,62 @@ final class MultiplyConstOpImage extends ColormapOpImage {
         }
     }
 
+    /**
+     * Returns the function computing this image from its source, or
+     * <code>null</code> if the colormap is transformed or the source
+     * and destination data types differ.
+     */
+    public SampleFunction getSampleFunction() {
+        final int dataType = getSampleModel().getDataType();
+        if (isColormapOperation() ||
+            getSource(0).getSampleModel().getDataType() != dataType) {
+            return null;
+        }
+
+        return new SampleFunction(dataType) {
+            void transform(double[] samples, int length, int band) {
+                double c = constants[band];
+                float fc = (float)c;
+
+                switch (dataType) {
+                case DataBuffer.TYPE_BYTE:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = ImageUtil.clampRoundByte(
+                                     (float)samples[i] * fc) & 0xFF;
+                    }
+                    break;
+                case DataBuffer.TYPE_USHORT:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = ImageUtil.clampRoundUShort(
+                                     (float)samples[i] * fc) & 0xFFFF;
+                    }
+                    break;
+                case DataBuffer.TYPE_SHORT:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] =
+                            ImageUtil.clampRoundShort((float)samples[i] * fc);
+                    }
+                    break;
+                case DataBuffer.TYPE_INT:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = ImageUtil.clampRoundInt(samples[i] * c);
+                    }
+                    break;
+                case DataBuffer.TYPE_FLOAT:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = ImageUtil.clampFloat(samples[i] * c);
+                    }
+                    break;
+                case DataBuffer.TYPE_DOUBLE:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = samples[i] * c;
+                    }
+                    break;
+                }
+            }
+        };
+    }
+
     /**
      * Multiplies a constant to the pixel values within a specified rectangle.
      *
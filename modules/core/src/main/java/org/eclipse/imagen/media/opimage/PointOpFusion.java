@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.opimage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.RenderedImage;
+import java.util.Map;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.JAI;
+import org.eclipse.imagen.OpImage;
+
+/**
+ * Fuses chains of point operations into a single
+ * <code>OpImage</code>.  <code>RenderedOp</code> passes each rendering
+ * it creates to <code>fuse()</code>; if the rendering is a point
+ * operation whose source is the rendering of another point operation,
+ * or an already fused chain, a <code>FusedPointOpImage</code> computing
+ * both from the source of the chain is returned in its place.  A chain
+ * such as Rescale, Clamp, Format and Lookup is thus computed in a
+ * single pass, without computing or caching the tiles of the
+ * intermediate renderings.
+ *
+ * <p> The operations which may be fused are those whose
+ * <code>OpImage</code> implements <code>FusiblePointOp</code>: "Rescale",
+ * "Clamp", "AddConst", "MultiplyConst", "Lookup", and "Format" along
+ * with any other operation rendered as a <code>CopyOpImage</code>.
+ * Operations are only fused when the result is identical to that of
+ * the separate renderings: the images of the chain must have a
+ * <code>ComponentSampleModel</code>, no <code>IndexColorModel</code>
+ * and the same number of bands.
+ *
+ * <p> Fusion may be disabled with the hint
+ * <code>JAI.KEY_FUSE_POINT_OPERATIONS</code>.
+ *
+ * @see FusedPointOpImage
+ */
+public final class PointOpFusion {
+
+    private PointOpFusion() {}
+
+    /**
+     * Returns an image equivalent to a rendering which computes it
+     * together with the point operations it is computed from, or the
+     * rendering itself if it cannot be fused.
+     *
+     * @param image  A rendering of an operation.
+     * @param config  The configuration the rendering was created with,
+     *        which is also used to create the fused image.
+     */
+    public static RenderedImage fuse(RenderedImage image, Map config) {
+        if (config != null &&
+            Boolean.FALSE.equals(config.get(JAI.KEY_FUSE_POINT_OPERATIONS))) {
+            return image;
+        }
+
+        SampleFunction function = getSampleFunction(image);
+        if (function == null) {
+            return image;
+        }
+
+        OpImage op = (OpImage)image;
+        RenderedImage source = op.getSourceImage(0);
+
+        SampleFunction[] upstream;
+        RenderedImage root;
+        if (source instanceof FusedPointOpImage) {
+            FusedPointOpImage fused = (FusedPointOpImage)source;
+            upstream = fused.getSampleFunctions();
+            root = fused.getSourceImage(0);
+        } else {
+            SampleFunction sourceFunction = getSampleFunction(source);
+            if (sourceFunction == null) {
+                return image;
+            }
+            upstream = new SampleFunction[] {sourceFunction};
+            root = ((OpImage)source).getSourceImage(0);
+        }
+
+        SampleFunction[] functions = new SampleFunction[upstream.length + 1];
+        System.arraycopy(upstream, 0, functions, 0, upstream.length);
+        functions[upstream.length] = function;
+
+        FusedPointOpImage fused =
+            new FusedPointOpImage(root, config, new ImageLayout(op), functions);
+
+        // Fall back to the rendering if its layout was not reproduced.
+        if (!fused.getBounds().equals(op.getBounds()) ||
+            !fused.getSampleModel().equals(op.getSampleModel()) ||
+            fused.getTileGridXOffset() != op.getTileGridXOffset() ||
+            fused.getTileGridYOffset() != op.getTileGridYOffset()) {
+            return image;
+        }
+
+        return fused;
+    }
+
+    /**
+     * Returns the function of an image if it is a fusible point
+     * operation whose source and destination may be processed as
+     * samples, and <code>null</code> otherwise.
+     */
+    private static SampleFunction getSampleFunction(RenderedImage image) {
+        if (!(image instanceof FusiblePointOp)) {
+            return null;
+        }
+
+        OpImage op = (OpImage)image;
+        if (op.getNumSources() != 1) {
+            return null;
+        }
+
+        RenderedImage source = op.getSourceImage(0);
+        if (!isSampleImage(op) || !isSampleImage(source) ||
+            source.getSampleModel().getNumBands() !=
+            op.getSampleModel().getNumBands()) {
+            return null;
+        }
+
+        return ((FusiblePointOp)image).getSampleFunction();
+    }
+
+    /**
+     * Whether the pixels of an image are stored as one sample per band
+     * of its data type and are not color map indices.
+     */
+    private static boolean isSampleImage(RenderedImage image) {
+        return image.getSampleModel() instanceof ComponentSampleModel &&
+               !(image.getColorModel() instanceof IndexColorModel);
+    }
+}
@@ -58,7 +58,8 @@ import org.eclipse.imagen.media.util.ImageUtil;
  *
  * @since EA3
  */
-final class RescaleOpImage extends ColormapOpImage {
+final class RescaleOpImage extends ColormapOpImage
+    implements FusiblePointOp {
 
     /** The constants to be multiplied, one for each band. */
     protected double[] constants;
@@ -153,6 +154,65 @@ final class RescaleOpImage extends ColormapOpImage {
         }
     }
 
+    /**
+     * Returns the function computing this image from its source, or
+     * <code>null</code> if the colormap is transformed or the source
+     * and destination data types differ.
+     */
+    public SampleFunction getSampleFunction() {
+        final int dataType = getSampleModel().getDataType();
+        if (isColormapOperation() ||
+            getSource(0).getSampleModel().getDataType() != dataType) {
+            return null;
+        }
+
+        return new SampleFunction(dataType) {
+            void transform(double[] samples, int length, int band) {
+                double c = constants[band];
+                double o = offsets[band];
+                float fc = (float)c;
+                float fo = (float)o;
+
+                switch (dataType) {
+                case DataBuffer.TYPE_BYTE:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] =
+                            ImageUtil.clampRoundByte(samples[i] * c + o) & 0xFF;
+                    }
+                    break;
+                case DataBuffer.TYPE_USHORT:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = ImageUtil.clampRoundUShort(
+                                     (float)samples[i] * fc + fo) & 0xFFFF;
+                    }
+                    break;
+                case DataBuffer.TYPE_SHORT:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = ImageUtil.clampRoundShort(
+                                     (float)samples[i] * fc + fo);
+                    }
+                    break;
+                case DataBuffer.TYPE_INT:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] =
+                            ImageUtil.clampRoundInt(samples[i] * c + o);
+                    }
+                    break;
+                case DataBuffer.TYPE_FLOAT:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = ImageUtil.clampFloat(samples[i] * c + o);
+                    }
+                    break;
+                case DataBuffer.TYPE_DOUBLE:
+                    for (int i = 0; i < length; i++) {
+                        samples[i] = samples[i] * c + o;
+                    }
+                    break;
+                }
+            }
+        };
+    }
+
     /**
      * Rescales to the pixel values within a specified rectangle.
      *
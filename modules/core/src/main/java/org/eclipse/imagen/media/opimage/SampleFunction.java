@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.opimage;
+
+/**
+ * The computation of a point operation on the samples of one band,
+ * used by <code>FusedPointOpImage</code> to evaluate a chain of point
+ * operations in a single pass.
+ *
+ * <p> The samples passed to <code>transform()</code> are values of the
+ * data type of the source of the operation held as <code>double</code>s.
+ * On return they must be exactly the values the operation would have
+ * stored in a destination of data type <code>getDataType()</code>,
+ * including its rounding and clamping.
+ *
+ * @see FusiblePointOp
+ * @see FusedPointOpImage
+ */
+abstract class SampleFunction {
+
+    /** The data type of the samples produced. */
+    private final int dataType;
+
+    /**
+     * Constructor.
+     *
+     * @param dataType  The data type of the samples produced.
+     */
+    SampleFunction(int dataType) {
+        this.dataType = dataType;
+    }
+
+    /** Returns the data type of the samples produced. */
+    final int getDataType() {
+        return dataType;
+    }
+
+    /**
+     * Transforms samples of a band in place.
+     *
+     * @param samples  The samples.
+     * @param length  The number of samples to transform.
+     * @param band  The band of the samples.
+     */
+    abstract void transform(double[] samples, int length, int band);
+}
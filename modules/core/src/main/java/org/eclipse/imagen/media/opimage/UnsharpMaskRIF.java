@@ -19,9 +19,7 @@ package org.eclipse.imagen.media.opimage;
 
 import org.eclipse.imagen.media.util.ImageUtil;
 import java.awt.RenderingHints;
-import java.awt.image.DataBuffer;
 import java.awt.image.RenderedImage;
-import java.awt.image.SampleModel;
 import java.awt.image.renderable.ParameterBlock;
 import java.awt.image.renderable.RenderedImageFactory;
 import org.eclipse.imagen.BorderExtender;
@@ -31,6 +29,7 @@ import java.util.Map;
 
 /**
  * @see UnsharpMaskOpImage
+ * @see ConvolvePlanner
  */
 public class UnsharpMaskRIF implements RenderedImageFactory {
 
@@ -62,33 +61,10 @@ public class UnsharpMaskRIF implements RenderedImageFactory {
 
         KernelJAI kJAI = unRotatedKernel.getRotatedKernel();
 
-	RenderedImage source = paramBlock.getRenderedSource(0);
-        int dataType = source.getSampleModel().getDataType();
-
-        boolean dataTypeOk = (dataType == DataBuffer.TYPE_BYTE  ||
-                              dataType == DataBuffer.TYPE_SHORT ||
-                              dataType == DataBuffer.TYPE_INT);
-
-        if ((kJAI.getWidth()   == 3) && (kJAI.getHeight()  == 3) &&
-            (kJAI.getXOrigin() == 1) && (kJAI.getYOrigin() == 1) && dataTypeOk) {
-            return new Convolve3x3OpImage(source,
-                                          extender,
-                                          renderHints,
-                                          layout,
-                                          kJAI);
-        } else if (kJAI.isSeparable()) {
-           return new SeparableConvolveOpImage(source,
-                                               extender,
-                                               renderHints,
-                                               layout,
-                                               kJAI);
-
-        } else {
-            return new ConvolveOpImage(source,
-                                       extender,
-                                       renderHints,
-                                       layout,
-                                       kJAI);
-        }
+        return ConvolvePlanner.create(paramBlock.getRenderedSource(0),
+                                      extender,
+                                      renderHints,
+                                      layout,
+                                      kJAI);
     }
 }
@@ -33,11 +33,8 @@ import org.eclipse.imagen.tilecodec.TileCodecDescriptor;
 import org.eclipse.imagen.tilecodec.TileCodecParameterList;
 import org.eclipse.imagen.tilecodec.TileDecoderImpl;
 import org.eclipse.imagen.util.ImagingListener;
-import obsolete.image.codec.jpeg.JPEGDecodeParam;
-import obsolete.image.codec.jpeg.JPEGImageDecoder;
-import obsolete.image.codec.jpeg.JPEGCodec;
-import obsolete.image.codec.jpeg.JPEGQTable;
-import obsolete.awt.image.codec.JPEGParam;
+import org.eclipse.imagen.media.codec.JPEGEncodeParam;
+import org.eclipse.imagen.media.codecimpl.ImageIOJPEGCodec;
 import org.eclipse.imagen.media.util.ImageUtil;
 /**
  * A concrete implementation of the <code>TileDecoderImpl</code> class
@@ -118,12 +115,11 @@ public class JPEGTileDecoder extends TileDecoderImpl {
 	}
 
 	ByteArrayInputStream bais = new ByteArrayInputStream(data);
-        JPEGImageDecoder decoder = JPEGCodec.createJPEGDecoder(bais);
+	JPEGEncodeParam jep = new JPEGEncodeParam();
 
-        Raster ras = decoder.decodeAsRaster()
+        Raster ras = ImageIOJPEGCodec.decodeAsRaster(bais, jep)
 			.createTranslatedChild(location.x, location.y);
-	extractParameters(decoder.getJPEGDecodeParam(),
-			  ras.getSampleModel().getNumBands());
+	extractParameters(jep, ras.getSampleModel().getNumBands());
 
 	// set the original sample model to the decoded raster
 	if (sm != null) {
@@ -139,29 +135,30 @@ public class JPEGTileDecoder extends TileDecoderImpl {
 	return ras;
     }
 
-    private void extractParameters(JPEGDecodeParam jdp, int bandNum) {
+    private void extractParameters(JPEGEncodeParam jep, int bandNum) {
 
 	// extract the horizontal subsampling rates
 	int[] horizontalSubsampling = new int[bandNum];
 	for (int i = 0; i < bandNum; i++)
-	    horizontalSubsampling[i] = jdp.getHorizontalSubsampling(i);
+	    horizontalSubsampling[i] = jep.getHorizontalSubsampling(i);
 	paramList.setParameter("horizontalSubsampling", horizontalSubsampling);
 
 	// extract the vertical subsampling rates
 	int[] verticalSubsampling = new int[bandNum];
 	for (int i = 0; i < bandNum; i++)
-	    verticalSubsampling[i] = jdp.getVerticalSubsampling(i);
+	    verticalSubsampling[i] = jep.getVerticalSubsampling(i);
 	paramList.setParameter("verticalSubsampling", verticalSubsampling);
 
 	// if the quality is not set, extract the quantization tables from
 	// the stream; otherwise, define them with the default values.
-	if (!paramList.getBooleanParameter("qualitySet"))
-	    for (int i = 0; i < 4; i++) {
-		JPEGQTable table = jdp.getQTable(i);
-		paramList.setParameter("quantizationTable"+i,
-		    (table == null) ? null : table.getTable());
-	    }
-	else {
+	if (!paramList.getBooleanParameter("qualitySet")) {
+	    int[][] tables = new int[4][];
+	    for (int i = 0; i < bandNum; i++)
+		if (jep.isQTableSet(i))
+		    tables[jep.getQTableSlot(i)] = jep.getQTable(i);
+	    for (int i = 0; i < 4; i++)
+		paramList.setParameter("quantizationTable"+i, tables[i]);
+	} else {
 	    ParameterListDescriptor pld
 		= paramList.getParameterListDescriptor();
 	    for (int i = 0; i < 4; i++) {
@@ -173,19 +170,19 @@ public class JPEGTileDecoder extends TileDecoderImpl {
 	// extract the quantizationTableMapping
 	int[] quanTableMapping = new int[bandNum];
 	for (int i = 0; i < bandNum; i++)
-	    quanTableMapping[i] = jdp.getQTableComponentMapping(i);
+	    quanTableMapping[i] =
+		jep.isQTableSet(i) ? jep.getQTableSlot(i) : 0;
 	paramList.setParameter("quantizationTableMapping", quanTableMapping);
 
 	// extract the writeTableInfo and writeImageInfo
-	paramList.setParameter("writeTableInfo", jdp.isTableInfoValid());
-	paramList.setParameter("writeImageInfo", jdp.isImageInfoValid());
+	paramList.setParameter("writeTableInfo", !jep.getWriteImageOnly());
+	paramList.setParameter("writeImageInfo", true);
 
 	// extract the restart interval
-	paramList.setParameter("restartInterval", jdp.getRestartInterval());
+	paramList.setParameter("restartInterval", jep.getRestartInterval());
 
 	// define writeJFIFHeader by examing the APP0_MARKER is set or not
-	paramList.setParameter("writeJFIFHeader",
-			       jdp.getMarker(JPEGDecodeParam.APP0_MARKER));
+	paramList.setParameter("writeJFIFHeader", jep.getWriteJFIFHeader());
     }
 }
 
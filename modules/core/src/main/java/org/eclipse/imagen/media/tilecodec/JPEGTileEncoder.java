@@ -32,11 +32,8 @@ import org.eclipse.imagen.RasterFactory ;
 import org.eclipse.imagen.tilecodec.TileCodecDescriptor ;
 import org.eclipse.imagen.tilecodec.TileCodecParameterList ;
 import org.eclipse.imagen.tilecodec.TileEncoderImpl ;
-import obsolete.image.codec.jpeg.JPEGEncodeParam;
-import obsolete.image.codec.jpeg.JPEGImageEncoder;
-import obsolete.image.codec.jpeg.JPEGCodec;
-import obsolete.image.codec.jpeg.JPEGQTable;
-import obsolete.awt.image.codec.JPEGParam;
+import org.eclipse.imagen.media.codec.JPEGEncodeParam;
+import org.eclipse.imagen.media.codecimpl.ImageIOJPEGCodec;
 
 /**
  * A concrete implementation of the <code>TileEncoderImpl</code> class
@@ -90,12 +87,9 @@ public class JPEGTileEncoder extends TileEncoderImpl {
 
 	SampleModel sm = ras.getSampleModel() ;
 
-	JPEGEncodeParam j2dEP = convertToJ2DJPEGEncodeParam(paramList, sm) ;
-        ((JPEGParam)j2dEP).setWidth(ras.getWidth()) ; 
-	((JPEGParam)j2dEP).setHeight(ras.getHeight()) ;
+	JPEGEncodeParam jep = convertToJPEGEncodeParam(paramList, sm) ;
 
-	JPEGImageEncoder encoder = JPEGCodec.createJPEGEncoder(baos, j2dEP) ;
-	encoder.encode(ras) ;
+	ImageIOJPEGCodec.encode(ras, baos, jep) ;
 
 	byte[] data = baos.toByteArray() ;
 
@@ -111,7 +105,7 @@ public class JPEGTileEncoder extends TileEncoderImpl {
 	oos.close() ;
     }
 
-    private JPEGEncodeParam convertToJ2DJPEGEncodeParam(
+    private JPEGEncodeParam convertToJPEGEncodeParam(
 	TileCodecParameterList paramList, SampleModel sm) {
 
         if(sm == null)
@@ -119,7 +113,7 @@ public class JPEGTileEncoder extends TileEncoderImpl {
 
         int nbands = sm.getNumBands() ;
 
-        JPEGParam j2dJP = createDefaultJ2DJPEGEncodeParam(nbands) ;
+        JPEGEncodeParam jep = new JPEGEncodeParam() ;
 
         int[] hSubSamp
             = (int[])paramList.getObjectParameter("horizontalSubsampling") ;
@@ -129,43 +123,30 @@ public class JPEGTileEncoder extends TileEncoderImpl {
             = (int[])paramList.getObjectParameter("quantizationTableMapping") ;
 
         for(int i=0; i<nbands; i++) {
-            j2dJP.setHorizontalSubsampling(i, hSubSamp[i]) ;
-            j2dJP.setVerticalSubsampling(i, vSubSamp[i]) ;
+            jep.setHorizontalSubsampling(i, hSubSamp[i]) ;
+            jep.setVerticalSubsampling(i, vSubSamp[i]) ;
 
             int[] qTab
                  = (int[]) paramList.getObjectParameter("quantizationTable"+i) ;
 	    if(qTab != null && 
 	       qTab.equals(ParameterListDescriptor.NO_PARAMETER_DEFAULT)){ 
-		j2dJP.setQTableComponentMapping(i, qTabSlot[i]) ;
-		j2dJP.setQTable(qTabSlot[i], new JPEGQTable(qTab)) ;
+		jep.setQTable(i, qTabSlot[i], qTab) ;
 	    }
         }
 
         if(paramList.getBooleanParameter("qualitySet")) {
             float quality = paramList.getFloatParameter("quality") ;
-            j2dJP.setQuality(quality, true) ;
+            jep.setQuality(quality) ;
         }
 
         int rInt = paramList.getIntParameter("restartInterval") ;
-        j2dJP.setRestartInterval(rInt) ;
+        jep.setRestartInterval(rInt) ;
 
-        j2dJP.setImageInfoValid(paramList.getBooleanParameter("writeImageInfo")) ;
-        j2dJP.setTableInfoValid(paramList.getBooleanParameter("writeTableInfo")) ;
+        jep.setWriteImageOnly(!paramList.getBooleanParameter("writeTableInfo")) ;
+        jep.setWriteTablesOnly(!paramList.getBooleanParameter("writeImageInfo")) ;
 
-        if(paramList.getBooleanParameter("writeJFIFHeader")) {
-            j2dJP.setMarkerData(JPEGEncodeParam.APP0_MARKER, null) ;
-        }
-
-        return (JPEGEncodeParam)j2dJP ;
-    }
+        jep.setWriteJFIFHeader(paramList.getBooleanParameter("writeJFIFHeader")) ;
 
-    private JPEGParam createDefaultJ2DJPEGEncodeParam(int nbands){
-        if(nbands == 1)
-            return new JPEGParam(JPEGEncodeParam.COLOR_ID_GRAY, 1) ;
-        if(nbands == 3)
-            return new JPEGParam(JPEGEncodeParam.COLOR_ID_YCbCr, 3) ;
-        if(nbands == 4)
-            return new JPEGParam(JPEGEncodeParam.COLOR_ID_CMYK, 4) ;
-	return null ;
+        return jep ;
     }
 }
@@ -0,0 +1,1065 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.util;
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Observable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import org.eclipse.imagen.CachedTile;
+import org.eclipse.imagen.PlanarImage;
+import org.eclipse.imagen.TileCache;
+import org.eclipse.imagen.remote.SerializableRenderedImage;
+
+/**
+ * A <code>TileCache</code> implementation intended for highly
+ * concurrent use.  Unlike <code>SunTileCache</code>, which guards every
+ * operation with the monitor of the cache instance, this cache splits
+ * its entries over a number of independently locked segments, so that
+ * threads looking up or adding tiles only contend when their tiles hash
+ * to the same segment.  Memory usage and the diagnostic counters are
+ * maintained with atomic variables.
+ *
+ * <p> Each segment keeps its entries in access order.  When the memory
+ * usage exceeds the memory capacity, the least recently used tile of
+ * each segment is evicted in turn until the usage has dropped to
+ * <code>memoryThreshold</code> of the capacity.  The resulting policy
+ * is an approximation of the global LRU ordering maintained by
+ * <code>SunTileCache</code>.  If a tile <code>Comparator</code> has been
+ * set, tiles are instead evicted in the order it defines, falling back
+ * to the LRU policy if that does not free enough memory.  Likewise
+ * with cost-aware eviction enabled, tiles are evicted by GreedyDual-Size
+ * priority as described in <code>CostAwareTileCache</code>.
+ *
+ * <p> The cache may be installed using
+ * <pre>
+ *     JAI.getDefaultInstance().setTileCache(new ConcurrentTileCache(capacity));
+ * </pre>
+ * or supplied to individual operations with the
+ * <code>JAI.KEY_TILE_CACHE</code> rendering hint.  As with
+ * <code>SunTileCache</code>, the tile capacity is not used, and
+ * diagnostics are delivered to registered <code>Observer</code>s
+ * using the actions returned by
+ * <code>SunTileCache.getCachedTileActions()</code>.
+ *
+ * <p> An <code>OffHeapTileStore</code> may be attached as a second
+ * level.  Tiles evicted by memory control are then copied into the
+ * store, and a tile which is not in the cache is looked up in the store
+ * and, if found, added back to the cache instead of being recomputed.
+ *
+ * @see org.eclipse.imagen.TileCache
+ * @see SunTileCache
+ * @see OffHeapTileStore
+ */
+public final class ConcurrentTileCache extends Observable
+                                       implements CostAwareTileCache,
+                                                  CacheDiagnostics {
+
+    /** The default memory capacity of the cache (16 MB). */
+    private static final long DEFAULT_MEMORY_CAPACITY = 16L * 1024L * 1024L;
+
+    /** The initial capacity of each segment map. */
+    private static final int SEGMENT_INITIAL_CAPACITY = 64;
+
+    // diagnostic actions, identical to those of SunTileCache
+    private static final int ADD                 = 0;
+    private static final int REMOVE              = 1;
+    private static final int REMOVE_FROM_FLUSH   = 2;
+    private static final int REMOVE_FROM_MEMCON  = 3;
+    private static final int UPDATE_FROM_ADD     = 4;
+    private static final int UPDATE_FROM_GETTILE = 5;
+    private static final int ABOUT_TO_REMOVE     = 6;
+
+    /** The cache segments.  The length is a power of two. */
+    private final Segment[] segments;
+
+    /** Mask used to map a key hash to a segment. */
+    private final int segmentMask;
+
+    /** The memory capacity of the cache. */
+    private volatile long memoryCapacity;
+
+    /** The amount of memory to keep after memory control. */
+    private volatile float memoryThreshold = 0.75F;
+
+    /** Comparator used to order tile removal, or <code>null</code>. */
+    private volatile Comparator comparator = null;
+
+    /** Diagnostics enable/disable. */
+    private volatile boolean diagnostics = false;
+
+    /** The amount of memory currently being used by the cache. */
+    private final AtomicLong memoryUsage = new AtomicLong();
+
+    /** Tile count used for diagnostics. */
+    private final AtomicLong tileCount = new AtomicLong();
+
+    /** Cache hit count. */
+    private final LongAdder hitCount = new LongAdder();
+
+    /** Cache miss count. */
+    private final LongAdder missCount = new LongAdder();
+
+    /** Segment at which the next eviction sweep starts. */
+    private final AtomicInteger evictionCursor = new AtomicInteger();
+
+    /** Serializes memory control; lookups never take this lock. */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /** Whether tiles are evicted by GreedyDual-Size priority. */
+    private volatile boolean costAware = false;
+
+    /** The GreedyDual-Size inflation value; set under evictionLock. */
+    private volatile double inflation = 0.0;
+
+    /** Store receiving evicted tiles, or <code>null</code>. */
+    private volatile OffHeapTileStore secondLevel = null;
+
+    /**
+     * No args constructor. Use the DEFAULT_MEMORY_CAPACITY of 16 Megs.
+     */
+    public ConcurrentTileCache() {
+        this(DEFAULT_MEMORY_CAPACITY);
+    }
+
+    /**
+     * Constructs a cache with the given memory capacity, using a
+     * number of segments derived from the number of available
+     * processors.
+     *
+     * @param memoryCapacity  The maximum cache memory size in bytes.
+     *
+     * @throws IllegalArgumentException  If <code>memoryCapacity</code>
+     *         is less than 0.
+     */
+    public ConcurrentTileCache(long memoryCapacity) {
+        this(memoryCapacity,
+             4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a cache with the given memory capacity and
+     * concurrency level.  The concurrency level is the estimated number
+     * of threads accessing the cache simultaneously; it is rounded up
+     * to a power of two to give the number of segments.
+     *
+     * @param memoryCapacity  The maximum cache memory size in bytes.
+     * @param concurrencyLevel  The estimated number of concurrent threads.
+     *
+     * @throws IllegalArgumentException  If <code>memoryCapacity</code>
+     *         is less than 0 or <code>concurrencyLevel</code> is not
+     *         positive.
+     */
+    public ConcurrentTileCache(long memoryCapacity, int concurrencyLevel) {
+        if (memoryCapacity < 0) {
+            throw new IllegalArgumentException(JaiI18N.getString("SunTileCache"));
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException(
+                JaiI18N.getString("ConcurrentTileCache0"));
+        }
+
+        this.memoryCapacity = memoryCapacity;
+
+        int numSegments = 1;
+        while (numSegments < concurrencyLevel && numSegments < (1 << 16)) {
+            numSegments <<= 1;
+        }
+
+        segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment();
+        }
+        segmentMask = numSegments - 1;
+    }
+
+    /**
+     * Adds a tile to the cache.
+     *
+     * @param owner            The image the tile blongs to.
+     * @param tileX            The tile's X index within the image.
+     * @param tileY            The tile's Y index within the image.
+     * @param tile             The tile to be cached.
+     */
+    public void add(RenderedImage owner,
+                    int tileX,
+                    int tileY,
+                    Raster tile) {
+        add(owner, tileX, tileY, tile, null);
+    }
+
+    /**
+     * Adds a tile to the cache with an associated tile compute cost.
+     *
+     * <p> If the specified tile is already in the cache, it will not be
+     * cached again.  If by adding this tile, the cache exceeds the memory
+     * capacity, older tiles in the cache are removed to keep the cache
+     * memory usage under the specified limit.
+     *
+     * @param owner            The image the tile blongs to.
+     * @param tileX            The tile's X index within the image.
+     * @param tileY            The tile's Y index within the image.
+     * @param tile             The tile to be cached.
+     * @param tileCacheMetric  Metric for prioritizing tiles
+     */
+    public void add(RenderedImage owner,
+                    int tileX,
+                    int tileY,
+                    Raster tile,
+                    Object tileCacheMetric) {
+        add(owner, tileX, tileY, tile, tileCacheMetric, 0L);
+    }
+
+    /**
+     * Adds a tile to the cache with an associated tile compute cost
+     * and the time it took to compute.
+     *
+     * @param owner            The image the tile blongs to.
+     * @param tileX            The tile's X index within the image.
+     * @param tileY            The tile's Y index within the image.
+     * @param tile             The tile to be cached.
+     * @param tileCacheMetric  Metric for prioritizing tiles
+     * @param computeTime      The compute time of the tile in nanoseconds.
+     */
+    public void add(RenderedImage owner,
+                    int tileX,
+                    int tileY,
+                    Raster tile,
+                    Object tileCacheMetric,
+                    long computeTime) {
+
+        if ( memoryCapacity == 0 ) {
+            return;
+        }
+
+        if ( put(owner, tileX, tileY, tile, tileCacheMetric, computeTime) &&
+             memoryUsage.get() > memoryCapacity ) {
+            memoryControl(false);
+        }
+    }
+
+    /**
+     * Removes a tile from the cache.
+     *
+     * <p> If the specified tile is not in the cache, this method
+     * does nothing.
+     */
+    public void remove(RenderedImage owner,
+                       int tileX,
+                       int tileY) {
+
+        if ( memoryCapacity == 0 ) {
+            return;
+        }
+
+        TileKey key = new TileKey(owner, tileX, tileY);
+        Segment seg = segmentFor(key);
+
+        OffHeapTileStore store = secondLevel;
+        if ( store != null ) {
+            store.remove(key);
+        }
+
+        Entry ct;
+        seg.lock();
+        try {
+            ct = seg.map.get(key);
+        } finally {
+            seg.unlock();
+        }
+
+        if ( ct == null ) {
+            return;
+        }
+
+        // Notify observers that a tile is about to be removed, as
+        // SunTileCache does, before it is actually released.
+        ct.action = ABOUT_TO_REMOVE;
+        setChanged();
+        notifyObservers(ct);
+
+        if ( unlink(seg, ct) ) {
+            notifyDiagnostics(ct, REMOVE);
+        }
+    }
+
+    /**
+     * Retrieves a tile from the cache.
+     *
+     * <p> If the specified tile is not in the cache, this method
+     * returns <code>null</code>.  If the specified tile is in the
+     * cache, its last-access time is updated.
+     *
+     * @param owner  The image the tile blongs to.
+     * @param tileX  The tile's X index within the image.
+     * @param tileY  The tile's Y index within the image.
+     */
+    public Raster getTile(RenderedImage owner,
+                          int tileX,
+                          int tileY) {
+
+        if ( memoryCapacity == 0 ) {
+            return null;
+        }
+
+        TileKey key = new TileKey(owner, tileX, tileY);
+        Entry ct = lookup(key);
+        return ct != null ? ct.tile : reload(key, owner, tileX, tileY);
+    }
+
+    /**
+     * Retrieves a contiguous array of all tiles in the cache which are
+     * owned by the specified image.  May be <code>null</code> if there
+     * were no tiles in the cache.  The array contains no null entries.
+     * Tiles held by the second level store are included as copies but
+     * are not moved back into the cache.
+     *
+     * @param owner The <code>RenderedImage</code> to which the tiles belong.
+     * @return An array of all tiles owned by the specified image or
+     *         <code>null</code> if there are none currently in the cache.
+     */
+    public Raster[] getTiles(RenderedImage owner) {
+
+        if ( memoryCapacity == 0 ||
+             (tileCount.get() == 0 && secondLevel == null) ) {
+            return null;
+        }
+
+        int minTx = owner.getMinTileX();
+        int minTy = owner.getMinTileY();
+        int maxTx = minTx + owner.getNumXTiles();
+        int maxTy = minTy + owner.getNumYTiles();
+
+        Object ownerID = TileKey.ownerID(owner);
+        int numXTiles = owner.getNumXTiles();
+
+        ArrayList<Raster> temp = new ArrayList<Raster>();
+
+        for (int y = minTy; y < maxTy; y++) {
+            for (int x = minTx; x < maxTx; x++) {
+                TileKey key = new TileKey(ownerID, numXTiles, x, y);
+                Entry ct = lookup(key);
+                // Tiles of the second level are listed but not reloaded.
+                Raster tile = ct != null ? ct.tile : peek(key);
+                if ( tile != null ) {
+                    temp.add(tile);
+                }
+            }
+        }
+
+        return temp.isEmpty() ? null : temp.toArray(new Raster[temp.size()]);
+    }
+
+    /**
+     * Removes all the tiles that belong to a <code>RenderedImage</code>
+     * from the cache.
+     *
+     * @param owner  The image whose tiles are to be removed from the cache.
+     */
+    public void removeTiles(RenderedImage owner) {
+        if ( memoryCapacity > 0 &&
+             (tileCount.get() > 0 || secondLevel != null) ) {
+            int minTx = owner.getMinTileX();
+            int minTy = owner.getMinTileY();
+            int maxTx = minTx + owner.getNumXTiles();
+            int maxTy = minTy + owner.getNumYTiles();
+
+            for (int y=minTy; y<maxTy; y++) {
+                for (int x=minTx; x<maxTx; x++) {
+                    remove(owner, x, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds an array of tiles to the tile cache.  Memory control is
+     * performed once after all the tiles have been added.
+     *
+     * @param owner The <code>RenderedImage</code> that the tile belongs to.
+     * @param tileIndices An array of <code>Point</code>s containing the
+     *        <code>tileX</code> and <code>tileY</code> indices for each tile.
+     * @param tiles The array of tile <code>Raster</code>s containing tile data.
+     * @param tileCacheMetric Object which provides an ordering metric
+     *        associated with the <code>RenderedImage</code> owner.
+     */
+    public void addTiles(RenderedImage owner,
+                         Point[] tileIndices,
+                         Raster[] tiles,
+                         Object tileCacheMetric) {
+
+        if ( memoryCapacity == 0 ) {
+            return;
+        }
+
+        boolean added = false;
+        for ( int i = 0; i < tileIndices.length; i++ ) {
+            added |= put(owner, tileIndices[i].x, tileIndices[i].y,
+                         tiles[i], tileCacheMetric, 0L);
+        }
+
+        if ( added && memoryUsage.get() > memoryCapacity ) {
+            memoryControl(false);
+        }
+    }
+
+    /**
+     * Returns an array of tile <code>Raster</code>s from the cache.
+     * Any or all of the elements of the returned array may be <code>null</code>
+     * if the corresponding tile is not in the cache.
+     *
+     * @param owner The <code>RenderedImage</code> that the tile belongs to.
+     * @param tileIndices  An array of <code>Point</code>s containing the
+     *        <code>tileX</code> and <code>tileY</code> indices for each tile.
+     */
+    public Raster[] getTiles(RenderedImage owner, Point[] tileIndices) {
+
+        if ( memoryCapacity == 0 ) {
+            return null;
+        }
+
+        Object ownerID = TileKey.ownerID(owner);
+        int numXTiles = owner.getNumXTiles();
+
+        Raster[] tiles = new Raster[tileIndices.length];
+        for ( int i = 0; i < tiles.length; i++ ) {
+            TileKey key = new TileKey(ownerID, numXTiles,
+                                      tileIndices[i].x, tileIndices[i].y);
+            Entry ct = lookup(key);
+            tiles[i] = ct != null ? ct.tile :
+                reload(key, owner, tileIndices[i].x, tileIndices[i].y);
+        }
+
+        return tiles;
+    }
+
+    /** Removes -ALL- tiles from the cache and its second level. */
+    public void flush() {
+        hitCount.reset();
+        missCount.reset();
+
+        OffHeapTileStore store = secondLevel;
+        if ( store != null ) {
+            store.clear();
+        }
+
+        for (int i = 0; i < segments.length; i++) {
+            Segment seg = segments[i];
+            Entry[] removed;
+
+            seg.lock();
+            try {
+                removed = seg.map.values().toArray(new Entry[seg.map.size()]);
+                seg.map.clear();
+                for (int j = 0; j < removed.length; j++) {
+                    memoryUsage.addAndGet(-removed[j].memorySize);
+                    tileCount.decrementAndGet();
+                }
+            } finally {
+                seg.unlock();
+            }
+
+            if ( diagnostics ) {
+                for (int j = 0; j < removed.length; j++) {
+                    notifyDiagnostics(removed[j], REMOVE_FROM_FLUSH);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cache's tile capacity.
+     *
+     * <p> This implementation of <code>TileCache</code> does not use
+     * the tile capacity.  This method always returns 0.
+     */
+    public int getTileCapacity() { return 0; }
+
+    /**
+     * Sets the cache's tile capacity to the desired number of tiles.
+     *
+     * <p> This implementation of <code>TileCache</code> does not use
+     * the tile capacity.  This method does nothing.
+     *
+     * @param tileCapacity  The desired tile capacity for this cache
+     *        in number of tiles.
+     */
+    public void setTileCapacity(int tileCapacity) { }
+
+    /** Returns the cache's memory capacity in bytes. */
+    public long getMemoryCapacity() {
+        return memoryCapacity;
+    }
+
+    /**
+     * Sets the cache's memory capacity to the desired number of bytes.
+     * If the new memory capacity is smaller than the amount of memory
+     * currently being used by this cache, tiles are removed from the
+     * cache until the memory usage is less than the specified memory
+     * capacity.
+     *
+     * @param memoryCapacity  The desired memory capacity for this cache
+     *        in bytes.
+     *
+     * @throws IllegalArgumentException  If <code>memoryCapacity</code>
+     *         is less than 0.
+     */
+    public void setMemoryCapacity(long memoryCapacity) {
+        if (memoryCapacity < 0) {
+            throw new IllegalArgumentException(JaiI18N.getString("SunTileCache"));
+        } else if ( memoryCapacity == 0 ) {
+            flush();
+        }
+
+        this.memoryCapacity = memoryCapacity;
+
+        if ( memoryUsage.get() > memoryCapacity ) {
+            memoryControl();
+        }
+    }
+
+    /** Enable Tile Monitoring and Diagnostics */
+    public void enableDiagnostics() {
+        diagnostics = true;
+    }
+
+    /** Turn off diagnostic notification */
+    public void disableDiagnostics() {
+        diagnostics = false;
+    }
+
+    public long getCacheTileCount() {
+        return tileCount.get();
+    }
+
+    public long getCacheMemoryUsed() {
+        return memoryUsage.get();
+    }
+
+    public long getCacheHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getCacheMissCount() {
+        return missCount.sum();
+    }
+
+    /** Reset hit and miss counters. */
+    public void resetCounts() {
+        hitCount.reset();
+        missCount.reset();
+    }
+
+    /** Set the memory threshold value. */
+    public void setMemoryThreshold(float mt) {
+        if ( mt < 0.0F || mt > 1.0F ) {
+            throw new IllegalArgumentException(JaiI18N.getString("SunTileCache"));
+        } else {
+            memoryThreshold = mt;
+            memoryControl();
+        }
+    }
+
+    /** Returns the current <code>memoryThreshold</code>. */
+    public float getMemoryThreshold() {
+        return memoryThreshold;
+    }
+
+    /**
+     *  The <code>Comparator</code> is used to produce an
+     *  ordered list of tiles based on a user defined
+     *  compute cost or priority metric.  This determines
+     *  which tiles are subject to "ordered" removal
+     *  during a memory control operation.
+     */
+    public void setTileComparator(Comparator c) {
+        comparator = c;
+    }
+
+    /** Return the current comparator. */
+    public Comparator getTileComparator() {
+        return comparator;
+    }
+
+    /**
+     * Enables or disables GreedyDual-Size eviction, which favors
+     * keeping the tiles which took the longest to compute per byte.
+     * A tile <code>Comparator</code>, if set, takes precedence.
+     */
+    public void setCostAwareEviction(boolean enable) {
+        costAware = enable;
+    }
+
+    /** Returns whether GreedyDual-Size eviction is enabled. */
+    public boolean isCostAwareEviction() {
+        return costAware;
+    }
+
+    /**
+     * Attaches a second level store receiving the tiles evicted from
+     * this cache, or detaches it if <code>store</code> is
+     * <code>null</code>.  The store is not cleared when it is detached.
+     *
+     * @param store  The second level store, or <code>null</code>.
+     */
+    public void setSecondLevelStore(OffHeapTileStore store) {
+        secondLevel = store;
+    }
+
+    /** Returns the second level store, or <code>null</code> if none. */
+    public OffHeapTileStore getSecondLevelStore() {
+        return secondLevel;
+    }
+
+    /** Returns a string representation of the class object. */
+    public String toString() {
+        return getClass().getName() + "@" + Integer.toHexString(hashCode()) +
+               ": memoryCapacity = " + Long.toHexString(memoryCapacity) +
+               " memoryUsage = " + Long.toHexString(memoryUsage.get()) +
+               " #tilesInCache = " + Long.toString(tileCount.get()) +
+               " #segments = " + Integer.toString(segments.length);
+    }
+
+    /**
+     * Removes tiles from the cache until the memory usage is
+     * memoryThreshold % of that of the memory capacity.  Tiles are
+     * removed in the order defined by the tile comparator if one is
+     * set, and in approximate least-recently-used order otherwise.
+     */
+    public void memoryControl() {
+        memoryControl(true);
+    }
+
+    /**
+     * Performs memory control.  If <code>wait</code> is
+     * <code>false</code> and another thread is already reclaiming
+     * memory, returns immediately and leaves the work to that thread.
+     */
+    private void memoryControl(boolean wait) {
+        if ( wait ) {
+            evictionLock.lock();
+        } else if ( !evictionLock.tryLock() ) {
+            return;
+        }
+
+        try {
+            long limit = (long)(memoryCapacity * memoryThreshold);
+
+            Comparator c = comparator;
+            if ( c != null ) {
+                customMemoryControl(c, limit);
+            } else if ( costAware ) {
+                customMemoryControl(PRIORITY_ORDER, limit);
+            }
+            if ( memoryUsage.get() > limit ) {
+                standardMemoryControl(limit);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    // approximate LRU: evict the eldest entry of each segment in turn
+    private void standardMemoryControl(long limit) {
+        int numSegments = segments.length;
+        int idx = evictionCursor.get();
+        int idle = 0;
+
+        while ( memoryUsage.get() > limit && idle < numSegments ) {
+            Segment seg = segments[idx & segmentMask];
+            idx++;
+
+            Entry ct = null;
+            seg.lock();
+            try {
+                Iterator<Entry> iter = seg.map.values().iterator();
+                if ( iter.hasNext() ) {
+                    ct = iter.next();
+                    iter.remove();
+                    memoryUsage.addAndGet(-ct.memorySize);
+                    tileCount.decrementAndGet();
+                }
+            } finally {
+                seg.unlock();
+            }
+
+            if ( ct == null ) {
+                idle++;
+            } else {
+                idle = 0;
+                spill(ct);
+                notifyDiagnostics(ct, REMOVE_FROM_MEMCON);
+            }
+        }
+
+        evictionCursor.set(idx);
+    }
+
+    // comparator based memory control on a snapshot of the entries
+    private void customMemoryControl(Comparator c, long limit) {
+        ArrayList<Entry> snapshot = new ArrayList<Entry>();
+        for (int i = 0; i < segments.length; i++) {
+            Segment seg = segments[i];
+            seg.lock();
+            try {
+                for (Entry ct : seg.map.values()) {
+                    snapshot.add(ct.copy());
+                }
+            } finally {
+                seg.unlock();
+            }
+        }
+
+        Entry[] ordered = snapshot.toArray(new Entry[snapshot.size()]);
+        Arrays.sort(ordered, c);
+
+        for (int i = 0; i < ordered.length && memoryUsage.get() > limit; i++) {
+            Entry ct = ordered[i].origin;
+            if ( unlink(segmentFor(ct.key), ct) ) {
+                if ( c == PRIORITY_ORDER ) {
+                    // age the remaining tiles
+                    inflation = ordered[i].priority;
+                }
+                spill(ct);
+                notifyDiagnostics(ct, REMOVE_FROM_MEMCON);
+            }
+        }
+    }
+
+    /**
+     * Inserts or refreshes a tile.  Returns <code>true</code> if a new
+     * entry was added to the cache.
+     */
+    private boolean put(RenderedImage owner,
+                        int tileX,
+                        int tileY,
+                        Raster tile,
+                        Object tileCacheMetric,
+                        long computeTime) {
+
+        TileKey key = new TileKey(owner, tileX, tileY);
+        Segment seg = segmentFor(key);
+        Entry ct;
+        int action;
+
+        seg.lock();
+        try {
+            ct = seg.map.get(key);
+            if ( ct != null ) {
+                ct.touch(inflation);
+                action = UPDATE_FROM_ADD;
+            } else {
+                ct = new Entry(key, owner, tileX, tileY, tile,
+                               tileCacheMetric, computeTime, inflation);
+
+                // Don't cache tile if adding it would provoke memoryControl()
+                // which would in turn only end up removing the tile.
+                long capacity = memoryCapacity;
+                if ( memoryUsage.get() + ct.memorySize > capacity &&
+                     ct.memorySize > (long)(capacity * memoryThreshold) ) {
+                    return false;
+                }
+
+                seg.map.put(key, ct);
+                memoryUsage.addAndGet(ct.memorySize);
+                tileCount.incrementAndGet();
+                action = ADD;
+            }
+        } finally {
+            seg.unlock();
+        }
+
+        if ( action == UPDATE_FROM_ADD ) {
+            hitCount.increment();
+        }
+        notifyDiagnostics(ct, action);
+
+        return action == ADD;
+    }
+
+    /** Looks up an entry and updates its access order and counters. */
+    private Entry lookup(TileKey key) {
+        Segment seg = segmentFor(key);
+        Entry ct;
+
+        seg.lock();
+        try {
+            ct = seg.map.get(key);
+            if ( ct != null ) {
+                ct.touch(inflation);
+            }
+        } finally {
+            seg.unlock();
+        }
+
+        if ( ct == null ) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+            notifyDiagnostics(ct, UPDATE_FROM_GETTILE);
+        }
+
+        return ct;
+    }
+
+    /** Copies an evicted tile into the second level store, if any. */
+    private void spill(Entry ct) {
+        OffHeapTileStore store = secondLevel;
+        if ( store != null && ct.owner.get() != null ) {
+            store.put(ct.key, ct.tile);
+        }
+    }
+
+    /**
+     * Looks up a tile missing from the cache in the second level store.
+     * If found, the tile is moved back into the cache.
+     */
+    private Raster reload(TileKey key, RenderedImage owner,
+                          int tileX, int tileY) {
+        OffHeapTileStore store = secondLevel;
+        if ( store == null ) {
+            return null;
+        }
+
+        Raster tile = store.get(key);
+        if ( tile != null ) {
+            store.remove(key);
+            add(owner, tileX, tileY, tile, null);
+        }
+        return tile;
+    }
+
+    /**
+     * Returns a copy of a tile missing from the cache from the second
+     * level store, without moving it back into the cache.
+     */
+    private Raster peek(TileKey key) {
+        OffHeapTileStore store = secondLevel;
+        return store != null ? store.peek(key) : null;
+    }
+
+    /**
+     * Removes the given entry if it is still the one mapped to its key.
+     * Returns <code>true</code> if the entry was removed.
+     */
+    private boolean unlink(Segment seg, Entry ct) {
+        seg.lock();
+        try {
+            if ( !seg.map.remove(ct.key, ct) ) {
+                return false;
+            }
+            memoryUsage.addAndGet(-ct.memorySize);
+            tileCount.decrementAndGet();
+            return true;
+        } finally {
+            seg.unlock();
+        }
+    }
+
+    private Segment segmentFor(TileKey key) {
+        int h = key.hash;
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+
+    private void notifyDiagnostics(Entry ct, int action) {
+        if ( diagnostics ) {
+            ct.action = action;
+            setChanged();
+            notifyObservers(ct);
+        }
+    }
+
+    /** Orders entries by GreedyDual-Size priority, then by age. */
+    private static final Comparator PRIORITY_ORDER = new Comparator() {
+        public int compare(Object o1, Object o2) {
+            Entry e1 = (Entry)o1;
+            Entry e2 = (Entry)o2;
+            int c = Double.compare(e1.priority, e2.priority);
+            if ( c == 0 ) {
+                c = Long.compare(e1.timeStamp, e2.timeStamp);
+            }
+            return c;
+        }
+    };
+
+    /** A lock guarding an access-ordered map of cache entries. */
+    private static final class Segment extends ReentrantLock {
+        final LinkedHashMap<TileKey, Entry> map =
+            new LinkedHashMap<TileKey, Entry>(SEGMENT_INITIAL_CAPACITY,
+                                              0.75F, true);
+    }
+
+    /**
+     * The cache key.  The owner is identified in the same way as by
+     * <code>SunCachedTile.hashKey()</code>, by its image ID if it has
+     * one and by its hash code otherwise, without holding a strong
+     * reference to it.
+     */
+    private static final class TileKey {
+        final Object ownerID;
+        final long index;
+        final int hash;
+
+        TileKey(RenderedImage owner, int tileX, int tileY) {
+            this(ownerID(owner), owner.getNumXTiles(), tileX, tileY);
+        }
+
+        TileKey(Object ownerID, int numXTiles, int tileX, int tileY) {
+            this.ownerID = ownerID;
+            this.index = tileY * (long)numXTiles + tileX;
+            this.hash = 31 * ownerID.hashCode() + Long.hashCode(index);
+        }
+
+        static Object ownerID(RenderedImage owner) {
+            Object imageID = null;
+            if (owner instanceof PlanarImage) {
+                imageID = ((PlanarImage)owner).getImageID();
+            } else if (owner instanceof SerializableRenderedImage) {
+                imageID = ((SerializableRenderedImage)owner).getImageID();
+            }
+            return imageID != null ? imageID : Integer.valueOf(owner.hashCode());
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TileKey)) {
+                return false;
+            }
+            TileKey k = (TileKey)o;
+            return index == k.index && hash == k.hash &&
+                   ownerID.equals(k.ownerID);
+        }
+    }
+
+    /** Information associated with a cached tile. */
+    private static final class Entry implements CachedTile {
+        final TileKey key;
+        final WeakReference owner;
+        final Raster tile;
+        final int tileX;
+        final int tileY;
+        final Object tileCacheMetric;
+        final long memorySize;
+        final long computeTime;
+        volatile long timeStamp;
+        volatile double priority;
+        volatile int action = 0;
+
+        /** For snapshot copies, the live entry; otherwise this entry. */
+        final Entry origin;
+
+        Entry(TileKey key, RenderedImage owner, int tileX, int tileY,
+              Raster tile, Object tileCacheMetric,
+              long computeTime, double inflation) {
+            this.key = key;
+            this.owner = new WeakReference(owner);
+            this.tile = tile;
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.tileCacheMetric = tileCacheMetric;
+            this.computeTime = computeTime;
+            this.origin = this;
+
+            DataBuffer db = tile.getDataBuffer();
+            memorySize = DataBuffer.getDataTypeSize(db.getDataType()) / 8L *
+                         db.getSize() * db.getNumBanks();
+
+            touch(inflation);
+        }
+
+        private Entry(Entry e) {
+            this.key = e.key;
+            this.owner = e.owner;
+            this.tile = e.tile;
+            this.tileX = e.tileX;
+            this.tileY = e.tileY;
+            this.tileCacheMetric = e.tileCacheMetric;
+            this.memorySize = e.memorySize;
+            this.computeTime = e.computeTime;
+            this.timeStamp = e.timeStamp;
+            this.priority = e.priority;
+            this.action = e.action;
+            this.origin = e;
+        }
+
+        /** Records an access and resets the eviction priority. */
+        void touch(double inflation) {
+            timeStamp = System.nanoTime();
+            priority = memorySize > 0 ?
+                inflation + (double)computeTime / memorySize : inflation;
+        }
+
+        /** Returns a copy whose time stamp will not change while sorting. */
+        Entry copy() {
+            return new Entry(this);
+        }
+
+        public Raster getTile() {
+            return tile;
+        }
+
+        public RenderedImage getOwner() {
+            return (RenderedImage)owner.get();
+        }
+
+        public long getTileTimeStamp() {
+            return timeStamp;
+        }
+
+        public Object getTileCacheMetric() {
+            return tileCacheMetric;
+        }
+
+        public long getTileSize() {
+            return memorySize;
+        }
+
+        public long getTileComputeTime() {
+            return computeTime;
+        }
+
+        public int getAction() {
+            return action;
+        }
+
+        public String toString() {
+            return getClass().getName() + "@" + Integer.toHexString(hashCode()) +
+                   ": tileX = " + Integer.toString(tileX) +
+                   " tileY = " + Integer.toString(tileY) +
+                   " memorySize = " + Long.toString(memorySize) +
+                   " timeStamp = " + Long.toString(timeStamp);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.util;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import org.eclipse.imagen.TileCache;
+
+/**
+ * A <code>TileCache</code> which is told how long each tile took to
+ * compute, and which can use that cost to decide which tiles to evict.
+ * <code>OpImage</code> supplies the compute time of the tiles it computes
+ * on demand to caches implementing this interface.
+ *
+ * <p> With cost-aware eviction enabled, tiles are evicted following the
+ * GreedyDual-Size policy: each tile has a priority equal to its compute
+ * time per byte plus an inflation value, set when it is added or
+ * accessed.  Memory control evicts the tiles of lowest priority and
+ * raises the inflation value to the priority of the last tile evicted,
+ * so that tiles which are expensive to recompute in proportion to their
+ * size stay longer in the cache, while tiles which are not accessed
+ * anymore eventually age out.  Tiles whose compute time is unknown have
+ * a cost of zero.
+ *
+ * @see SunTileCache
+ * @see ConcurrentTileCache
+ * @see org.eclipse.imagen.CachedTile#getTileComputeTime()
+ */
+public interface CostAwareTileCache extends TileCache {
+
+    /**
+     * Adds a tile to the cache together with the time it took to
+     * compute, including the time spent obtaining source tiles.
+     *
+     * @param owner The <code>RenderedImage</code> that the tile belongs to.
+     * @param tileX The X index of the tile in the owner's tile grid.
+     * @param tileY The Y index of the tile in the owner's tile grid.
+     * @param data A <code>Raster</code> containing the tile data.
+     * @param tileCacheMetric An <code>Object</code> as a tile metric.
+     * @param computeTime The compute time of the tile in nanoseconds.
+     */
+    void add(RenderedImage owner, int tileX, int tileY, Raster data,
+             Object tileCacheMetric, long computeTime);
+
+    /**
+     * Enables or disables cost-aware eviction.  A tile
+     * <code>Comparator</code>, if set, still takes precedence.
+     */
+    void setCostAwareEviction(boolean enable);
+
+    /** Returns whether cost-aware eviction is enabled. */
+    boolean isCostAwareEviction();
+}
@@ -0,0 +1,740 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.util;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.image.Raster;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.eclipse.imagen.OpImage;
+import org.eclipse.imagen.PlanarImage;
+import org.eclipse.imagen.TileCache;
+import org.eclipse.imagen.TileComputationListener;
+import org.eclipse.imagen.TileRequest;
+import org.eclipse.imagen.TileScheduler;
+import org.eclipse.imagen.util.ImagingException;
+import org.eclipse.imagen.util.ImagingListener;
+
+/**
+ * A <code>TileScheduler</code> implementation built on work-stealing
+ * <code>ForkJoinPool</code>s.  Compared to <code>SunTileScheduler</code>,
+ * which hands jobs to its <code>WorkerThread</code>s through a single
+ * monitor-guarded queue, tile jobs submitted to this scheduler are
+ * distributed over per-thread work queues, and a blocking request for
+ * many tiles is split recursively so that idle workers steal the
+ * remaining halves.  Threads which block on a tile being computed by
+ * another thread are compensated by the pool, so nested requests made
+ * while computing source tiles do not starve it.
+ *
+ * <p> The parallelism is the number of worker threads of the pool used
+ * by <code>scheduleTiles()</code>; a separate pool sized by the
+ * prefetch parallelism serves <code>prefetchTiles()</code>.  As for
+ * <code>SunTileScheduler</code>, a parallelism of zero causes all tiles
+ * to be computed in the calling thread.  Changes to the parallelism or
+ * priority take effect for requests issued after the change; the
+ * previous pool completes the jobs already submitted to it.
+ *
+ * <p> Optionally, the tiles of source images, that is images having no
+ * sources of their own such as those produced by the "FileLoad",
+ * "URL" or "IIP" operations, may be read on virtual threads when they
+ * are requested through the non-blocking <code>scheduleTiles()</code>
+ * or <code>prefetchTiles()</code> methods.  Such reads are usually
+ * bound by I/O rather than by the processors, so they do not need to
+ * occupy pool workers.  If the runtime does not support virtual
+ * threads the pools are used instead.
+ *
+ * <p> Tile cancellation removes tiles which have not yet started from
+ * further processing; tiles being computed are allowed to complete.
+ * <code>TileComputationListener</code>s are invoked by the thread
+ * which computed or cancelled the tile.
+ *
+ * <p> The scheduler may be installed using
+ * <code>JAI.setTileScheduler()</code> or supplied to individual
+ * operations with the <code>JAI.KEY_TILE_SCHEDULER</code> hint.
+ *
+ * @see org.eclipse.imagen.TileScheduler
+ * @see SunTileScheduler
+ */
+public final class ForkJoinTileScheduler implements TileScheduler {
+
+    /** The default number of prefetch worker threads. */
+    private static final int NUM_PREFETCH_THREADS_DEFAULT = 1;
+
+    /** The instance counter used to compose thread names. */
+    private static final AtomicInteger numInstances = new AtomicInteger();
+
+    /** Factory for virtual thread executors, or <code>null</code>. */
+    private static final java.lang.reflect.Method newVirtualThreadExecutor =
+        findVirtualThreadExecutorFactory();
+
+    /** The name of this instance. */
+    private final String nameOfThisInstance;
+
+    /** Whether source tiles are read on virtual threads. */
+    private final boolean virtualSourceThreads;
+
+    /** The worker parallelism. */
+    private volatile int parallelism;
+
+    /** The prefetch parallelism. */
+    private volatile int prefetchParallelism = NUM_PREFETCH_THREADS_DEFAULT;
+
+    /** The worker thread priority. */
+    private volatile int priority = Thread.NORM_PRIORITY;
+
+    /** The prefetch thread priority. */
+    private volatile int prefetchPriority = Thread.MIN_PRIORITY;
+
+    /** The pool computing standard jobs; guarded by <code>this</code>. */
+    private ForkJoinPool pool = null;
+
+    /** The priority of the threads of <code>pool</code>. */
+    private int poolPriority;
+
+    /** The pool computing prefetch jobs; guarded by <code>this</code>. */
+    private ForkJoinPool prefetchPool = null;
+
+    /** The priority of the threads of <code>prefetchPool</code>. */
+    private int prefetchPoolPriority;
+
+    /** Executor running source tile reads on virtual threads. */
+    private Executor virtualExecutor = null;
+
+    /**
+     * Constructor.  The parallelism defaults to the number of available
+     * processors and the prefetch parallelism to 1.
+     */
+    public ForkJoinTileScheduler() {
+        this(Runtime.getRuntime().availableProcessors(),
+             NUM_PREFETCH_THREADS_DEFAULT, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param parallelism  The number of worker threads to do tile computation.
+     *        If this number is 0, no multi-threading is used.
+     * @param prefetchParallelism  The number of threads to do prefetching.
+     *        If this number is 0, no multi-threading is used.
+     * @param virtualSourceThreads  Whether non-blocking and prefetch
+     *        requests for tiles of images without sources are executed
+     *        on virtual threads when the runtime supports them.
+     *
+     * @throws IllegalArgumentException if either parallelism is negative.
+     */
+    public ForkJoinTileScheduler(int parallelism,
+                                 int prefetchParallelism,
+                                 boolean virtualSourceThreads) {
+        setParallelism(parallelism);
+        setPrefetchParallelism(prefetchParallelism);
+        this.virtualSourceThreads = virtualSourceThreads;
+        nameOfThisInstance = "ForkJoinTileScheduler" +
+                             numInstances.getAndIncrement();
+    }
+
+    /**
+     * Schedules a single tile for computation.  The tile is computed in
+     * the calling thread.  Concurrent requests for the same tile are not
+     * coalesced here but by <code>OpImage.getTile()</code>, which calls
+     * this method once per tile missing from the cache.
+     *
+     * @param owner  The image the tiles belong to.
+     * @param tileX  The tile's X index.
+     * @param tileY  The tile's Y index.
+     *
+     * @exception IllegalArgumentException if <code>owner</code> is
+     * <code>null</code>.
+     *
+     * @return  The computed tile
+     */
+    public Raster scheduleTile(OpImage owner,
+                               int tileX,
+                               int tileY) {
+        if (owner == null) {
+            throw new IllegalArgumentException(JaiI18N.getString("SunTileScheduler1"));
+        }
+
+        Raster tile = null;
+        try {
+            try {
+                tile = TileInstrumentation.computeTile(owner, tileX, tileY);
+            } catch (OutOfMemoryError e) {
+                // Empty the cache and re-attempt to compute the tile.
+                TileCache tileCache = owner.getTileCache();
+                if (tileCache != null) {
+                    tileCache.flush();
+                    System.gc(); //slow
+                }
+                tile = TileInstrumentation.computeTile(owner, tileX, tileY);
+            }
+        } catch (Throwable e) {
+            if (e instanceof Error) {
+                throw (Error)e;
+            } else if (e instanceof RuntimeException) {
+                sendExceptionToListener(JaiI18N.getString("SunTileScheduler6"), e);
+            } else {
+                String message = JaiI18N.getString("SunTileScheduler6");
+                sendExceptionToListener(message,
+                                        new ImagingException(message, e));
+            }
+        }
+
+        return tile;
+    }
+
+    /**
+     * Schedules multiple tiles of an image for computation.  The
+     * tiles are computed by the worker pool, the calling thread
+     * waiting for all of them to complete.
+     *
+     * @param owner  The image the tiles belong to.
+     * @param tileIndices  An array of tile X and Y indices.
+     *
+     * @return  An array of computed tiles.
+     */
+    public Raster[] scheduleTiles(OpImage owner,
+                                  Point tileIndices[]) {
+        if (owner == null || tileIndices == null) {
+            throw new IllegalArgumentException(JaiI18N.getString("SunTileScheduler0"));
+        }
+
+        int numTiles = tileIndices.length;
+        Raster[] tiles = new Raster[numTiles];
+
+        ForkJoinPool workers = getPool(false);
+
+        Exception exception;
+        if (workers == null || numTiles <= 1) {
+            exception = compute(owner, tileIndices, tiles, 0, numTiles);
+        } else {
+            TileTask task = new TileTask(owner, tileIndices, tiles,
+                                         0, numTiles,
+                                         new AtomicReference());
+            if (ForkJoinTask.getPool() == workers) {
+                task.invoke();
+            } else {
+                workers.invoke(task);
+            }
+            exception = (Exception)task.exception.get();
+        }
+
+        if (exception != null) {
+            String message = JaiI18N.getString("SunTileScheduler7");
+            sendExceptionToListener(message,
+                                    new ImagingException(message, exception));
+        }
+
+        return tiles;
+    }
+
+    /**
+     * Schedule a list of tiles for computation.  The supplied listeners
+     * will be notified after each tile has been computed.  This method
+     * does not block unless the parallelism is zero, in which case the
+     * tiles are computed in the calling thread.
+     */
+    public TileRequest scheduleTiles(PlanarImage target, Point[] tileIndices,
+                                     TileComputationListener[] tileListeners) {
+        if (target == null || tileIndices == null) {
+            throw new IllegalArgumentException(JaiI18N.getString("SunTileScheduler4"));
+        }
+
+        ForkJoinRequest request =
+            new ForkJoinRequest(this, target, tileIndices, tileListeners);
+
+        Executor executor = getExecutor(target, false);
+        for (int i = 0; i < request.tiles.length; i++) {
+            RequestTile tile = request.tiles[i];
+            if (executor == null) {
+                tile.run();
+            } else {
+                executor.execute(tile);
+            }
+        }
+
+        return request;
+    }
+
+    /**
+     * Issues an advisory cancellation request to the
+     * <code>TileScheduler</code> stating that the indicated tiles of the
+     * specified request should not be processed.  Tiles which have not
+     * started are withdrawn and the listeners of the request notified;
+     * computation already in progress is not terminated.
+     */
+    public void cancelTiles(TileRequest request, Point[] tileIndices) {
+        if (request == null) {
+            throw new IllegalArgumentException(JaiI18N.getString("SunTileScheduler3"));
+        }
+        if (!(request instanceof ForkJoinRequest)) {
+            return;
+        }
+
+        ForkJoinRequest req = (ForkJoinRequest)request;
+        if (tileIndices == null || tileIndices.length == 0) {
+            for (int i = 0; i < req.tiles.length; i++) {
+                req.tiles[i].cancel();
+            }
+        } else {
+            for (int i = 0; i < tileIndices.length; i++) {
+                RequestTile tile = (RequestTile)req.tileMap.get(tileIndices[i]);
+                if (tile != null) {
+                    tile.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Prefetchs a list of tiles of an image.
+     *
+     * @param owner  The image the tiles belong to.
+     * @param tileIndices  An array of tile X and Y indices.
+     */
+    public void prefetchTiles(PlanarImage owner,
+                              Point[] tileIndices) {
+        if (owner == null || tileIndices == null) {
+            throw new IllegalArgumentException(JaiI18N.getString("SunTileScheduler0"));
+        }
+
+        Executor executor = getExecutor(owner, true);
+        if (executor == null) {
+            Exception e = compute(owner, tileIndices,
+                                  new Raster[tileIndices.length],
+                                  0, tileIndices.length);
+            if (e != null) {
+                String message = JaiI18N.getString("SunTileScheduler7");
+                sendExceptionToListener(message,
+                                        new ImagingException(message, e));
+            }
+            return;
+        }
+
+        for (int i = 0; i < tileIndices.length; i++) {
+            final PlanarImage image = owner;
+            final Point p = tileIndices[i];
+            executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            image.getTile(p.x, p.y);
+                        } catch (Exception e) {
+                            String message = JaiI18N.getString("SunTileScheduler7");
+                            sendExceptionToListener(message,
+                                                    new ImagingException(message, e));
+                        }
+                    }
+                });
+        }
+    }
+
+    /**
+     * Sets the number of worker threads used by
+     * <code>scheduleTiles()</code>.  A parallelism value of zero
+     * indicates that all tile computation will be effected in the
+     * calling thread.
+     *
+     * @param parallelism The suggested degree of parallelism.
+     * @throws IllegalArgumentException if <code>parallelism</code>
+     *         is negative.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException(JaiI18N.getString("SunTileScheduler2"));
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the degree of parallelism of the scheduler.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Identical to <code>setParallelism()</code> but applies only to
+     * <code>prefetchTiles()</code>.
+     */
+    public void setPrefetchParallelism(int parallelism) {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException(JaiI18N.getString("SunTileScheduler2"));
+        }
+        prefetchParallelism = parallelism;
+    }
+
+    /**
+     * Identical to <code>getParallelism()</code> but applies only to
+     * <code>prefetchTiles()</code>.
+     */
+    public int getPrefetchParallelism() {
+        return prefetchParallelism;
+    }
+
+    /**
+     * Sets the priority of the worker threads used for tile
+     * computation.  Its initial value is <code>Thread.NORM_PRIORITY</code>.
+     *
+     * @param priority The suggested priority.
+     */
+    public void setPriority(int priority) {
+        this.priority = Math.max(Math.min(priority, Thread.MAX_PRIORITY),
+                                 Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Returns the priority of <code>scheduleTiles()</code> processing.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Identical to <code>setPriority()</code> but applies only to
+     * <code>prefetchTiles()</code>.  Its initial value is
+     * <code>Thread.MIN_PRIORITY</code>.
+     */
+    public void setPrefetchPriority(int priority) {
+        prefetchPriority = Math.max(Math.min(priority, Thread.MAX_PRIORITY),
+                                    Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Identical to <code>getPriority()</code> but applies only to
+     * <code>prefetchTiles()</code>.
+     */
+    public int getPrefetchPriority() {
+        return prefetchPriority;
+    }
+
+    /**
+     * Returns whether non-blocking and prefetch requests for tiles of
+     * images without sources are executed on virtual threads.
+     */
+    public boolean isVirtualSourceThreads() {
+        return virtualSourceThreads && newVirtualThreadExecutor != null;
+    }
+
+    /**
+     * Computes tiles in the calling thread.  Returns the first exception
+     * encountered; the remaining tiles are still computed.
+     */
+    static Exception compute(PlanarImage owner, Point[] tileIndices,
+                             Raster[] tiles, int offset, int numTiles) {
+        Exception exception = null;
+        for (int i = offset; i < offset + numTiles; i++) {
+            Point p = tileIndices[i];
+            try {
+                tiles[i] = owner.getTile(p.x, p.y);
+            } catch (Exception e) {
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+        }
+        return exception;
+    }
+
+    /**
+     * Returns the executor for a non-blocking request on the given image,
+     * or <code>null</code> if the tiles should be computed by the caller.
+     */
+    private Executor getExecutor(PlanarImage image, boolean isPrefetch) {
+        if (virtualSourceThreads && image.getNumSources() == 0) {
+            Executor executor = getVirtualExecutor();
+            if (executor != null) {
+                return executor;
+            }
+        }
+        return getPool(isPrefetch);
+    }
+
+    /**
+     * Returns the pool of the specified type, creating it if it does not
+     * exist or if its parallelism or priority are out of date.  Returns
+     * <code>null</code> if the parallelism is zero.
+     */
+    private synchronized ForkJoinPool getPool(boolean isPrefetch) {
+        int prll = isPrefetch ? prefetchParallelism : parallelism;
+        int prty = isPrefetch ? prefetchPriority : priority;
+        ForkJoinPool current = isPrefetch ? prefetchPool : pool;
+        int currentPriority = isPrefetch ? prefetchPoolPriority : poolPriority;
+
+        if (current != null &&
+            (current.getParallelism() != prll || currentPriority != prty)) {
+            // Let the old pool drain the jobs already submitted to it.
+            current.shutdown();
+            current = null;
+        }
+
+        if (current == null && prll > 0) {
+            String prefix = nameOfThisInstance +
+                            (isPrefetch ? "Prefetch" : "Standard");
+            current = new ForkJoinPool(prll,
+                                       new WorkerFactory(prefix, prty),
+                                       null,
+                                       isPrefetch);
+        }
+
+        if (isPrefetch) {
+            prefetchPool = current;
+            prefetchPoolPriority = prty;
+        } else {
+            pool = current;
+            poolPriority = prty;
+        }
+
+        return current;
+    }
+
+    /** Returns the virtual thread executor or <code>null</code>. */
+    private synchronized Executor getVirtualExecutor() {
+        if (virtualExecutor == null && newVirtualThreadExecutor != null) {
+            try {
+                virtualExecutor =
+                    (Executor)newVirtualThreadExecutor.invoke(null);
+            } catch (Throwable e) {
+                // Virtual threads are unavailable, e.g. a preview
+                // feature which has not been enabled.
+                return null;
+            }
+        }
+        return virtualExecutor;
+    }
+
+    private static java.lang.reflect.Method findVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    void sendExceptionToListener(String message, Throwable e) {
+        ImagingListener listener =
+            ImageUtil.getImagingListener((RenderingHints)null);
+        listener.errorOccurred(message, e, this, false);
+    }
+
+    /** Creates named daemon worker threads of a given priority. */
+    private static final class WorkerFactory
+        implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+        private final String prefix;
+        private final int priority;
+
+        WorkerFactory(String prefix, int priority) {
+            this.prefix = prefix;
+            this.priority = priority;
+        }
+
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread t =
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName(prefix + t.getPoolIndex());
+            t.setDaemon(true);
+            t.setPriority(priority);
+            return t;
+        }
+    }
+
+    /**
+     * Computes a range of tiles of a blocking request, splitting it in
+     * halves until single tiles remain.
+     */
+    private static final class TileTask extends RecursiveAction {
+
+        final PlanarImage owner;
+        final Point[] tileIndices;
+        final Raster[] tiles;
+        final int offset;
+        final int numTiles;
+        final AtomicReference exception;
+
+        TileTask(PlanarImage owner, Point[] tileIndices, Raster[] tiles,
+                 int offset, int numTiles, AtomicReference exception) {
+            this.owner = owner;
+            this.tileIndices = tileIndices;
+            this.tiles = tiles;
+            this.offset = offset;
+            this.numTiles = numTiles;
+            this.exception = exception;
+        }
+
+        protected void compute() {
+            if (numTiles == 1) {
+                Exception e = ForkJoinTileScheduler.compute(owner, tileIndices,
+                                                            tiles, offset, 1);
+                if (e != null) {
+                    exception.compareAndSet(null, e);
+                }
+            } else {
+                int half = numTiles / 2;
+                invokeAll(new TileTask(owner, tileIndices, tiles,
+                                       offset, half, exception),
+                          new TileTask(owner, tileIndices, tiles,
+                                       offset + half, numTiles - half,
+                                       exception));
+            }
+        }
+    }
+
+    /** A request for non-blocking computation of tiles. */
+    private static final class ForkJoinRequest implements TileRequest {
+
+        final ForkJoinTileScheduler scheduler;
+        final PlanarImage image;
+        final Point[] indices;
+        final TileComputationListener[] listeners;
+        final RequestTile[] tiles;
+        final HashMap tileMap;
+
+        ForkJoinRequest(ForkJoinTileScheduler scheduler,
+                        PlanarImage image,
+                        Point[] tileIndices,
+                        TileComputationListener[] tileListeners) {
+            this.scheduler = scheduler;
+            this.image = image;
+            this.indices = (Point[])tileIndices.clone();
+            this.listeners =
+                tileListeners == null || tileListeners.length == 0 ?
+                null : (TileComputationListener[])tileListeners.clone();
+
+            // Duplicate indices are scheduled once.
+            tileMap = new HashMap(2 * indices.length);
+            for (int i = 0; i < indices.length; i++) {
+                Point p = indices[i];
+                if (!tileMap.containsKey(p)) {
+                    tileMap.put(p, new RequestTile(this, p.x, p.y));
+                }
+            }
+            tiles = (RequestTile[])
+                tileMap.values().toArray(new RequestTile[tileMap.size()]);
+        }
+
+        // --- TileRequest implementation ---
+
+        public PlanarImage getImage() {
+            return image;
+        }
+
+        public Point[] getTileIndices() {
+            return (Point[])indices.clone();
+        }
+
+        public TileComputationListener[] getTileListeners() {
+            return listeners == null ?
+                null : (TileComputationListener[])listeners.clone();
+        }
+
+        public boolean isStatusAvailable() {
+            return true;
+        }
+
+        public int getTileStatus(int tileX, int tileY) {
+            RequestTile tile = (RequestTile)tileMap.get(new Point(tileX, tileY));
+            if (tile == null) {
+                throw new IllegalArgumentException();
+            }
+            return tile.status.get();
+        }
+
+        public void cancelTiles(Point[] tileIndices) {
+            scheduler.cancelTiles(this, tileIndices);
+        }
+    }
+
+    /** The job computing a single tile of a non-blocking request. */
+    private static final class RequestTile implements Runnable {
+
+        final ForkJoinRequest request;
+        final int tileX;
+        final int tileY;
+        final AtomicInteger status =
+            new AtomicInteger(TileRequest.TILE_STATUS_PENDING);
+        final long queuedTime = System.nanoTime();
+
+        RequestTile(ForkJoinRequest request, int tileX, int tileY) {
+            this.request = request;
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+
+        public void run() {
+            if (!status.compareAndSet(TileRequest.TILE_STATUS_PENDING,
+                                      TileRequest.TILE_STATUS_PROCESSING)) {
+                // Cancelled before it was started.
+                return;
+            }
+
+            if (TileInstrumentation.isEnabled()) {
+                TileInstrumentation.jobStarted(request.image,
+                                               System.nanoTime() - queuedTime);
+            }
+
+            TileRequest[] requests = new TileRequest[] {request};
+            TileComputationListener[] listeners = request.listeners;
+
+            Raster tile;
+            try {
+                tile = request.image.getTile(tileX, tileY);
+            } catch (Exception e) {
+                status.set(TileRequest.TILE_STATUS_FAILED);
+                if (listeners != null) {
+                    for (int i = 0; i < listeners.length; i++) {
+                        listeners[i].tileComputationFailure(request.scheduler,
+                                                            requests,
+                                                            request.image,
+                                                            tileX, tileY, e);
+                    }
+                }
+                return;
+            }
+
+            status.set(TileRequest.TILE_STATUS_COMPUTED);
+            if (listeners != null) {
+                for (int i = 0; i < listeners.length; i++) {
+                    listeners[i].tileComputed(request.scheduler, requests,
+                                              request.image,
+                                              tileX, tileY, tile);
+                }
+            }
+        }
+
+        void cancel() {
+            if (status.compareAndSet(TileRequest.TILE_STATUS_PENDING,
+                                     TileRequest.TILE_STATUS_CANCELLED)) {
+                TileComputationListener[] listeners = request.listeners;
+                if (listeners != null) {
+                    TileRequest[] requests = new TileRequest[] {request};
+                    for (int i = 0; i < listeners.length; i++) {
+                        listeners[i].tileCancelled(request.scheduler, requests,
+                                                   request.image,
+                                                   tileX, tileY);
+                    }
+                }
+            }
+        }
+    }
+}
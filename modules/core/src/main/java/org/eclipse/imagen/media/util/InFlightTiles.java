@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.util;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A table of the tiles currently being computed, shared by all images.
+ * <code>OpImage.getTile()</code> computes a missing tile through this
+ * class, so that when several threads miss the cache for the same tile
+ * of the same image only the first one computes it; the others wait for
+ * and return its result.  Since every <code>OpImage</code> of a chain
+ * goes through the table, the computation of source tiles is coalesced
+ * as well.
+ *
+ * <p> Images are identified by reference, so tiles of distinct images
+ * are never coalesced.  The number of computations performed and of
+ * requests which were satisfied by waiting for another thread are
+ * available for diagnostics.
+ *
+ * @see org.eclipse.imagen.OpImage#getTile(int, int)
+ */
+public final class InFlightTiles {
+
+    /** The tiles being computed, mapped to their <code>Flight</code>. */
+    private static final ConcurrentHashMap flights = new ConcurrentHashMap();
+
+    /** Number of tile computations which were performed. */
+    private static final LongAdder computedCount = new LongAdder();
+
+    /** Number of tile requests which waited for another computation. */
+    private static final LongAdder coalescedCount = new LongAdder();
+
+    /** Whether concurrent computations are coalesced. */
+    private static volatile boolean enabled = true;
+
+    private InFlightTiles() {}
+
+    /**
+     * Computes a tile unless another thread is already computing the
+     * same tile, in which case the result of that computation is
+     * returned.  If the other computation throws an
+     * <code>Error</code> or <code>RuntimeException</code> it is
+     * rethrown to all the waiting threads.
+     *
+     * @param owner  The image the tile belongs to.
+     * @param tileX  The X index of the tile.
+     * @param tileY  The Y index of the tile.
+     * @param computation  Computes the tile, e.g., by scheduling it and
+     *        adding it to the tile cache.
+     *
+     * @return The tile returned by <code>computation</code>.
+     */
+    public static Raster compute(RenderedImage owner,
+                                 int tileX, int tileY,
+                                 Supplier<Raster> computation) {
+        if (!enabled) {
+            computedCount.increment();
+            return computation.get();
+        }
+
+        Key key = new Key(owner, tileX, tileY);
+        Flight flight = new Flight();
+        Flight inProgress = (Flight)flights.putIfAbsent(key, flight);
+
+        // Wait for another thread, unless this thread is the one
+        // computing the tile and has re-entered getTile().
+        if (inProgress != null && inProgress.leader != Thread.currentThread()) {
+            coalescedCount.increment();
+            try {
+                return (Raster)inProgress.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error)cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException)cause;
+                }
+                throw e;
+            }
+        } else if (inProgress != null) {
+            computedCount.increment();
+            return computation.get();
+        }
+
+        computedCount.increment();
+        Raster tile = null;
+        try {
+            tile = computation.get();
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } catch (Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+            flight.complete(tile);
+        }
+
+        return tile;
+    }
+
+    /**
+     * Enables or disables coalescing.  When disabled, every call to
+     * <code>compute()</code> performs the computation.  Coalescing is
+     * enabled by default.
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /** Returns whether coalescing is enabled. */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Returns the number of tile computations performed. */
+    public static long getComputedCount() {
+        return computedCount.sum();
+    }
+
+    /**
+     * Returns the number of tile requests which were satisfied by
+     * waiting for a computation in another thread.
+     */
+    public static long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /** Returns the number of tiles currently being computed. */
+    public static int getInFlightCount() {
+        return flights.size();
+    }
+
+    /** Resets the computed and coalesced counts to zero. */
+    public static void resetCounts() {
+        computedCount.reset();
+        coalescedCount.reset();
+    }
+
+    /** A tile computation in progress. */
+    private static final class Flight extends CompletableFuture {
+        final Thread leader = Thread.currentThread();
+    }
+
+    /** Identifies a tile of an image by reference. */
+    private static final class Key {
+        final RenderedImage owner;
+        final int tileX;
+        final int tileY;
+
+        Key(RenderedImage owner, int tileX, int tileY) {
+            this.owner = owner;
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+
+        public int hashCode() {
+            return (System.identityHashCode(owner) * 31 + tileX) * 31 + tileY;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key)o;
+            return owner == k.owner && tileX == k.tileX && tileY == k.tileY;
+        }
+    }
+}
@@ -0,0 +1,504 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.util;
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A store for tile data kept outside of the Java heap, used as the
+ * second level of a <code>ConcurrentTileCache</code>.  Tiles evicted from
+ * the cache are copied into the store, and a tile missing from the cache
+ * is looked up in the store and rehydrated into a new
+ * <code>WritableRaster</code> before being computed again.
+ *
+ * <p> The store is made of fixed size chunks which are either direct
+ * <code>ByteBuffer</code>s or regions of a temporary file mapped into
+ * memory; in the latter case the operating system pages the data to and
+ * from the local disk, so that the capacity of the store may exceed the
+ * available memory.  Tiles are appended to the current chunk.  When the
+ * store is full the oldest chunk is reused and all the tiles it holds
+ * are dropped, so the store behaves as a FIFO queue of chunks.
+ *
+ * <p> Only the sample data is kept off the heap.  The
+ * <code>SampleModel</code> and layout of each stored tile remain on the
+ * heap in an index.  Reads do not take any lock: a reader detects that
+ * the chunk it is copying from has been reused in the meantime and then
+ * reports a miss.
+ *
+ * @see ConcurrentTileCache
+ */
+public final class OffHeapTileStore {
+
+    /** The default chunk size (64 MB). */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    /** The chunks, in allocation order. */
+    private final Chunk[] chunks;
+
+    /** The file backing the chunks, or <code>null</code> if direct. */
+    private final File file;
+
+    /** The stored tiles, mapped by their key. */
+    private final ConcurrentHashMap index = new ConcurrentHashMap();
+
+    /** The chunk being appended to; guarded by <code>this</code>. */
+    private int current = 0;
+
+    /** The number of tiles found in the store. */
+    private final LongAdder hitCount = new LongAdder();
+
+    /** The number of tiles looked up but not found in the store. */
+    private final LongAdder missCount = new LongAdder();
+
+    /** The number of tiles dropped when chunks were reused. */
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Creates a store of direct <code>ByteBuffer</code>s.
+     *
+     * @param capacity  The capacity of the store in bytes.
+     * @param chunkSize  The size of each chunk in bytes; tiles larger
+     *        than this are not stored.
+     *
+     * @throws IllegalArgumentException if the capacity or chunk size
+     *         is not positive.
+     */
+    public OffHeapTileStore(long capacity, int chunkSize) {
+        this(capacity, chunkSize, null);
+    }
+
+    /**
+     * Creates a store.  If <code>directory</code> is non-<code>null</code>
+     * the chunks are mapped from a temporary file created in it, which
+     * is deleted when the store is disposed or the virtual machine exits.
+     *
+     * @param capacity  The capacity of the store in bytes.
+     * @param chunkSize  The size of each chunk in bytes; tiles larger
+     *        than this are not stored.
+     * @param directory  The directory of the backing file, or
+     *        <code>null</code> to allocate direct buffers.
+     *
+     * @throws IllegalArgumentException if the capacity or chunk size
+     *         is not positive.
+     * @throws RuntimeException if the backing file cannot be created
+     *         or mapped.
+     */
+    public OffHeapTileStore(long capacity, int chunkSize, File directory) {
+        if (capacity <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException(
+                JaiI18N.getString("OffHeapTileStore0"));
+        }
+
+        int numChunks = (int)Math.max(1L, (capacity + chunkSize - 1) / chunkSize);
+        chunks = new Chunk[numChunks];
+
+        if (directory == null) {
+            file = null;
+            for (int i = 0; i < numChunks; i++) {
+                chunks[i] = new Chunk(ByteBuffer.allocateDirect(chunkSize));
+            }
+        } else {
+            try {
+                file = File.createTempFile("imagen-tiles", ".dat", directory);
+                file.deleteOnExit();
+
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try {
+                    FileChannel channel = raf.getChannel();
+                    for (int i = 0; i < numChunks; i++) {
+                        chunks[i] = new Chunk(
+                            channel.map(FileChannel.MapMode.READ_WRITE,
+                                        (long)i * chunkSize, chunkSize));
+                    }
+                } finally {
+                    // The mappings remain valid once the file is closed.
+                    raf.close();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(
+                    JaiI18N.getString("OffHeapTileStore1"), e);
+            }
+        }
+    }
+
+    /**
+     * Copies a tile into the store.  Returns <code>false</code> if the
+     * tile is too large to be stored.
+     *
+     * @param key  The key of the tile.
+     * @param tile  The tile.
+     */
+    public boolean put(Object key, Raster tile) {
+        DataBuffer db = tile.getDataBuffer();
+        int dataType = db.getDataType();
+        int numBanks = db.getNumBanks();
+        int elementSize = DataBuffer.getDataTypeSize(dataType) / 8;
+
+        int bankLength = bankLength(db, 0);
+        for (int b = 1; b < numBanks; b++) {
+            if (bankLength(db, b) != bankLength) {
+                return false;
+            }
+        }
+
+        long length = (long)bankLength * elementSize * numBanks;
+        if (length > chunks[0].buffer.capacity()) {
+            return false;
+        }
+
+        Slot slot;
+        synchronized (this) {
+            Chunk chunk = chunks[current];
+            if (chunk.used + length > chunk.buffer.capacity()) {
+                current = (current + 1) % chunks.length;
+                chunk = chunks[current];
+                recycle(chunk);
+            }
+
+            slot = new Slot(tile, chunk, chunk.generation,
+                            chunk.used, bankLength, numBanks);
+            for (int b = 0; b < numBanks; b++) {
+                ByteBuffer bank = view(chunk, slot.offset +
+                                       (long)b * bankLength * elementSize,
+                                       bankLength * elementSize);
+                writeBank(db, b, bank);
+            }
+            chunk.used += (int)length;
+            chunk.keys.add(key);
+        }
+
+        index.put(key, slot);
+        return true;
+    }
+
+    /**
+     * Returns a copy of a stored tile, or <code>null</code> if the tile
+     * is not in the store.
+     *
+     * @param key  The key of the tile.
+     */
+    public WritableRaster get(Object key) {
+        WritableRaster raster = copy(key);
+        if (raster == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return raster;
+    }
+
+    /**
+     * Returns a copy of a stored tile, or <code>null</code> if the tile
+     * is not in the store, without counting a hit or a miss.
+     *
+     * @param key  The key of the tile.
+     */
+    public WritableRaster peek(Object key) {
+        return copy(key);
+    }
+
+    /** Copies a stored tile out of the store. */
+    private WritableRaster copy(Object key) {
+        Slot slot = (Slot)index.get(key);
+        if (slot == null || slot.chunk.generation != slot.generation) {
+            return null;
+        }
+
+        SampleModel sm = slot.sampleModel;
+        int dataType = sm.getDataType();
+        int elementSize = DataBuffer.getDataTypeSize(dataType) / 8;
+        int bankBytes = slot.bankLength * elementSize;
+
+        DataBuffer db = createDataBuffer(dataType, slot.bankLength,
+                                         slot.numBanks, slot.offsets);
+        for (int b = 0; b < slot.numBanks; b++) {
+            readBank(view(slot.chunk, slot.offset + (long)b * bankBytes,
+                          bankBytes), db, b);
+        }
+
+        // The chunk may have been reused while the data was copied.  The
+        // fence keeps the copy from being reordered after the check.
+        VarHandle.acquireFence();
+        if (slot.chunk.generation != slot.generation) {
+            index.remove(key, slot);
+            return null;
+        }
+
+        WritableRaster raster =
+            Raster.createWritableRaster(sm, db,
+                                        new Point(slot.translateX,
+                                                  slot.translateY));
+        if (raster.getMinX() != slot.minX || raster.getMinY() != slot.minY ||
+            raster.getWidth() != slot.width ||
+            raster.getHeight() != slot.height) {
+            raster = raster.createWritableChild(slot.minX, slot.minY,
+                                                slot.width, slot.height,
+                                                slot.minX, slot.minY, null);
+        }
+        return raster;
+    }
+
+    /**
+     * Removes a tile from the store.  Its space is reclaimed when its
+     * chunk is reused.
+     */
+    public void remove(Object key) {
+        index.remove(key);
+    }
+
+    /** Removes all the tiles from the store. */
+    public synchronized void clear() {
+        for (int i = 0; i < chunks.length; i++) {
+            recycle(chunks[i]);
+        }
+        index.clear();
+        current = 0;
+    }
+
+    /**
+     * Releases the store.  The store must not be used afterwards.  The
+     * backing file, if any, is deleted; the memory is released when the
+     * buffers are garbage collected.
+     */
+    public synchronized void dispose() {
+        clear();
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    /** Returns the capacity of the store in bytes. */
+    public long getCapacity() {
+        return (long)chunks.length * chunks[0].buffer.capacity();
+    }
+
+    /** Returns whether the store is backed by a memory-mapped file. */
+    public boolean isMapped() {
+        return file != null;
+    }
+
+    /** Returns the number of tiles in the store. */
+    public int getTileCount() {
+        return index.size();
+    }
+
+    /** Returns the number of tiles found in the store. */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /** Returns the number of tiles looked up but not found. */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /** Returns the number of tiles dropped to make room for others. */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /** Resets the hit, miss and eviction counts to zero. */
+    public void resetCounts() {
+        hitCount.reset();
+        missCount.reset();
+        evictionCount.reset();
+    }
+
+    /** Drops all tiles from a chunk before it is overwritten. */
+    private void recycle(Chunk chunk) {
+        // Readers compare the generation before and after copying.  The
+        // fence keeps the new tiles from being written before the change.
+        chunk.generation++;
+        VarHandle.releaseFence();
+        for (int i = 0; i < chunk.keys.size(); i++) {
+            Object key = chunk.keys.get(i);
+            Slot slot = (Slot)index.get(key);
+            if (slot != null && slot.chunk == chunk &&
+                index.remove(key, slot)) {
+                evictionCount.increment();
+            }
+        }
+        chunk.keys.clear();
+        chunk.used = 0;
+    }
+
+    private static ByteBuffer view(Chunk chunk, long offset, int length) {
+        return chunk.buffer.slice((int)offset, length)
+                           .order(ByteOrder.nativeOrder());
+    }
+
+    private static int bankLength(DataBuffer db, int bank) {
+        switch (db.getDataType()) {
+        case DataBuffer.TYPE_BYTE:
+            return ((DataBufferByte)db).getData(bank).length;
+        case DataBuffer.TYPE_USHORT:
+            return ((DataBufferUShort)db).getData(bank).length;
+        case DataBuffer.TYPE_SHORT:
+            return ((DataBufferShort)db).getData(bank).length;
+        case DataBuffer.TYPE_INT:
+            return ((DataBufferInt)db).getData(bank).length;
+        case DataBuffer.TYPE_FLOAT:
+            return DataBufferUtils.getDataFloat(db, bank).length;
+        case DataBuffer.TYPE_DOUBLE:
+            return DataBufferUtils.getDataDouble(db, bank).length;
+        default:
+            return db.getSize();
+        }
+    }
+
+    private static void writeBank(DataBuffer db, int bank, ByteBuffer dst) {
+        switch (db.getDataType()) {
+        case DataBuffer.TYPE_BYTE:
+            dst.put(((DataBufferByte)db).getData(bank));
+            break;
+        case DataBuffer.TYPE_USHORT:
+            dst.asShortBuffer().put(((DataBufferUShort)db).getData(bank));
+            break;
+        case DataBuffer.TYPE_SHORT:
+            dst.asShortBuffer().put(((DataBufferShort)db).getData(bank));
+            break;
+        case DataBuffer.TYPE_INT:
+            dst.asIntBuffer().put(((DataBufferInt)db).getData(bank));
+            break;
+        case DataBuffer.TYPE_FLOAT:
+            dst.asFloatBuffer().put(DataBufferUtils.getDataFloat(db, bank));
+            break;
+        case DataBuffer.TYPE_DOUBLE:
+            dst.asDoubleBuffer().put(DataBufferUtils.getDataDouble(db, bank));
+            break;
+        }
+    }
+
+    private static void readBank(ByteBuffer src, DataBuffer db, int bank) {
+        switch (db.getDataType()) {
+        case DataBuffer.TYPE_BYTE:
+            src.get(((DataBufferByte)db).getData(bank));
+            break;
+        case DataBuffer.TYPE_USHORT:
+            src.asShortBuffer().get(((DataBufferUShort)db).getData(bank));
+            break;
+        case DataBuffer.TYPE_SHORT:
+            src.asShortBuffer().get(((DataBufferShort)db).getData(bank));
+            break;
+        case DataBuffer.TYPE_INT:
+            src.asIntBuffer().get(((DataBufferInt)db).getData(bank));
+            break;
+        case DataBuffer.TYPE_FLOAT:
+            src.asFloatBuffer().get(DataBufferUtils.getDataFloat(db, bank));
+            break;
+        case DataBuffer.TYPE_DOUBLE:
+            src.asDoubleBuffer().get(DataBufferUtils.getDataDouble(db, bank));
+            break;
+        }
+    }
+
+    private static DataBuffer createDataBuffer(int dataType, int bankLength,
+                                               int numBanks, int[] offsets) {
+        switch (dataType) {
+        case DataBuffer.TYPE_BYTE:
+            return new DataBufferByte(new byte[numBanks][bankLength],
+                                      bankLength, offsets);
+        case DataBuffer.TYPE_USHORT:
+            return new DataBufferUShort(new short[numBanks][bankLength],
+                                        bankLength, offsets);
+        case DataBuffer.TYPE_SHORT:
+            return new DataBufferShort(new short[numBanks][bankLength],
+                                       bankLength, offsets);
+        case DataBuffer.TYPE_INT:
+            return new DataBufferInt(new int[numBanks][bankLength],
+                                     bankLength, offsets);
+        case DataBuffer.TYPE_FLOAT:
+            return DataBufferUtils.createDataBufferFloat(
+                new float[numBanks][bankLength], bankLength, offsets);
+        case DataBuffer.TYPE_DOUBLE:
+            return DataBufferUtils.createDataBufferDouble(
+                new double[numBanks][bankLength], bankLength, offsets);
+        default:
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /** A region of off-heap memory holding a sequence of tiles. */
+    private static final class Chunk {
+        final ByteBuffer buffer;
+
+        /** Keys of the tiles stored in the chunk; guarded by the store. */
+        final ArrayList keys = new ArrayList();
+
+        /** Number of bytes used; guarded by the store. */
+        int used = 0;
+
+        /** Incremented each time the chunk is reused. */
+        volatile int generation = 0;
+
+        Chunk(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    /** The heap-resident description of a stored tile. */
+    private static final class Slot {
+        final Chunk chunk;
+        final int generation;
+        final int offset;
+        final int bankLength;
+        final int numBanks;
+        final int[] offsets;
+        final SampleModel sampleModel;
+        final int translateX;
+        final int translateY;
+        final int minX;
+        final int minY;
+        final int width;
+        final int height;
+
+        Slot(Raster tile, Chunk chunk, int generation,
+             int offset, int bankLength, int numBanks) {
+            this.chunk = chunk;
+            this.generation = generation;
+            this.offset = offset;
+            this.bankLength = bankLength;
+            this.numBanks = numBanks;
+            this.offsets = tile.getDataBuffer().getOffsets();
+            this.sampleModel = tile.getSampleModel();
+            this.translateX = tile.getSampleModelTranslateX();
+            this.translateY = tile.getSampleModelTranslateY();
+            this.minX = tile.getMinX();
+            this.minY = tile.getMinY();
+            this.width = tile.getWidth();
+            this.height = tile.getHeight();
+        }
+    }
+}
@@ -62,6 +62,9 @@ final class SunCachedTile implements CachedTile {
 
     int action = 0;             // add, remove, update from tile cache
 
+    long computeTime;           // nanoseconds taken to compute this tile
+    double priority;            // GreedyDual-Size eviction priority
+
 
     /**
      * Constructor that takes a tile cache metric
@@ -187,6 +190,16 @@ final class SunCachedTile implements CachedTile {
         return memorySize;
     }
 
+    /** Returns the compute time of the tile in nanoseconds */
+    public long getTileComputeTime() {
+        return computeTime;
+    }
+
+    /** Returns the compute time per byte, i.e., the cost of eviction. */
+    double getCostPerByte() {
+        return memorySize > 0 ? (double)computeTime / memorySize : 0.0;
+    }
+
     /** Returns information about the method that
      *  triggered the notification event.
      */
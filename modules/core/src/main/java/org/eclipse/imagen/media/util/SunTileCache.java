@@ -49,7 +49,12 @@ import org.eclipse.imagen.util.ImagingListener;
  * greatly depends on the type of images involved.  In fact, the tile
  * capacity is rather meaningless.
  *
+ * <p> Tiles are evicted in least recently used order, or in the order
+ * defined by a tile <code>Comparator</code> if one is set, or by their
+ * GreedyDual-Size priority if cost-aware eviction is enabled.
+ *
  * @see org.eclipse.imagen.TileCache
+ * @see CostAwareTileCache
  *
  */
 
@@ -57,7 +62,7 @@ import org.eclipse.imagen.util.ImagingListener;
 // NOTE: code is inlined for performance reasons
 //
 public final class SunTileCache extends Observable
-                                implements TileCache,
+                                implements CostAwareTileCache,
                                            CacheDiagnostics {
 
     /** The default memory capacity of the cache (16 MB). */
@@ -120,6 +125,31 @@ public final class SunTileCache extends Observable
     /** Diagnostics enable/disable */
     private boolean diagnostics = false;
 
+    /** Whether tiles are evicted by GreedyDual-Size priority. */
+    private boolean costAware = false;
+
+    /** The GreedyDual-Size inflation value. */
+    private double inflation = 0.0;
+
+    /**
+     * The tiles ordered by GreedyDual-Size priority, then by time stamp,
+     * if cost-aware eviction is enabled; <code>null</code> otherwise.
+     */
+    private TreeSet costSortedSet = null;
+
+    /** Orders tiles by GreedyDual-Size priority, then by time stamp. */
+    private static final Comparator PRIORITY_COMPARATOR = new Comparator() {
+        public int compare(Object o1, Object o2) {
+            SunCachedTile ct1 = (SunCachedTile)o1;
+            SunCachedTile ct2 = (SunCachedTile)o2;
+            int c = Double.compare(ct1.priority, ct2.priority);
+            if ( c == 0 ) {
+                c = Long.compare(ct1.timeStamp, ct2.timeStamp);
+            }
+            return c;
+        }
+    };
+
     // diagnostic actions
     // !!! If actions are changed in any way (removal, modification, addition)
     // then the getCachedTileActions() method below should be changed to match.
@@ -215,11 +245,36 @@ public final class SunTileCache extends Observable
      * @param tile             The tile to be cached.
      * @param tileCacheMetric  Metric for prioritizing tiles
      */
+    public void add(RenderedImage owner,
+                    int tileX,
+                    int tileY,
+                    Raster tile,
+                    Object tileCacheMetric) {
+        add(owner, tileX, tileY, tile, tileCacheMetric, 0L);
+    }
+
+    /**
+     * Adds a tile to the cache with an associated tile compute cost
+     * and the time it took to compute.
+     *
+     * <p> If the specified tile is already in the cache, it will not be
+     * cached again.  If by adding this tile, the cache exceeds the memory
+     * capacity, older tiles in the cache are removed to keep the cache
+     * memory usage under the specified limit.
+     *
+     * @param owner            The image the tile blongs to.
+     * @param tileX            The tile's X index within the image.
+     * @param tileY            The tile's Y index within the image.
+     * @param tile             The tile to be cached.
+     * @param tileCacheMetric  Metric for prioritizing tiles
+     * @param computeTime      The compute time of the tile in nanoseconds.
+     */
     public synchronized void add(RenderedImage owner,
                                  int tileX,
                                  int tileY,
                                  Raster tile,
-                                 Object tileCacheMetric) {
+                                 Object tileCacheMetric,
+                                 long computeTime) {
 
         if ( memoryCapacity == 0 ) {
             return;
@@ -232,7 +287,7 @@ public final class SunTileCache extends Observable
 
         if ( ct != null ) {
             // tile is cached, inlines update()
-            ct.timeStamp = timeStamp++;
+            touch(ct);
 
             if (ct != first) {
                 // Bring this tile to the beginning of the list.
@@ -261,6 +316,7 @@ public final class SunTileCache extends Observable
         } else {
             // create a new tile
             ct = new SunCachedTile(owner, tileX, tileY, tile, tileCacheMetric);
+            ct.computeTime = computeTime;
 
             // Don't cache tile if adding it would provoke memoryControl()
             // which would in turn only end up removing the tile.
@@ -269,7 +325,7 @@ public final class SunTileCache extends Observable
                 return;
             }
 
-            ct.timeStamp = timeStamp++;
+            touch(ct);
             ct.previous = null;
             ct.next = first;
 
@@ -344,6 +400,10 @@ public final class SunTileCache extends Observable
                     cacheSortedSet.remove(ct);
                 }
 
+                if ( costSortedSet != null ) {
+                    costSortedSet.remove(ct);
+                }
+
                 if ( ct == first ) {
                     if ( ct == last ) {
                         first = null;  // only one tile in the list
@@ -415,7 +475,7 @@ public final class SunTileCache extends Observable
             tile = (Raster) ct.getTile();
 
             // Update last-access time. (update() inlined for performance)
-            ct.timeStamp = timeStamp++;
+            touch(ct);
 
             if (ct != first) {
                 // Bring this tile to the beginning of the list.
@@ -490,7 +550,7 @@ public final class SunTileCache extends Observable
                         raster = (Raster) ct.getTile();
 
                         // Update last-access time. (update() inlined for performance)
-                        ct.timeStamp = timeStamp++;
+                        touch(ct);
 
                         if (ct != first) {
                             // Bring this tile to the beginning of the list.
@@ -586,7 +646,7 @@ public final class SunTileCache extends Observable
 
             if ( ct != null ) {
                 // tile is cached, inlines update()
-                ct.timeStamp = timeStamp++;
+                touch(ct);
 
                 if (ct != first) {
                     // Bring this tile to the beginning of the list.
@@ -623,7 +683,7 @@ public final class SunTileCache extends Observable
                     return;
                 }
 
-                ct.timeStamp = timeStamp++;
+                touch(ct);
                 ct.previous = null;
                 ct.next = first;
 
@@ -692,7 +752,7 @@ public final class SunTileCache extends Observable
                 tiles[i] = (Raster) ct.getTile();
 
                 // Update last-access time. (update() inlined for performance)
-                ct.timeStamp = timeStamp++;
+                touch(ct);
 
                 if (ct != first) {
                     // Bring this tile to the beginning of the list.
@@ -788,6 +848,10 @@ public final class SunTileCache extends Observable
             cacheSortedSet = Collections.synchronizedSortedSet( new TreeSet(comparator) );
         }
 
+        if ( costSortedSet != null ) {
+            costSortedSet.clear();
+        }
+
         // force reset after diagnostics
         tileCount   = 0;
         timeStamp   = 0;
@@ -928,7 +992,11 @@ public final class SunTileCache extends Observable
      */
     public synchronized void memoryControl() {
         if ( cacheSortedSet == null ) {
-            standard_memory_control();
+            if ( costAware ) {
+                cost_aware_memory_control();
+            } else {
+                standard_memory_control();
+            }
         } else {
             custom_memory_control();
         }
@@ -947,6 +1015,10 @@ public final class SunTileCache extends Observable
                 memoryUsage -= last.memorySize;
                 tileCount--;
 
+                if ( costSortedSet != null ) {
+                    costSortedSet.remove(ct);
+                }
+
                 last = last.previous;
 
                 if (last != null) {
@@ -966,6 +1038,47 @@ public final class SunTileCache extends Observable
         }
     }
 
+    // GreedyDual-Size memory control (TreeSet)
+    private final void cost_aware_memory_control() {
+        long limit = (long)(memoryCapacity * memoryThreshold);
+
+        while ( memoryUsage > limit && !costSortedSet.isEmpty() ) {
+            SunCachedTile ct = (SunCachedTile) costSortedSet.pollFirst();
+
+            cache.remove(ct.key);
+            memoryUsage -= ct.memorySize;
+            tileCount--;
+
+            // remove tile from the linked list
+            if ( ct.previous != null ) {
+                ct.previous.next = ct.next;
+            } else {
+                first = ct.next;
+            }
+            if ( ct.next != null ) {
+                ct.next.previous = ct.previous;
+            } else {
+                last = ct.previous;
+            }
+            ct.previous = null;
+            ct.next = null;
+
+            // age the remaining tiles
+            inflation = ct.priority;
+
+            // diagnostics
+            if ( diagnostics ) {
+                ct.action = REMOVE_FROM_MEMCON;
+                setChanged();
+                notifyObservers(ct);
+            }
+        }
+
+        if ( memoryUsage > limit ) {
+            standard_memory_control();
+        }
+    }
+
     // comparator based memory control (TreeSet)
     private final void custom_memory_control() {
         long limit = (long)(memoryCapacity * memoryThreshold);
@@ -1033,6 +1146,10 @@ public final class SunTileCache extends Observable
             // remove reference in the hashtable
             cache.remove(ct.key);
 
+            if ( costSortedSet != null ) {
+                costSortedSet.remove(ct);
+            }
+
             // diagnostics
             if ( diagnostics ) {
                 ct.action = REMOVE_FROM_MEMCON;
@@ -1081,6 +1198,48 @@ public final class SunTileCache extends Observable
         }
     }
 
+    /**
+     * Enables or disables GreedyDual-Size eviction, which favors
+     * keeping the tiles which took the longest to compute per byte.
+     * A tile <code>Comparator</code>, if set, takes precedence.
+     *
+     * @see CostAwareTileCache
+     */
+    public synchronized void setCostAwareEviction(boolean enable) {
+        if ( enable && !costAware ) {
+            inflation = 0.0;
+            costSortedSet = new TreeSet(PRIORITY_COMPARATOR);
+            for ( SunCachedTile ct = first; ct != null; ct = ct.next ) {
+                ct.priority = ct.getCostPerByte();
+                costSortedSet.add(ct);
+            }
+        } else if ( !enable ) {
+            costSortedSet = null;
+        }
+        costAware = enable;
+    }
+
+    /**
+     * Updates the time stamp of a tile and, if cost-aware eviction is
+     * enabled, its GreedyDual-Size priority.  The tile is taken out of
+     * the priority ordered set while its keys change.
+     */
+    private void touch(SunCachedTile ct) {
+        if ( costAware ) {
+            costSortedSet.remove(ct);
+        }
+        ct.timeStamp = timeStamp++;
+        if ( costAware ) {
+            ct.priority = inflation + ct.getCostPerByte();
+            costSortedSet.add(ct);
+        }
+    }
+
+    /** Returns whether GreedyDual-Size eviction is enabled. */
+    public boolean isCostAwareEviction() {
+        return costAware;
+    }
+
     /**
      * Return the current comparator
      *
@@ -183,6 +183,9 @@ interface Job {
 
     /** Returns the first exception encountered or <code>null</code>. */
     Exception getException();
+
+    /** Returns the <code>System.nanoTime()</code> the job was created. */
+    long getQueuedTime();
 }
 
 /**
@@ -206,6 +209,7 @@ final class RequestJob implements Job {
     boolean done = false;        // flag indicating completion status
     Exception exception = null;	 // Any exception that might have occured
 				 // during computeTile
+    final long queuedTime = System.nanoTime(); // creation time
 
     /** Constructor. */
     RequestJob(SunTileScheduler scheduler,
@@ -326,6 +330,11 @@ final class RequestJob implements Job {
         return exception;
     }
 
+    /** Returns the time the job was created. */
+    public long getQueuedTime() {
+        return queuedTime;
+    }
+
     /** Returns a string representation of the class object. */
     public String toString() {
         String tString = "null";
@@ -358,6 +367,7 @@ final class TileJob implements Job {
     boolean done = false;       // flag indicating completion status
     Exception exception = null;	// The first exception that might have
 				// occured during computeTile
+    final long queuedTime = System.nanoTime(); // creation time
 
     /** Constructor. */
     TileJob(SunTileScheduler scheduler, boolean isBlocking,
@@ -403,6 +413,11 @@ final class TileJob implements Job {
     public Exception getException() {
         return exception;
     }
+
+    /** Returns the time the job was created. */
+    public long getQueuedTime() {
+        return queuedTime;
+    }
 }
 
 /**
@@ -471,6 +486,11 @@ class WorkerThread extends Thread {
 
             // Execute tile job.
             if (job != null) {
+                if (TileInstrumentation.isEnabled()) {
+                    TileInstrumentation.jobStarted(job.getOwner(),
+                        System.nanoTime() - job.getQueuedTime());
+                }
+
 		job.compute();
 
 		// Notify the scheduler only if the Job is blocking.
@@ -907,7 +927,7 @@ public final class SunTileScheduler implements TileScheduler {
             try {
                 try {
                     // Attempt to compute the tile.
-                    tile = owner.computeTile(tileX, tileY);
+                    tile = TileInstrumentation.computeTile(owner, tileX, tileY);
                 } catch (OutOfMemoryError e) {
                     // Empty the cache and call System.gc()
                     TileCache tileCache = owner.getTileCache();
@@ -917,7 +937,7 @@ public final class SunTileScheduler implements TileScheduler {
                     }
 
                     // Re-attempt to compute the tile.
-                    tile = owner.computeTile(tileX, tileY);
+                    tile = TileInstrumentation.computeTile(owner, tileX, tileY);
                 }
             } catch(Throwable e) {
                 // Re-throw the Error or Exception.
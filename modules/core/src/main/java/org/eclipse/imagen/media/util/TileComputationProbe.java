@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.util;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+
+/**
+ * Receives the events recorded by <code>TileInstrumentation</code>.
+ * Implementations may be registered with
+ * <code>TileInstrumentation.addProbe()</code> or as services in a
+ * <code>META-INF/services/org.eclipse.imagen.media.util.TileComputationProbe</code>
+ * resource.  The methods are invoked from the computing threads, often
+ * concurrently, and should return quickly.
+ *
+ * <p> The operation name passed to each method is the name of the
+ * operation of the <code>RenderedOp</code> node which created the image
+ * if known, and is otherwise derived from the class name of the image.
+ *
+ * @see TileInstrumentation
+ * @see TileMetrics
+ */
+public interface TileComputationProbe {
+
+    /**
+     * Invoked after a tile has been computed.
+     *
+     * @param image  The image the tile belongs to.
+     * @param operationName  The name of the operation of the image.
+     * @param tileX  The X index of the tile.
+     * @param tileY  The Y index of the tile.
+     * @param tile  The computed tile; may be <code>null</code> if the
+     *        computation failed.
+     * @param computeTime  The time in nanoseconds spent computing the
+     *        tile, including computing any uncached source tiles.
+     * @param selfTime  The part of <code>computeTime</code> not spent
+     *        computing source tiles of other images.
+     */
+    void tileComputed(RenderedImage image, String operationName,
+                      int tileX, int tileY, Raster tile,
+                      long computeTime, long selfTime);
+
+    /**
+     * Invoked when a tile scheduler starts executing a job queued for
+     * an image.
+     *
+     * @param image  The image whose tiles are computed by the job.
+     * @param operationName  The name of the operation of the image.
+     * @param queueTime  The time in nanoseconds the job was queued.
+     */
+    void jobStarted(RenderedImage image, String operationName,
+                    long queueTime);
+
+    /**
+     * Invoked when a tile of an image is looked up in its tile cache.
+     *
+     * @param image  The image the tile belongs to.
+     * @param operationName  The name of the operation of the image.
+     * @param tileX  The X index of the tile.
+     * @param tileY  The Y index of the tile.
+     * @param hit  Whether the tile was found in the cache.
+     */
+    void cacheAccessed(RenderedImage image, String operationName,
+                       int tileX, int tileY, boolean hit);
+}
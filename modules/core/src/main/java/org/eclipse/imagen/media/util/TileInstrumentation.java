@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.util;
+import java.awt.RenderingHints;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import org.eclipse.imagen.OpImage;
+import org.eclipse.imagen.util.ImagingListener;
+
+/**
+ * The entry point of tile computation instrumentation.  The tile
+ * schedulers, <code>OpImage</code> and <code>RenderedOp</code> report
+ * tile computations, job queueing and tile cache lookups through the
+ * static methods of this class, which forward them to the registered
+ * <code>TileComputationProbe</code>s.
+ *
+ * <p> Instrumentation is disabled by default, in which case every hook
+ * reduces to the test of a volatile flag.  It may be enabled with
+ * <code>setEnabled(true)</code> or by setting the system property
+ * <code>org.eclipse.imagen.instrumentation</code> to <code>true</code>,
+ * in which case the default <code>TileMetrics</code> is also registered
+ * with the platform MBean server.  The default <code>TileMetrics</code>
+ * is always registered as a probe; further probes are loaded with
+ * <code>ServiceLoader</code> or added with <code>addProbe()</code>.
+ *
+ * @see TileComputationProbe
+ * @see TileMetrics
+ */
+public final class TileInstrumentation {
+
+    /** The system property which enables instrumentation at startup. */
+    public static final String ENABLE_PROPERTY =
+        "org.eclipse.imagen.instrumentation";
+
+    private static final TileComputationProbe[] NO_PROBES =
+        new TileComputationProbe[0];
+
+    /** Whether events are recorded. */
+    private static volatile boolean enabled = false;
+
+    /** The probes; replaced as a whole when modified. */
+    private static volatile TileComputationProbe[] probes = NO_PROBES;
+
+    /** Operation names of images, mapped weakly by image. */
+    private static final WeakIdentityMap operationNames =
+        new WeakIdentityMap();
+
+    /**
+     * For each thread, the time spent computing tiles of other images
+     * from within the tile computation in progress.
+     */
+    private static final ThreadLocal nestedTime = new ThreadLocal() {
+        protected Object initialValue() {
+            return new long[1];
+        }
+    };
+
+    static {
+        addProbe(TileMetrics.getDefault());
+
+        try {
+            Iterator services =
+                ServiceLoader.load(TileComputationProbe.class).iterator();
+            while (services.hasNext()) {
+                addProbe((TileComputationProbe)services.next());
+            }
+        } catch (ServiceConfigurationError e) {
+            reportError(e);
+        }
+
+        if (Boolean.getBoolean(ENABLE_PROPERTY)) {
+            TileMetrics.getDefault().registerMBean();
+            enabled = true;
+        }
+    }
+
+    private TileInstrumentation() {}
+
+    /** Enables or disables the recording of events. */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /** Returns whether events are recorded. */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Adds a probe.  Does nothing if the probe is already registered. */
+    public static synchronized void addProbe(TileComputationProbe probe) {
+        if (probe == null) {
+            throw new IllegalArgumentException(JaiI18N.getString("Generic0"));
+        }
+        TileComputationProbe[] current = probes;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == probe) {
+                return;
+            }
+        }
+        TileComputationProbe[] newProbes =
+            new TileComputationProbe[current.length + 1];
+        System.arraycopy(current, 0, newProbes, 0, current.length);
+        newProbes[current.length] = probe;
+        probes = newProbes;
+    }
+
+    /** Removes a probe.  Does nothing if the probe is not registered. */
+    public static synchronized void removeProbe(TileComputationProbe probe) {
+        TileComputationProbe[] current = probes;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == probe) {
+                TileComputationProbe[] newProbes =
+                    new TileComputationProbe[current.length - 1];
+                System.arraycopy(current, 0, newProbes, 0, i);
+                System.arraycopy(current, i + 1, newProbes, i,
+                                 current.length - i - 1);
+                probes = newProbes;
+                return;
+            }
+        }
+    }
+
+    /** Returns the registered probes. */
+    public static TileComputationProbe[] getProbes() {
+        return (TileComputationProbe[])probes.clone();
+    }
+
+    /**
+     * Records the name of the operation which created an image.  Invoked
+     * by <code>RenderedOp</code> for its renderings.
+     */
+    public static void setOperationName(RenderedImage image, String name) {
+        if (image != null && name != null) {
+            operationNames.put(image, name);
+        }
+    }
+
+    /**
+     * Returns the name of the operation which created an image, or the
+     * class name of the image without any "OpImage" suffix.
+     */
+    public static String getOperationName(RenderedImage image) {
+        String name = (String)operationNames.get(image);
+        if (name == null) {
+            name = image.getClass().getName();
+            name = name.substring(name.lastIndexOf('.') + 1);
+            if (name.endsWith("OpImage") && name.length() > 7) {
+                name = name.substring(0, name.length() - 7);
+            }
+            String prev = (String)operationNames.putIfAbsent(image, name);
+            if (prev != null) {
+                name = prev;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Returns the name identifying an image in the statistics: its
+     * operation name followed by its identity hash code.
+     */
+    public static String getNodeName(RenderedImage image) {
+        return getOperationName(image) + "@" +
+               Integer.toHexString(System.identityHashCode(image));
+    }
+
+    /**
+     * Computes a tile with <code>owner.computeTile()</code>, timing the
+     * computation if instrumentation is enabled.  Tile schedulers call
+     * this method instead of invoking <code>computeTile()</code>
+     * directly.
+     */
+    public static Raster computeTile(OpImage owner, int tileX, int tileY) {
+        if (!enabled) {
+            return owner.computeTile(tileX, tileY);
+        }
+
+        long[] nested = (long[])nestedTime.get();
+        long outerNested = nested[0];
+        nested[0] = 0L;
+
+        Raster tile = null;
+        long start = System.nanoTime();
+        try {
+            tile = owner.computeTile(tileX, tileY);
+        } finally {
+            long computeTime = System.nanoTime() - start;
+            long selfTime = Math.max(0L, computeTime - nested[0]);
+            nested[0] = outerNested + computeTime;
+
+            String name = getOperationName(owner);
+            TileComputationProbe[] current = probes;
+            for (int i = 0; i < current.length; i++) {
+                try {
+                    current[i].tileComputed(owner, name, tileX, tileY, tile,
+                                            computeTime, selfTime);
+                } catch (RuntimeException e) {
+                    reportError(e);
+                }
+            }
+        }
+
+        return tile;
+    }
+
+    /**
+     * Reports that a tile scheduler starts executing a job.  Should
+     * only be invoked if <code>isEnabled()</code> returns
+     * <code>true</code>.
+     */
+    public static void jobStarted(RenderedImage image, long queueTime) {
+        String name = getOperationName(image);
+        TileComputationProbe[] current = probes;
+        for (int i = 0; i < current.length; i++) {
+            try {
+                current[i].jobStarted(image, name, queueTime);
+            } catch (RuntimeException e) {
+                reportError(e);
+            }
+        }
+    }
+
+    /**
+     * Reports a tile cache lookup.  Should only be invoked if
+     * <code>isEnabled()</code> returns <code>true</code>.
+     */
+    public static void cacheAccessed(RenderedImage image,
+                                     int tileX, int tileY, boolean hit) {
+        String name = getOperationName(image);
+        TileComputationProbe[] current = probes;
+        for (int i = 0; i < current.length; i++) {
+            try {
+                current[i].cacheAccessed(image, name, tileX, tileY, hit);
+            } catch (RuntimeException e) {
+                reportError(e);
+            }
+        }
+    }
+
+    private static void reportError(Throwable e) {
+        ImagingListener listener =
+            ImageUtil.getImagingListener((RenderingHints)null);
+        listener.errorOccurred(JaiI18N.getString("TileInstrumentation0"),
+                               e, TileInstrumentation.class, false);
+    }
+}
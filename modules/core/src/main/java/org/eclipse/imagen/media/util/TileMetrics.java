@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.util;
+import java.awt.RenderingHints;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.eclipse.imagen.util.ImagingListener;
+
+/**
+ * A <code>TileComputationProbe</code> which aggregates the events it
+ * receives per operation name and per image: the number of tiles
+ * computed and their size, a histogram of the compute time, the time
+ * spent in scheduler queues, and tile cache hits and misses.
+ *
+ * <p> The statistics are available as <code>TileStatistics</code>
+ * snapshots through the methods of this class, and through JMX once
+ * <code>registerMBean()</code> has been called, under the name
+ * <code>org.eclipse.imagen:type=TileMetrics</code>.  The statistics of
+ * an image are dropped when the image is garbage collected; those of
+ * operations are kept until <code>reset()</code> is called.
+ *
+ * <p> The default instance is registered with
+ * <code>TileInstrumentation</code> and records events whenever
+ * instrumentation is enabled.
+ *
+ * @see TileInstrumentation
+ * @see TileStatistics
+ */
+public final class TileMetrics implements TileComputationProbe,
+                                          TileMetricsMXBean {
+
+    /** The JMX object name of the default instance. */
+    public static final String OBJECT_NAME =
+        "org.eclipse.imagen:type=TileMetrics";
+
+    private static final TileMetrics DEFAULT = new TileMetrics();
+
+    /** Statistics per operation name. */
+    private final ConcurrentHashMap operations = new ConcurrentHashMap();
+
+    /** Statistics per image, mapped weakly by image. */
+    private final WeakIdentityMap nodes = new WeakIdentityMap();
+
+    /** Returns the instance registered by default. */
+    public static TileMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    /** Constructs a <code>TileMetrics</code> with no statistics. */
+    public TileMetrics() {}
+
+    public void tileComputed(RenderedImage image, String operationName,
+                             int tileX, int tileY, Raster tile,
+                             long computeTime, long selfTime) {
+        long bytes = 0L;
+        if (tile != null) {
+            DataBuffer db = tile.getDataBuffer();
+            bytes = DataBuffer.getDataTypeSize(db.getDataType()) / 8L *
+                    db.getSize() * db.getNumBanks();
+        }
+        operation(operationName).tileComputed(bytes, computeTime, selfTime);
+        node(image).tileComputed(bytes, computeTime, selfTime);
+    }
+
+    public void jobStarted(RenderedImage image, String operationName,
+                           long queueTime) {
+        operation(operationName).jobStarted(queueTime);
+        node(image).jobStarted(queueTime);
+    }
+
+    public void cacheAccessed(RenderedImage image, String operationName,
+                              int tileX, int tileY, boolean hit) {
+        operation(operationName).cacheAccessed(hit);
+        node(image).cacheAccessed(hit);
+    }
+
+    /** Returns whether instrumentation is enabled. */
+    public boolean isEnabled() {
+        return TileInstrumentation.isEnabled();
+    }
+
+    /** Enables or disables instrumentation. */
+    public void setEnabled(boolean enable) {
+        TileInstrumentation.setEnabled(enable);
+    }
+
+    /** Returns the names of the operations with statistics. */
+    public String[] getOperationNames() {
+        ArrayList names = new ArrayList(operations.keySet());
+        Collections.sort(names);
+        return (String[])names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * Returns the statistics of an operation, or <code>null</code> if
+     * none were recorded.
+     */
+    public TileStatistics getOperationStatistics(String operationName) {
+        Accumulator acc = (Accumulator)operations.get(operationName);
+        return acc == null ? null : acc.snapshot(operationName);
+    }
+
+    /**
+     * Returns the statistics of an image, or <code>null</code> if none
+     * were recorded.  The name of the statistics is the node name of
+     * the image.
+     */
+    public TileStatistics getNodeStatistics(RenderedImage image) {
+        Accumulator acc = (Accumulator)nodes.get(image);
+        return acc == null ?
+            null : acc.snapshot(TileInstrumentation.getNodeName(image));
+    }
+
+    public Map<String, TileStatistics> getOperations() {
+        Map<String, TileStatistics> result =
+            new TreeMap<String, TileStatistics>();
+        Iterator iter = operations.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry e = (Map.Entry)iter.next();
+            String name = (String)e.getKey();
+            result.put(name, ((Accumulator)e.getValue()).snapshot(name));
+        }
+        return result;
+    }
+
+    public Map<String, TileStatistics> getNodes() {
+        Object[] pairs = nodes.toArray();
+
+        Map<String, TileStatistics> result =
+            new TreeMap<String, TileStatistics>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            RenderedImage image = (RenderedImage)pairs[i];
+            String name = TileInstrumentation.getNodeName(image);
+            result.put(name, ((Accumulator)pairs[i + 1]).snapshot(name));
+        }
+        return result;
+    }
+
+    public void reset() {
+        operations.clear();
+        nodes.clear();
+    }
+
+    /**
+     * Registers this instance with the platform MBean server under
+     * <code>OBJECT_NAME</code>.  Failures are reported to the default
+     * <code>ImagingListener</code>.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            reportError(e);
+        }
+    }
+
+    /** Unregisters this instance from the platform MBean server. */
+    public void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            reportError(e);
+        }
+    }
+
+    private Accumulator operation(String operationName) {
+        Accumulator acc = (Accumulator)operations.get(operationName);
+        if (acc == null) {
+            acc = new Accumulator();
+            Accumulator prev =
+                (Accumulator)operations.putIfAbsent(operationName, acc);
+            if (prev != null) {
+                acc = prev;
+            }
+        }
+        return acc;
+    }
+
+    private Accumulator node(RenderedImage image) {
+        Accumulator acc = (Accumulator)nodes.get(image);
+        if (acc == null) {
+            acc = new Accumulator();
+            Accumulator prev = (Accumulator)nodes.putIfAbsent(image, acc);
+            if (prev != null) {
+                acc = prev;
+            }
+        }
+        return acc;
+    }
+
+    private static void reportError(Throwable e) {
+        ImagingListener listener =
+            ImageUtil.getImagingListener((RenderingHints)null);
+        listener.errorOccurred(JaiI18N.getString("TileInstrumentation1"),
+                               e, TileMetrics.class, false);
+    }
+
+    /** The statistics of an operation or image. */
+    private static final class Accumulator {
+        final LongAdder tileCount = new LongAdder();
+        final LongAdder bytesProduced = new LongAdder();
+        final LongAdder totalComputeTime = new LongAdder();
+        final LongAdder selfComputeTime = new LongAdder();
+        final LongAccumulator maxComputeTime =
+            new LongAccumulator(Math::max, 0L);
+        final LongAdder jobCount = new LongAdder();
+        final LongAdder totalQueueTime = new LongAdder();
+        final LongAdder cacheHitCount = new LongAdder();
+        final LongAdder cacheMissCount = new LongAdder();
+        final AtomicLongArray histogram = new AtomicLongArray(64);
+
+        void tileComputed(long bytes, long computeTime, long selfTime) {
+            tileCount.increment();
+            bytesProduced.add(bytes);
+            totalComputeTime.add(computeTime);
+            selfComputeTime.add(selfTime);
+            maxComputeTime.accumulate(computeTime);
+            histogram.incrementAndGet(
+                computeTime <= 0L ? 0 : 63 - Long.numberOfLeadingZeros(computeTime));
+        }
+
+        void jobStarted(long queueTime) {
+            jobCount.increment();
+            totalQueueTime.add(queueTime);
+        }
+
+        void cacheAccessed(boolean hit) {
+            if (hit) {
+                cacheHitCount.increment();
+            } else {
+                cacheMissCount.increment();
+            }
+        }
+
+        TileStatistics snapshot(String name) {
+            long[] counts = new long[histogram.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = histogram.get(i);
+            }
+            return new TileStatistics(name,
+                                      tileCount.sum(),
+                                      bytesProduced.sum(),
+                                      totalComputeTime.sum(),
+                                      selfComputeTime.sum(),
+                                      maxComputeTime.get(),
+                                      jobCount.sum(),
+                                      totalQueueTime.sum(),
+                                      cacheHitCount.sum(),
+                                      cacheMissCount.sum(),
+                                      counts);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.util;
+import java.util.Map;
+
+/**
+ * The management interface of <code>TileMetrics</code>.
+ *
+ * @see TileMetrics
+ */
+public interface TileMetricsMXBean {
+
+    /** Returns whether instrumentation is enabled. */
+    boolean isEnabled();
+
+    /** Enables or disables instrumentation. */
+    void setEnabled(boolean enable);
+
+    /** Returns the statistics of each operation, keyed by name. */
+    Map<String, TileStatistics> getOperations();
+
+    /** Returns the statistics of each live image, keyed by node name. */
+    Map<String, TileStatistics> getNodes();
+
+    /** Discards all the statistics recorded. */
+    void reset();
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.util;
+import java.beans.ConstructorProperties;
+
+/**
+ * A snapshot of the statistics recorded by <code>TileMetrics</code> for
+ * an operation or an image.  All times are in nanoseconds.
+ *
+ * <p> The compute time histogram has 64 buckets; bucket <i>i</i> counts
+ * the tiles whose compute time <i>t</i> satisfies
+ * 2<sup><i>i</i></sup> &lt;= <i>t</i> &lt; 2<sup><i>i</i>+1</sup>,
+ * and bucket 0 also counts the tiles computed in less than 1 ns.
+ * Percentiles are estimated from the histogram and are thus accurate to
+ * within a factor of two.
+ *
+ * @see TileMetrics
+ */
+public final class TileStatistics {
+
+    private final String name;
+    private final long tileCount;
+    private final long bytesProduced;
+    private final long totalComputeTime;
+    private final long selfComputeTime;
+    private final long maxComputeTime;
+    private final long jobCount;
+    private final long totalQueueTime;
+    private final long cacheHitCount;
+    private final long cacheMissCount;
+    private final long[] histogram;
+
+    /**
+     * Constructs a <code>TileStatistics</code>.
+     *
+     * @throws IllegalArgumentException if <code>histogram</code> is
+     *         <code>null</code>.
+     */
+    @ConstructorProperties({"name", "tileCount", "bytesProduced",
+                            "totalComputeTime", "selfComputeTime",
+                            "maxComputeTime", "jobCount", "totalQueueTime",
+                            "cacheHitCount", "cacheMissCount", "histogram"})
+    public TileStatistics(String name, long tileCount, long bytesProduced,
+                          long totalComputeTime, long selfComputeTime,
+                          long maxComputeTime, long jobCount,
+                          long totalQueueTime, long cacheHitCount,
+                          long cacheMissCount, long[] histogram) {
+        if (histogram == null) {
+            throw new IllegalArgumentException(JaiI18N.getString("Generic0"));
+        }
+        this.name = name;
+        this.tileCount = tileCount;
+        this.bytesProduced = bytesProduced;
+        this.totalComputeTime = totalComputeTime;
+        this.selfComputeTime = selfComputeTime;
+        this.maxComputeTime = maxComputeTime;
+        this.jobCount = jobCount;
+        this.totalQueueTime = totalQueueTime;
+        this.cacheHitCount = cacheHitCount;
+        this.cacheMissCount = cacheMissCount;
+        this.histogram = (long[])histogram.clone();
+    }
+
+    /** Returns the operation name or the name of the image. */
+    public String getName() {
+        return name;
+    }
+
+    /** Returns the number of tiles computed. */
+    public long getTileCount() {
+        return tileCount;
+    }
+
+    /** Returns the total size in bytes of the tiles computed. */
+    public long getBytesProduced() {
+        return bytesProduced;
+    }
+
+    /**
+     * Returns the total time spent computing tiles, including computing
+     * uncached source tiles.
+     */
+    public long getTotalComputeTime() {
+        return totalComputeTime;
+    }
+
+    /**
+     * Returns the total time spent computing tiles, excluding computing
+     * source tiles of other images.
+     */
+    public long getSelfComputeTime() {
+        return selfComputeTime;
+    }
+
+    /** Returns the longest compute time of a tile. */
+    public long getMaxComputeTime() {
+        return maxComputeTime;
+    }
+
+    /** Returns the mean compute time of a tile. */
+    public long getMeanComputeTime() {
+        return tileCount == 0 ? 0L : totalComputeTime / tileCount;
+    }
+
+    /** Returns the estimated median compute time of a tile. */
+    public long getMedianComputeTime() {
+        return getComputeTimePercentile(50.0);
+    }
+
+    /** Returns the estimated 99th percentile of the compute time. */
+    public long getComputeTime99() {
+        return getComputeTimePercentile(99.0);
+    }
+
+    /** Returns the number of scheduler jobs executed. */
+    public long getJobCount() {
+        return jobCount;
+    }
+
+    /** Returns the total time scheduler jobs spent queued. */
+    public long getTotalQueueTime() {
+        return totalQueueTime;
+    }
+
+    /** Returns the number of tiles found in the tile cache. */
+    public long getCacheHitCount() {
+        return cacheHitCount;
+    }
+
+    /** Returns the number of tiles not found in the tile cache. */
+    public long getCacheMissCount() {
+        return cacheMissCount;
+    }
+
+    /** Returns the compute time histogram. */
+    public long[] getHistogram() {
+        return (long[])histogram.clone();
+    }
+
+    /**
+     * Returns an estimate of a percentile of the compute time: the
+     * upper bound of the histogram bucket containing it, capped by the
+     * maximum compute time.
+     *
+     * @param percentile  The percentile, between 0 and 100.
+     */
+    public long getComputeTimePercentile(double percentile) {
+        long count = 0L;
+        for (int i = 0; i < histogram.length; i++) {
+            count += histogram[i];
+        }
+        if (count == 0L) {
+            return 0L;
+        }
+
+        long rank = (long)Math.ceil(count * percentile / 100.0);
+        long seen = 0L;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank && seen > 0L) {
+                long bound = i >= 62 ? Long.MAX_VALUE : (2L << i) - 1L;
+                return Math.min(bound, maxComputeTime);
+            }
+        }
+        return maxComputeTime;
+    }
+
+    /** Returns a string representation of the statistics. */
+    public String toString() {
+        return getClass().getName() + "@" + Integer.toHexString(hashCode()) +
+               ": name = " + name +
+               " tileCount = " + Long.toString(tileCount) +
+               " bytesProduced = " + Long.toString(bytesProduced) +
+               " totalComputeTime = " + Long.toString(totalComputeTime) +
+               " selfComputeTime = " + Long.toString(selfComputeTime) +
+               " meanComputeTime = " + Long.toString(getMeanComputeTime()) +
+               " maxComputeTime = " + Long.toString(maxComputeTime) +
+               " totalQueueTime = " + Long.toString(totalQueueTime) +
+               " cacheHitCount = " + Long.toString(cacheHitCount) +
+               " cacheMissCount = " + Long.toString(cacheMissCount);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.eclipse.imagen.media.util;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A concurrent map whose keys are compared by identity and referenced
+ * weakly: the entry of a key is dropped once the key has been garbage
+ * collected.  Unlike a synchronized <code>WeakHashMap</code> it may be
+ * read and updated by several threads without contention, which matters
+ * on the tile computation path.
+ */
+final class WeakIdentityMap {
+
+    private final ConcurrentHashMap map = new ConcurrentHashMap();
+
+    /** The keys whose referents have been garbage collected. */
+    private final ReferenceQueue queue = new ReferenceQueue();
+
+    /** Returns the value mapped to a key, or <code>null</code>. */
+    Object get(Object key) {
+        return map.get(new LookupKey(key));
+    }
+
+    /** Maps a key to a value, replacing any previous value. */
+    void put(Object key, Object value) {
+        expungeStaleEntries();
+        map.put(new WeakKey(key, queue), value);
+    }
+
+    /**
+     * Maps a key to a value unless it is already mapped.  Returns the
+     * previous value, or <code>null</code> if there was none.
+     */
+    Object putIfAbsent(Object key, Object value) {
+        expungeStaleEntries();
+        return map.putIfAbsent(new WeakKey(key, queue), value);
+    }
+
+    /**
+     * Returns the live keys and their values as an array of pairs, key
+     * first.
+     */
+    Object[] toArray() {
+        ArrayList pairs = new ArrayList();
+        Iterator iter = map.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry e = (Map.Entry)iter.next();
+            Object key = ((WeakKey)e.getKey()).get();
+            if (key != null) {
+                pairs.add(key);
+                pairs.add(e.getValue());
+            }
+        }
+        return pairs.toArray();
+    }
+
+    /** Removes all the entries. */
+    void clear() {
+        map.clear();
+        expungeStaleEntries();
+    }
+
+    private void expungeStaleEntries() {
+        Object ref;
+        while ((ref = queue.poll()) != null) {
+            map.remove(ref);
+        }
+    }
+
+    /** A key as stored in the map. */
+    private static final class WeakKey extends WeakReference {
+        private final int hash;
+
+        WeakKey(Object referent, ReferenceQueue queue) {
+            super(referent, queue);
+            hash = System.identityHashCode(referent);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * Returns whether the keys refer to the same object.  A cleared
+         * key is only equal to itself.
+         */
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            Object referent = get();
+            return referent != null && o instanceof WeakKey &&
+                   ((WeakKey)o).get() == referent;
+        }
+    }
+
+    /** A transient key used to look up an object. */
+    private static final class LookupKey {
+        private final Object referent;
+
+        LookupKey(Object referent) {
+            this.referent = referent;
+        }
+
+        public int hashCode() {
+            return System.identityHashCode(referent);
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof WeakKey && ((WeakKey)o).get() == referent;
+        }
+    }
+}
@@ -66,6 +66,14 @@ import org.eclipse.imagen.registry.RenderedRegistryMode;
  *
  * <p> The kernel may not be bigger in any dimension than the image data.
  *
+ * <p> Depending on the kernel and the data type, the pure Java
+ * implementation uses a specialized loop for 3x3 kernels, two one
+ * dimensional convolutions for separable kernels, the Fast Fourier
+ * Transform for large kernels, or the direct sums above.  The chosen
+ * strategy is available as the "ConvolveStrategy" property of the
+ * rendering, whose value is one of "3x3", "separable", "fft" and
+ * "direct".
+ *
  * It should be noted that this operation automatically adds a
  * value of <code>Boolean.TRUE</code> for the
  * <code>JAI.KEY_REPLACE_INDEX_COLOR_MODEL</code> to the given
@@ -65,6 +65,11 @@ import org.eclipse.imagen.registry.RenderedRegistryMode;
  * The typical gain factor for scanned images takes values in the range 
  * of [1/4, 2] (page 278 in Digital Image Processing by William 
  * K. Pratt, 3rd).
+ *
+ * <p> The operation is computed as a convolution by the equivalent
+ * kernel, using the strategies of the "Convolve" operation; the chosen
+ * strategy is available as the "ConvolveStrategy" property of the
+ * rendering.
  * 
  * <p><table border=1>
  * <caption>Resource List</caption>
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.vector;
+import java.awt.geom.AffineTransform;
+import java.awt.image.RenderedImage;
+import org.eclipse.imagen.BorderExtender;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.Interpolation;
+import java.util.Map;
+
+/**
+ * An OpImage subclass that performs bilinear Affine mapping with the
+ * Vector API.
+ *
+ * @see VectorAffineRIF
+ */
+final class VectorAffineBilinearOpImage extends VectorAffineOpImage {
+
+    /**
+     * Constructs a VectorAffineBilinearOpImage from a RenderedImage source,
+     *
+     * @param source a RenderedImage.
+     * @param extender a BorderExtender, or null.
+     * @param layout an ImageLayout optionally containing the tile grid layout,
+     *        SampleModel, and ColorModel, or null.
+     * @param interp an Interpolation object to use for resampling
+     * @param transform the desired AffineTransform.
+     */
+    public VectorAffineBilinearOpImage(RenderedImage source,
+                                       BorderExtender extender,
+                                       Map config,
+                                       ImageLayout layout,
+                                       AffineTransform transform,
+                                       Interpolation interp,
+                                       double[] backgroundValues) {
+        super(source,
+              extender,
+              config,
+              layout,
+              transform,
+              interp,
+              backgroundValues,
+              0,
+              1);
+    }
+
+    void interpolate(float[] src, int offset, int[] pos,
+                     int pixelStride, int scanlineStride,
+                     float[] xfrac, float[] yfrac,
+                     float[] dst, int n) {
+        VectorKernels.bilinear(src, offset, pos, pixelStride, scanlineStride,
+                               xfrac, yfrac, dst, n);
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.vector;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import org.eclipse.imagen.BorderExtender;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.Interpolation;
+import org.eclipse.imagen.RasterAccessor;
+import org.eclipse.imagen.RasterFormatTag;
+import java.util.Map;
+import org.eclipse.imagen.media.opimage.AffineOpImage;
+
+/**
+ * The base class of the affine mapping <code>OpImage</code>s computed
+ * with the Vector API.
+ *
+ * <p> Each destination row is first walked like the pure Java
+ * <code>AffineBilinearOpImage</code> and <code>AffineBicubicOpImage</code>
+ * do, collecting the source position and fractional offsets of the
+ * destination pixels whose neighbourhood lies within the source.  Those
+ * are then interpolated for each band by a kernel of
+ * <code>VectorKernels</code>, and the results rounded and clamped as in
+ * the pure Java implementations, which are reproduced bit for bit.
+ */
+abstract class VectorAffineOpImage extends AffineOpImage {
+
+    /** Source pixels needed before and after the position, along x and y. */
+    private int before, after;
+
+    /**
+     * Constructs a VectorAffineOpImage.
+     *
+     * @param before the number of source pixels the interpolation
+     *        needs before the position along each axis.
+     * @param after the number of source pixels the interpolation
+     *        needs after the position along each axis.
+     */
+    VectorAffineOpImage(RenderedImage source,
+                        BorderExtender extender,
+                        Map config,
+                        ImageLayout layout,
+                        AffineTransform transform,
+                        Interpolation interp,
+                        double[] backgroundValues,
+                        int before,
+                        int after) {
+        super(source,
+              extender,
+              config,
+              layout,
+              transform,
+              interp,
+              backgroundValues);
+
+        this.before = before;
+        this.after = after;
+    }
+
+    /**
+     * Interpolates <code>n</code> destination samples of one band.
+     *
+     * @see VectorKernels
+     */
+    abstract void interpolate(float[] src, int offset, int[] pos,
+                              int pixelStride, int scanlineStride,
+                              float[] xfrac, float[] yfrac,
+                              float[] dst, int n);
+
+    /**
+     * Performs an affine transform on a specified rectangle. The sources are
+     * cobbled.
+     *
+     * @param sources an array of source Rasters, guaranteed to provide all
+     *                necessary source data for computing the output.
+     * @param dest a WritableRaster tile containing the area to be computed.
+     * @param destRect the rectangle within dest to be processed.
+     */
+    protected void computeRect(Raster [] sources,
+                               WritableRaster dest,
+                               Rectangle destRect) {
+        // Retrieve format tags.
+        RasterFormatTag[] formatTags = getFormatTags();
+
+        Raster source = sources[0];
+
+        Rectangle srcRect = source.getBounds();
+
+        int srcRectX = srcRect.x;
+        int srcRectY = srcRect.y;
+
+        RasterAccessor src =
+            new RasterAccessor(source,
+                               srcRect,
+                               formatTags[0],
+                               getSourceImage(0).getColorModel());
+        RasterAccessor dst =
+            new RasterAccessor(dest,
+                               destRect,
+                               formatTags[1],
+                               getColorModel());
+
+        float src_rect_x1 = src.getX();
+        float src_rect_y1 = src.getY();
+        float src_rect_x2 = src_rect_x1 + src.getWidth();
+        float src_rect_y2 = src_rect_y1 + src.getHeight();
+
+        int srcPixelStride = src.getPixelStride();
+        int srcScanlineStride = src.getScanlineStride();
+
+        int srcOffsets[] = new int[src.getNumBands()];
+        float srcDataArrays[][] = VectorSamples.toFloat(src, srcOffsets);
+
+        int dstPixelStride = dst.getPixelStride();
+        int dstScanlineStride = dst.getScanlineStride();
+        int dst_num_bands = dst.getNumBands();
+
+        int dst_min_x = destRect.x;
+        int dst_min_y = destRect.y;
+        int dst_max_x = destRect.x + destRect.width;
+        int dst_max_y = destRect.y + destRect.height;
+
+        // The destination pixels of a row which are interpolated
+        int dwidth = destRect.width;
+        int[] pos = new int[dwidth];
+        float[] xfrac = new float[dwidth];
+        float[] yfrac = new float[dwidth];
+        int[] dstPos = new int[dwidth];
+        float[] result = new float[dwidth];
+
+        Point2D dst_pt = new Point2D.Float();
+        Point2D src_pt = new Point2D.Float();
+
+        int dstOffset = 0;
+
+        for (int y = dst_min_y; y < dst_max_y; y++)  {
+
+            int dstPixelOffset = dstOffset;
+
+            // Backward map the first point in the line
+            // The energy is at the (pt_x + 0.5, pt_y + 0.5)
+            dst_pt.setLocation((double)dst_min_x + 0.5,
+                               (double)y + 0.5);
+            mapDestPoint(dst_pt, src_pt);
+
+            // Get the mapped source coordinates
+            float s_x = (float)src_pt.getX();
+            float s_y = (float)src_pt.getY();
+
+            // As per definition of bilinear and bicubic interpolation
+            s_x -= 0.5;
+            s_y -= 0.5;
+
+            // Floor to get the integral coordinate
+            int s_ix = (int) Math.floor(s_x);
+            int s_iy = (int) Math.floor(s_y);
+
+            float fracx = s_x - (float)s_ix;
+            float fracy = s_y - (float)s_iy;
+
+            int count = 0;
+
+            for (int x = dst_min_x; x < dst_max_x; x++)  {
+                //
+                // Check against the source rectangle
+                //
+                if ((s_ix >= src_rect_x1 + before) &&
+                    (s_ix < (src_rect_x2 - after)) &&
+                    (s_iy >= (src_rect_y1 + before)) &&
+                    (s_iy < (src_rect_y2 - after))) {
+                    // Translate to/from SampleModel space & Raster space
+                    pos[count] = (s_ix - srcRectX) * srcPixelStride +
+                        (s_iy - srcRectY) * srcScanlineStride;
+                    xfrac[count] = fracx;
+                    yfrac[count] = fracy;
+                    dstPos[count] = dstPixelOffset;
+                    count++;
+                } else if (setBackground) {
+                    setBackground(dst, dstPixelOffset);
+                }
+
+                // walk
+                if (fracx < fracdx1) {
+                    s_ix += incx;
+                    fracx += fracdx;
+                } else {
+                    s_ix += incx1;
+                    fracx -= fracdx1;
+                }
+
+                if (fracy < fracdy1) {
+                    s_iy += incy;
+                    fracy += fracdy;
+                } else {
+                    s_iy += incy1;
+                    fracy -= fracdy1;
+                }
+
+                // Go to next pixel
+                dstPixelOffset += dstPixelStride;
+            }
+
+            if (count > 0) {
+                for (int k = 0; k < dst_num_bands; k++) {
+                    interpolate(srcDataArrays[k], srcOffsets[k], pos,
+                                srcPixelStride, srcScanlineStride,
+                                xfrac, yfrac, result, count);
+                    store(dst, k, dstPos, result, count);
+                }
+            }
+
+            // Go to the next line in the destination rectangle
+            dstOffset += dstScanlineStride;
+        }
+
+        // If the RasterAccessor object set up a temporary buffer for the
+        // op to write to, tell the RasterAccessor to write that data
+        // to the raster, that we're done with it.
+        if (dst.isDataCopy()) {
+            dst.clampDataArrays();
+            dst.copyDataToRaster();
+        }
+    }
+
+    /** Writes the background values to all bands of a pixel. */
+    private void setBackground(RasterAccessor dst, int dstPixelOffset) {
+        int dstBandOffsets[] = dst.getBandOffsets();
+
+        for (int k = 0; k < dstBandOffsets.length; k++) {
+            int offset = dstPixelOffset + dstBandOffsets[k];
+            switch (dst.getDataType()) {
+            case DataBuffer.TYPE_BYTE:
+                dst.getByteDataArray(k)[offset] = (byte)backgroundValues[k];
+                break;
+            case DataBuffer.TYPE_USHORT:
+            case DataBuffer.TYPE_SHORT:
+                dst.getShortDataArray(k)[offset] = (short)backgroundValues[k];
+                break;
+            case DataBuffer.TYPE_FLOAT:
+                dst.getFloatDataArray(k)[offset] = (float)backgroundValues[k];
+                break;
+            }
+        }
+    }
+
+    /**
+     * Rounds, clamps and writes the interpolated samples of one band as
+     * the pure Java implementations do.
+     */
+    private static void store(RasterAccessor dst, int band,
+                              int[] dstPos, float[] result, int count) {
+        int bandOffset = dst.getBandOffset(band);
+
+        switch (dst.getDataType()) {
+        case DataBuffer.TYPE_BYTE:
+            byte[] bdata = dst.getByteDataArray(band);
+            for (int i = 0; i < count; i++) {
+                float tmp = result[i];
+                int s;
+                if (tmp < 0.5F) {
+                    s = 0;
+                } else if (tmp > 254.5F) {
+                    s = 255;
+                } else {
+                    s = (int) (tmp + 0.5F);
+                }
+                bdata[dstPos[i] + bandOffset] = (byte) (s & 0xff);
+            }
+            break;
+        case DataBuffer.TYPE_USHORT:
+            short[] usdata = dst.getShortDataArray(band);
+            for (int i = 0; i < count; i++) {
+                float tmp = result[i];
+                int s;
+                if (tmp < 0.0) {
+                    s = 0;
+                } else if (tmp > (float)(USHORT_MAX)) {
+                    s = (int) (USHORT_MAX);
+                } else {
+                    s = (int) (tmp + 0.5F);
+                }
+                usdata[dstPos[i] + bandOffset] = (short)(s & 0xFFFF);
+            }
+            break;
+        case DataBuffer.TYPE_SHORT:
+            short[] sdata = dst.getShortDataArray(band);
+            for (int i = 0; i < count; i++) {
+                float tmp = result[i];
+                int s;
+                if (tmp < ((float) Short.MIN_VALUE)) {
+                    s = Short.MIN_VALUE;
+                } else if (tmp > ((float) Short.MAX_VALUE)) {
+                    s = Short.MAX_VALUE;
+                } else if (tmp > 0 ) {
+                    s = (int) (tmp + 0.5F);
+                } else {
+                    s = (int) (tmp - 0.5F);
+                }
+                sdata[dstPos[i] + bandOffset] = (short)(s);
+            }
+            break;
+        case DataBuffer.TYPE_FLOAT:
+            float[] fdata = dst.getFloatDataArray(band);
+            for (int i = 0; i < count; i++) {
+                fdata[dstPos[i] + bandOffset] = result[i];
+            }
+            break;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.vector;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.DataBuffer;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.ParameterBlock;
+import java.awt.image.renderable.RenderedImageFactory;
+import org.eclipse.imagen.BorderExtender;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.Interpolation;
+import org.eclipse.imagen.InterpolationBicubic;
+import org.eclipse.imagen.InterpolationBilinear;
+import org.eclipse.imagen.media.opimage.RIFUtil;
+
+/**
+ * A <code>RIF</code> supporting the "Affine" operation in the rendered
+ * image mode using the Vector API.
+ *
+ * <p> Transforms which are pure scales are computed by
+ * <code>VectorScaleBilinearOpImage</code> when the interpolation is
+ * bilinear, other transforms by <code>VectorAffineBicubicOpImage</code>
+ * for <code>InterpolationBicubic</code> interpolation and, for float
+ * images, by <code>VectorAffineBilinearOpImage</code> for bilinear
+ * interpolation.  The bilinear mapping of integral images is left to the
+ * pure Java implementation: reading the samples directly is as fast as
+ * converting the source to float and gathering the four neighbours.
+ * Only byte, unsigned short, short and float images are handled; in all
+ * other cases, for copies and integral translations, and when the Vector
+ * API is not available, <code>null</code> is returned so that the next
+ * preferred factory is used.
+ *
+ * @see org.eclipse.imagen.operator.AffineDescriptor
+ * @see VectorAffineBilinearOpImage
+ * @see VectorAffineBicubicOpImage
+ */
+public class VectorAffineRIF implements RenderedImageFactory {
+
+    private static final float TOLERANCE = 0.01F;
+
+    /** Constructor. */
+    public VectorAffineRIF() {}
+
+    /**
+     * Creates a new instance of a Vector API affine <code>OpImage</code>
+     * in the rendered image mode.
+     *
+     * @param args  The source image, the <code>AffineTransform</code>,
+     *              the <code>Interpolation</code> and the background values.
+     * @param hints  May contain rendering hints and destination image layout.
+     */
+    public RenderedImage create(ParameterBlock args,
+                                RenderingHints hints) {
+        /* Get ImageLayout from RenderingHints. */
+        ImageLayout layout = RIFUtil.getImageLayoutHint(hints);
+
+        RenderedImage source = args.getRenderedSource(0);
+
+        AffineTransform transform =
+            (AffineTransform)args.getObjectParameter(0);
+        Interpolation interp = (Interpolation)args.getObjectParameter(1);
+        double[] backgroundValues = (double[])args.getObjectParameter(2);
+
+        if (!(interp instanceof InterpolationBilinear ||
+              interp instanceof InterpolationBicubic) ||
+            !VectorUtil.isVectorCompatible(source, layout)) {
+            return null;
+        }
+
+        // Get the affine transform
+        double tr[];
+        tr = new double[6];
+        transform.getMatrix(tr);
+
+        // Copies and integral translations are left to the copy and
+        // translate implementations.
+        if ((tr[0] == 1.0) &&
+            (tr[3] == 1.0) &&
+            (tr[2] == 0.0) &&
+            (tr[1] == 0.0) &&
+            ((tr[4] == 0.0 && tr[5] == 0.0) ||
+             ((Math.abs(tr[4] - (int) tr[4]) < TOLERANCE) &&
+              (Math.abs(tr[5] - (int) tr[5]) < TOLERANCE) &&
+              layout == null))) {
+            return null;
+        }
+
+        // Get BorderExtender from hints if any.
+        BorderExtender extender = RIFUtil.getBorderExtenderHint(hints);
+
+        if ((tr[0] > 0.0) &&
+            (tr[2] == 0.0) &&
+            (tr[1] == 0.0) &&
+            (tr[3] > 0.0)) {
+            // It's a scale
+            if (interp instanceof InterpolationBilinear) {
+                return new VectorScaleBilinearOpImage(source,
+                                                      extender,
+                                                      hints,
+                                                      layout,
+                                                      (float)tr[0],
+                                                      (float)tr[3],
+                                                      (float)tr[4],
+                                                      (float)tr[5],
+                                                      interp);
+            }
+            return null;
+        }
+
+        if (interp instanceof InterpolationBilinear) {
+            if (source.getSampleModel().getDataType() !=
+                DataBuffer.TYPE_FLOAT) {
+                return null;
+            }
+            return new VectorAffineBilinearOpImage(source,
+                                                   extender,
+                                                   hints,
+                                                   layout,
+                                                   transform,
+                                                   interp,
+                                                   backgroundValues);
+        } else {
+            return new VectorAffineBicubicOpImage(source,
+                                                  extender,
+                                                  hints,
+                                                  layout,
+                                                  transform,
+                                                  interp,
+                                                  backgroundValues);
+        }
+    }
+}
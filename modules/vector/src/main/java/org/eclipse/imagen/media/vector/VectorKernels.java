@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.vector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The interpolation kernels of this package, written against the
+ * incubating Vector API.  This is the only class referring to the
+ * <code>jdk.incubator.vector</code> module; its methods only take
+ * primitive arrays so that nothing else needs to be linked against it.
+ *
+ * <p> Every kernel evaluates, lane by lane, exactly the expression of the
+ * corresponding scalar loop of <code>org.eclipse.imagen.media.opimage</code>
+ * in the same order of operations and without fused multiply-adds, so the
+ * results are bit for bit identical.  The samples of integral images are
+ * passed as <code>int</code> or <code>float</code> arrays; sums and
+ * differences of 8 and 16 bit samples are exact in both.  The element
+ * <code>i</code> of the source neighbourhood is read at
+ * <code>src[offset + pos[i]]</code>, and the remaining elements at
+ * multiples of <code>pixelStride</code> and <code>scanlineStride</code>
+ * from it.
+ */
+final class VectorKernels {
+
+    /*
+     * The vectors are limited to 256 bits: the C2 compiler of JDK 17 was
+     * found to miscompile the 512 bit gathers of these kernels.
+     */
+    private static final VectorSpecies<Integer> INT_SPECIES =
+        IntVector.SPECIES_PREFERRED.vectorBitSize() > 256 ?
+        IntVector.SPECIES_256 : IntVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Float> FLOAT_SPECIES =
+        FloatVector.SPECIES_PREFERRED.vectorBitSize() > 256 ?
+        FloatVector.SPECIES_256 : FloatVector.SPECIES_PREFERRED;
+
+    private static final FloatVector ONE =
+        FloatVector.broadcast(FLOAT_SPECIES, 1.0F);
+
+    private VectorKernels() {}
+
+    /**
+     * Returns <code>true</code> if the preferred vector shape holds at
+     * least four <code>int</code> or <code>float</code> lanes.  On smaller
+     * shapes the kernels would not be faster than the scalar loops.
+     */
+    static boolean isAccelerated() {
+        return INT_SPECIES.length() >= 4 && FLOAT_SPECIES.length() >= 4;
+    }
+
+    /**
+     * Fixed point horizontal bilinear pass of a source row:
+     * <code>dst[i] = (s01 - s00) * xfrac[i] + (s00 << bits)</code>.
+     */
+    static void lerpColumns(int[] src, int offset, int[] pos,
+                            int pixelStride, int[] xfrac, int bits,
+                            int[] dst, int n) {
+        int i = 0;
+        for (int bound = INT_SPECIES.loopBound(n); i < bound;
+             i += INT_SPECIES.length()) {
+            IntVector s00 =
+                IntVector.fromArray(INT_SPECIES, src, offset, pos, i);
+            IntVector s01 =
+                IntVector.fromArray(INT_SPECIES, src, offset + pixelStride,
+                                    pos, i);
+            IntVector f = IntVector.fromArray(INT_SPECIES, xfrac, i);
+
+            s01.sub(s00).mul(f).add(s00.lanewise(VectorOperators.LSHL, bits))
+                .intoArray(dst, i);
+        }
+        for (; i < n; i++) {
+            int s00 = src[offset + pos[i]];
+            int s01 = src[offset + pos[i] + pixelStride];
+            dst[i] = (s01 - s00) * xfrac[i] + (s00 << bits);
+        }
+    }
+
+    /**
+     * Fixed point vertical bilinear pass of two horizontally interpolated
+     * rows: <code>dst[i] = ((s1 - s0) * yfrac + (s0 << bits) + round)
+     * >> shift</code>.
+     */
+    static void lerpRows(int[] s0, int[] s1, int yfrac, int bits,
+                         int round, int shift, int[] dst, int n) {
+        int i = 0;
+        for (int bound = INT_SPECIES.loopBound(n); i < bound;
+             i += INT_SPECIES.length()) {
+            IntVector v0 = IntVector.fromArray(INT_SPECIES, s0, i);
+            IntVector v1 = IntVector.fromArray(INT_SPECIES, s1, i);
+
+            v1.sub(v0).mul(yfrac)
+                .add(v0.lanewise(VectorOperators.LSHL, bits))
+                .add(round)
+                .lanewise(VectorOperators.ASHR, shift)
+                .intoArray(dst, i);
+        }
+        for (; i < n; i++) {
+            dst[i] = ((s1[i] - s0[i]) * yfrac + (s0[i] << bits) + round) >>
+                shift;
+        }
+    }
+
+    /**
+     * Floating point horizontal bilinear pass of a source row:
+     * <code>dst[i] = (s01 - s00) * xfrac[i] + s00</code>.
+     */
+    static void lerpColumns(float[] src, int offset, int[] pos,
+                            int pixelStride, float[] xfrac,
+                            float[] dst, int n) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(n); i < bound;
+             i += FLOAT_SPECIES.length()) {
+            FloatVector s00 =
+                FloatVector.fromArray(FLOAT_SPECIES, src, offset, pos, i);
+            FloatVector s01 =
+                FloatVector.fromArray(FLOAT_SPECIES, src,
+                                      offset + pixelStride, pos, i);
+            FloatVector f = FloatVector.fromArray(FLOAT_SPECIES, xfrac, i);
+
+            s01.sub(s00).mul(f).add(s00).intoArray(dst, i);
+        }
+        for (; i < n; i++) {
+            float s00 = src[offset + pos[i]];
+            float s01 = src[offset + pos[i] + pixelStride];
+            dst[i] = (s01 - s00) * xfrac[i] + s00;
+        }
+    }
+
+    /**
+     * Floating point vertical bilinear pass of two horizontally
+     * interpolated rows: <code>dst[i] = (s1 - s0) * yfrac + s0</code>.
+     */
+    static void lerpRows(float[] s0, float[] s1, float yfrac,
+                         float[] dst, int n) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(n); i < bound;
+             i += FLOAT_SPECIES.length()) {
+            FloatVector v0 = FloatVector.fromArray(FLOAT_SPECIES, s0, i);
+            FloatVector v1 = FloatVector.fromArray(FLOAT_SPECIES, s1, i);
+
+            v1.sub(v0).mul(yfrac).add(v0).intoArray(dst, i);
+        }
+        for (; i < n; i++) {
+            dst[i] = (s1[i] - s0[i]) * yfrac + s0[i];
+        }
+    }
+
+    /**
+     * Bilinear interpolation with a fractional offset per element:
+     * <pre>
+     * s0 = s00 + (s01 - s00) * xfrac
+     * s1 = s10 + (s11 - s10) * xfrac
+     * dst = s0 + (s1 - s0) * yfrac
+     * </pre>
+     * where <code>s00</code> is at <code>pos[i]</code>.
+     */
+    static void bilinear(float[] src, int offset, int[] pos,
+                         int pixelStride, int scanlineStride,
+                         float[] xfrac, float[] yfrac,
+                         float[] dst, int n) {
+        int o00 = offset;
+        int o01 = offset + pixelStride;
+        int o10 = offset + scanlineStride;
+        int o11 = o10 + pixelStride;
+
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(n); i < bound;
+             i += FLOAT_SPECIES.length()) {
+            FloatVector s00 =
+                FloatVector.fromArray(FLOAT_SPECIES, src, o00, pos, i);
+            FloatVector s01 =
+                FloatVector.fromArray(FLOAT_SPECIES, src, o01, pos, i);
+            FloatVector s10 =
+                FloatVector.fromArray(FLOAT_SPECIES, src, o10, pos, i);
+            FloatVector s11 =
+                FloatVector.fromArray(FLOAT_SPECIES, src, o11, pos, i);
+            FloatVector fx = FloatVector.fromArray(FLOAT_SPECIES, xfrac, i);
+            FloatVector fy = FloatVector.fromArray(FLOAT_SPECIES, yfrac, i);
+
+            FloatVector s0 = s00.add(s01.sub(s00).mul(fx));
+            FloatVector s1 = s10.add(s11.sub(s10).mul(fx));
+            s0.add(s1.sub(s0).mul(fy)).intoArray(dst, i);
+        }
+        for (; i < n; i++) {
+            int p = pos[i];
+            float s00 = src[o00 + p];
+            float s01 = src[o01 + p];
+            float s10 = src[o10 + p];
+            float s11 = src[o11 + p];
+
+            float s0 = s00 + ((s01 - s00) * xfrac[i]);
+            float s1 = s10 + ((s11 - s10) * xfrac[i]);
+            dst[i] = s0 + ((s1 - s0) * yfrac[i]);
+        }
+    }
+
+    /**
+     * Bicubic interpolation with a fractional offset per element, using
+     * the formulation of <code>AffineBicubicOpImage</code>, including its
+     * vertical weight <code>xfrac * (1 - yfrac)</code>.  The 4x4
+     * neighbourhood starts one pixel up and to the left of
+     * <code>pos[i]</code>.
+     */
+    static void bicubic(float[] src, int offset, int[] pos,
+                        int pixelStride, int scanlineStride,
+                        float[] xfrac, float[] yfrac,
+                        float[] dst, int n) {
+        // Offsets of the rows above, at, and below the position
+        int r_ = offset - scanlineStride;
+        int r0 = offset;
+        int r1 = offset + scanlineStride;
+        int r2 = r1 + scanlineStride;
+
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(n); i < bound;
+             i += FLOAT_SPECIES.length()) {
+            FloatVector fx = FloatVector.fromArray(FLOAT_SPECIES, xfrac, i);
+            FloatVector fy = FloatVector.fromArray(FLOAT_SPECIES, yfrac, i);
+            FloatVector fxx = fx.mul(ONE.sub(fx));
+            FloatVector fyy = fx.mul(ONE.sub(fy));
+
+            FloatVector s_ = row(src, r_, pos, i, pixelStride, fx, fxx);
+            FloatVector s0 = row(src, r0, pos, i, pixelStride, fx, fxx);
+            FloatVector s1 = row(src, r1, pos, i, pixelStride, fx, fxx);
+            FloatVector s2 = row(src, r2, pos, i, pixelStride, fx, fxx);
+
+            FloatVector s = s0.add(s1.sub(s0).mul(fy));
+            FloatVector q = s1.add(s_).add(
+                s2.add(s0).sub(s1.add(s_)).mul(fy));
+            q = s.sub(q.div(2.0F));
+            s.add(q.mul(fyy)).intoArray(dst, i);
+        }
+        for (; i < n; i++) {
+            float fx = xfrac[i];
+            float fy = yfrac[i];
+            float fxx = fx * (1.0F - fx);
+            float fyy = fx * (1.0F - fy);
+
+            float s_ = row(src, r_ + pos[i], pixelStride, fx, fxx);
+            float s0 = row(src, r0 + pos[i], pixelStride, fx, fxx);
+            float s1 = row(src, r1 + pos[i], pixelStride, fx, fxx);
+            float s2 = row(src, r2 + pos[i], pixelStride, fx, fxx);
+
+            float s = s0 + ((s1 - s0) * fy);
+            float q = (s1 + s_) + (((s2 + s0) - (s1 + s_)) * fy);
+            q = s - q / 2.0F;
+            dst[i] = s + (q * fyy);
+        }
+    }
+
+    /** Horizontal bicubic pass of the row at <code>offset</code>. */
+    private static FloatVector row(float[] src, int offset, int[] pos, int i,
+                                   int pixelStride,
+                                   FloatVector fx, FloatVector fxx) {
+        FloatVector a =
+            FloatVector.fromArray(FLOAT_SPECIES, src,
+                                  offset - pixelStride, pos, i);
+        FloatVector b =
+            FloatVector.fromArray(FLOAT_SPECIES, src, offset, pos, i);
+        FloatVector c =
+            FloatVector.fromArray(FLOAT_SPECIES, src,
+                                  offset + pixelStride, pos, i);
+        FloatVector d =
+            FloatVector.fromArray(FLOAT_SPECIES, src,
+                                  offset + 2 * pixelStride, pos, i);
+
+        FloatVector s = b.add(c.sub(b).mul(fx));
+        FloatVector q = c.add(a).add(d.add(b).sub(c.add(a)).mul(fx));
+        q = s.sub(q.div(2.0F));
+        return s.add(q.mul(fxx));
+    }
+
+    /** Horizontal bicubic pass of the row at <code>p</code>. */
+    private static float row(float[] src, int p, int pixelStride,
+                             float fx, float fxx) {
+        float a = src[p - pixelStride];
+        float b = src[p];
+        float c = src[p + pixelStride];
+        float d = src[p + 2 * pixelStride];
+
+        float s = b + ((c - b) * fx);
+        float q = (c + a) + (((d + b) - (c + a)) * fx);
+        q = s - q / 2.0F;
+        return s + (q * fxx);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.vector;
+import java.awt.image.DataBuffer;
+import org.eclipse.imagen.RasterAccessor;
+
+/**
+ * Converts the samples of a source <code>RasterAccessor</code> to the
+ * <code>int</code> or <code>float</code> arrays the kernels of
+ * <code>VectorKernels</code> gather from.
+ *
+ * <p> Only the part of the data arrays covered by the accessor is
+ * converted, once for all bands sharing a data array.  The returned
+ * arrays keep the pixel and scanline strides of the accessor; the offset
+ * of the first sample of each band is stored in the
+ * <code>offsets</code> argument.  <code>float</code> data is returned
+ * without copying.
+ */
+final class VectorSamples {
+
+    private VectorSamples() {}
+
+    /**
+     * Returns the byte, unsigned short or short samples of
+     * <code>src</code> as <code>int</code>s.
+     */
+    static int[][] toInt(RasterAccessor src, int[] offsets) {
+        int numBands = src.getNumBands();
+        int[] bandOffsets = src.getBandOffsets();
+        int lo = min(bandOffsets);
+        int hi = max(bandOffsets) + extent(src);
+
+        int[][] data = new int[numBands][];
+        for (int b = 0; b < numBands; b++) {
+            offsets[b] = bandOffsets[b] - lo;
+
+            Object array = src.getDataArray(b);
+            for (int i = 0; i < b; i++) {
+                if (src.getDataArray(i) == array) {
+                    data[b] = data[i];
+                    break;
+                }
+            }
+            if (data[b] != null) {
+                continue;
+            }
+
+            int[] dst = new int[hi - lo];
+            switch (src.getDataType()) {
+            case DataBuffer.TYPE_BYTE:
+                byte[] bdata = (byte[])array;
+                for (int i = lo; i < hi; i++) {
+                    dst[i - lo] = bdata[i] & 0xff;
+                }
+                break;
+            case DataBuffer.TYPE_USHORT:
+                short[] usdata = (short[])array;
+                for (int i = lo; i < hi; i++) {
+                    dst[i - lo] = usdata[i] & 0xffff;
+                }
+                break;
+            case DataBuffer.TYPE_SHORT:
+                short[] sdata = (short[])array;
+                for (int i = lo; i < hi; i++) {
+                    dst[i - lo] = sdata[i];
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(
+                    JaiI18N.getString("VectorSamples0"));
+            }
+            data[b] = dst;
+        }
+
+        return data;
+    }
+
+    /**
+     * Returns the byte, unsigned short, short or float samples of
+     * <code>src</code> as <code>float</code>s.
+     */
+    static float[][] toFloat(RasterAccessor src, int[] offsets) {
+        int numBands = src.getNumBands();
+        int[] bandOffsets = src.getBandOffsets();
+
+        if (src.getDataType() == DataBuffer.TYPE_FLOAT) {
+            System.arraycopy(bandOffsets, 0, offsets, 0, numBands);
+            return src.getFloatDataArrays();
+        }
+
+        int lo = min(bandOffsets);
+        int hi = max(bandOffsets) + extent(src);
+
+        float[][] data = new float[numBands][];
+        for (int b = 0; b < numBands; b++) {
+            offsets[b] = bandOffsets[b] - lo;
+
+            Object array = src.getDataArray(b);
+            for (int i = 0; i < b; i++) {
+                if (src.getDataArray(i) == array) {
+                    data[b] = data[i];
+                    break;
+                }
+            }
+            if (data[b] != null) {
+                continue;
+            }
+
+            float[] dst = new float[hi - lo];
+            switch (src.getDataType()) {
+            case DataBuffer.TYPE_BYTE:
+                byte[] bdata = (byte[])array;
+                for (int i = lo; i < hi; i++) {
+                    dst[i - lo] = bdata[i] & 0xff;
+                }
+                break;
+            case DataBuffer.TYPE_USHORT:
+                short[] usdata = (short[])array;
+                for (int i = lo; i < hi; i++) {
+                    dst[i - lo] = usdata[i] & 0xffff;
+                }
+                break;
+            case DataBuffer.TYPE_SHORT:
+                short[] sdata = (short[])array;
+                for (int i = lo; i < hi; i++) {
+                    dst[i - lo] = sdata[i];
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(
+                    JaiI18N.getString("VectorSamples0"));
+            }
+            data[b] = dst;
+        }
+
+        return data;
+    }
+
+    /** The number of data elements spanned by one band of the accessor. */
+    private static int extent(RasterAccessor src) {
+        return (src.getHeight() - 1) * src.getScanlineStride() +
+            (src.getWidth() - 1) * src.getPixelStride() + 1;
+    }
+
+    private static int min(int[] values) {
+        int min = values[0];
+        for (int i = 1; i < values.length; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    private static int max(int[] values) {
+        int max = values[0];
+        for (int i = 1; i < values.length; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.vector;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import org.eclipse.imagen.BorderExtender;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.Interpolation;
+import org.eclipse.imagen.RasterAccessor;
+import org.eclipse.imagen.RasterFormatTag;
+import org.eclipse.imagen.ScaleOpImage;
+import java.util.Map;
+import org.eclipse.imagen.media.util.Rational;
+
+/**
+ * An <code>OpImage</code> that performs bilinear interpolation scaling
+ * with the Vector API.
+ *
+ * <p> The interpolation is separated into a horizontal pass over each
+ * source row, which is kept while consecutive destination rows map to the
+ * same source rows, and a vertical pass over each destination row.  Both
+ * passes evaluate the expressions of the pure Java
+ * <code>ScaleBilinearOpImage</code>, whose results are reproduced bit for
+ * bit.  Byte, unsigned short and short data use its fixed point
+ * arithmetic, float data its floating point arithmetic.
+ *
+ * @see VectorScaleRIF
+ */
+final class VectorScaleBilinearOpImage extends ScaleOpImage {
+
+    /** The number of SubsampleBits */
+    private int subsampleBits;
+
+    /** Subsampling related variables */
+    private int one, shift2, round2;
+
+    private long invScaleYInt, invScaleYFrac;
+    private long invScaleXInt, invScaleXFrac;
+
+    /**
+     * Constructs a VectorScaleBilinearOpImage from a RenderedImage source,
+     *
+     * @param source a RenderedImage.
+     * @param extender a BorderExtender, or null.
+     * @param layout an ImageLayout optionally containing the tile grid layout,
+     *        SampleModel, and ColorModel, or null.
+     * @param xScale scale factor along x axis.
+     * @param yScale scale factor along y axis.
+     * @param xTrans translation factor along x axis.
+     * @param yTrans translation factor along y axis.
+     * @param interp a Interpolation object to use for resampling.
+     */
+    public VectorScaleBilinearOpImage(RenderedImage source,
+                                      BorderExtender extender,
+                                      Map config,
+                                      ImageLayout layout,
+                                      float xScale,
+                                      float yScale,
+                                      float xTrans,
+                                      float yTrans,
+                                      Interpolation interp) {
+        super(source,
+              layout,
+              config,
+              true,
+              extender,
+              interp,
+              xScale,
+              yScale,
+              xTrans,
+              yTrans);
+
+        subsampleBits = interp.getSubsampleBitsH();
+
+        // Number of subsampling positions
+        one = 1 << subsampleBits;
+
+        // Subsampling related variables
+        shift2 = 2 * subsampleBits;
+        round2 = 1 << (shift2 - 1);
+
+        if (invScaleYRational.num > invScaleYRational.denom) {
+            invScaleYInt = invScaleYRational.num / invScaleYRational.denom;
+            invScaleYFrac = invScaleYRational.num % invScaleYRational.denom;
+        } else {
+            invScaleYInt = 0;
+            invScaleYFrac = invScaleYRational.num;
+        }
+
+        if (invScaleXRational.num > invScaleXRational.denom) {
+            invScaleXInt = invScaleXRational.num / invScaleXRational.denom;
+            invScaleXFrac = invScaleXRational.num % invScaleXRational.denom;
+        } else {
+            invScaleXInt = 0;
+            invScaleXFrac = invScaleXRational.num;
+        }
+    }
+
+    /**
+     * Performs scale operation on a specified rectangle. The sources are
+     * cobbled.
+     *
+     * @param sources an array of source Rasters, guaranteed to provide all
+     *                necessary source data for computing the output.
+     * @param dest a WritableRaster tile containing the area to be computed.
+     * @param destRect the rectangle within dest to be processed.
+     */
+    protected void computeRect(Raster [] sources,
+                               WritableRaster dest,
+                               Rectangle destRect) {
+        // Retrieve format tags.
+        RasterFormatTag[] formatTags = getFormatTags();
+
+        Raster source = sources[0];
+
+        // Get the source rectangle
+        Rectangle srcRect = source.getBounds();
+
+        RasterAccessor srcAccessor =
+            new RasterAccessor(source, srcRect,
+                               formatTags[0], getSource(0).getColorModel());
+        RasterAccessor dstAccessor =
+            new RasterAccessor(dest, destRect, formatTags[1], getColorModel());
+
+        int dwidth = destRect.width;
+        int dheight = destRect.height;
+        int srcPixelStride = srcAccessor.getPixelStride();
+        int srcScanlineStride = srcAccessor.getScanlineStride();
+
+        int[] ypos = new int[dheight];
+        int[] xpos = new int[dwidth];
+
+        if (dstAccessor.getDataType() == DataBuffer.TYPE_FLOAT) {
+            float[] xfracvalues = new float[dwidth];
+            float[] yfracvalues = new float[dheight];
+            preComputePositions(destRect, srcRect.x, srcRect.y,
+                                srcPixelStride, srcScanlineStride,
+                                xpos, ypos, null, null,
+                                xfracvalues, yfracvalues);
+            floatLoop(srcAccessor, dstAccessor,
+                      xpos, ypos, xfracvalues, yfracvalues);
+        } else {
+            int[] xfracvalues = new int[dwidth];
+            int[] yfracvalues = new int[dheight];
+            preComputePositions(destRect, srcRect.x, srcRect.y,
+                                srcPixelStride, srcScanlineStride,
+                                xpos, ypos, xfracvalues, yfracvalues,
+                                null, null);
+            intLoop(srcAccessor, dstAccessor,
+                    xpos, ypos, xfracvalues, yfracvalues);
+        }
+
+        // If the RasterAccessor object set up a temporary buffer for the
+        // op to write to, tell the RasterAccessor to write that data
+        // to the raster no that we're done with it.
+        if (dstAccessor.isDataCopy()) {
+            dstAccessor.clampDataArrays();
+            dstAccessor.copyDataToRaster();
+        }
+    }
+
+    /**
+     * Computes the source positions and the fixed point or floating point
+     * fractional offsets of the destination rectangle exactly as
+     * <code>ScaleBilinearOpImage</code> does.  Either the <code>int</code>
+     * or the <code>float</code> fraction arrays are <code>null</code>.
+     */
+    private void preComputePositions(Rectangle destRect,
+                                     int srcRectX, int srcRectY,
+                                     int srcPixelStride,
+                                     int srcScanlineStride,
+                                     int xpos[], int ypos[],
+                                     int xfracvalues[], int yfracvalues[],
+                                     float xfracvaluesFloat[],
+                                     float yfracvaluesFloat[]) {
+        int dwidth = destRect.width;
+        int dheight = destRect.height;
+
+        // Loop variables based on the destination rectangle to be calculated.
+        int dx = destRect.x;
+        int dy = destRect.y;
+
+        long syNum = dy, syDenom = 1;
+
+        // Subtract the Y translation factor sy -= transY
+        syNum = syNum * transYRationalDenom - transYRationalNum * syDenom;
+        syDenom *= transYRationalDenom;
+
+        // Add 0.5
+        syNum = 2 * syNum + syDenom;
+        syDenom *= 2;
+
+        // Multply by invScaleY
+        syNum *= invScaleYRationalNum;
+        syDenom *= invScaleYRationalDenom;
+
+        // Subtract 0.5
+        syNum = 2 * syNum - syDenom;
+        syDenom *= 2;
+
+        // Separate the y source coordinate into integer and fractional part
+        int srcYInt = Rational.floor(syNum , syDenom);
+        long srcYFrac = syNum % syDenom;
+        if (srcYInt < 0) {
+            srcYFrac = syDenom + srcYFrac;
+        }
+
+        // Normalize - Get a common denominator for the fracs of
+        // src and invScaleY
+        long commonYDenom = syDenom * invScaleYRationalDenom;
+        srcYFrac *= invScaleYRationalDenom;
+        long newInvScaleYFrac = invScaleYFrac * syDenom;
+
+        long sxNum = dx, sxDenom = 1;
+
+        // Subtract the X translation factor sx -= transX
+        sxNum = sxNum * transXRationalDenom - transXRationalNum * sxDenom;
+        sxDenom *= transXRationalDenom;
+
+        // Add 0.5
+        sxNum = 2 * sxNum + sxDenom;
+        sxDenom *= 2;
+
+        // Multply by invScaleX
+        sxNum *= invScaleXRationalNum;
+        sxDenom *= invScaleXRationalDenom;
+
+        // Subtract 0.5
+        sxNum = 2 * sxNum - sxDenom;
+        sxDenom *= 2;
+
+        // Separate the x source coordinate into integer and fractional part
+        int srcXInt = Rational.floor(sxNum , sxDenom);
+        long srcXFrac = sxNum % sxDenom;
+        if (srcXInt < 0) {
+            srcXFrac = sxDenom + srcXFrac;
+        }
+
+        // Normalize - Get a common denominator for the fracs of
+        // src and invScaleX
+        long commonXDenom = sxDenom * invScaleXRationalDenom;
+        srcXFrac *= invScaleXRationalDenom;
+        long newInvScaleXFrac = invScaleXFrac * sxDenom;
+
+        for (int i = 0; i < dwidth; i++) {
+            xpos[i] = (srcXInt - srcRectX) * srcPixelStride;
+            if (xfracvalues != null) {
+                xfracvalues[i] =
+                    (int)(((float)srcXFrac/(float)commonXDenom) * one);
+            } else {
+                xfracvaluesFloat[i] = (float)srcXFrac/(float)commonXDenom;
+            }
+
+            // Move onto the next source pixel.
+            srcXInt += invScaleXInt;
+            srcXFrac += newInvScaleXFrac;
+            if (srcXFrac >= commonXDenom) {
+                srcXInt += 1;
+                srcXFrac -= commonXDenom;
+            }
+        }
+
+        for (int i = 0; i < dheight; i++) {
+            ypos[i] = (srcYInt - srcRectY) * srcScanlineStride;
+            if (yfracvalues != null) {
+                yfracvalues[i] =
+                    (int)(((float)srcYFrac/(float)commonYDenom) * one);
+            } else {
+                yfracvaluesFloat[i] = (float)srcYFrac/(float)commonYDenom;
+            }
+
+            // Move onto the next source row.
+            srcYInt += invScaleYInt;
+            srcYFrac += newInvScaleYFrac;
+            if (srcYFrac >= commonYDenom) {
+                srcYInt += 1;
+                srcYFrac -= commonYDenom;
+            }
+        }
+    }
+
+    /** Fixed point interpolation of byte, unsigned short and short data. */
+    private void intLoop(RasterAccessor src, RasterAccessor dst,
+                         int xpos[], int ypos[],
+                         int xfracvalues[], int yfracvalues[]) {
+        int srcPixelStride = src.getPixelStride();
+        int srcScanlineStride = src.getScanlineStride();
+
+        int dwidth = dst.getWidth();
+        int dheight = dst.getHeight();
+        int dnumBands = dst.getNumBands();
+        int dataType = dst.getDataType();
+
+        int dstBandOffsets[] = dst.getBandOffsets();
+        int dstPixelStride = dst.getPixelStride();
+        int dstScanlineStride = dst.getScanlineStride();
+
+        int srcOffsets[] = new int[src.getNumBands()];
+        int srcDataArrays[][] = VectorSamples.toInt(src, srcOffsets);
+
+        // The horizontally interpolated upper and lower source rows
+        int[] row0 = new int[dwidth];
+        int[] row1 = new int[dwidth];
+        int[] result = new int[dwidth];
+
+        for (int k = 0; k < dnumBands; k++)  {
+            int srcData[] = srcDataArrays[k];
+            int bandOffset = srcOffsets[k];
+
+            byte bdata[] = null;
+            short sdata[] = null;
+            if (dataType == DataBuffer.TYPE_BYTE) {
+                bdata = dst.getByteDataArray(k);
+            } else {
+                sdata = dst.getShortDataArray(k);
+            }
+
+            int dstScanlineOffset = dstBandOffsets[k];
+
+            // Source row offset the rows above belong to, if valid
+            int rowOffset = 0;
+            boolean haveRows = false;
+
+            for (int j = 0; j < dheight; j++) {
+                int posylow = ypos[j] + bandOffset;
+                int posyhigh = posylow + srcScanlineStride;
+
+                if (!haveRows || posylow != rowOffset) {
+                    if (haveRows &&
+                        posylow == rowOffset + srcScanlineStride) {
+                        int[] tmp = row0;
+                        row0 = row1;
+                        row1 = tmp;
+                    } else {
+                        VectorKernels.lerpColumns(srcData, posylow, xpos,
+                                                  srcPixelStride,
+                                                  xfracvalues,
+                                                  subsampleBits,
+                                                  row0, dwidth);
+                    }
+                    VectorKernels.lerpColumns(srcData, posyhigh, xpos,
+                                              srcPixelStride, xfracvalues,
+                                              subsampleBits, row1, dwidth);
+                    rowOffset = posylow;
+                    haveRows = true;
+                }
+
+                VectorKernels.lerpRows(row0, row1, yfracvalues[j],
+                                       subsampleBits, round2, shift2,
+                                       result, dwidth);
+
+                int dstPixelOffset = dstScanlineOffset;
+                switch (dataType) {
+                case DataBuffer.TYPE_BYTE:
+                    for (int i = 0; i < dwidth; i++) {
+                        bdata[dstPixelOffset] = (byte)(result[i]&0xff);
+                        dstPixelOffset += dstPixelStride;
+                    }
+                    break;
+                case DataBuffer.TYPE_USHORT:
+                    for (int i = 0; i < dwidth; i++) {
+                        sdata[dstPixelOffset] = (short)(result[i] & 0xffff);
+                        dstPixelOffset += dstPixelStride;
+                    }
+                    break;
+                case DataBuffer.TYPE_SHORT:
+                    for (int i = 0; i < dwidth; i++) {
+                        sdata[dstPixelOffset] = (short)result[i];
+                        dstPixelOffset += dstPixelStride;
+                    }
+                    break;
+                }
+
+                dstScanlineOffset += dstScanlineStride;
+            }
+        }
+    }
+
+    /** Floating point interpolation of float data. */
+    private void floatLoop(RasterAccessor src, RasterAccessor dst,
+                           int xpos[], int ypos[],
+                           float xfracvalues[], float yfracvalues[]) {
+        int srcPixelStride = src.getPixelStride();
+        int srcScanlineStride = src.getScanlineStride();
+
+        int dwidth = dst.getWidth();
+        int dheight = dst.getHeight();
+        int dnumBands = dst.getNumBands();
+
+        int dstBandOffsets[] = dst.getBandOffsets();
+        int dstPixelStride = dst.getPixelStride();
+        int dstScanlineStride = dst.getScanlineStride();
+
+        int srcOffsets[] = new int[src.getNumBands()];
+        float srcDataArrays[][] = VectorSamples.toFloat(src, srcOffsets);
+
+        // The horizontally interpolated upper and lower source rows
+        float[] row0 = new float[dwidth];
+        float[] row1 = new float[dwidth];
+        float[] result = new float[dwidth];
+
+        for (int k = 0; k < dnumBands; k++)  {
+            float srcData[] = srcDataArrays[k];
+            float dstData[] = dst.getFloatDataArray(k);
+            int bandOffset = srcOffsets[k];
+
+            int dstScanlineOffset = dstBandOffsets[k];
+
+            // Source row offset the rows above belong to, if valid
+            int rowOffset = 0;
+            boolean haveRows = false;
+
+            for (int j = 0; j < dheight; j++) {
+                int posylow = ypos[j] + bandOffset;
+                int posyhigh = posylow + srcScanlineStride;
+
+                if (!haveRows || posylow != rowOffset) {
+                    if (haveRows &&
+                        posylow == rowOffset + srcScanlineStride) {
+                        float[] tmp = row0;
+                        row0 = row1;
+                        row1 = tmp;
+                    } else {
+                        VectorKernels.lerpColumns(srcData, posylow, xpos,
+                                                  srcPixelStride,
+                                                  xfracvalues,
+                                                  row0, dwidth);
+                    }
+                    VectorKernels.lerpColumns(srcData, posyhigh, xpos,
+                                              srcPixelStride, xfracvalues,
+                                              row1, dwidth);
+                    rowOffset = posylow;
+                    haveRows = true;
+                }
+
+                VectorKernels.lerpRows(row0, row1, yfracvalues[j],
+                                       result, dwidth);
+
+                int dstPixelOffset = dstScanlineOffset;
+                for (int i = 0; i < dwidth; i++) {
+                    dstData[dstPixelOffset] = result[i];
+                    dstPixelOffset += dstPixelStride;
+                }
+
+                dstScanlineOffset += dstScanlineStride;
+            }
+        }
+    }
+}
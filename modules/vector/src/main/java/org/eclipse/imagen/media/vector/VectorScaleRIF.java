@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.vector;
+import java.awt.RenderingHints;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.ParameterBlock;
+import java.awt.image.renderable.RenderedImageFactory;
+import org.eclipse.imagen.BorderExtender;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.Interpolation;
+import org.eclipse.imagen.InterpolationBilinear;
+import org.eclipse.imagen.media.opimage.RIFUtil;
+
+/**
+ * A <code>RIF</code> supporting the "Scale" operation in the rendered
+ * image mode using the Vector API.
+ *
+ * <p> Only bilinear scaling of byte, unsigned short, short and float
+ * images which is neither a copy nor an integral translation is handled;
+ * in all other cases, and when the Vector API is not available,
+ * <code>null</code> is returned so that the next preferred factory is
+ * used.
+ *
+ * @see org.eclipse.imagen.operator.ScaleDescriptor
+ * @see VectorScaleBilinearOpImage
+ *
+ */
+public class VectorScaleRIF implements RenderedImageFactory {
+
+    private static final float TOLERANCE = 0.01F;
+
+    /** Constructor. */
+    public VectorScaleRIF() {}
+
+    /**
+     * Creates a new instance of <code>VectorScaleBilinearOpImage</code>
+     * in the rendered image mode.
+     *
+     * @param args  The source image, scale factors,
+     *              and the <code>Interpolation</code>.
+     * @param hints  May contain rendering hints and destination image layout.
+     */
+    public RenderedImage create(ParameterBlock args,
+                                RenderingHints hints) {
+        /* Get ImageLayout from RenderingHints. */
+        ImageLayout layout = RIFUtil.getImageLayoutHint(hints);
+
+        RenderedImage source = args.getRenderedSource(0);
+
+        float xScale = args.getFloatParameter(0);
+        float yScale = args.getFloatParameter(1);
+        float xTrans = args.getFloatParameter(2);
+        float yTrans = args.getFloatParameter(3);
+        Interpolation interp = (Interpolation)args.getObjectParameter(4);
+
+        if (!(interp instanceof InterpolationBilinear) ||
+            !VectorUtil.isVectorCompatible(source, layout)) {
+            return null;
+        }
+
+        // Copies and integral translations are left to the copy and
+        // translate implementations.
+        if (xScale == 1.0F && yScale == 1.0F &&
+            ((xTrans == 0.0F && yTrans == 0.0F) ||
+             ((Math.abs(xTrans - (int)xTrans) < TOLERANCE) &&
+              (Math.abs(yTrans - (int)yTrans) < TOLERANCE) &&
+              layout == null))) {
+            return null;
+        }
+
+        // Get BorderExtender from hints if any.
+        BorderExtender extender = RIFUtil.getBorderExtenderHint(hints);
+
+        return new VectorScaleBilinearOpImage(source, extender,
+                                              hints, layout,
+                                              xScale, yScale,
+                                              xTrans, yTrans,
+                                              interp);
+    }
+}
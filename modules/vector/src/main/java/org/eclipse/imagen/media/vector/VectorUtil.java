@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.vector;
+import java.awt.image.DataBuffer;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import org.eclipse.imagen.ImageLayout;
+
+/**
+ * Utility methods deciding whether the Vector API kernels of this
+ * package may be used.
+ *
+ * <p> The <code>jdk.incubator.vector</code> module is only resolved when
+ * it is requested explicitly, e.g. through the <code>--add-modules</code>
+ * option of the launcher.  This class never touches the Vector API
+ * itself, so that the factories of this package can be loaded, and
+ * decline to create an image, on a JVM where the module is absent.  The
+ * kernels may also be switched off by setting the system property
+ * <code>org.eclipse.imagen.media.disableVector</code> to
+ * <code>true</code>.
+ */
+final class VectorUtil {
+
+    /** Whether the Vector API kernels are usable. */
+    private static boolean useVector;
+
+    static {
+        useVector = false;
+        try {
+            if (!Boolean.getBoolean("org.eclipse.imagen.media.disableVector") &&
+                ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                useVector = VectorKernels.isAccelerated();
+            }
+        } catch (SecurityException e) {
+            useVector = false;
+        } catch (LinkageError e) {
+            useVector = false;
+        }
+    }
+
+    private VectorUtil() {}
+
+    /** Returns <code>true</code> if the Vector API kernels are usable. */
+    static boolean isVectorAvailable() {
+        return useVector;
+    }
+
+    /**
+     * Returns <code>true</code> if the image produced from the given source
+     * and layout may be computed with the Vector API kernels: the Vector
+     * API must be available, the source must not be bilevel and the source
+     * and destination must have the same byte, unsigned short, short or
+     * float data type.
+     */
+    static boolean isVectorCompatible(RenderedImage source,
+                                      ImageLayout layout) {
+        if (!useVector) {
+            return false;
+        }
+
+        SampleModel sm = source.getSampleModel();
+        int dataType = sm.getDataType();
+
+        if (dataType != DataBuffer.TYPE_BYTE &&
+            dataType != DataBuffer.TYPE_USHORT &&
+            dataType != DataBuffer.TYPE_SHORT &&
+            dataType != DataBuffer.TYPE_FLOAT) {
+            return false;
+        }
+
+        if (sm instanceof MultiPixelPackedSampleModel) {
+            return false;
+        }
+
+        if (layout != null &&
+            layout.isValid(ImageLayout.SAMPLE_MODEL_MASK)) {
+            SampleModel dstSM = layout.getSampleModel(null);
+            if (dstSM.getDataType() != dataType ||
+                dstSM.getNumBands() != sm.getNumBands() ||
+                dstSM instanceof MultiPixelPackedSampleModel) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
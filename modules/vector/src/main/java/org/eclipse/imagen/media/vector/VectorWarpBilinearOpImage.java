@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.vector;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import org.eclipse.imagen.BorderExtender;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.Interpolation;
+import org.eclipse.imagen.PlanarImage;
+import org.eclipse.imagen.RasterAccessor;
+import org.eclipse.imagen.RasterFormatTag;
+import java.util.Map;
+import org.eclipse.imagen.Warp;
+import org.eclipse.imagen.WarpOpImage;
+
+/**
+ * An <code>OpImage</code> implementing the general "Warp" operation with
+ * bilinear interpolation using the Vector API.
+ *
+ * <p> The destination rows are mapped through the <code>Warp</code> one
+ * at a time, as the pure Java <code>WarpBilinearOpImage</code> does.  The
+ * source area covered by the mapped positions of a group of rows is then
+ * fetched at once, and the positions are interpolated by
+ * <code>VectorKernels.bilinear()</code>, reproducing the results of
+ * <code>WarpBilinearOpImage</code> bit for bit.  The rows of a
+ * destination rectangle are split into smaller groups when their source
+ * area is much larger than the rectangle itself, as happens for strongly
+ * rotating or shrinking warps.
+ *
+ * @see org.eclipse.imagen.Warp
+ * @see org.eclipse.imagen.WarpOpImage
+ * @see org.eclipse.imagen.operator.WarpDescriptor
+ * @see VectorWarpRIF
+ */
+final class VectorWarpBilinearOpImage extends WarpOpImage {
+
+    /**
+     * Constructs a VectorWarpBilinearOpImage.
+     *
+     * @param source  The source image.
+     * @param extender A BorderExtender, or null.
+     * @param layout  The destination image layout.
+     * @param warp    An object defining the warp algorithm.
+     * @param interp  An object describing the interpolation method.
+     */
+    public VectorWarpBilinearOpImage(RenderedImage source,
+                                     BorderExtender extender,
+                                     Map config,
+                                     ImageLayout layout,
+                                     Warp warp,
+                                     Interpolation interp,
+                                     double[] backgroundValues) {
+        super(source,
+              layout,
+              config,
+              false,
+              extender,
+              interp,
+              warp,
+              backgroundValues);
+    }
+
+    /** Warps a rectangle. */
+    protected void computeRect(PlanarImage[] sources,
+                               WritableRaster dest,
+                               Rectangle destRect) {
+        // Retrieve format tags.
+        RasterFormatTag[] formatTags = getFormatTags();
+
+        RasterAccessor d = new RasterAccessor(dest, destRect,
+                                              formatTags[1], getColorModel());
+
+        int dstWidth = d.getWidth();
+        int dstHeight = d.getHeight();
+
+        float[][] warpData = new float[dstHeight][2 * dstWidth];
+        for (int h = 0; h < dstHeight; h++) {
+            warp.warpRect(d.getX(), d.getY()+h, dstWidth, 1, warpData[h]);
+        }
+
+        computeRows(sources[0], formatTags[0], d, warpData, 0, dstHeight);
+
+        if (d.isDataCopy()) {
+            d.clampDataArrays();
+            d.copyDataToRaster();
+        }
+    }
+
+    /**
+     * Computes the destination rows <code>[y0, y1)</code> given their
+     * mapped source positions.
+     */
+    private void computeRows(PlanarImage src, RasterFormatTag srcTag,
+                             RasterAccessor dst, float[][] warpData,
+                             int y0, int y1) {
+        int minX = src.getMinX();
+        int maxX = src.getMaxX() -
+            (extender != null ? 0 : 1); // Right padding
+        int minY = src.getMinY();
+        int maxY = src.getMaxY() -
+            (extender != null ? 0 : 1); // Bottom padding
+
+        int dstWidth = dst.getWidth();
+
+        // Find the source area needed by the rows.
+        int xmin = Integer.MAX_VALUE;
+        int ymin = Integer.MAX_VALUE;
+        int xmax = Integer.MIN_VALUE;
+        int ymax = Integer.MIN_VALUE;
+        for (int h = y0; h < y1; h++) {
+            float[] rowData = warpData[h];
+            int count = 0;
+            for (int w = 0; w < dstWidth; w++) {
+                int xint = floor(rowData[count++]);
+                int yint = floor(rowData[count++]);
+
+                if (xint >= minX && xint < maxX &&
+                    yint >= minY && yint < maxY) {
+                    xmin = Math.min(xmin, xint);
+                    ymin = Math.min(ymin, yint);
+                    xmax = Math.max(xmax, xint);
+                    ymax = Math.max(ymax, yint);
+                }
+            }
+        }
+
+        float[][] srcData = null;
+        int[] srcOffsets = null;
+        int srcPixelStride = 0;
+        int srcScanlineStride = 0;
+
+        if (xmin <= xmax) {
+            long area = (long)(xmax - xmin + 2) * (ymax - ymin + 2);
+            if (y1 - y0 > 1 &&
+                area > 4L * (y1 - y0) * dstWidth + 4096) {
+                int mid = (y0 + y1) / 2;
+                computeRows(src, srcTag, dst, warpData, y0, mid);
+                computeRows(src, srcTag, dst, warpData, mid, y1);
+                return;
+            }
+
+            Rectangle srcRect = new Rectangle(xmin, ymin,
+                                              xmax - xmin + 2,
+                                              ymax - ymin + 2);
+            Raster raster = extender != null ?
+                src.getExtendedData(srcRect, extender) :
+                src.getData(srcRect);
+
+            RasterAccessor s = new RasterAccessor(raster, srcRect, srcTag,
+                                                  src.getColorModel());
+            srcPixelStride = s.getPixelStride();
+            srcScanlineStride = s.getScanlineStride();
+            srcOffsets = new int[s.getNumBands()];
+            srcData = VectorSamples.toFloat(s, srcOffsets);
+        }
+
+        int dstBands = dst.getNumBands();
+        int lineStride = dst.getScanlineStride();
+        int pixelStride = dst.getPixelStride();
+
+        int[] pos = new int[dstWidth];
+        float[] xfrac = new float[dstWidth];
+        float[] yfrac = new float[dstWidth];
+        int[] dstPos = new int[dstWidth];
+        float[] result = new float[dstWidth];
+
+        int lineOffset = y0 * lineStride;
+
+        for (int h = y0; h < y1; h++) {
+            float[] rowData = warpData[h];
+            int pixelOffset = lineOffset;
+            lineOffset += lineStride;
+
+            int n = 0;
+            int count = 0;
+            for (int w = 0; w < dstWidth; w++) {
+                float sx = rowData[count++];
+                float sy = rowData[count++];
+
+                int xint = floor(sx);
+                int yint = floor(sy);
+                float xf = sx - xint;
+                float yf = sy - yint;
+
+                if (xint < minX || xint >= maxX ||
+                    yint < minY || yint >= maxY) {
+                    /* Fill with a background color. */
+                    if (setBackground) {
+                        setBackground(dst, pixelOffset);
+                    }
+                } else {
+                    pos[n] = (xint - xmin) * srcPixelStride +
+                        (yint - ymin) * srcScanlineStride;
+                    xfrac[n] = xf;
+                    yfrac[n] = yf;
+                    dstPos[n] = pixelOffset;
+                    n++;
+                }
+
+                pixelOffset += pixelStride;
+            }
+
+            if (n > 0) {
+                for (int b = 0; b < dstBands; b++) {
+                    VectorKernels.bilinear(srcData[b], srcOffsets[b], pos,
+                                           srcPixelStride, srcScanlineStride,
+                                           xfrac, yfrac, result, n);
+                    store(dst, b, dstPos, result, n);
+                }
+            }
+        }
+    }
+
+    /** Writes the background values to all bands of a pixel. */
+    private void setBackground(RasterAccessor dst, int pixelOffset) {
+        int bandOffsets[] = dst.getBandOffsets();
+
+        for (int b = 0; b < bandOffsets.length; b++) {
+            int offset = pixelOffset + bandOffsets[b];
+            switch (dst.getDataType()) {
+            case DataBuffer.TYPE_BYTE:
+                dst.getByteDataArray(b)[offset] = (byte)backgroundValues[b];
+                break;
+            case DataBuffer.TYPE_USHORT:
+            case DataBuffer.TYPE_SHORT:
+                dst.getShortDataArray(b)[offset] = (short)backgroundValues[b];
+                break;
+            case DataBuffer.TYPE_FLOAT:
+                dst.getFloatDataArray(b)[offset] = (float)backgroundValues[b];
+                break;
+            }
+        }
+    }
+
+    /**
+     * Writes the interpolated samples of one band, converting them as
+     * <code>WarpBilinearOpImage</code> does.
+     */
+    private static void store(RasterAccessor dst, int band,
+                              int[] dstPos, float[] result, int n) {
+        int bandOffset = dst.getBandOffset(band);
+
+        switch (dst.getDataType()) {
+        case DataBuffer.TYPE_BYTE:
+            byte[] bdata = dst.getByteDataArray(band);
+            for (int i = 0; i < n; i++) {
+                bdata[dstPos[i] + bandOffset] = (byte)result[i];
+            }
+            break;
+        case DataBuffer.TYPE_USHORT:
+        case DataBuffer.TYPE_SHORT:
+            short[] sdata = dst.getShortDataArray(band);
+            for (int i = 0; i < n; i++) {
+                sdata[dstPos[i] + bandOffset] = (short)result[i];
+            }
+            break;
+        case DataBuffer.TYPE_FLOAT:
+            float[] fdata = dst.getFloatDataArray(band);
+            for (int i = 0; i < n; i++) {
+                fdata[dstPos[i] + bandOffset] = result[i];
+            }
+            break;
+        }
+    }
+
+    /** Returns the "floor" value of a float. */
+    private static final int floor(float f) {
+        return f >= 0 ? (int)f : (int)f - 1;
+    }
+}
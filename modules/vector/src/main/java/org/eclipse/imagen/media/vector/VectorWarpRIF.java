@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.imagen.media.vector;
+import java.awt.RenderingHints;
+import java.awt.image.IndexColorModel;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.ParameterBlock;
+import java.awt.image.renderable.RenderedImageFactory;
+import org.eclipse.imagen.BorderExtender;
+import org.eclipse.imagen.ImageLayout;
+import org.eclipse.imagen.Interpolation;
+import org.eclipse.imagen.InterpolationBilinear;
+import org.eclipse.imagen.Warp;
+import org.eclipse.imagen.media.opimage.RIFUtil;
+
+/**
+ * A <code>RIF</code> supporting the "Warp" operation in the rendered
+ * image mode using the Vector API.
+ *
+ * <p> Only bilinear warping of byte, unsigned short, short and float
+ * images without an <code>IndexColorModel</code> is handled; in all other
+ * cases, and when the Vector API is not available, <code>null</code> is
+ * returned so that the next preferred factory is used.
+ *
+ * @see org.eclipse.imagen.operator.WarpDescriptor
+ * @see VectorWarpBilinearOpImage
+ */
+public class VectorWarpRIF implements RenderedImageFactory {
+
+    /** Constructor. */
+    public VectorWarpRIF() {}
+
+    /**
+     * Creates a new instance of <code>VectorWarpBilinearOpImage</code> in
+     * the rendered image mode.
+     *
+     * @param paramBlock  The warp and interpolation objects.
+     * @param renderHints  May contain rendering hints and destination
+     *                     image layout.
+     */
+    public RenderedImage create(ParameterBlock paramBlock,
+                                RenderingHints renderHints) {
+        // Get ImageLayout from renderHints if any.
+        ImageLayout layout = RIFUtil.getImageLayoutHint(renderHints);
+
+        RenderedImage source = paramBlock.getRenderedSource(0);
+        Warp warp = (Warp)paramBlock.getObjectParameter(0);
+        Interpolation interp = (Interpolation)paramBlock.getObjectParameter(1);
+
+        double[] backgroundValues = (double[])paramBlock.getObjectParameter(2);
+
+        if (!(interp instanceof InterpolationBilinear) ||
+            source.getColorModel() instanceof IndexColorModel ||
+            !VectorUtil.isVectorCompatible(source, layout)) {
+            return null;
+        }
+
+        // Get BorderExtender from renderHints if any.
+        BorderExtender extender = RIFUtil.getBorderExtenderHint(renderHints);
+
+        return new VectorWarpBilinearOpImage(source, extender, renderHints,
+                                             layout, warp, interp,
+                                             backgroundValues);
+    }
+}